@@ -0,0 +1,184 @@
+package com.easypan.component;
+
+import com.easypan.exception.BusinessException;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 分片直写组件.
+ *
+ * <p>分片不再落成独立的小文件再合并，而是按 {@code chunkIndex * chunkSize} 直接写入
+ * 临时目录下预分配的 {@value #PART_FILE_NAME}，上传完成后只需截断并重命名为目标文件，
+ * 省去一次完整的读写合并.
+ *
+ * <p>分片大小未知时（例如末片先于其他分片到达）该分片暂存为按序号命名的独立文件，
+ * 由 {@link #foldSpilledChunks} 在完成前写回对应偏移.
+ */
+@Component
+public class ChunkDirectWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkDirectWriter.class);
+
+    /**
+     * 预分配的目标数据文件名.
+     */
+    public static final String PART_FILE_NAME = "upload.part";
+
+    private static final long TRANSFER_CHUNK_SIZE = 8L * 1024 * 1024;
+
+    @Value("${app.upload.direct-write.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 是否启用分片直写模式.
+     *
+     * @return true 表示启用
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 判断临时目录是否由直写模式产生.
+     *
+     * @param tempFolder 上传临时目录
+     * @return true 表示存在预分配文件
+     */
+    public boolean isDirectWriteFolder(File tempFolder) {
+        return new File(tempFolder, PART_FILE_NAME).isFile();
+    }
+
+    /**
+     * 将分片写入预分配文件的对应偏移.
+     *
+     * @param tempFolder  上传临时目录
+     * @param inputStream 分片数据
+     * @param length      分片长度
+     * @param chunkIndex  分片索引
+     * @param chunks      总分片数
+     * @param chunkSize   约定分片大小
+     */
+    public void writeChunk(File tempFolder, InputStream inputStream, long length, int chunkIndex, int chunks,
+            long chunkSize) {
+        File partFile = new File(tempFolder, PART_FILE_NAME);
+        long position = chunkIndex * chunkSize;
+        try (RandomAccessFile raf = new RandomAccessFile(partFile, "rw");
+                ReadableByteChannel source = Channels.newChannel(inputStream)) {
+            // 首次写入时按上限预分配，末片写入后由 finish 截断到实际长度；只扩不缩，避免并发分片互相覆盖长度.
+            long reserved = chunks * chunkSize;
+            if (raf.length() < reserved) {
+                raf.setLength(reserved);
+            }
+            FileChannel channel = raf.getChannel();
+            long written = 0L;
+            while (written < length) {
+                long count = Math.min(TRANSFER_CHUNK_SIZE, length - written);
+                long transferred = channel.transferFrom(source, position + written, count);
+                if (transferred <= 0) {
+                    break;
+                }
+                written += transferred;
+            }
+            if (written != length) {
+                throw new BusinessException("分片大小校验失败，请重试上传");
+            }
+        } catch (IOException e) {
+            logger.error("分片直写失败: folder={}, chunkIndex={}", tempFolder.getPath(), chunkIndex, e);
+            throw new BusinessException("分片写入失败");
+        }
+    }
+
+    /**
+     * 暂存暂时无法确定偏移的分片.
+     *
+     * @param tempFolder  上传临时目录
+     * @param inputStream 分片数据
+     * @param chunkIndex  分片索引
+     * @return 暂存文件
+     */
+    public File spillChunk(File tempFolder, InputStream inputStream, int chunkIndex) {
+        File spillFile = new File(tempFolder, String.valueOf(chunkIndex));
+        try {
+            Files.copy(inputStream, spillFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return spillFile;
+        } catch (IOException e) {
+            logger.error("分片暂存失败: folder={}, chunkIndex={}", tempFolder.getPath(), chunkIndex, e);
+            throw new BusinessException("分片写入失败");
+        }
+    }
+
+    /**
+     * 将暂存分片回填到预分配文件的对应偏移.
+     *
+     * @param tempFolder 上传临时目录
+     * @param chunkSize  约定分片大小
+     */
+    public void foldSpilledChunks(File tempFolder, Long chunkSize) {
+        File[] spilled = tempFolder.listFiles(
+                (dir, name) -> !name.isEmpty() && name.chars().allMatch(Character::isDigit));
+        if (spilled == null || spilled.length == 0) {
+            return;
+        }
+        if (chunkSize == null || chunkSize <= 0) {
+            throw new BusinessException("分片大小未知，无法完成上传");
+        }
+        File partFile = new File(tempFolder, PART_FILE_NAME);
+        try (FileChannel out = FileChannel.open(partFile.toPath(), StandardOpenOption.WRITE)) {
+            for (File chunk : spilled) {
+                long position = Long.parseLong(chunk.getName()) * chunkSize;
+                try (FileChannel in = FileChannel.open(chunk.toPath(), StandardOpenOption.READ)) {
+                    long size = in.size();
+                    long done = 0L;
+                    while (done < size) {
+                        long transferred = out.transferFrom(in, position + done,
+                                Math.min(TRANSFER_CHUNK_SIZE, size - done));
+                        if (transferred <= 0) {
+                            break;
+                        }
+                        done += transferred;
+                    }
+                }
+                FileUtils.deleteQuietly(chunk);
+            }
+        } catch (IOException e) {
+            logger.error("回填暂存分片失败: folder={}", tempFolder.getPath(), e);
+            throw new BusinessException("分片写入失败");
+        }
+    }
+
+    /**
+     * 截断到实际长度并重命名为目标文件，随后删除临时目录.
+     *
+     * @param tempFolder 上传临时目录
+     * @param targetFile 目标文件
+     * @param fileSize   文件实际总长度
+     */
+    public void finish(File tempFolder, File targetFile, long fileSize) {
+        File partFile = new File(tempFolder, PART_FILE_NAME);
+        try {
+            try (FileChannel out = FileChannel.open(partFile.toPath(), StandardOpenOption.WRITE)) {
+                out.truncate(fileSize);
+            }
+            Files.move(partFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.error("完成分片直写失败: folder={}", tempFolder.getPath(), e);
+            throw new BusinessException("合并文件" + targetFile.getName() + "出错了");
+        } finally {
+            FileUtils.deleteQuietly(tempFolder);
+        }
+    }
+}
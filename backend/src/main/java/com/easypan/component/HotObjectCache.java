@@ -0,0 +1,255 @@
+package com.easypan.component;
+
+import com.easypan.entity.dto.StorageObjectStatDto;
+import com.easypan.exception.BusinessException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 热点小对象的内存缓存.
+ *
+ * <p>缓存播放列表、视频分片与封面等小文件的完整内容，热门分享视频被大量播放时同一分片只从存储读取一次.
+ * 内容存放在堆外的只读 {@link ByteBuffer} 中，总大小受 {@code app.serve.hot-cache.max-mb} 限制，不占用堆
+ * 也不增加 GC 扫描量；被淘汰的缓冲区在回收时释放，需保证 {@code -XX:MaxDirectMemorySize} 大于该上限.
+ *
+ * <p>淘汰与准入由 Caffeine 的 W-TinyLFU 完成：缓存满时新对象只有在访问频率高于被淘汰者时才会留下，
+ * 只访问一次的大量分片不会冲掉真正的热点. 同一对象的并发未命中共用一次读取. 命中率等指标以
+ * {@code cache.hotObject.*} 暴露.
+ */
+@Component
+@Slf4j
+public class HotObjectCache {
+
+    private static final String CACHE_NAME = "hotObject";
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.serve.hot-cache.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.serve.hot-cache.max-mb:256}")
+    private long maxMb = 256;
+
+    /**
+     * 单个对象的大小上限，超过的对象不缓存.
+     */
+    @Value("${app.serve.hot-cache.max-object-kb:16384}")
+    private long maxObjectKb = 16384;
+
+    @Value("${app.serve.hot-cache.expire-minutes:30}")
+    private long expireMinutes = 30;
+
+    @Value("${app.serve.hot-cache.suffixes:m3u8,ts,jpg,jpeg,png,webp}")
+    private String[] suffixes = {"m3u8", "ts", "jpg", "jpeg", "png", "webp"};
+
+    private final Map<String, CompletableFuture<CachedObject>> inFlight = new ConcurrentHashMap<>();
+
+    private Set<String> suffixSet;
+
+    private Cache<String, CachedObject> cache;
+
+    @PostConstruct
+    public void init() {
+        suffixSet = Arrays.stream(suffixes)
+                .map(s -> s.trim().toLowerCase(Locale.ROOT))
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        // 单个对象不超过 max-object-kb，以字节为权重不会超过 int 范围
+        cache = Caffeine.newBuilder()
+                .maximumWeight(Math.max(1L, maxMb) * 1024 * 1024)
+                .weigher((String key, CachedObject value) -> Math.max(1, value.data().capacity()))
+                .expireAfterWrite(Math.max(1L, expireMinutes), TimeUnit.MINUTES)
+                // 淘汰在调用线程上完成，被淘汰的缓冲区尽早失去引用
+                .executor(Runnable::run)
+                .recordStats()
+                .build();
+        if (meterRegistry != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+            Gauge.builder("cache.hotObject.hit.rate", this, HotObjectCache::hitRate)
+                    .description("Hit rate of the off-heap hot object cache")
+                    .register(meterRegistry);
+            Gauge.builder("cache.hotObject.bytes", this, HotObjectCache::weightedBytes)
+                    .description("Bytes held by the off-heap hot object cache")
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+        }
+        log.info("[HotCache] 热点对象缓存: enabled={}, maxMb={}, maxObjectKb={}, suffixes={}", enabled, maxMb,
+                maxObjectKb, suffixSet);
+    }
+
+    /**
+     * 按后缀判断对象是否可能被缓存，大小未知时调用.
+     *
+     * @param path 存储路径
+     * @return 是否为可缓存的类型
+     */
+    public boolean accepts(String path) {
+        if (!enabled || path == null) {
+            return false;
+        }
+        int dot = path.lastIndexOf('.');
+        return dot >= 0 && suffixSet.contains(path.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * 判断对象是否可缓存.
+     *
+     * @param path 存储路径
+     * @param size 对象大小
+     * @return 是否可缓存
+     */
+    public boolean accepts(String path, long size) {
+        return size >= 0 && size <= maxObjectKb * 1024 && accepts(path);
+    }
+
+    /**
+     * 查询缓存，不触发读取.
+     *
+     * @param path 存储路径
+     * @return 缓存的对象，未命中时为 null
+     */
+    public CachedObject getIfPresent(String path) {
+        return enabled ? cache.getIfPresent(path) : null;
+    }
+
+    /**
+     * 读取对象，未命中时调用 {@code loader} 读取完整内容并放入缓存；同一路径的并发调用共用一次读取.
+     * 不计入命中率统计，调用方应先以 {@link #getIfPresent} 查询.
+     *
+     * @param path   存储路径
+     * @param stat   对象大小与修改时间
+     * @param loader 打开对象输入流
+     * @return 缓存的对象
+     */
+    public CachedObject get(String path, StorageObjectStatDto stat, ObjectLoader loader) {
+        CachedObject cached = cache.asMap().get(path);
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<CachedObject> created = new CompletableFuture<>();
+        CompletableFuture<CachedObject> future = inFlight.putIfAbsent(path, created);
+        if (future == null) {
+            future = created;
+            try {
+                CachedObject loaded = load(stat, loader);
+                cache.put(path, loaded);
+                created.complete(loaded);
+            } catch (Throwable e) {
+                created.completeExceptionally(e);
+            } finally {
+                inFlight.remove(path, created);
+            }
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("读取文件被中断");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BusinessException businessException) {
+                throw businessException;
+            }
+            throw new BusinessException("读取文件失败", e.getCause());
+        }
+    }
+
+    /**
+     * 对象是否已缓存或正在读取，供预读判断，不计入命中率统计.
+     *
+     * @param path 存储路径
+     * @return 是否已缓存或正在读取
+     */
+    public boolean isCachedOrLoading(String path) {
+        return cache.asMap().containsKey(path) || inFlight.containsKey(path);
+    }
+
+    /**
+     * 移除路径前缀下的所有缓存，切片目录被删除或重建时调用.
+     *
+     * @param prefix 路径前缀
+     */
+    public void invalidatePrefix(String prefix) {
+        cache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private static CachedObject load(StorageObjectStatDto stat, ObjectLoader loader) throws IOException {
+        int size = (int) stat.getSize();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        try (InputStream in = loader.open(); ReadableByteChannel channel = Channels.newChannel(in)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("对象长度与元信息不一致: expected=" + size + ", read=" + buffer.position());
+                }
+            }
+        }
+        buffer.flip();
+        return new CachedObject(buffer.asReadOnlyBuffer(), stat.getLastModified());
+    }
+
+    private double hitRate() {
+        CacheStats stats = cache.stats();
+        return stats.requestCount() == 0 ? 0.0 : stats.hitRate();
+    }
+
+    private double weightedBytes() {
+        return cache.policy().eviction().map(e -> (double) e.weightedSize().orElse(0L)).orElse(0.0);
+    }
+
+    /**
+     * 打开对象输入流.
+     */
+    @FunctionalInterface
+    public interface ObjectLoader {
+
+        /**
+         * 打开输入流.
+         *
+         * @return 对象完整内容
+         * @throws IOException 读取失败
+         */
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * 缓存的对象内容与修改时间.
+     *
+     * @param data         只读的完整内容，读取时需 {@link ByteBuffer#duplicate()}
+     * @param lastModified 修改时间，未知时为 -1
+     */
+    public record CachedObject(ByteBuffer data, long lastModified) {
+
+        /**
+         * 对象大小.
+         *
+         * @return 字节数
+         */
+        public long size() {
+            return data.capacity();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.easypan.component;
+
+import com.easypan.exception.BusinessException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import net.coobird.thumbnailator.Thumbnails;
+import net.coobird.thumbnailator.util.exif.ExifFilterUtils;
+import net.coobird.thumbnailator.util.exif.ExifUtils;
+import net.coobird.thumbnailator.util.exif.Orientation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 内存受限的图片缩略图生成.
+ *
+ * <p>直接交给 Thumbnailator 会先解码完整像素，一张 3 亿像素的全景图需要 1GB 以上的堆. 这里先从文件头读取
+ * 尺寸，再用 {@link ImageReadParam#setSourceSubsampling} 隔行隔列解码，解码结果只比输出宽度大 1~2 倍，
+ * 峰值内存与输出尺寸相关而与原图尺寸无关；随后由 Thumbnailator 做高质量缩放.
+ *
+ * <p>所有解码共享 {@code app.thumbnail.decode-memory-mb} 的内存预算：按解码与输出像素估算占用，获取对应
+ * 许可后才开始解码，并发生成缩略图时总占用不超过预算. 同时保留 EXIF 方向校正.
+ */
+@Component
+@Slf4j
+public class ImageThumbnailer {
+
+    private static final long BYTES_PER_PIXEL = 4;
+
+    private static final long PERMIT_BYTES = 1024 * 1024;
+
+    private static final double OUTPUT_QUALITY = 0.8;
+
+    @Value("${app.thumbnail.decode-memory-mb:256}")
+    private int decodeMemoryMb = 256;
+
+    private Semaphore memoryPermits;
+
+    @PostConstruct
+    public void init() {
+        decodeMemoryMb = Math.max(1, decodeMemoryMb);
+        memoryPermits = new Semaphore(decodeMemoryMb, true);
+    }
+
+    /**
+     * 生成缩略图并写入输出流.
+     *
+     * @param in     原图输入流
+     * @param width  输出宽度，大于原图宽度时按原图宽度
+     * @param format 输出格式，需有对应的 ImageIO 编码器
+     * @param out    输出流
+     * @throws IOException 读写失败
+     */
+    public void write(InputStream in, int width, String format, OutputStream out) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = iis == null ? null : ImageIO.getImageReaders(iis);
+            if (readers == null || !readers.hasNext()) {
+                throw new BusinessException("不支持的图片格式");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, false, false);
+                write(reader, width, format, out);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private void write(ImageReader reader, int width, String format, OutputStream out) throws IOException {
+        int sourceWidth = reader.getWidth(0);
+        int sourceHeight = reader.getHeight(0);
+        Orientation orientation = readOrientation(reader);
+        boolean swapped = orientation != null && orientation.ordinal() >= Orientation.LEFT_TOP.ordinal();
+        // 缩放在方向校正之前，旋转 90 度的图片用存储高度作为显示宽度
+        int displayWidth = swapped ? sourceHeight : sourceWidth;
+        int targetWidth = Math.max(1, Math.min(width, displayWidth));
+        int step = subsamplingStep(displayWidth, targetWidth);
+        int permits = permitsFor(sourceWidth, sourceHeight, step, targetWidth);
+
+        memoryPermits.acquireUninterruptibly(permits);
+        try {
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(step, step, 0, 0);
+            BufferedImage decoded = reader.read(0, param);
+            Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(decoded)
+                    .outputFormat(format)
+                    .outputQuality(OUTPUT_QUALITY);
+            if (swapped) {
+                builder.height(Math.min(targetWidth, decoded.getHeight()));
+            } else {
+                builder.width(Math.min(targetWidth, decoded.getWidth()));
+            }
+            if (orientation != null && orientation != Orientation.TOP_LEFT) {
+                builder.addFilter(ExifFilterUtils.getFilterForOrientation(orientation));
+            }
+            if ("jpg".equalsIgnoreCase(format) || "jpeg".equalsIgnoreCase(format)) {
+                // jpg 不支持透明通道
+                builder.imageType(BufferedImage.TYPE_INT_RGB);
+            }
+            builder.toOutputStream(out);
+            log.debug("[Thumbnail] 生成缩略图: source={}x{}, step={}, decoded={}x{}, width={}, permits={}",
+                    sourceWidth, sourceHeight, step, decoded.getWidth(), decoded.getHeight(), targetWidth,
+                    permits);
+        } finally {
+            memoryPermits.release(permits);
+        }
+    }
+
+    /**
+     * 子采样步长：解码宽度不低于输出宽度的两倍，保留缩放时的抗锯齿余量.
+     *
+     * @param sourceWidth 原图宽度
+     * @param targetWidth 输出宽度
+     * @return 步长，1 表示完整解码
+     */
+    public static int subsamplingStep(int sourceWidth, int targetWidth) {
+        return Math.max(1, sourceWidth / Math.max(1, targetWidth * 2));
+    }
+
+    /**
+     * 估算解码与输出占用的内存，换算为许可数（1 个许可 = 1MB），不超过总预算.
+     *
+     * @param sourceWidth  原图宽度
+     * @param sourceHeight 原图高度
+     * @param step         子采样步长
+     * @param targetWidth  输出宽度
+     * @return 许可数
+     */
+    public int permitsFor(int sourceWidth, int sourceHeight, int step, int targetWidth) {
+        long decodedWidth = (sourceWidth + step - 1L) / step;
+        long decodedHeight = (sourceHeight + step - 1L) / step;
+        long targetHeight = Math.max(1L, decodedHeight * targetWidth / Math.max(1L, decodedWidth));
+        long bytes = (decodedWidth * decodedHeight + (long) targetWidth * targetHeight) * BYTES_PER_PIXEL;
+        long permits = (bytes + PERMIT_BYTES - 1) / PERMIT_BYTES;
+        return (int) Math.max(1L, Math.min(decodeMemoryMb, permits));
+    }
+
+    private static Orientation readOrientation(ImageReader reader) {
+        try {
+            return ExifUtils.getExifOrientation(reader, 0);
+        } catch (Exception e) {
+            // 方向信息缺失或损坏时按原方向输出
+            return null;
+        }
+    }
+}
@@ -11,18 +11,68 @@ import com.easypan.mappers.UserInfoMapper;
 import com.google.common.hash.BloomFilter;
 import com.mybatisflex.core.query.QueryWrapper;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.Resource;
 
+import java.util.List;
+
 import static com.easypan.entity.po.table.UserInfoTableDef.USER_INFO;
 
 /**
  * Redis 缓存操作组件.
+ *
+ * <p>用户空间与租户存储以 Hash 计数保存，增减通过 HINCRBY 原子完成；
+ * reserved 字段由 {@link com.easypan.service.QuotaReservationService} 维护.
  */
 @Component("redisComponent")
 public class RedisComponent {
 
+    /**
+     * 空间计数字段：已用字节.
+     */
+    public static final String SPACE_FIELD_USED = "used";
+
+    /**
+     * 空间计数字段：用户总空间.
+     */
+    public static final String SPACE_FIELD_TOTAL = "total";
+
+    /**
+     * 空间计数字段：上传中预留的字节.
+     */
+    public static final String SPACE_FIELD_RESERVED = "reserved";
+
+    /**
+     * 空间计数字段：租户存储配额.
+     */
+    public static final String TENANT_FIELD_QUOTA = "quota";
+
+    /**
+     * 计数存在时才累加，避免在缺失的 Hash 上凭空生成不完整的计数；结果不低于 0.
+     */
+    private static final DefaultRedisScript<Long> INCREMENT_IF_PRESENT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return nil end "
+                    + "local v = redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2]) "
+                    + "if v < 0 then redis.call('HSET', KEYS[1], ARGV[1], 0) v = 0 end "
+                    + "return v",
+            Long.class);
+
+    /**
+     * 写入字段，过期时间只延长不缩短：存在上传预留时计数的存活时间不能短于预留.
+     */
+    private static final DefaultRedisScript<Long> SAVE_FIELDS_SCRIPT = new DefaultRedisScript<>(
+            "for i = 2, #ARGV, 2 do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end "
+                    + "if redis.call('TTL', KEYS[1]) < tonumber(ARGV[1]) then "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[1]) end "
+                    + "return 1",
+            Long.class);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
     @Resource
     private RedisUtils<Object> redisUtils;
 
@@ -87,23 +137,26 @@ public class RedisComponent {
     /**
      * 获取用户使用的空间.
      *
+     * <p>计数保存在 Hash 的 used / total 字段，缺失时从数据库重建；重建不会覆盖 reserved 字段.
+     *
      * @param userId 用户ID
      * @return 用户空间使用情况
      */
     public UserSpaceDto getUserSpaceUse(String userId) {
         String key = Constants.REDIS_KEY_USER_SPACE_USE + userId;
-        UserSpaceDto spaceDto = (UserSpaceDto) redisUtils.get(key);
-        if (spaceDto == null || spaceDto.getTotalSpace() == null || spaceDto.getUseSpace() == null) {
-            if (spaceDto == null) {
-                spaceDto = new UserSpaceDto();
+        List<Object> values = stringRedisTemplate.opsForHash().multiGet(key, List.of(SPACE_FIELD_USED,
+                SPACE_FIELD_TOTAL));
+        Long useSpace = toLong(values.get(0));
+        Long totalSpace = toLong(values.get(1));
+        if (useSpace == null || totalSpace == null) {
+            useSpace = this.fileInfoMapper.selectUseSpace(userId);
+            if (useSpace == null) {
+                useSpace = 0L;
             }
-
-            Long useSpace = this.fileInfoMapper.selectUseSpace(userId);
-            spaceDto.setUseSpace(useSpace);
-            spaceDto.setTotalSpace(resolveUserTotalSpace(userId));
-            redisUtils.setex(key, spaceDto, CacheTTL.WARM_DATA);
+            totalSpace = resolveUserTotalSpace(userId);
+            saveSpaceFields(key, SPACE_FIELD_USED, useSpace, SPACE_FIELD_TOTAL, totalSpace);
         }
-        return spaceDto;
+        return new UserSpaceDto(useSpace, totalSpace);
     }
 
     private Long resolveUserTotalSpace(String userId) {
@@ -135,8 +188,23 @@ public class RedisComponent {
      * @param userSpaceDto 用户空间使用情况
      */
     public void saveUserSpaceUse(String userId, UserSpaceDto userSpaceDto) {
-        redisUtils.setex(Constants.REDIS_KEY_USER_SPACE_USE + userId,
-                userSpaceDto, CacheTTL.WARM_DATA);
+        saveSpaceFields(Constants.REDIS_KEY_USER_SPACE_USE + userId,
+                SPACE_FIELD_USED, userSpaceDto.getUseSpace() == null ? 0L : userSpaceDto.getUseSpace(),
+                SPACE_FIELD_TOTAL, userSpaceDto.getTotalSpace());
+    }
+
+    /**
+     * 增量更新用户已用空间.
+     *
+     * <p>计数不存在时不做处理，下次读取时从数据库重建.
+     *
+     * @param userId    用户ID
+     * @param deltaSize 变化大小（正数增加，负数减少）
+     */
+    public void incrementUserSpaceUse(String userId, long deltaSize) {
+        stringRedisTemplate.execute(INCREMENT_IF_PRESENT_SCRIPT,
+                List.of(Constants.REDIS_KEY_USER_SPACE_USE + userId),
+                SPACE_FIELD_USED, String.valueOf(deltaSize));
     }
 
     /**
@@ -148,7 +216,7 @@ public class RedisComponent {
     public UserSpaceDto resetUserSpaceUse(String userId) {
         UserSpaceDto spaceDto = new UserSpaceDto();
         Long useSpace = this.fileInfoMapper.selectUseSpace(userId);
-        spaceDto.setUseSpace(useSpace);
+        spaceDto.setUseSpace(useSpace == null ? 0L : useSpace);
 
         UserInfo userInfo = this.userInfoMapper.selectOneByQuery(
                 QueryWrapper.create().where(USER_INFO.USER_ID.eq(userId)));
@@ -157,8 +225,7 @@ public class RedisComponent {
             totalSpace = resolveUserTotalSpace(userId);
         }
         spaceDto.setTotalSpace(totalSpace);
-        redisUtils.setex(Constants.REDIS_KEY_USER_SPACE_USE + userId,
-                spaceDto, CacheTTL.WARM_DATA);
+        saveUserSpaceUse(userId, spaceDto);
         return spaceDto;
     }
 
@@ -188,6 +255,30 @@ public class RedisComponent {
         return currentSize;
     }
 
+    /**
+     * 保存转存进度.
+     *
+     * @param userId  用户ID
+     * @param fileId  文件ID
+     * @param percent 进度百分比（0-100）
+     */
+    public void saveTransferProgress(String userId, String fileId, Integer percent) {
+        redisUtils.setex(Constants.REDIS_KEY_TRANSFER_PROGRESS + userId + fileId, percent,
+                Constants.REDIS_KEY_EXPIRES_ONE_HOUR);
+    }
+
+    /**
+     * 获取转存进度.
+     *
+     * @param userId 用户ID
+     * @param fileId 文件ID
+     * @return 进度百分比，未开始转存时返回 null
+     */
+    public Integer getTransferProgress(String userId, String fileId) {
+        Object value = redisUtils.get(Constants.REDIS_KEY_TRANSFER_PROGRESS + userId + fileId);
+        return value instanceof Number number ? number.intValue() : null;
+    }
+
     private Long getFileSizeFromRedis(String key) {
         Object sizeObj = redisUtils.get(key);
         if (sizeObj == null) {
@@ -386,27 +477,32 @@ public class RedisComponent {
      * @return 已用存储空间（字节），null 表示未缓存
      */
     public Long getTenantUsedStorage(String tenantId) {
-        Object value = redisUtils.get(Constants.REDIS_KEY_TENANT_STORAGE + tenantId);
-        if (value == null) {
-            return null;
-        }
-        if (value instanceof Long) {
-            return (Long) value;
-        } else if (value instanceof Integer) {
-            return ((Integer) value).longValue();
-        }
-        return null;
+        return toLong(stringRedisTemplate.opsForHash().get(Constants.REDIS_KEY_TENANT_STORAGE + tenantId,
+                SPACE_FIELD_USED));
     }
 
     /**
-     * 保存租户已用存储空间.
+     * 获取租户已预留（上传中）的存储空间.
      *
-     * @param tenantId    租户ID
-     * @param usedStorage 已用存储空间（字节）
+     * @param tenantId 租户ID
+     * @return 预留空间（字节），未缓存时为 0
      */
-    public void saveTenantUsedStorage(String tenantId, Long usedStorage) {
-        redisUtils.setex(Constants.REDIS_KEY_TENANT_STORAGE + tenantId, 
-                usedStorage, CacheTTL.WARM_DATA);
+    public long getTenantReservedStorage(String tenantId) {
+        Long reserved = toLong(stringRedisTemplate.opsForHash().get(Constants.REDIS_KEY_TENANT_STORAGE + tenantId,
+                SPACE_FIELD_RESERVED));
+        return reserved == null ? 0L : reserved;
+    }
+
+    /**
+     * 保存租户已用存储空间与配额.
+     *
+     * @param tenantId     租户ID
+     * @param usedStorage  已用存储空间（字节）
+     * @param storageQuota 存储配额（字节），-1 表示不限
+     */
+    public void saveTenantStorage(String tenantId, Long usedStorage, Long storageQuota) {
+        saveSpaceFields(Constants.REDIS_KEY_TENANT_STORAGE + tenantId,
+                SPACE_FIELD_USED, usedStorage, TENANT_FIELD_QUOTA, storageQuota);
     }
 
     /**
@@ -414,17 +510,12 @@ public class RedisComponent {
      *
      * @param tenantId  租户ID
      * @param deltaSize 变化大小（正数增加，负数减少）
-     * @return 更新后的值
+     * @return 更新后的值，未缓存时返回 null
      */
     public Long incrementTenantUsedStorage(String tenantId, Long deltaSize) {
-        String key = Constants.REDIS_KEY_TENANT_STORAGE + tenantId;
-        Long current = getTenantUsedStorage(tenantId);
-        if (current == null) {
-            return null;
-        }
-        Long newValue = Math.max(0, current + deltaSize);
-        redisUtils.setex(key, newValue, CacheTTL.WARM_DATA);
-        return newValue;
+        return stringRedisTemplate.execute(INCREMENT_IF_PRESENT_SCRIPT,
+                List.of(Constants.REDIS_KEY_TENANT_STORAGE + tenantId),
+                SPACE_FIELD_USED, String.valueOf(deltaSize));
     }
 
     /**
@@ -433,6 +524,22 @@ public class RedisComponent {
      * @param tenantId 租户ID
      */
     public void deleteTenantUsedStorage(String tenantId) {
-        redisUtils.delete(Constants.REDIS_KEY_TENANT_STORAGE + tenantId);
+        stringRedisTemplate.delete(Constants.REDIS_KEY_TENANT_STORAGE + tenantId);
+    }
+
+    private void saveSpaceFields(String key, String field1, Long value1, String field2, Long value2) {
+        stringRedisTemplate.execute(SAVE_FIELDS_SCRIPT, List.of(key), String.valueOf(CacheTTL.WARM_DATA),
+                field1, String.valueOf(value1), field2, String.valueOf(value2));
+    }
+
+    private static Long toLong(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 }
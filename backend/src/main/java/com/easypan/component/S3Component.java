@@ -1,9 +1,13 @@
 package com.easypan.component;
 
+import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
@@ -14,6 +18,7 @@ import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
@@ -24,16 +29,29 @@ import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
 import software.amazon.awssdk.services.s3.model.CompletedPart;
 import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.services.s3.model.UploadPartCopyRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
 import software.amazon.awssdk.services.s3.model.UploadPartCopyResponse;
 
 import jakarta.annotation.Resource;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
 /**
@@ -49,9 +67,41 @@ public class S3Component {
     @Resource
     private S3Presigner s3Presigner;
 
+    @Resource
+    @Qualifier("virtualThreadExecutor")
+    private AsyncTaskExecutor virtualThreadExecutor;
+
     @Value("${minio.bucketName}")
     private String bucketName;
 
+    /**
+     * 超过该大小的文件改用分段上传.
+     */
+    @Value("${app.storage.multipart.threshold:67108864}")
+    private long multipartThreshold = 64L * 1024 * 1024;
+
+    /**
+     * 分段大小，S3 要求除最后一段外不小于 5MB.
+     */
+    @Value("${app.storage.multipart.part-size:16777216}")
+    private long multipartPartSize = 16L * 1024 * 1024;
+
+    /**
+     * 单个文件同时在内存中等待上传的分段字节上限，决定分段并发度.
+     */
+    @Value("${app.storage.multipart.max-inflight-bytes:134217728}")
+    private long multipartMaxInflightBytes = 128L * 1024 * 1024;
+
+    /**
+     * 单个分段的最大尝试次数.
+     */
+    @Value("${app.storage.multipart.part-attempts:3}")
+    private int multipartPartAttempts = 3;
+
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
+    private static final int DELETE_OBJECTS_BATCH_SIZE = 1000;
+
     /**
      * 生成带时效的预签名下载链接.
      *
@@ -75,6 +125,21 @@ public class S3Component {
         return presignedGetObjectRequest.url().toString();
     }
 
+    /**
+     * 生成供反向代理回源的短时效链接，不附带下载文件名，由代理透传客户端的 Range 请求.
+     *
+     * @param key S3 对象键
+     * @param ttl 有效期
+     * @return 预签名URL字符串
+     */
+    public String generateInternalUrl(String key, Duration ttl) {
+        GetObjectPresignRequest getObjectPresignRequest = GetObjectPresignRequest.builder()
+                .signatureDuration(ttl)
+                .getObjectRequest(GetObjectRequest.builder().bucket(bucketName).key(key).build())
+                .build();
+        return s3Presigner.presignGetObject(getObjectPresignRequest).url().toString();
+    }
+
     /**
      * 上传文件.
      *
@@ -82,11 +147,154 @@ public class S3Component {
      * @param file 要上传的文件
      */
     public void uploadFile(String key, File file) {
+        uploadFile(key, file, null);
+    }
+
+    /**
+     * 上传文件，超过阈值时自动分段并发上传.
+     *
+     * @param key              S3 对象键
+     * @param file             要上传的文件
+     * @param progressListener 进度回调，参数为累计已上传字节数，可为 null
+     */
+    public void uploadFile(String key, File file, LongConsumer progressListener) {
+        long fileSize = file.length();
+        if (fileSize > multipartThreshold) {
+            uploadMultipart(key, file, progressListener);
+            return;
+        }
         PutObjectRequest putObjectRequest = PutObjectRequest.builder()
                 .bucket(bucketName)
                 .key(key)
                 .build();
         s3Client.putObject(putObjectRequest, RequestBody.fromFile(file));
+        if (progressListener != null) {
+            progressListener.accept(fileSize);
+        }
+    }
+
+    /**
+     * 分段并发上传.
+     *
+     * <p>分段在虚拟线程上并发读取与上传，信号量按 {@code max-inflight-bytes / part-size} 限制同时
+     * 驻留内存的分段数；单段失败按次数重试，仍失败则中止整个分段上传，不留下孤儿分段.
+     */
+    private void uploadMultipart(String key, File file, LongConsumer progressListener) {
+        long fileSize = file.length();
+        long partSize = Math.max(multipartPartSize, MIN_PART_SIZE);
+        int partCount = (int) ((fileSize + partSize - 1) / partSize);
+        int maxInflightParts = (int) Math.max(1, multipartMaxInflightBytes / partSize);
+        Semaphore inflight = new Semaphore(maxInflightParts);
+        AtomicLong uploadedBytes = new AtomicLong();
+        AtomicBoolean failed = new AtomicBoolean(false);
+        List<CompletableFuture<CompletedPart>> futures = new ArrayList<>(partCount);
+
+        String uploadId = createMultipartUpload(key);
+        log.info("开始分段上传: key={}, size={}, parts={}, concurrency={}", key, fileSize, partCount,
+                maxInflightParts);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            for (int i = 0; i < partCount; i++) {
+                inflight.acquire();
+                if (failed.get()) {
+                    inflight.release();
+                    break;
+                }
+                int partNumber = i + 1;
+                long offset = i * partSize;
+                int length = (int) Math.min(partSize, fileSize - offset);
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        CompletedPart part = uploadPart(key, uploadId, partNumber,
+                                readPart(channel, offset, length));
+                        long uploaded = uploadedBytes.addAndGet(length);
+                        if (progressListener != null) {
+                            progressListener.accept(uploaded);
+                        }
+                        return part;
+                    } catch (RuntimeException e) {
+                        failed.set(true);
+                        throw e;
+                    } finally {
+                        inflight.release();
+                    }
+                }, virtualThreadExecutor));
+            }
+            // 按提交顺序收集，即为分段号升序
+            List<CompletedPart> parts = new ArrayList<>(partCount);
+            for (CompletableFuture<CompletedPart> future : futures) {
+                parts.add(future.join());
+            }
+            if (parts.size() != partCount) {
+                throw new IllegalStateException("分段上传未全部完成: " + parts.size() + "/" + partCount);
+            }
+            completeMultipartUpload(key, uploadId, parts);
+            log.info("分段上传完成: key={}, parts={}", key, partCount);
+        } catch (Exception e) {
+            failed.set(true);
+            // 等在途分段结束后再中止，避免中止之后仍有分段写入
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).exceptionally(ex -> null).join();
+            abortQuietly(key, uploadId);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            log.error("分段上传失败，已中止: key={}", key, cause);
+            throw cause instanceof RuntimeException runtimeException ? runtimeException
+                    : new IllegalStateException("分段上传失败: " + key, cause);
+        }
+    }
+
+    private static byte[] readPart(FileChannel channel, long offset, int length) {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("文件长度不足: offset=" + (offset + buffer.position()));
+                }
+            }
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+        return buffer.array();
+    }
+
+    private CompletedPart uploadPart(String key, String uploadId, int partNumber, byte[] content) {
+        UploadPartRequest uploadPartRequest = UploadPartRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength((long) content.length)
+                .build();
+        int attempts = Math.max(1, multipartPartAttempts);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                // 内容提供者每次重试都重新打开流，不额外复制分段
+                RequestBody body = RequestBody.fromContentProvider(
+                        () -> new ByteArrayInputStream(content), content.length, "application/octet-stream");
+                String eTag = s3Client.uploadPart(uploadPartRequest, body).eTag();
+                return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+            } catch (SdkException e) {
+                if (attempt >= attempts) {
+                    throw e;
+                }
+                log.warn("分段上传失败，准备重试: key={}, part={}, attempt={}", key, partNumber, attempt, e);
+                try {
+                    Thread.sleep(200L * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void abortQuietly(String key, String uploadId) {
+        try {
+            abortMultipartUpload(key, uploadId);
+        } catch (Exception e) {
+            log.warn("中止分段上传失败: key={}, uploadId={}", key, uploadId, e);
+        }
     }
 
     /**
@@ -103,6 +311,24 @@ public class S3Component {
         s3Client.putObject(putObjectRequest, RequestBody.fromBytes(content));
     }
 
+    /**
+     * 以流的方式上传已知长度的内容.
+     *
+     * <p>SDK 按固定大小的缓冲区边读边发，堆上不会出现与内容等长的字节数组；调用方负责关闭输入流.
+     *
+     * @param key           S3 对象键
+     * @param inputStream   内容输入流
+     * @param contentLength 内容长度
+     */
+    public void uploadStream(String key, InputStream inputStream, long contentLength) {
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentLength(contentLength)
+                .build();
+        s3Client.putObject(putObjectRequest, RequestBody.fromInputStream(inputStream, contentLength));
+    }
+
     /**
      * 下载到本地文件.
      *
@@ -131,7 +357,7 @@ public class S3Component {
     }
 
     /**
-     * 批量删除文件.
+     * 批量删除文件，按 S3 单次上限每 1000 个 Key 一批.
      *
      * @param keys S3 对象键列表
      */
@@ -140,21 +366,23 @@ public class S3Component {
             return;
         }
 
-        List<ObjectIdentifier> objectsToDelete = keys.stream()
-                .map(key -> ObjectIdentifier.builder().key(key).build())
-                .collect(Collectors.toList());
+        for (List<String> batch : Lists.partition(keys, DELETE_OBJECTS_BATCH_SIZE)) {
+            List<ObjectIdentifier> objectsToDelete = batch.stream()
+                    .map(key -> ObjectIdentifier.builder().key(key).build())
+                    .collect(Collectors.toList());
 
-        Delete objects = Delete.builder()
-                .objects(objectsToDelete)
-                .quiet(true)
-                .build();
+            Delete objects = Delete.builder()
+                    .objects(objectsToDelete)
+                    .quiet(true)
+                    .build();
 
-        DeleteObjectsRequest deleteReq = DeleteObjectsRequest.builder()
-                .bucket(bucketName)
-                .delete(objects)
-                .build();
+            DeleteObjectsRequest deleteReq = DeleteObjectsRequest.builder()
+                    .bucket(bucketName)
+                    .delete(objects)
+                    .build();
 
-        s3Client.deleteObjects(deleteReq);
+            s3Client.deleteObjects(deleteReq);
+        }
     }
 
     /**
@@ -171,6 +399,45 @@ public class S3Component {
         return s3Client.getObject(getObjectRequest);
     }
 
+    /**
+     * 获取文件一段的输入流，对应带 Range 的 GET 请求.
+     *
+     * @param key    S3 对象键
+     * @param offset 起始偏移
+     * @param length 读取长度，小于 0 表示读到末尾
+     * @return 输入流
+     */
+    public InputStream getInputStream(String key, long offset, long length) {
+        String range = "bytes=" + offset + "-" + (length < 0 ? "" : String.valueOf(offset + length - 1));
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .range(range)
+                .build();
+        return s3Client.getObject(getObjectRequest);
+    }
+
+    /**
+     * 获取对象元信息.
+     *
+     * @param key S3 对象键
+     * @return 元信息，对象不存在时为 null
+     */
+    public HeadObjectResponse headObject(String key) {
+        try {
+            return s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .build());
+        } catch (S3Exception e) {
+            // HEAD 请求没有响应体，不存在时部分实现只返回 404 状态
+            if (e.statusCode() == 404) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
     /**
      * 判断对象是否存在.
      *
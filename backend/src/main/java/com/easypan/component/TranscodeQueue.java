@@ -0,0 +1,193 @@
+package com.easypan.component;
+
+import com.easypan.entity.dto.SessionWebUserDto;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 转码任务队列.
+ *
+ * <p>按租户分组，租户之间轮转出队，单个租户的大批上传不会挡住其他租户；同一租户内小文件优先，
+ * 排队超过 {@code agingMillis} 的任务不再让位给小文件，避免大文件被持续到达的小文件饿死.
+ */
+public final class TranscodeQueue {
+
+    private final long agingMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notEmpty = lock.newCondition();
+
+    private final Map<String, TenantQueue> tenants = new HashMap<>();
+
+    private final ArrayDeque<String> rotation = new ArrayDeque<>();
+
+    private long sequence;
+
+    private int size;
+
+    public TranscodeQueue(long agingMillis) {
+        this.agingMillis = agingMillis;
+    }
+
+    /**
+     * 入队.
+     *
+     * @param job 转码任务
+     */
+    public void offer(Job job) {
+        lock.lock();
+        try {
+            TenantQueue queue = tenants.get(job.tenantId());
+            if (queue == null) {
+                queue = new TenantQueue();
+                tenants.put(job.tenantId(), queue);
+                rotation.addLast(job.tenantId());
+            }
+            queue.add(new Entry(job, sequence++));
+            size++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 出队，队列为空时等待.
+     *
+     * @param timeout 最长等待时间
+     * @param unit    时间单位
+     * @return 转码任务，超时返回 null
+     * @throws InterruptedException 等待被中断
+     */
+    public Job poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return poll(System.currentTimeMillis());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按给定时间出队，不等待.
+     *
+     * @param nowMillis 当前时间（毫秒）
+     * @return 转码任务，队列为空时返回 null
+     */
+    public Job poll(long nowMillis) {
+        lock.lock();
+        try {
+            while (!rotation.isEmpty()) {
+                String tenantId = rotation.pollFirst();
+                TenantQueue queue = tenants.get(tenantId);
+                Entry entry = queue.next(nowMillis, agingMillis);
+                if (queue.remaining > 0) {
+                    rotation.addLast(tenantId);
+                } else {
+                    tenants.remove(tenantId);
+                }
+                if (entry != null) {
+                    size--;
+                    return entry.job;
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 排队中的任务数.
+     *
+     * @return 任务数
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Entry {
+
+        private final Job job;
+
+        private final long seq;
+
+        private boolean taken;
+
+        private Entry(Job job, long seq) {
+            this.job = job;
+            this.seq = seq;
+        }
+    }
+
+    /**
+     * 单个租户的任务：按大小排序的堆用于小文件优先，按到达顺序的队列用于老化判断，出队的条目在另一结构中惰性删除.
+     */
+    private static final class TenantQueue {
+
+        private final PriorityQueue<Entry> bySize = new PriorityQueue<>(
+                Comparator.comparingLong((Entry e) -> e.job.fileSize()).thenComparingLong(e -> e.seq));
+
+        private final ArrayDeque<Entry> byArrival = new ArrayDeque<>();
+
+        private int remaining;
+
+        private void add(Entry entry) {
+            bySize.add(entry);
+            byArrival.addLast(entry);
+            remaining++;
+        }
+
+        private Entry next(long nowMillis, long agingMillis) {
+            while (!byArrival.isEmpty() && byArrival.peekFirst().taken) {
+                byArrival.pollFirst();
+            }
+            Entry oldest = byArrival.peekFirst();
+            Entry entry;
+            if (oldest != null && nowMillis - oldest.job.enqueuedAt() >= agingMillis) {
+                entry = byArrival.pollFirst();
+            } else {
+                do {
+                    entry = bySize.poll();
+                } while (entry != null && entry.taken);
+            }
+            if (entry != null) {
+                entry.taken = true;
+                remaining--;
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * 转码任务.
+     *
+     * @param fileId     文件ID
+     * @param webUserDto 上传用户
+     * @param tenantId   租户ID
+     * @param fileSize   文件大小
+     * @param enqueuedAt 入队时间（毫秒）
+     */
+    public record Job(String fileId, SessionWebUserDto webUserDto, String tenantId, long fileSize, long enqueuedAt) {
+    }
+}
@@ -0,0 +1,248 @@
+package com.easypan.component;
+
+import com.easypan.entity.dto.SessionWebUserDto;
+import com.easypan.entity.enums.FileTypeEnums;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.entity.po.TranscodeJob;
+import com.easypan.service.TranscodeJobService;
+import com.easypan.service.impl.FileInfoServiceImpl;
+import com.easypan.utils.StringTools;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 转码调度器.
+ *
+ * <p>上传完成只把文件放入队列，由固定数量的工作线程执行合并、存储上传与转码，突发上传时同时运行的
+ * ffmpeg 进程数不超过工作线程数. 视频与图片分两条队列、各自的工作线程，长时间的视频切片不会挡住
+ * 图片缩略图；非媒体文件只做合并与存储上传，与图片共用轻量队列. 队列内部按租户轮转、小文件优先，
+ * 见 {@link TranscodeQueue}.
+ *
+ * <p>工作线程数为 0 时按 CPU 核数推算：视频为核数的一半，图片为核数. 暴露队列深度、执行中任务数、
+ * 排队耗时与执行耗时指标.
+ *
+ * <p>队列只存在于内存，任务的持久状态在 {@link TranscodeJobService} 中：出队后先领取任务租约，
+ * 领取失败（已完成或被其他节点接管）则跳过；本节点排队中与执行中的任务由定时续约保持租约.
+ */
+@Component
+@Slf4j
+public class TranscodeScheduler {
+
+    private static final String METRIC_PREFIX = "easypan_transcode_";
+
+    private static final long POLL_TIMEOUT_SECONDS = 5;
+
+    @Resource
+    @Lazy
+    private FileInfoServiceImpl fileInfoService;
+
+    @Resource
+    private TranscodeJobService transcodeJobService;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.transcode.video-workers:0}")
+    private int videoWorkers = 0;
+
+    @Value("${app.transcode.image-workers:0}")
+    private int imageWorkers = 0;
+
+    @Value("${app.transcode.aging-ms:600000}")
+    private long agingMillis = 600000;
+
+    private final Map<Lane, LaneState> lanes = new EnumMap<>(Lane.class);
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    /**
+     * 本节点排队中与执行中的任务文件ID.
+     */
+    private final Set<String> held = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running;
+
+    /**
+     * 转码队列.
+     */
+    public enum Lane {
+        IMAGE,
+        VIDEO
+    }
+
+    @PostConstruct
+    public void start() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int video = videoWorkers > 0 ? videoWorkers : Math.max(1, cores / 2);
+        int image = imageWorkers > 0 ? imageWorkers : Math.max(1, cores);
+        running = true;
+        for (Lane lane : Lane.values()) {
+            LaneState state = new LaneState(lane);
+            lanes.put(lane, state);
+            int count = lane == Lane.VIDEO ? video : image;
+            for (int i = 0; i < count; i++) {
+                Thread worker = Thread.ofVirtual()
+                        .name("transcode-" + lane.name().toLowerCase() + "-" + i)
+                        .start(() -> runWorker(state));
+                workers.add(worker);
+            }
+        }
+        log.info("[Transcode] 调度器启动: videoWorkers={}, imageWorkers={}, agingMs={}", video, image, agingMillis);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        lanes.forEach((lane, state) -> {
+            if (state.queue.size() > 0) {
+                log.warn("[Transcode] 停止时仍有排队任务: lane={}, depth={}", lane, state.queue.size());
+            }
+        });
+    }
+
+    /**
+     * 提交转码任务.
+     *
+     * @param fileInfo   文件记录，需包含文件ID、文件名与大小
+     * @param webUserDto 上传用户
+     */
+    public void submit(FileInfo fileInfo, SessionWebUserDto webUserDto) {
+        long fileSize = fileInfo.getFileSize() == null ? 0L : fileInfo.getFileSize();
+        enqueue(laneOf(fileInfo.getFileName()), new TranscodeQueue.Job(fileInfo.getFileId(), webUserDto,
+                TenantContextHolder.getTenantId(), fileSize, System.currentTimeMillis()));
+    }
+
+    /**
+     * 重新提交持久化的任务（节点宕机或等待重试后接管）.
+     *
+     * @param job 转码任务
+     */
+    public void submit(TranscodeJob job) {
+        SessionWebUserDto webUserDto = new SessionWebUserDto();
+        webUserDto.setUserId(job.getUserId());
+        long fileSize = job.getFileSize() == null ? 0L : job.getFileSize();
+        enqueue(Lane.valueOf(job.getLane()), new TranscodeQueue.Job(job.getFileId(), webUserDto,
+                job.getTenantId(), fileSize, System.currentTimeMillis()));
+    }
+
+    /**
+     * 本节点排队中与执行中的任务文件ID，用于续约.
+     *
+     * @return 文件ID集合
+     */
+    public Set<String> heldFileIds() {
+        return Set.copyOf(held);
+    }
+
+    private void enqueue(Lane lane, TranscodeQueue.Job job) {
+        if (!held.add(job.fileId())) {
+            return;
+        }
+        lanes.get(lane).queue.offer(job);
+        log.debug("[Transcode] 入队: fileId={}, lane={}, size={}", job.fileId(), lane, job.fileSize());
+    }
+
+    /**
+     * 按文件名判断所属队列.
+     *
+     * @param fileName 文件名
+     * @return 队列
+     */
+    public static Lane laneOf(String fileName) {
+        FileTypeEnums fileType = FileTypeEnums.getFileTypeBySuffix(StringTools.getFileSuffix(fileName));
+        return FileTypeEnums.VIDEO == fileType ? Lane.VIDEO : Lane.IMAGE;
+    }
+
+    private void runWorker(LaneState state) {
+        while (running) {
+            TranscodeQueue.Job job;
+            try {
+                job = state.queue.poll(POLL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (job == null) {
+                continue;
+            }
+            state.waitTimer.record(Math.max(0L, System.currentTimeMillis() - job.enqueuedAt()),
+                    TimeUnit.MILLISECONDS);
+            state.active.incrementAndGet();
+            long start = System.nanoTime();
+            // 工作线程长期存活，租户上下文按任务设置，供转码流程中的数据库访问使用
+            TenantContextHolder.setTenantId(job.tenantId());
+            try {
+                TranscodeJob claimed = transcodeJobService.claim(job.fileId(), job.webUserDto().getUserId());
+                if (claimed == null) {
+                    log.debug("[Transcode] 任务已完成或由其他节点执行，跳过: fileId={}", job.fileId());
+                } else {
+                    fileInfoService.transferFile(claimed, job.webUserDto());
+                }
+            } catch (Exception e) {
+                log.error("[Transcode] 任务执行异常: fileId={}, lane={}", job.fileId(), state.lane, e);
+            } finally {
+                held.remove(job.fileId());
+                TenantContextHolder.clear();
+                state.active.decrementAndGet();
+                state.runTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * 单条队列的状态与指标.
+     */
+    private final class LaneState {
+
+        private final Lane lane;
+
+        private final TranscodeQueue queue = new TranscodeQueue(agingMillis);
+
+        private final AtomicInteger active = new AtomicInteger();
+
+        private final Timer waitTimer;
+
+        private final Timer runTimer;
+
+        private LaneState(Lane lane) {
+            this.lane = lane;
+            String tag = lane.name().toLowerCase();
+            Gauge.builder(METRIC_PREFIX + "queue_depth", queue, TranscodeQueue::size)
+                    .tag("lane", tag)
+                    .description("Number of transcode jobs waiting in queue")
+                    .register(meterRegistry);
+            Gauge.builder(METRIC_PREFIX + "active", active, AtomicInteger::get)
+                    .tag("lane", tag)
+                    .description("Number of transcode jobs running")
+                    .register(meterRegistry);
+            waitTimer = Timer.builder(METRIC_PREFIX + "wait_duration")
+                    .tag("lane", tag)
+                    .description("Time transcode jobs spend waiting in queue")
+                    .publishPercentiles(0.5, 0.9, 0.99)
+                    .register(meterRegistry);
+            runTimer = Timer.builder(METRIC_PREFIX + "run_duration")
+                    .tag("lane", tag)
+                    .description("Time spent merging, storing and transcoding a file")
+                    .publishPercentiles(0.5, 0.9, 0.99)
+                    .register(meterRegistry);
+        }
+    }
+}
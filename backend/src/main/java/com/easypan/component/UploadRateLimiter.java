@@ -1,58 +1,236 @@
 package com.easypan.component;
 
+import com.easypan.entity.enums.ResponseCodeEnum;
+import com.easypan.exception.RateLimitedException;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.Semaphore;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * 上传限流组件.
+ * 上传准入控制组件.
  *
- * <p>对应任务：
- * 8.1.1 创建 UploadRateLimiter 组件
+ * <p>按字节速率对上传限流，用户、租户、全局三级令牌桶保存在 Redis 中，所有节点共享同一份额度；
+ * 一次 Lua 调用同时检查并扣减三个桶，任一桶不足则整体拒绝，并按最慢的桶估算需要等待的时间.
  *
- * <p>每个用户同时允许的最大并发上传数默认 5 个.
+ * <p>为避免每个分片都访问 Redis，节点从桶中一次预取至少 {@code lease-bytes} 字节的额度，
+ * 保存在本地按用户划分的租约里，后续分片先从租约扣减. 租约在 {@code lease-ttl-ms} 后作废，未用完的余额
+ * 在下一次申请时随同一次脚本调用退回三个桶，长时间不再上传的用户在本地租约被清理时退回；分片间隔超过
+ * 租约有效期的慢速上传只按实际字节计费.
+ *
+ * <p>三个桶的 Key 使用同一个哈希标签，Redis Cluster 下落在同一槽位，脚本不会触发 CROSSSLOT. 每次申请本来
+ * 就要访问全局桶，同槽位不会额外增加热点.
+ *
+ * <p>Redis 不可用时放行，不因限流组件故障阻断上传.
  */
 @Component
 @Slf4j
 public class UploadRateLimiter {
 
-    private com.github.benmanes.caffeine.cache.LoadingCache<String, Semaphore> userSemaphores;
+    /**
+     * 桶 Key 前缀，{@code {upload-admission}} 为哈希标签.
+     */
+    private static final String BUCKET_KEY_PREFIX = "easypan:upload:bucket:{upload-admission}:";
+
+    /**
+     * KEYS：用户、租户、全局桶；ARGV：期望字节、最少字节、退回字节，随后每个桶依次为速率（字节/秒）与容量.
+     * 先把退回的余额加回各桶（不超过容量）再扣减；返回 {授予字节, 需等待毫秒}，授予为 0 时表示拒绝，
+     * 拒绝时退回的余额照常写入. 期望与最少字节都为 0 时只退回余额.
+     */
+    private static final DefaultRedisScript<List> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "local t = redis.call('TIME') "
+                    + "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) "
+                    + "local want = tonumber(ARGV[1]) "
+                    + "local need = tonumber(ARGV[2]) "
+                    + "local refund = tonumber(ARGV[3]) "
+                    + "local tokens = {} "
+                    + "local avail = want "
+                    + "for i = 1, #KEYS do "
+                    + "  local rate = tonumber(ARGV[2 + i * 2]) "
+                    + "  local burst = tonumber(ARGV[3 + i * 2]) "
+                    + "  local state = redis.call('HMGET', KEYS[i], 'tokens', 'ts') "
+                    + "  local cur = tonumber(state[1]) or burst "
+                    + "  local ts = tonumber(state[2]) or now "
+                    + "  cur = math.min(burst, cur + math.max(0, now - ts) * rate / 1000 + refund) "
+                    + "  tokens[i] = cur "
+                    + "  avail = math.min(avail, cur) "
+                    + "end "
+                    + "local granted = avail "
+                    + "local wait = 0 "
+                    + "if avail < need then "
+                    + "  granted = 0 "
+                    + "  for i = 1, #KEYS do "
+                    + "    if tokens[i] < need then "
+                    + "      wait = math.max(wait, (need - tokens[i]) * 1000 / tonumber(ARGV[2 + i * 2])) "
+                    + "    end "
+                    + "  end "
+                    + "  if refund <= 0 then "
+                    + "    return {0, math.ceil(wait)} "
+                    + "  end "
+                    + "end "
+                    + "for i = 1, #KEYS do "
+                    + "  local rate = tonumber(ARGV[2 + i * 2]) "
+                    + "  local burst = tonumber(ARGV[3 + i * 2]) "
+                    + "  redis.call('HSET', KEYS[i], 'tokens', tostring(tokens[i] - granted), 'ts', now) "
+                    + "  redis.call('PEXPIRE', KEYS[i], math.ceil(burst * 1000 / rate) + 1000) "
+                    + "end "
+                    + "return {math.floor(granted), math.ceil(wait)}",
+            List.class);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${app.upload.admission.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.upload.admission.user-bytes-per-second:52428800}")
+    private long userRate = 50L * 1024 * 1024;
+
+    @Value("${app.upload.admission.user-burst-bytes:104857600}")
+    private long userBurst = 100L * 1024 * 1024;
+
+    @Value("${app.upload.admission.tenant-bytes-per-second:209715200}")
+    private long tenantRate = 200L * 1024 * 1024;
+
+    @Value("${app.upload.admission.tenant-burst-bytes:419430400}")
+    private long tenantBurst = 400L * 1024 * 1024;
+
+    @Value("${app.upload.admission.global-bytes-per-second:1073741824}")
+    private long globalRate = 1024L * 1024 * 1024;
+
+    @Value("${app.upload.admission.global-burst-bytes:2147483648}")
+    private long globalBurst = 2048L * 1024 * 1024;
+
+    @Value("${app.upload.admission.lease-bytes:33554432}")
+    private long leaseBytes = 32L * 1024 * 1024;
+
+    @Value("${app.upload.admission.lease-ttl-ms:2000}")
+    private long leaseTtlMillis = 2000;
+
+    private LoadingCache<String, Lease> leases;
 
     /**
-     * 初始化限流器.
+     * 初始化本地租约缓存.
      */
     @PostConstruct
     public void init() {
-        this.userSemaphores = Caffeine.newBuilder()
+        this.leases = Caffeine.newBuilder()
                 .maximumSize(10_000)
                 .expireAfterAccess(10, TimeUnit.MINUTES)
-                .build(key -> new Semaphore(5));
+                .removalListener((String userId, Lease lease, RemovalCause cause) -> {
+                    if (cause.wasEvicted() && lease != null) {
+                        refund(userId, lease);
+                    }
+                })
+                .build(key -> new Lease());
     }
 
     /**
-     * 尝试获取上传许可.
+     * 申请上传额度，额度不足时抛出携带重试时间的限流异常.
      *
-     * @param userId 用户 ID
-     * @return true 表示获取成功，可以继续上传；false 表示被限流
+     * @param userId   用户ID
+     * @param tenantId 租户ID
+     * @param bytes    本次上传字节数
      */
-    public boolean tryAcquire(String userId) {
-        boolean acquired = userSemaphores.get(userId).tryAcquire();
-        if (!acquired) {
-            log.debug("Upload rate limited for userId={}", userId);
+    public void acquire(String userId, String tenantId, long bytes) {
+        if (!enabled || bytes <= 0) {
+            return;
+        }
+        Lease lease = leases.get(userId);
+        // 虚拟线程在 synchronized 中阻塞会钉住载体线程，这里使用显式锁
+        lease.lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            boolean live = now < lease.expiresAt;
+            long balance = live ? lease.balance : 0L;
+            if (balance >= bytes) {
+                lease.balance = balance - bytes;
+                return;
+            }
+            // 过期租约的余额退回原来的桶；租户变化时无法确定原来的桶，直接作废
+            long refund = !live && Objects.equals(tenantId, lease.tenantId) ? lease.balance : 0L;
+            // 超过桶容量的分片按桶容量计费，否则永远无法放行
+            long need = Math.min(bytes - balance, Math.min(userBurst, Math.min(tenantBurst, globalBurst)));
+            long want = Math.max(need, leaseBytes);
+            long[] result = tryAcquireRemote(userId, tenantId, want, need, refund);
+            if (!live) {
+                lease.balance = 0L;
+            }
+            lease.tenantId = tenantId;
+            if (result[0] < need) {
+                long retryAfterSeconds = Math.max(1L, (result[1] + 999) / 1000);
+                log.debug("上传限流: userId={}, tenantId={}, bytes={}, retryAfter={}s",
+                        userId, tenantId, bytes, retryAfterSeconds);
+                throw new RateLimitedException(ResponseCodeEnum.CODE_610, retryAfterSeconds);
+            }
+            lease.balance = Math.max(0L, balance + result[0] - bytes);
+            lease.expiresAt = now + leaseTtlMillis;
+        } finally {
+            lease.lock.unlock();
         }
-        return acquired;
     }
 
     /**
-     * 释放上传许可.
-     *
-     * @param userId 用户 ID
+     * 退回本地租约中未用完的余额.
+     */
+    private void refund(String userId, Lease lease) {
+        lease.lock.lock();
+        try {
+            long balance = lease.balance;
+            lease.balance = 0L;
+            if (balance > 0) {
+                tryAcquireRemote(userId, lease.tenantId, 0L, 0L, balance);
+            }
+        } finally {
+            lease.lock.unlock();
+        }
+    }
+
+    private long[] tryAcquireRemote(String userId, String tenantId, long want, long need, long refund) {
+        try {
+            List<?> result = stringRedisTemplate.execute(ACQUIRE_SCRIPT,
+                    List.of(BUCKET_KEY_PREFIX + "user:" + userId,
+                            BUCKET_KEY_PREFIX + "tenant:" + tenantId,
+                            BUCKET_KEY_PREFIX + "global"),
+                    String.valueOf(want), String.valueOf(need), String.valueOf(refund),
+                    String.valueOf(userRate), String.valueOf(userBurst),
+                    String.valueOf(tenantRate), String.valueOf(tenantBurst),
+                    String.valueOf(globalRate), String.valueOf(globalBurst));
+            if (result == null || result.size() < 2) {
+                return new long[] {need, 0L};
+            }
+            return new long[] {((Number) result.get(0)).longValue(), ((Number) result.get(1)).longValue()};
+        } catch (RuntimeException e) {
+            log.warn("上传准入检查失败，放行本次上传: userId={}", userId, e);
+            return new long[] {need, 0L};
+        }
+    }
+
+    /**
+     * 节点本地预取的额度.
      */
-    public void release(String userId) {
-        userSemaphores.get(userId).release();
+    private static final class Lease {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private long balance;
+
+        private long expiresAt;
+
+        /**
+         * 余额所属的租户，退回时定位租户桶.
+         */
+        private String tenantId;
     }
 }
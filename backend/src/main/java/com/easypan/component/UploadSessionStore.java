@@ -0,0 +1,312 @@
+package com.easypan.component;
+
+import com.easypan.entity.dto.UploadSessionDto;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上传会话存储.
+ *
+ * <p>分片上传、断点续传与上传进度共用的会话存储，Key 设计：
+ *
+ * <p>- upload:session:{userId:uploadId} - Hash，字段 totalChunks / chunkSize / completedChunks /
+ * receivedBytes
+ *
+ * <p>- upload:session:{userId:uploadId}:chunks - 位图，第 i 位为 1 表示第 i 个分片已完成
+ *
+ * <p>- upload:session:{userId:uploadId}:inflight - ZSet，成员为在途分片索引，分值为租约到期时间（毫秒）.
+ * 每个分片单独计租，节点在上传中途崩溃时只占用名额到租约到期；同一分片重试不会重复占用名额
+ *
+ * <p>花括号是字面的哈希标签，同一会话的三个 Key 在 Redis Cluster 下落在同一槽位，标记分片的脚本与
+ * 删除会话的多 Key DEL 不会触发 CROSSSLOT；不同会话仍按 userId 与 uploadId 分散到各个槽位.
+ *
+ * <p>位图每个分片只占 1 bit，1 万分片约 1.25KB；缺失分片通过 BITPOS 定位或一次 GET 位图后本地扫描得到.
+ */
+@Component
+public class UploadSessionStore {
+
+    /**
+     * 会话 Key 前缀.
+     */
+    public static final String SESSION_KEY_PREFIX = "upload:session:";
+
+    /**
+     * 分片位图 Key 后缀.
+     */
+    public static final String CHUNKS_KEY_SUFFIX = ":chunks";
+
+    /**
+     * 在途分片 Key 后缀.
+     */
+    public static final String INFLIGHT_KEY_SUFFIX = ":inflight";
+
+    private static final String FIELD_TOTAL_CHUNKS = "totalChunks";
+    private static final String FIELD_CHUNK_SIZE = "chunkSize";
+    private static final String FIELD_COMPLETED_CHUNKS = "completedChunks";
+    private static final String FIELD_RECEIVED_BYTES = "receivedBytes";
+
+    private static final long DEFAULT_TTL_SECONDS = 24 * 60 * 60L;
+
+    private static final long DEFAULT_INFLIGHT_TTL_SECONDS = 120L;
+
+    /**
+     * 原子地置位分片并在首次置位时累加计数，返回置位前的值.
+     */
+    private static final DefaultRedisScript<Long> MARK_CHUNK_SCRIPT = new DefaultRedisScript<>(
+            "local old = redis.call('SETBIT', KEYS[2], ARGV[1], 1) "
+                    + "if old == 0 then "
+                    + "redis.call('HINCRBY', KEYS[1], '" + FIELD_COMPLETED_CHUNKS + "', 1) "
+                    + "redis.call('HINCRBY', KEYS[1], '" + FIELD_RECEIVED_BYTES + "', ARGV[2]) "
+                    + "end "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[3]) "
+                    + "redis.call('EXPIRE', KEYS[2], ARGV[3]) "
+                    + "return old",
+            Long.class);
+
+    /**
+     * 清理过期租约后占用在途名额：已在途的分片只续租；名额已满时返回 0 且不续期 Key，
+     * 被拒绝的请求不会延长泄漏名额的存活时间.
+     */
+    private static final DefaultRedisScript<Long> ACQUIRE_CHUNK_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', ARGV[2]) "
+                    + "if not redis.call('ZSCORE', KEYS[1], ARGV[1]) "
+                    + "and redis.call('ZCARD', KEYS[1]) >= tonumber(ARGV[3]) then "
+                    + "return 0 "
+                    + "end "
+                    + "redis.call('ZADD', KEYS[1], tonumber(ARGV[2]) + tonumber(ARGV[4]), ARGV[1]) "
+                    + "redis.call('PEXPIRE', KEYS[1], ARGV[4]) "
+                    + "return 1",
+            Long.class);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${app.upload.session-ttl-seconds:" + DEFAULT_TTL_SECONDS + "}")
+    private long ttlSeconds = DEFAULT_TTL_SECONDS;
+
+    /**
+     * 在途分片租约时长，应大于单个分片的最长上传时间.
+     */
+    @Value("${app.upload.chunk-inflight-ttl-seconds:" + DEFAULT_INFLIGHT_TTL_SECONDS + "}")
+    private long inflightTtlSeconds = DEFAULT_INFLIGHT_TTL_SECONDS;
+
+    /**
+     * 初始化会话，已存在的字段不会被覆盖.
+     *
+     * @param userId      用户ID
+     * @param uploadId    上传标识（fileId 或文件 MD5）
+     * @param totalChunks 总分片数，可为 null
+     * @param chunkSize   分片大小，可为 null
+     */
+    public void initSession(String userId, String uploadId, Integer totalChunks, Long chunkSize) {
+        String sessionKey = sessionKey(userId, uploadId);
+        if (totalChunks != null) {
+            stringRedisTemplate.opsForHash().putIfAbsent(sessionKey, FIELD_TOTAL_CHUNKS, String.valueOf(totalChunks));
+        }
+        if (chunkSize != null) {
+            stringRedisTemplate.opsForHash().putIfAbsent(sessionKey, FIELD_CHUNK_SIZE, String.valueOf(chunkSize));
+        }
+        stringRedisTemplate.expire(sessionKey, ttlSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 记录分片完成.
+     *
+     * @param userId     用户ID
+     * @param uploadId   上传标识
+     * @param chunkIndex 分片索引
+     * @param bytes      分片字节数
+     * @return true 表示首次记录，false 表示重复上报
+     */
+    public boolean markChunk(String userId, String uploadId, int chunkIndex, long bytes) {
+        Long old = stringRedisTemplate.execute(MARK_CHUNK_SCRIPT,
+                List.of(sessionKey(userId, uploadId), chunksKey(userId, uploadId)),
+                String.valueOf(chunkIndex), String.valueOf(bytes), String.valueOf(ttlSeconds));
+        return old != null && old == 0L;
+    }
+
+    /**
+     * 判断分片是否已完成.
+     *
+     * @param userId     用户ID
+     * @param uploadId   上传标识
+     * @param chunkIndex 分片索引
+     * @return true 表示已完成
+     */
+    public boolean isChunkMarked(String userId, String uploadId, int chunkIndex) {
+        return Boolean.TRUE.equals(stringRedisTemplate.opsForValue().getBit(chunksKey(userId, uploadId), chunkIndex));
+    }
+
+    /**
+     * 读取会话信息.
+     *
+     * @param userId   用户ID
+     * @param uploadId 上传标识
+     * @return 会话信息，不存在时各字段为 null 或 0
+     */
+    public UploadSessionDto getSession(String userId, String uploadId) {
+        Map<Object, Object> fields = stringRedisTemplate.opsForHash().entries(sessionKey(userId, uploadId));
+        return UploadSessionDto.builder()
+                .totalChunks(toInteger(fields.get(FIELD_TOTAL_CHUNKS)))
+                .chunkSize(toLong(fields.get(FIELD_CHUNK_SIZE)))
+                .completedChunks(fields.containsKey(FIELD_COMPLETED_CHUNKS)
+                        ? toInteger(fields.get(FIELD_COMPLETED_CHUNKS)) : 0)
+                .receivedBytes(fields.containsKey(FIELD_RECEIVED_BYTES)
+                        ? toLong(fields.get(FIELD_RECEIVED_BYTES)) : 0L)
+                .build();
+    }
+
+    /**
+     * 已完成分片数.
+     *
+     * @param userId   用户ID
+     * @param uploadId 上传标识
+     * @return 已完成分片数
+     */
+    public int getCompletedChunks(String userId, String uploadId) {
+        Object value = stringRedisTemplate.opsForHash().get(sessionKey(userId, uploadId), FIELD_COMPLETED_CHUNKS);
+        Integer completed = toInteger(value);
+        return completed != null ? completed : 0;
+    }
+
+    /**
+     * 获取已完成分片索引（升序）.
+     *
+     * @param userId   用户ID
+     * @param uploadId 上传标识
+     * @return 分片索引列表
+     */
+    public List<Integer> getMarkedChunks(String userId, String uploadId) {
+        byte[] bitmap = readBitmap(userId, uploadId);
+        List<Integer> chunks = new ArrayList<>();
+        for (int i = 0; i < bitmap.length * 8; i++) {
+            if (isSet(bitmap, i)) {
+                chunks.add(i);
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * 获取缺失分片索引（升序）.
+     *
+     * @param userId      用户ID
+     * @param uploadId    上传标识
+     * @param totalChunks 总分片数
+     * @return 缺失分片索引列表
+     */
+    public List<Integer> getMissingChunks(String userId, String uploadId, int totalChunks) {
+        Long first = firstMissingChunk(userId, uploadId);
+        if (first == null || first >= totalChunks) {
+            return Collections.emptyList();
+        }
+        byte[] bitmap = readBitmap(userId, uploadId);
+        List<Integer> missing = new ArrayList<>();
+        for (int i = first.intValue(); i < totalChunks; i++) {
+            if (!isSet(bitmap, i)) {
+                missing.add(i);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * 通过 BITPOS 定位第一个缺失分片.
+     *
+     * @param userId   用户ID
+     * @param uploadId 上传标识
+     * @return 第一个未完成分片索引；位图不存在时返回 0
+     */
+    public Long firstMissingChunk(String userId, String uploadId) {
+        byte[] key = chunksKey(userId, uploadId).getBytes(StandardCharsets.UTF_8);
+        return stringRedisTemplate.execute((RedisCallback<Long>) connection -> {
+            RedisStringCommands commands = connection.stringCommands();
+            return commands.bitPos(key, false, Range.unbounded());
+        });
+    }
+
+    /**
+     * 为分片占用在途名额.
+     *
+     * @param userId      用户ID
+     * @param uploadId    上传标识
+     * @param chunkIndex  分片索引
+     * @param maxInflight 同一上传的最大在途分片数
+     * @return true 表示占用成功（或该分片已在途），false 表示名额已满
+     */
+    public boolean tryAcquireChunkSlot(String userId, String uploadId, int chunkIndex, int maxInflight) {
+        Long acquired = stringRedisTemplate.execute(ACQUIRE_CHUNK_SCRIPT,
+                List.of(inflightKey(userId, uploadId)),
+                String.valueOf(chunkIndex), String.valueOf(System.currentTimeMillis()),
+                String.valueOf(maxInflight), String.valueOf(TimeUnit.SECONDS.toMillis(inflightTtlSeconds)));
+        return acquired != null && acquired == 1L;
+    }
+
+    /**
+     * 释放分片的在途名额.
+     *
+     * @param userId     用户ID
+     * @param uploadId   上传标识
+     * @param chunkIndex 分片索引
+     */
+    public void releaseChunkSlot(String userId, String uploadId, int chunkIndex) {
+        stringRedisTemplate.opsForZSet().remove(inflightKey(userId, uploadId), String.valueOf(chunkIndex));
+    }
+
+    /**
+     * 删除会话、位图与在途记录.
+     *
+     * @param userId   用户ID
+     * @param uploadId 上传标识
+     */
+    public void clearSession(String userId, String uploadId) {
+        stringRedisTemplate.delete(List.of(sessionKey(userId, uploadId), chunksKey(userId, uploadId),
+                inflightKey(userId, uploadId)));
+    }
+
+    private byte[] readBitmap(String userId, String uploadId) {
+        byte[] key = chunksKey(userId, uploadId).getBytes(StandardCharsets.UTF_8);
+        byte[] bitmap = stringRedisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get(key));
+        return bitmap != null ? bitmap : new byte[0];
+    }
+
+    private static boolean isSet(byte[] bitmap, int index) {
+        int byteIndex = index >>> 3;
+        // Redis 位图按大端位序存放：第 0 位是首字节的最高位
+        return byteIndex < bitmap.length && (bitmap[byteIndex] & (0x80 >>> (index & 7))) != 0;
+    }
+
+    private static String sessionKey(String userId, String uploadId) {
+        return SESSION_KEY_PREFIX + "{" + userId + ":" + uploadId + "}";
+    }
+
+    private static String chunksKey(String userId, String uploadId) {
+        return sessionKey(userId, uploadId) + CHUNKS_KEY_SUFFIX;
+    }
+
+    private static String inflightKey(String userId, String uploadId) {
+        return sessionKey(userId, uploadId) + INFLIGHT_KEY_SUFFIX;
+    }
+
+    private static Integer toInteger(Object value) {
+        return value != null ? Integer.valueOf(value.toString()) : null;
+    }
+
+    private static Long toLong(Object value) {
+        return value != null ? Long.valueOf(value.toString()) : null;
+    }
+}
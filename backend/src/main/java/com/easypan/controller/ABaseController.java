@@ -1,26 +1,48 @@
 package com.easypan.controller;
 
+import com.easypan.component.HotObjectCache;
 import com.easypan.entity.constants.Constants;
 import com.easypan.entity.dto.SessionShareDto;
 import com.easypan.entity.dto.SessionWebUserDto;
+import com.easypan.entity.dto.StorageObjectStatDto;
 import com.easypan.entity.enums.ResponseCodeEnum;
+import com.easypan.entity.po.FileInfo;
 import com.easypan.entity.vo.PaginationResultVO;
 import com.easypan.entity.vo.ResponseVO;
 import com.easypan.exception.BusinessException;
+import com.easypan.strategy.StorageStrategy;
 import com.easypan.utils.CopyTools;
+import com.easypan.utils.StringTools;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.util.UriUtils;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URI;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -31,6 +53,27 @@ public class ABaseController {
     private static final Logger logger = LoggerFactory.getLogger(ABaseController.class);
     private static final int STREAM_BUFFER_SIZE = 64 * 1024;
 
+    /**
+     * 小于该大小的区间直接复制，与 Tomcat DefaultServlet 的 sendfileSize 默认值一致.
+     */
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    /**
+     * Tomcat 的 sendfile 请求属性，见 {@code org.apache.catalina.Globals}.
+     */
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * 反向代理卸载模式：nginx 的 X-Accel-Redirect 与 Apache/lighttpd 的 X-Sendfile.
+     */
+    private static final String OFFLOAD_X_ACCEL = "x-accel";
+    private static final String OFFLOAD_X_SENDFILE = "x-sendfile";
+    private static final String X_ACCEL_REDIRECT = "X-Accel-Redirect";
+    private static final String X_SENDFILE = "X-Sendfile";
+
     /** 常见媒体类型映射（补充 JDK 内置映射的不足）. */
     private static final Map<String, String> MEDIA_TYPE_MAP = Map.ofEntries(
             Map.entry("m3u8", "application/vnd.apple.mpegurl"),
@@ -64,6 +107,39 @@ public class ABaseController {
     @Resource
     protected com.easypan.strategy.StorageFactory storageFactory;
 
+    @Resource
+    protected HotObjectCache hotObjectCache;
+
+    /**
+     * 本地存储的文件是否走零拷贝输出.
+     */
+    @Value("${app.serve.sendfile-enabled:true}")
+    private boolean sendfileEnabled = true;
+
+    /**
+     * 文件输出卸载到反向代理的模式：none、x-accel 或 x-sendfile.
+     */
+    @Value("${app.serve.offload.mode:none}")
+    private String offloadMode = "none";
+
+    /**
+     * nginx 中映射到本地存储根目录的 internal location.
+     */
+    @Value("${app.serve.offload.local-location:/_offload/file/}")
+    private String offloadLocalLocation = "/_offload/file/";
+
+    /**
+     * nginx 中代理远程存储链接的 internal location.
+     */
+    @Value("${app.serve.offload.remote-location:/_offload/remote/}")
+    private String offloadRemoteLocation = "/_offload/remote/";
+
+    /**
+     * 交给代理回源的远程存储链接的有效期（秒）.
+     */
+    @Value("${app.serve.offload.presign-seconds:60}")
+    private long offloadPresignSeconds = 60;
+
     protected static final String STATUC_SUCCESS = "success";
 
     protected static final String STATUC_ERROR = "error";
@@ -187,8 +263,40 @@ public class ABaseController {
      * @param filePath 文件路径
      */
     protected void readFile(HttpServletResponse response, String filePath) {
-        OutputStream out = null;
-        InputStream in = null;
+        readFile(response, filePath, null);
+    }
+
+    /**
+     * 读取文件并写入响应，支持条件请求与范围请求.
+     *
+     * <p>有文件记录时以文件 MD5 与大小作为 ETag、更新时间作为 Last-Modified，否则取存储对象的大小与修改时间；
+     * 匹配 {@code If-None-Match} / {@code If-Modified-Since} 时返回 304. {@code Range} 支持单段与多段
+     * （{@code multipart/byteranges}），经 {@code If-Range} 校验后按区间从存储读取并返回 206，区间全部越界时
+     * 返回 416. 存储无法提供对象大小时退回完整输出.
+     *
+     * <p>开启 {@code app.serve.offload.mode} 时，条件请求校验之后不再输出内容，改为返回代理的内部跳转头，
+     * 由代理完成范围请求与数据传输，见 {@link #offload}.
+     *
+     * @param response HTTP 响应
+     * @param filePath 文件路径
+     * @param fileInfo 文件记录，可为空
+     */
+    protected void readFile(HttpServletResponse response, String filePath, FileInfo fileInfo) {
+        readFile(response, filePath, fileInfo, false);
+    }
+
+    /**
+     * 读取文件并写入响应，{@code hotCacheable} 为 true 时经过 {@link HotObjectCache}：命中时元信息与内容都
+     * 来自内存，不访问存储；未命中且远程存储的对象足够小时读入缓存后输出. 只用于内容写入后不再变化的
+     * 播放列表、视频分片与封面.
+     *
+     * @param response     HTTP 响应
+     * @param filePath     文件路径
+     * @param fileInfo     文件记录，可为空
+     * @param hotCacheable 是否使用热点对象缓存
+     */
+    protected void readFile(HttpServletResponse response, String filePath, FileInfo fileInfo,
+            boolean hotCacheable) {
         try {
             // 设置 Content-Type（如果尚未由上层调用者设置）
             if (response.getContentType() == null) {
@@ -198,29 +306,310 @@ public class ABaseController {
             if (response.getHeader("Cache-Control") == null) {
                 response.setHeader("Cache-Control", chooseCacheControl(filePath));
             }
-
             response.setBufferSize(STREAM_BUFFER_SIZE);
-            out = response.getOutputStream();
-            in = storageFactory.getStorageStrategy().download(filePath);
-            if (in == null) {
+
+            StorageStrategy storage = storageFactory.getStorageStrategy();
+            HttpServletRequest request = currentRequest();
+            boolean cacheable = hotCacheable && hotObjectCache != null && hotObjectCache.accepts(filePath);
+            HotObjectCache.CachedObject cached = cacheable ? hotObjectCache.getIfPresent(filePath) : null;
+            StorageObjectStatDto stat = cached != null
+                    ? new StorageObjectStatDto(cached.size(), cached.lastModified())
+                    : statOf(storage, filePath, fileInfo);
+            String etag = null;
+            long lastModified = -1;
+            if (stat != null) {
+                etag = etagOf(fileInfo, stat);
+                lastModified = fileInfo != null && fileInfo.getLastUpdateTime() != null
+                        ? fileInfo.getLastUpdateTime().getTime() : stat.getLastModified();
+            }
+            if (request != null && (etag != null || lastModified >= 0)
+                    && new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
                 return;
             }
-            byte[] buffer = new byte[STREAM_BUFFER_SIZE];
-            int len;
-            while ((len = in.read(buffer)) != -1) {
-                out.write(buffer, 0, len);
+            // 本地文件已有页缓存与零拷贝输出，只缓存远程存储的对象
+            if (cached == null && cacheable && stat != null && hotObjectCache.accepts(filePath, stat.getSize())
+                    && storage.getLocalFile(filePath) == null) {
+                cached = loadHotObject(storage, filePath, stat);
             }
-            out.flush();
+            if (cached == null && offload(response, storage, filePath)) {
+                return;
+            }
+            if (request == null || stat == null) {
+                writeRange(response, storage, filePath, cached, 0, -1);
+                return;
+            }
+            long size = stat.getSize();
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+            List<HttpRange> ranges = requestedRanges(request, etag, lastModified, size);
+            if (ranges == null) {
+                response.setContentLengthLong(size);
+                writeRange(response, storage, filePath, cached, 0, -1);
+                return;
+            }
+            List<long[]> satisfiable = new ArrayList<>(ranges.size());
+            for (HttpRange range : ranges) {
+                try {
+                    long start = range.getRangeStart(size);
+                    long end = range.getRangeEnd(size);
+                    if (end >= start) {
+                        satisfiable.add(new long[] {start, end - start + 1});
+                    }
+                } catch (IllegalArgumentException e) {
+                    // 起点越界的区间忽略
+                }
+            }
+            if (satisfiable.isEmpty()) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return;
+            }
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            if (satisfiable.size() == 1) {
+                long[] range = satisfiable.get(0);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(range, size));
+                response.setContentLengthLong(range[1]);
+                writeRange(response, storage, filePath, cached, range[0], range[1]);
+                return;
+            }
+            writeMultipartRanges(response, storage, filePath, cached, satisfiable, size);
         } catch (Exception e) {
             logger.error("Read file failed, path: {}", filePath, e);
-        } finally {
-            if (in != null) {
+        }
+    }
+
+    /**
+     * 把文件输出交给反向代理：本地完整文件返回 internal location 下的路径（X-Accel-Redirect）或绝对路径
+     * （X-Sendfile）；远程存储在 x-accel 模式下返回短时效链接，由代理的 internal location 回源. 代理按内部
+     * 跳转处理 Range 与传输，应用节点只负责鉴权；没有可交给代理的目标时返回 false，由应用自行输出.
+     *
+     * @param response HTTP 响应
+     * @param storage  存储策略
+     * @param filePath 存储路径
+     * @return 是否已交给代理
+     */
+    protected boolean offload(HttpServletResponse response, StorageStrategy storage, String filePath) {
+        boolean accel = OFFLOAD_X_ACCEL.equalsIgnoreCase(offloadMode);
+        if ((!accel && !OFFLOAD_X_SENDFILE.equalsIgnoreCase(offloadMode)) || response.isCommitted()) {
+            return false;
+        }
+        File localFile = storage.getLocalFile(filePath);
+        if (localFile != null) {
+            if (accel) {
+                response.setHeader(X_ACCEL_REDIRECT,
+                        offloadLocalLocation + UriUtils.encodePath(normalizePath(filePath), StandardCharsets.UTF_8));
+            } else {
+                response.setHeader(X_SENDFILE, localFile.getAbsolutePath());
+            }
+            return true;
+        }
+        if (!accel) {
+            return false;
+        }
+        String url = storage.generateInternalUrl(filePath, offloadPresignSeconds);
+        if (StringTools.isEmpty(url)) {
+            return false;
+        }
+        URI uri = URI.create(url);
+        // 形如 {remote-location}{scheme}/{host:port}{path}?{query}，由代理的正则 location 还原后回源
+        response.setHeader(X_ACCEL_REDIRECT, offloadRemoteLocation + uri.getScheme() + "/" + uri.getRawAuthority()
+                + uri.getRawPath() + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery()));
+        return true;
+    }
+
+    /**
+     * 与本地存储一致的路径规整：统一分隔符并去掉开头的斜杠.
+     */
+    private static String normalizePath(String filePath) {
+        String normalized = filePath.replace("\\", "/");
+        while (normalized.startsWith("/")) {
+            normalized = normalized.substring(1);
+        }
+        return normalized;
+    }
+
+    /**
+     * 读入热点对象缓存，失败（如堆外内存不足）时返回 null，由调用方直接从存储输出.
+     */
+    private HotObjectCache.CachedObject loadHotObject(StorageStrategy storage, String filePath,
+            StorageObjectStatDto stat) {
+        try {
+            return hotObjectCache.get(filePath, stat, () -> storage.download(filePath));
+        } catch (Exception | OutOfMemoryError e) {
+            logger.warn("Load hot object failed, serving from storage: {}", filePath, e);
+            return null;
+        }
+    }
+
+    private static HttpServletRequest currentRequest() {
+        return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                ? attributes.getRequest() : null;
+    }
+
+    /**
+     * 文件记录带有大小时直接使用，省去一次存储元信息查询.
+     */
+    private static StorageObjectStatDto statOf(StorageStrategy storage, String filePath, FileInfo fileInfo) {
+        if (fileInfo != null && fileInfo.getFileSize() != null && filePath.equals(fileInfo.getFilePath())) {
+            return new StorageObjectStatDto(fileInfo.getFileSize(), -1L);
+        }
+        return storage.stat(filePath);
+    }
+
+    /**
+     * 存储路径由用户与文件 ID 组成，内容写入后不再变化，大小与修改时间足以作为强校验值.
+     */
+    private static String etagOf(FileInfo fileInfo, StorageObjectStatDto stat) {
+        if (fileInfo != null && !StringTools.isEmpty(fileInfo.getFileMd5())) {
+            return "\"" + fileInfo.getFileMd5() + "-" + Long.toHexString(stat.getSize()) + "\"";
+        }
+        if (stat.getLastModified() < 0) {
+            return null;
+        }
+        return "\"" + Long.toHexString(stat.getSize()) + "-" + Long.toHexString(stat.getLastModified()) + "\"";
+    }
+
+    /**
+     * 解析 Range 头. 没有 Range、格式错误、If-Range 不匹配或区间总长超过文件大小时返回 null，按完整内容输出.
+     */
+    private static List<HttpRange> requestedRanges(HttpServletRequest request, String etag, long lastModified,
+            long size) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (StringTools.isEmpty(rangeHeader)) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (!StringTools.isEmpty(ifRange)) {
+            boolean matched;
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                // If-Range 只能使用强校验
+                matched = ifRange.equals(etag);
+            } else {
+                long since;
                 try {
-                    in.close();
-                } catch (IOException e) {
-                    logger.error("Close input stream failed", e);
+                    since = request.getDateHeader(HttpHeaders.IF_RANGE);
+                } catch (IllegalArgumentException e) {
+                    since = -1;
                 }
+                matched = since >= 0 && lastModified >= 0 && lastModified / 1000 == since / 1000;
             }
+            if (!matched) {
+                return null;
+            }
+        }
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        long total = 0;
+        for (HttpRange range : ranges) {
+            try {
+                total += range.getRangeEnd(size) - range.getRangeStart(size) + 1;
+            } catch (IllegalArgumentException e) {
+                // 越界区间在调用方处理
+            }
+        }
+        // 与 Spring 的 ResourceRegion 校验一致，拒绝大量重叠区间放大输出
+        return total > size ? null : ranges;
+    }
+
+    private static String contentRange(long[] range, long size) {
+        return "bytes " + range[0] + "-" + (range[0] + range[1] - 1) + "/" + size;
+    }
+
+    private void writeMultipartRanges(HttpServletResponse response, StorageStrategy storage, String filePath,
+            HotObjectCache.CachedObject cached, List<long[]> ranges, long size) throws IOException {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        String partType = response.getContentType();
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        OutputStream out = response.getOutputStream();
+        for (long[] range : ranges) {
+            String partHeader = "\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + partType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range, size) + "\r\n\r\n";
+            out.write(partHeader.getBytes(StandardCharsets.US_ASCII));
+            if (cached != null) {
+                copy(cached, range[0], range[1], out);
+                continue;
+            }
+            try (InputStream in = storage.download(filePath, range[0], range[1])) {
+                copy(in, out);
+            }
+        }
+        out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private void writeRange(HttpServletResponse response, StorageStrategy storage, String filePath,
+            HotObjectCache.CachedObject cached, long offset, long length) throws IOException {
+        if (cached != null) {
+            OutputStream out = response.getOutputStream();
+            copy(cached, offset, length < 0 ? cached.size() - offset : length, out);
+            out.flush();
+            return;
+        }
+        File localFile = sendfileEnabled ? storage.getLocalFile(filePath) : null;
+        if (localFile != null) {
+            writeLocalFile(response, localFile, offset, length < 0 ? localFile.length() - offset : length);
+            return;
+        }
+        OutputStream out = response.getOutputStream();
+        try (InputStream in = offset == 0 && length < 0 ? storage.download(filePath)
+                : storage.download(filePath, offset, length)) {
+            if (in == null) {
+                return;
+            }
+            copy(in, out);
+        }
+        out.flush();
+    }
+
+    /**
+     * 输出本地文件的一段. Tomcat 连接器支持 sendfile 时只登记文件区间，由连接器在请求结束后直接从页缓存
+     * 写入套接字，数据不经过 JVM 堆；不支持（TLS、HTTP/2、非 Tomcat 容器）或区间太小时定位读取后流式复制.
+     *
+     * @param response HTTP 响应
+     * @param file     本地文件
+     * @param offset   起始偏移
+     * @param count    字节数
+     * @throws IOException 读写失败
+     */
+    protected void writeLocalFile(HttpServletResponse response, File file, long offset, long count)
+            throws IOException {
+        HttpServletRequest request = currentRequest();
+        if (sendfileEnabled && count >= SENDFILE_MIN_SIZE && request != null && !response.isCommitted()
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            response.setContentLengthLong(count);
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.getCanonicalPath());
+            request.setAttribute(SENDFILE_START_ATTR, offset);
+            request.setAttribute(SENDFILE_END_ATTR, offset + count);
+            return;
+        }
+        OutputStream out = response.getOutputStream();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            channel.position(offset);
+            copy(new BoundedInputStream(Channels.newInputStream(channel), count), out);
+        }
+        out.flush();
+    }
+
+    private static void copy(HotObjectCache.CachedObject cached, long offset, long length, OutputStream out)
+            throws IOException {
+        ByteBuffer slice = cached.data().duplicate();
+        slice.position((int) offset).limit((int) (offset + length));
+        WritableByteChannel channel = Channels.newChannel(out);
+        while (slice.hasRemaining()) {
+            channel.write(slice);
+        }
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            out.write(buffer, 0, len);
         }
     }
 }
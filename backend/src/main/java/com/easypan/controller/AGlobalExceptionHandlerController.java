@@ -3,13 +3,17 @@ package com.easypan.controller;
 import com.easypan.entity.enums.ResponseCodeEnum;
 import com.easypan.entity.vo.ResponseVO;
 import com.easypan.exception.BusinessException;
+import com.easypan.exception.RateLimitedException;
+import com.easypan.exception.ServiceUnavailableException;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.validation.BindException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -53,16 +57,24 @@ public class AGlobalExceptionHandlerController extends ABaseController {
     /**
      * 业务异常处理，处理应用中主动抛出的业务异常，支持国际化错误消息.
      *
-     * @param e       业务异常
-     * @param request HTTP 请求
+     * @param e        业务异常
+     * @param request  HTTP 请求
+     * @param response HTTP 响应
      * @return 错误响应
      */
     @ExceptionHandler(BusinessException.class)
     public ResponseVO<Void> handleBusinessException(
-            BusinessException e, HttpServletRequest request) {
+            BusinessException e, HttpServletRequest request, HttpServletResponse response) {
         String requestUrl = request.getRequestURI();
         String method = request.getMethod();
 
+        if (e instanceof RateLimitedException limited) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(limited.getRetryAfterSeconds()));
+        }
+        if (e instanceof ServiceUnavailableException) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
+
         Integer code = e.getCode() != null ? e.getCode() : ResponseCodeEnum.CODE_600.getCode();
 
         String message;
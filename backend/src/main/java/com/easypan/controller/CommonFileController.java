@@ -14,15 +14,23 @@ import com.easypan.entity.vo.FolderVO;
 import com.easypan.entity.vo.ResponseVO;
 import com.easypan.exception.BusinessException;
 import com.easypan.service.FileInfoService;
+import com.easypan.service.HlsPrefetchService;
+import com.easypan.service.HlsSegmentService;
+import com.easypan.service.ThumbnailService;
 import com.easypan.utils.CopyTools;
 import com.easypan.utils.StringTools;
 import com.github.benmanes.caffeine.cache.Cache;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
@@ -44,6 +52,15 @@ public class CommonFileController extends ABaseController {
     @Resource
     private RedisComponent redisComponent;
 
+    @Resource
+    private HlsSegmentService hlsSegmentService;
+
+    @Resource
+    private ThumbnailService thumbnailService;
+
+    @Resource
+    private HlsPrefetchService hlsPrefetchService;
+
     /** Caffeine 本地缓存（注入已有 Bean），用于视频分片路由加速. */
     @Resource
     private Cache<String, FileInfo> fileInfoCache;
@@ -100,7 +117,40 @@ public class CommonFileController extends ABaseController {
         response.setContentType(contentType);
         response.setHeader("Cache-Control", "max-age=2592000");
         String filePath = imageFolder + "/" + imageName;
-        readFile(response, filePath);
+        readFile(response, filePath, null, true);
+    }
+
+    /**
+     * 获取指定宽度与格式的缩略图.
+     *
+     * @param response HTTP 响应
+     * @param fileId   文件ID
+     * @param userId   用户ID
+     * @param width    期望宽度
+     * @param format   期望格式
+     */
+    protected void getThumbnail(HttpServletResponse response, String fileId, String userId, Integer width,
+            String format) {
+        FileInfo fileInfo = fileInfoService.getFileInfoByFileIdAndUserId(fileId, userId);
+        if (fileInfo == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        File thumbnail = thumbnailService.getThumbnail(fileInfo, width, format);
+        response.setContentType(ThumbnailService.contentTypeOf(thumbnail));
+        response.setHeader("Cache-Control", "max-age=2592000");
+        String etag = "\"" + thumbnail.getName() + "\"";
+        HttpServletRequest request = ((ServletRequestAttributes) RequestContextHolder.getRequestAttributes())
+                .getRequest();
+        if (new ServletWebRequest(request, response).checkNotModified(etag, thumbnail.lastModified())) {
+            return;
+        }
+        response.setContentLengthLong(thumbnail.length());
+        try {
+            writeLocalFile(response, thumbnail, 0, thumbnail.length());
+        } catch (IOException e) {
+            log.warn("输出缩略图失败: fileId={}, path={}", fileId, thumbnail.getPath(), e);
+        }
     }
 
     private boolean validateImageAccess(String imageFolder, String imageName, String userId) {
@@ -173,6 +223,7 @@ public class CommonFileController extends ABaseController {
     @FileAccessCheck
     protected void getFile(HttpServletResponse response, String fileId, String userId) {
         String filePath = null;
+        FileInfo originalFile = null;
         if (fileId.endsWith(".ts")) {
             String[] tsAarray = fileId.split("_");
             String realFileId = tsAarray[0];
@@ -210,6 +261,10 @@ public class CommonFileController extends ABaseController {
             String fileName = fileInfo.getFilePath();
             fileName = StringTools.getFileNameNoSuffix(fileName) + "/" + fileId;
             filePath = fileName;
+            // 播放中持续刷新最后播放时间，避免按需切片在播放中途被淘汰
+            hlsSegmentService.touch(fileInfo.getFilePath());
+            // 异步预读后续分片，与本次输出并行
+            hlsPrefetchService.onSegmentServed(userId, filePath);
         } else {
             // 对非 ts 请求也使用缓存加速
             String cacheKey = fileId + "_" + userId;
@@ -223,15 +278,19 @@ public class CommonFileController extends ABaseController {
             }
             // 视频文件读取.m3u8文件
             if (FileCategoryEnums.VIDEO.getCategory().equals(fileInfo.getFileCategory())) {
+                // 按需切片模式下首次播放时切片
+                hlsSegmentService.ensureSegments(fileInfo.getFileId(), fileInfo.getFilePath());
                 // 重新设置文件路径
                 String fileNameNoSuffix = StringTools.getFileNameNoSuffix(fileInfo.getFilePath());
                 filePath = fileNameNoSuffix + "/" + Constants.M3U8_NAME;
+                hlsPrefetchService.onPlaylistServed(userId, fileNameNoSuffix, fileInfo.getFileId());
             } else {
                 filePath = fileInfo.getFilePath();
+                originalFile = fileInfo;
             }
         }
 
-        readFile(response, filePath);
+        readFile(response, filePath, originalFile, true);
     }
 
     /**
@@ -305,20 +364,20 @@ public class CommonFileController extends ABaseController {
             response.setHeader("Content-Disposition",
                     "attachment; filename=\"" + encodedFileName + "\"; filename*=UTF-8''" + encodedFileName);
 
-            // 尝试设置 Content-Length，使浏览器能显示下载进度
+            // 文件记录提供大小与校验值，用于 Content-Length、断点续传与条件请求
+            FileInfo fileInfo = null;
             try {
                 FileInfoQuery sizeQuery = new FileInfoQuery();
                 sizeQuery.setFilePath(filePath);
                 List<FileInfo> sizeResults = fileInfoService.findListByParam(sizeQuery);
-                if (sizeResults != null && !sizeResults.isEmpty()
-                        && sizeResults.get(0).getFileSize() != null) {
-                    response.setContentLengthLong(sizeResults.get(0).getFileSize());
+                if (sizeResults != null && !sizeResults.isEmpty()) {
+                    fileInfo = sizeResults.get(0);
                 }
             } catch (Exception ignored) {
-                // Content-Length 是可选优化，获取失败不影响下载
+                // 查询失败时按存储对象的元信息输出
             }
 
-            readFile(response, filePath);
+            readFile(response, filePath, fileInfo);
 
             long duration = System.currentTimeMillis() - startTime;
             log.info("[DOWNLOAD] Successfully downloaded file: {} in {}ms", fileName, duration);
@@ -17,13 +17,12 @@ import com.easypan.entity.vo.PaginationResultVO;
 import com.easypan.entity.vo.ResponseVO;
 import com.easypan.exception.BusinessException;
 import com.easypan.service.FileOperationService;
+import com.easypan.service.TransferStatusService;
 import com.easypan.utils.CopyTools;
 import com.easypan.utils.StringTools;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -40,8 +39,6 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 閺傚洣娆㈡穱鈩冧紖閹貉冨煑閸ｃ劎琚?
@@ -56,8 +53,7 @@ public class FileInfoController extends CommonFileController {
     private FileOperationService fileOperationService;
 
     @Resource
-    @Qualifier("virtualThreadExecutor")
-    private AsyncTaskExecutor virtualThreadExecutor;
+    private TransferStatusService transferStatusService;
 
     /**
      * 閺嶈宓侀弶鈥叉閸掑棝銆夐弻銉嚄.
@@ -158,6 +154,7 @@ public class FileInfoController extends CommonFileController {
      * @param fileMd5    閺傚洣娆D5
      * @param chunkIndex 閸掑棛澧栫槐銏犵穿
      * @param chunks     閹鍨庨悧鍥ㄦ殶
+     * @param chunkSize  客户端分片大小（可选）
      * @return 娑撳﹣绱剁紒鎾寸亯
      */
     @RequestMapping("/uploadFile")
@@ -165,20 +162,97 @@ public class FileInfoController extends CommonFileController {
     @com.easypan.annotation.RateLimit(key = "upload", time = 60, count = 30)
     @Operation(summary = "Upload File", description = "Upload file with chunk support")
     public ResponseVO<UploadResultDto> uploadFile(HttpSession session,
+            HttpServletRequest request,
             String fileId,
             @org.springframework.web.bind.annotation.RequestParam("file") MultipartFile file,
             @VerifyParam(required = true) String fileName,
             @VerifyParam(required = true) String filePid,
-            @VerifyParam(required = true) String fileMd5,
+            String fileMd5,
             @VerifyParam(required = true) Integer chunkIndex,
-            @VerifyParam(required = true) Integer chunks) {
+            @VerifyParam(required = true) Integer chunks,
+            Long chunkSize) {
 
         SessionWebUserDto webUserDto = getUserInfoFromSession(session);
         UploadResultDto resultDto = fileInfoService.uploadFile(webUserDto, fileId, file, fileName, filePid, fileMd5,
-                chunkIndex, chunks);
+                chunkIndex, chunks, chunkSize);
+        uploadTuningService.recordChunk(webUserDto.getUserId(), file.getSize(),
+                (Long) request.getAttribute(com.easypan.service.UploadTuningService.REQUEST_START_ATTRIBUTE));
         return getSuccessResponseVO(resultDto);
     }
 
+    /**
+     * 初始化分片上传，协商分片大小与并发数.
+     *
+     * <p>分片方案依据该用户历史分片的实测吞吐、往返时延与当前节点负载给出，并写入上传会话，
+     * 后续 {@code /uploadFile} 按会话中的分片大小与总分片数校验. 同时按文件大小预留用户空间与租户配额，
+     * 空间不足时在上传开始前拒绝. 客户端提供抽样指纹时据此告知是否还需计算完整 MD5.
+     *
+     * @param session        HTTP 会话
+     * @param fileId         文件ID，为空时由服务端生成
+     * @param fileSize       文件大小
+     * @param fileSampleHash 抽样指纹（可选）
+     * @return 分片方案
+     */
+    @RequestMapping("/uploadInit")
+    @GlobalInterceptor(checkParams = true)
+    @Operation(summary = "Upload Init", description = "Negotiate chunk size and parallelism for chunked upload")
+    public ResponseVO<com.easypan.entity.dto.UploadInitDto> uploadInit(HttpSession session,
+            String fileId,
+            @VerifyParam(required = true) Long fileSize,
+            String fileSampleHash) {
+        SessionWebUserDto webUserDto = getUserInfoFromSession(session);
+        if (StringTools.isEmpty(fileId)) {
+            fileId = StringTools.getRandomString(Constants.LENGTH_10);
+        }
+        com.easypan.entity.dto.UploadInitDto plan = uploadTuningService.recommend(webUserDto.getUserId(), fileId,
+                fileSize);
+        plan.setFullHashRequired(quickUploadService.isFullHashRequired(fileSampleHash, fileSize));
+        // 文件大小已知，一次预留全部空间，后续分片不再逐片判断空间；放在最后，前面失败时不会留下预留
+        quotaReservationService.reserve(webUserDto.getUserId(),
+                com.easypan.component.TenantContextHolder.getTenantId(), fileId, fileSize);
+        return getSuccessResponseVO(plan);
+    }
+
+    /**
+     * 批量秒传预检.
+     *
+     * @param fileMd5s 文件 MD5 列表，逗号分隔
+     * @return 可秒传的 MD5 及文件大小，其余列为需上传
+     */
+    @RequestMapping("/checkQuickUpload")
+    @GlobalInterceptor(checkParams = true)
+    @Operation(summary = "Check Quick Upload", description = "Check which MD5s can be instant-uploaded in one request")
+    public ResponseVO<com.easypan.entity.dto.QuickUploadCheckDto> checkQuickUpload(
+            @VerifyParam(required = true) String fileMd5s) {
+        return getSuccessResponseVO(quickUploadService.batchCheck(Arrays.asList(fileMd5s.split(","))));
+    }
+
+    /**
+     * 批量上传小文件.
+     *
+     * <p>请求体为 tar 归档时直接流式解包；为 multipart 时读取所有 {@code files} 部件，部件文件名即相对路径.
+     * 条目中的目录在 {@code filePid} 下按需创建，单个条目的失败记录在结果中，不影响其他条目.
+     *
+     * @param session HTTP 会话
+     * @param request HTTP 请求
+     * @param filePid 目标目录ID
+     * @return 上传结果
+     * @throws IOException 读取请求体失败
+     */
+    @RequestMapping("/uploadBatch")
+    @GlobalInterceptor(checkParams = true)
+    @Operation(summary = "Upload Batch", description = "Upload many small files from a tar stream or multipart body")
+    public ResponseVO<com.easypan.entity.dto.BatchUploadResultDto> uploadBatch(HttpSession session,
+            HttpServletRequest request,
+            @VerifyParam(required = true) String filePid) throws IOException {
+        SessionWebUserDto webUserDto = getUserInfoFromSession(session);
+        if (request instanceof org.springframework.web.multipart.MultipartHttpServletRequest multipartRequest) {
+            return getSuccessResponseVO(batchUploadService.uploadParts(webUserDto, filePid,
+                    multipartRequest.getFiles("files")));
+        }
+        return getSuccessResponseVO(batchUploadService.uploadTar(webUserDto, filePid, request.getInputStream()));
+    }
+
     /**
      * 閼惧嘲褰囧韫瑐娴肩姴鍨庨悧鍥︿繆閹垽绱欓悽銊ょ艾閺傤厾鍋ｇ紒顓濈炊閿?
      *
@@ -206,6 +280,11 @@ public class FileInfoController extends CommonFileController {
             return getSuccessResponseVO(Collections.emptyList());
         }
 
+        // 直写模式下分片写入同一预分配文件，已上传分片以 Redis 记录为准。
+        if (chunkDirectWriter.isDirectWriteFolder(folder)) {
+            return getSuccessResponseVO(uploadProgressService.getUploadedChunks(userId, fileId));
+        }
+
         File[] files = folder.listFiles();
         if (files == null || files.length == 0) {
             return getSuccessResponseVO(Collections.emptyList());
@@ -225,6 +304,24 @@ public class FileInfoController extends CommonFileController {
     @Resource
     private com.easypan.service.UploadProgressService uploadProgressService;
 
+    @Resource
+    private com.easypan.component.ChunkDirectWriter chunkDirectWriter;
+
+    @Resource
+    private com.easypan.component.RedisComponent redisComponent;
+
+    @Resource
+    private com.easypan.service.UploadTuningService uploadTuningService;
+
+    @Resource
+    private com.easypan.service.BatchUploadService batchUploadService;
+
+    @Resource
+    private com.easypan.service.QuotaReservationService quotaReservationService;
+
+    @Resource
+    private com.easypan.service.QuickUploadService quickUploadService;
+
     /**
      * 閼惧嘲褰囨稉濠佺炊鏉╂稑瀹?
      *
@@ -263,6 +360,7 @@ public class FileInfoController extends CommonFileController {
         com.easypan.entity.dto.FileTransferStatusDto dto = new com.easypan.entity.dto.FileTransferStatusDto();
         dto.setFileId(fileId);
         dto.setStatus(fileInfo.getStatus());
+        dto.setProgress(redisComponent.getTransferProgress(webUserDto.getUserId(), fileId));
         return getSuccessResponseVO(dto);
     }
 
@@ -274,45 +372,11 @@ public class FileInfoController extends CommonFileController {
     public SseEmitter getTransferStatusSse(
             HttpSession session,
             @VerifyParam(required = true) String fileId) {
-        SseEmitter emitter = new SseEmitter(30L * 60 * 1000);
-        AtomicBoolean running = new AtomicBoolean(true);
-        emitter.onCompletion(() -> running.set(false));
-        emitter.onTimeout(() -> running.set(false));
-        emitter.onError(ex -> running.set(false));
-
-        final SessionWebUserDto webUserDto = getUserInfoFromSession(session);
-        virtualThreadExecutor.execute(() -> {
-            try {
-                int pollCount = 0;
-                final int maxPollCount = 900; // 30min / 2s
-                while (running.get() && pollCount < maxPollCount) {
-                    FileInfo fileInfo = fileInfoService.getFileInfoByFileIdAndUserId(fileId, webUserDto.getUserId());
-                    if (fileInfo == null) {
-                        emitter.send(SseEmitter.event()
-                                .data("{\"status\": 1}"));
-                        break;
-                    }
-                    Integer status = fileInfo.getStatus();
-                    emitter.send(SseEmitter.event()
-                            .data("{\"status\": " + status + "}"));
-
-                    if (status == 2 || status == 1) {
-                        break;
-                    }
-                    pollCount++;
-                    TimeUnit.SECONDS.sleep(2);
-                }
-                if (running.get()) {
-                    emitter.complete();
-                }
-            } catch (Exception e) {
-                if (running.get()) {
-                    emitter.completeWithError(e);
-                }
-            }
+        SessionWebUserDto webUserDto = getUserInfoFromSession(session);
+        return transferStatusService.subscribe(webUserDto.getUserId(), fileId, () -> {
+            FileInfo fileInfo = fileInfoService.getFileInfoByFileIdAndUserId(fileId, webUserDto.getUserId());
+            return fileInfo == null ? null : fileInfo.getStatus();
         });
-
-        return emitter;
     }
 
     /**
@@ -354,6 +418,25 @@ public class FileInfoController extends CommonFileController {
         super.getImage(response, imageFolder, imageName, webUserDto.getUserId());
     }
 
+    /**
+     * 获取缩略图.
+     *
+     * @param session  HTTP 会话
+     * @param response HTTP 响应
+     * @param fileId   文件ID
+     * @param width    期望宽度，向上取整到配置的档位
+     * @param format   输出格式：jpg、png、webp
+     */
+    @RequestMapping("/getThumbnail/{fileId}")
+    @GlobalInterceptor(checkLogin = true)
+    @Operation(summary = "Get Thumbnail", description = "Get image thumbnail by width and format")
+    public void getThumbnail(HttpSession session, HttpServletResponse response,
+            @PathVariable("fileId") @VerifyParam(required = true) String fileId,
+            Integer width, String format) {
+        SessionWebUserDto webUserDto = getUserInfoFromSession(session);
+        super.getThumbnail(response, fileId, webUserDto.getUserId(), width, format);
+    }
+
     /**
      * 閺嶈宓佺憴鍡涱暥id閼惧嘲褰囩憴鍡涱暥閸掑棛澧?
      *
@@ -268,6 +268,29 @@ public class WebShareController extends CommonFileController {
         super.getImage(response, imageFolder, imageName, shareSessionDto.getShareUserId());
     }
 
+    /**
+     * 获取分享文件的缩略图.
+     *
+     * @param session  HTTP 会话
+     * @param request  HTTP 请求
+     * @param response HTTP 响应
+     * @param shareId  分享ID
+     * @param fileId   文件ID
+     * @param width    期望宽度，向上取整到配置的档位
+     * @param format   输出格式：jpg、png、webp
+     */
+    @RequestMapping("/getThumbnail/{shareId}/{fileId}")
+    @GlobalInterceptor(checkLogin = false, checkParams = true)
+    @RateLimit(time = 1, count = 30)
+    public void getThumbnail(HttpSession session, HttpServletRequest request, HttpServletResponse response,
+            @PathVariable("shareId") @VerifyParam(required = true) String shareId,
+            @PathVariable("fileId") @VerifyParam(required = true) String fileId,
+            Integer width, String format) {
+        checkReferer(request);
+        SessionShareDto shareSessionDto = checkShare(session, shareId);
+        super.getThumbnail(response, fileId, shareSessionDto.getShareUserId(), width, format);
+    }
+
     /**
      * 閼惧嘲褰囩憴鍡涱暥.
      *
@@ -38,6 +38,11 @@ public class Constants {
 
     public static final String M3U8_NAME = "index.m3u8";
 
+    /**
+     * HLS 切片时长（秒）.
+     */
+    public static final int HLS_SEGMENT_SECONDS = 30;
+
     public static final String CHECK_CODE_KEY = "check_code_key";
 
     public static final String CHECK_CODE_KEY_EMAIL = "check_code_key_email";
@@ -76,7 +81,10 @@ public class Constants {
 
     public static final String REDIS_KEY_SYS_SETTING = "easypan:syssetting:";
 
-    public static final String REDIS_KEY_USER_SPACE_USE = "easypan:user:spaceuse:";
+    /**
+     * 用户空间计数 Hash：used / total / reserved.
+     */
+    public static final String REDIS_KEY_USER_SPACE_USE = "easypan:user:space:";
 
     public static final String REDIS_KEY_USER_FILE_TEMP_SIZE = "easypan:user:file:temp:";
 
@@ -86,6 +94,16 @@ public class Constants {
 
     public static final String REDIS_KEY_USER_INFO = "easypan:user:info:";
 
-    public static final String REDIS_KEY_TENANT_STORAGE = "easypan:tenant:storage:";
+    /**
+     * 租户存储计数 Hash：used / quota / reserved.
+     */
+    public static final String REDIS_KEY_TENANT_STORAGE = "easypan:tenant:space:";
+
+    public static final String REDIS_KEY_TRANSFER_PROGRESS = "easypan:transfer:progress:";
+
+    /**
+     * 转码状态与进度事件的发布订阅频道.
+     */
+    public static final String REDIS_CHANNEL_TRANSFER_STATUS = "easypan:transfer:status";
 
 }
@@ -0,0 +1,41 @@
+package com.easypan.entity.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 批量上传结果.
+ *
+ * <p>单个条目校验失败（类型不符、超过大小上限、非法路径）不影响其他条目，记录在 {@code failedFiles} 中.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchUploadResultDto implements Serializable {
+
+    /**
+     * 成功上传的文件数.
+     */
+    private Integer uploadedCount;
+
+    /**
+     * 新建的目录数.
+     */
+    private Integer folderCount;
+
+    /**
+     * 成功上传的总字节数.
+     */
+    private Long totalSize;
+
+    /**
+     * 失败条目，格式为"路径: 原因".
+     */
+    private List<String> failedFiles;
+}
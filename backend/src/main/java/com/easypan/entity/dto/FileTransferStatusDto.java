@@ -9,4 +9,12 @@ import lombok.Data;
 public class FileTransferStatusDto {
     private String fileId;
     private Integer status;
+    /**
+     * 当前阶段的进度百分比，未开始时为 null.
+     */
+    private Integer progress;
+    /**
+     * 当前转码阶段，见 {@link com.easypan.entity.enums.TranscodeStageEnums}，结束后为 null.
+     */
+    private String stage;
 }
@@ -0,0 +1,35 @@
+package com.easypan.entity.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 分片合并进度 DTO.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MergeProgressDto implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 合并状态: merging / success / failed.
+     */
+    private String status;
+
+    /**
+     * 已完成服务端复制的分段数.
+     */
+    private Integer completedParts;
+
+    /**
+     * 分段总数.
+     */
+    private Integer totalParts;
+}
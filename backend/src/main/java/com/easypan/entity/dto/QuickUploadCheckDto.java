@@ -0,0 +1,30 @@
+package com.easypan.entity.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量秒传预检结果.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class QuickUploadCheckDto implements Serializable {
+
+    /**
+     * 可秒传的文件，MD5 到文件大小（字节）.
+     */
+    private Map<String, Long> available;
+
+    /**
+     * 需要正常上传的 MD5（含格式非法的输入）.
+     */
+    private List<String> missing;
+}
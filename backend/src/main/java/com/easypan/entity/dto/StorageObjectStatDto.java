@@ -0,0 +1,30 @@
+package com.easypan.entity.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 存储对象元信息 DTO，用于范围请求与条件请求.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StorageObjectStatDto implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 对象大小（字节）.
+     */
+    private long size;
+
+    /**
+     * 最后修改时间（毫秒），未知时为 -1.
+     */
+    private long lastModified;
+}
@@ -0,0 +1,21 @@
+package com.easypan.entity.dto;
+
+import lombok.Data;
+
+/**
+ * 转码状态事件，经 Redis 发布订阅分发到持有该文件 SSE 连接的节点.
+ */
+@Data
+public class TransferStatusEventDto {
+    private String userId;
+    private String fileId;
+    private Integer status;
+    /**
+     * 当前阶段的进度百分比，可为空.
+     */
+    private Integer progress;
+    /**
+     * 当前转码阶段，结束事件为空.
+     */
+    private String stage;
+}
@@ -0,0 +1,46 @@
+package com.easypan.entity.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 上传初始化结果.
+ *
+ * <p>服务端根据该用户历史分片的实测吞吐、往返时延与当前节点负载给出的分片方案，
+ * 分片大小与总分片数同时写入上传会话，后续分片按此校验.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UploadInitDto implements Serializable {
+
+    /**
+     * 文件ID.
+     */
+    private String fileId;
+
+    /**
+     * 建议分片大小（字节）.
+     */
+    private Long chunkSize;
+
+    /**
+     * 总分片数.
+     */
+    private Integer chunks;
+
+    /**
+     * 建议并发分片数.
+     */
+    private Integer parallelism;
+
+    /**
+     * 是否需要客户端计算完整 MD5（抽样指纹命中已有文件或未提供指纹时为 true）.
+     */
+    private Boolean fullHashRequired;
+}
@@ -0,0 +1,40 @@
+package com.easypan.entity.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 上传会话数据传输对象.
+ *
+ * <p>对应 Redis 中的上传会话 Hash，分片完成情况另存于位图.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UploadSessionDto implements Serializable {
+
+    /**
+     * 总分片数.
+     */
+    private Integer totalChunks;
+
+    /**
+     * 约定分片大小.
+     */
+    private Long chunkSize;
+
+    /**
+     * 已完成分片数.
+     */
+    private Integer completedChunks;
+
+    /**
+     * 已接收字节数.
+     */
+    private Long receivedBytes;
+}
@@ -0,0 +1,45 @@
+package com.easypan.entity.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 视频探测结果 DTO，取自 FFmpeg 对输入文件的描述.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class VideoProbeDto implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 时长（毫秒），未知时为空.
+     */
+    private Long durationMillis;
+
+    /**
+     * 显示宽度（已按旋转信息交换宽高）.
+     */
+    private Integer width;
+
+    /**
+     * 显示高度.
+     */
+    private Integer height;
+
+    /**
+     * 视频编码，如 h264、hevc.
+     */
+    private String videoCodec;
+
+    /**
+     * 音频编码，如 aac，无音轨时为空.
+     */
+    private String audioCodec;
+}
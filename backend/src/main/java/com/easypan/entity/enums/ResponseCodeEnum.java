@@ -45,6 +45,7 @@ public enum ResponseCodeEnum {
     CODE_635(635, "租户已被禁用", "请联系管理员"),
     CODE_636(636, "租户存储空间不足", "请联系管理员扩容"),
     CODE_637(637, "租户用户数量已达上限", "请联系管理员"),
+    CODE_638(638, "资源正在准备中", "请稍后重试"),
     CODE_901(901, "登录超时，请重新登录", "请刷新页面重新登录"),
     CODE_902(902, "分享链接不存在或已失效", "分享可能已过期或被取消"),
     CODE_903(903, "分享验证失效，请重新验证", "请重新输入提取码"),
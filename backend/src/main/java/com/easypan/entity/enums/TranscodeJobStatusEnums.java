@@ -0,0 +1,26 @@
+package com.easypan.entity.enums;
+
+/**
+ * 转码任务状态枚举.
+ */
+public enum TranscodeJobStatusEnums {
+    WAITING(0, "等待"),
+    RUNNING(1, "执行中"),
+    FAILED(2, "失败");
+
+    private Integer status;
+    private String desc;
+
+    TranscodeJobStatusEnums(Integer status, String desc) {
+        this.status = status;
+        this.desc = desc;
+    }
+
+    public Integer getStatus() {
+        return status;
+    }
+
+    public String getDesc() {
+        return desc;
+    }
+}
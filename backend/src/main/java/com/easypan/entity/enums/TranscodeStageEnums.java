@@ -0,0 +1,39 @@
+package com.easypan.entity.enums;
+
+/**
+ * 转码阶段枚举，按执行顺序排列.
+ */
+public enum TranscodeStageEnums {
+    MERGE("合并分片"),
+    STORE("上传存储"),
+    COVER("生成封面"),
+    HLS("视频切片");
+
+    private String desc;
+
+    TranscodeStageEnums(String desc) {
+        this.desc = desc;
+    }
+
+    public String getDesc() {
+        return desc;
+    }
+
+    /**
+     * 判断该阶段是否已在之前的执行中完成.
+     *
+     * @param lastCompleted 最后完成的阶段名称，可为空
+     * @return 是否已完成
+     */
+    public boolean isCompletedBy(String lastCompleted) {
+        if (lastCompleted == null) {
+            return false;
+        }
+        for (TranscodeStageEnums stage : values()) {
+            if (stage.name().equals(lastCompleted)) {
+                return stage.ordinal() >= ordinal();
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,30 @@
+package com.easypan.entity.po;
+
+import com.mybatisflex.annotation.Id;
+import com.mybatisflex.annotation.KeyType;
+import com.mybatisflex.annotation.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 文件块清单实体类.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("file_block_manifest")
+public class FileBlockManifest implements Serializable {
+
+    @Id(keyType = KeyType.None)
+    private String filePath;
+
+    @Id(keyType = KeyType.None)
+    private Integer seq;
+
+    private String blockHash;
+
+    private Integer blockSize;
+}
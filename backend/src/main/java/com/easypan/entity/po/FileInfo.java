@@ -38,6 +38,11 @@ public class FileInfo implements Serializable {
      */
     private String fileMd5;
 
+    /**
+     * 抽样指纹（文件大小与头、中、尾块的 MD5），秒传前快速判重.
+     */
+    private String fileSampleHash;
+
     /**
      * 父级ID.
      */
@@ -63,6 +68,21 @@ public class FileInfo implements Serializable {
      */
     private String filePath;
 
+    /**
+     * 视频时长（毫秒），转码时探测.
+     */
+    private Long videoDuration;
+
+    /**
+     * 视频显示宽度.
+     */
+    private Integer videoWidth;
+
+    /**
+     * 视频显示高度.
+     */
+    private Integer videoHeight;
+
     /**
      * 创建时间.
      */
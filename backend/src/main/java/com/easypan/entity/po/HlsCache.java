@@ -0,0 +1,50 @@
+package com.easypan.entity.po;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.mybatisflex.annotation.Id;
+import com.mybatisflex.annotation.KeyType;
+import com.mybatisflex.annotation.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 按需切片记录实体类.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("hls_cache")
+public class HlsCache implements Serializable {
+
+    /**
+     * 切片目录的存储路径.
+     */
+    @Id(keyType = KeyType.None)
+    private String hlsPath;
+
+    /**
+     * 0:未切片 1:已切片.
+     */
+    private Integer status;
+
+    /**
+     * 切片总大小（字节）.
+     */
+    private Long sizeBytes;
+
+    /**
+     * 最后播放时间.
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date lastAccessTime;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date createTime;
+}
@@ -0,0 +1,40 @@
+package com.easypan.entity.po;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.mybatisflex.annotation.Id;
+import com.mybatisflex.annotation.KeyType;
+import com.mybatisflex.annotation.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 去重存储块实体类.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("storage_block")
+public class StorageBlock implements Serializable {
+
+    @Id(keyType = KeyType.None)
+    private String blockHash;
+
+    private Integer blockSize;
+
+    private Long refCount;
+
+    private Boolean stored;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date deleteAfter;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date createTime;
+}
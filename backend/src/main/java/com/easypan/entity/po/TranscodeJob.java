@@ -0,0 +1,66 @@
+package com.easypan.entity.po;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.mybatisflex.annotation.Id;
+import com.mybatisflex.annotation.KeyType;
+import com.mybatisflex.annotation.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 转码任务实体类.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("transcode_job")
+public class TranscodeJob implements Serializable {
+
+    @Id(keyType = KeyType.None)
+    private String fileId;
+
+    @Id(keyType = KeyType.None)
+    private String userId;
+
+    private String tenantId;
+
+    /**
+     * 转码队列，见 {@link com.easypan.component.TranscodeScheduler.Lane}.
+     */
+    private String lane;
+
+    private Long fileSize;
+
+    /**
+     * 状态，见 {@link com.easypan.entity.enums.TranscodeJobStatusEnums}.
+     */
+    private Integer status;
+
+    /**
+     * 最后完成的阶段，见 {@link com.easypan.entity.enums.TranscodeStageEnums}.
+     */
+    private String stage;
+
+    private Integer attempts;
+
+    private String lastError;
+
+    private String leaseOwner;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date leaseUntil;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date createTime;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date updateTime;
+}
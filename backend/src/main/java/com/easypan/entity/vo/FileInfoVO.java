@@ -41,6 +41,21 @@ public class FileInfoVO {
      */
     private String fileCover;
 
+    /**
+     * 视频时长（毫秒）.
+     */
+    private Long videoDuration;
+
+    /**
+     * 视频显示宽度.
+     */
+    private Integer videoWidth;
+
+    /**
+     * 视频显示高度.
+     */
+    private Integer videoHeight;
+
     /**
      * 最后更新时间.
      */
@@ -0,0 +1,38 @@
+package com.easypan.exception;
+
+import com.easypan.entity.enums.ResponseCodeEnum;
+
+/**
+ * 限流异常，携带建议的重试等待时间，由全局异常处理器写入 {@code Retry-After} 响应头.
+ */
+public class RateLimitedException extends BusinessException {
+
+    private final long retryAfterSeconds;
+
+    /**
+     * 构造函数.
+     *
+     * @param codeEnum          响应码枚举
+     * @param retryAfterSeconds 建议重试等待秒数
+     */
+    public RateLimitedException(ResponseCodeEnum codeEnum, long retryAfterSeconds) {
+        super(codeEnum);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * 构造函数，使用自定义消息.
+     *
+     * @param codeEnum          响应码枚举
+     * @param message           异常消息
+     * @param retryAfterSeconds 建议重试等待秒数
+     */
+    public RateLimitedException(ResponseCodeEnum codeEnum, String message, long retryAfterSeconds) {
+        super(codeEnum.getCode(), message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,19 @@
+package com.easypan.exception;
+
+import com.easypan.entity.enums.ResponseCodeEnum;
+
+/**
+ * 资源暂不可用异常，由全局异常处理器返回 503 并写入 {@code Retry-After} 响应头，客户端稍后重试而不占用请求线程等待.
+ */
+public class ServiceUnavailableException extends RateLimitedException {
+
+    /**
+     * 构造函数.
+     *
+     * @param message           异常消息
+     * @param retryAfterSeconds 建议重试等待秒数
+     */
+    public ServiceUnavailableException(String message, long retryAfterSeconds) {
+        super(ResponseCodeEnum.CODE_638, message, retryAfterSeconds);
+    }
+}
@@ -0,0 +1,116 @@
+package com.easypan.filter;
+
+import com.easypan.component.UploadRateLimiter;
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.dto.SessionWebUserDto;
+import com.easypan.entity.enums.ResponseCodeEnum;
+import com.easypan.entity.vo.ResponseVO;
+import com.easypan.exception.RateLimitedException;
+import com.easypan.utils.JsonUtils;
+import jakarta.annotation.Resource;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * 分片上传准入过滤器.
+ *
+ * <p>控制器拿到 {@link org.springframework.web.multipart.MultipartFile} 时请求体已经被完整接收并落盘，
+ * 那时再限流已经来不及. 这里在 DispatcherServlet 解析 multipart 之前按 {@code Content-Length} 申请额度，
+ * 被拒绝的请求直接返回限流响应，请求体不再读取. 过滤器排在 Spring Security 之后，JWT 用户已写入安全上下文.
+ *
+ * <p>未登录或没有 {@code Content-Length} 的请求直接放行，由后续的登录校验与分片参数校验处理.
+ */
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER + 1)
+@Slf4j
+public class UploadAdmissionFilter extends OncePerRequestFilter {
+
+    private static final String UPLOAD_PATH_SUFFIX = "/file/uploadFile";
+
+    private static final String TENANT_HEADER = "X-Tenant-Id";
+
+    private static final String DEFAULT_TENANT = "default";
+
+    @Resource
+    private UploadRateLimiter uploadRateLimiter;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().endsWith(UPLOAD_PATH_SUFFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+        long contentLength = request.getContentLengthLong();
+        // 与 GlobalOperationAspect 一致，JWT 优先于会话
+        String userId = authenticatedUserId();
+        SessionWebUserDto sessionUser = userId == null ? sessionUser(request) : null;
+        if (sessionUser != null) {
+            userId = sessionUser.getUserId();
+        }
+        if (contentLength > 0 && StringUtils.hasText(userId)) {
+            try {
+                uploadRateLimiter.acquire(userId, resolveTenantId(request, sessionUser), contentLength);
+            } catch (RateLimitedException e) {
+                writeRateLimited(response, e);
+                return;
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private SessionWebUserDto sessionUser(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session != null && session.getAttribute(Constants.SESSION_KEY) instanceof SessionWebUserDto dto) {
+            return dto;
+        }
+        return null;
+    }
+
+    private String authenticatedUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof String userId) {
+            return userId;
+        }
+        return null;
+    }
+
+    /**
+     * 优先取会话中的租户，其次取请求头；租户与用户不符的请求随后会被 GlobalOperationAspect 拒绝.
+     */
+    private String resolveTenantId(HttpServletRequest request, SessionWebUserDto sessionUser) {
+        if (sessionUser != null && StringUtils.hasText(sessionUser.getTenantId())) {
+            return sessionUser.getTenantId();
+        }
+        String tenantId = request.getHeader(TENANT_HEADER);
+        return StringUtils.hasText(tenantId) ? tenantId.trim() : DEFAULT_TENANT;
+    }
+
+    private void writeRateLimited(HttpServletResponse response, RateLimitedException e) throws IOException {
+        log.debug("上传请求在读取请求体前被限流: retryAfter={}s", e.getRetryAfterSeconds());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+        response.setContentType("application/json;charset=UTF-8");
+        ResponseVO<Void> body = ResponseVO.<Void>builder()
+                .status("error")
+                .code(e.getCode())
+                .info(e.getMessage())
+                .suggestion(ResponseCodeEnum.CODE_610.getSuggestion())
+                .build();
+        response.getWriter().write(JsonUtils.convertObj2Json(body));
+    }
+}
@@ -0,0 +1,47 @@
+package com.easypan.filter;
+
+import com.easypan.service.UploadTuningService;
+import jakarta.annotation.Resource;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * 分片上传计时过滤器.
+ *
+ * <p>multipart 请求体在进入控制器之前已被解析完毕，只有在过滤器中才能拿到请求真正到达的时间，
+ * 用于计算分片的实测吞吐；同时统计本节点在途的分片请求数，作为分片协商的负载参考.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class UploadTimingFilter extends OncePerRequestFilter {
+
+    private static final String UPLOAD_PATH_SUFFIX = "/file/uploadFile";
+
+    @Resource
+    private UploadTuningService uploadTuningService;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().endsWith(UPLOAD_PATH_SUFFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+        request.setAttribute(UploadTuningService.REQUEST_START_ATTRIBUTE, System.currentTimeMillis());
+        uploadTuningService.uploadStarted();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            uploadTuningService.uploadFinished();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.easypan.mappers;
+
+import com.easypan.entity.po.FileBlockManifest;
+import com.mybatisflex.core.BaseMapper;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+/**
+ * 文件块清单数据库操作接口.
+ */
+@Mapper
+public interface FileBlockManifestMapper extends BaseMapper<FileBlockManifest> {
+
+    @Insert("<script>"
+            + "INSERT INTO file_block_manifest (file_path, seq, block_hash, block_size) VALUES "
+            + "<foreach collection='list' item='item' separator=','>"
+            + "(#{item.filePath}, #{item.seq}, #{item.blockHash}, #{item.blockSize})"
+            + "</foreach>"
+            + "</script>")
+    int insertManifest(@Param("list") List<FileBlockManifest> list);
+
+    @Select("SELECT file_path, seq, block_hash, block_size FROM file_block_manifest "
+            + "WHERE file_path = #{filePath} ORDER BY seq")
+    List<FileBlockManifest> selectByFilePath(@Param("filePath") String filePath);
+
+    @Delete("DELETE FROM file_block_manifest WHERE file_path = #{filePath}")
+    int deleteByFilePath(@Param("filePath") String filePath);
+}
@@ -8,6 +8,7 @@ import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Insert;
 import com.mybatisflex.core.BaseMapper;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -21,10 +22,10 @@ public interface FileInfoMapper extends BaseMapper<FileInfo> {
 
     @Insert("<script>"
             + "<foreach collection='list' item='item' separator=';'>"
-            + "INSERT INTO file_info (file_id, user_id, file_md5, file_pid, file_name, file_path, "
+            + "INSERT INTO file_info (file_id, user_id, file_md5, file_sample_hash, file_pid, file_name, file_path, "
             + "file_size, file_cover, file_category, file_type, folder_type, status, del_flag, "
             + "recovery_time, create_time, last_update_time) "
-            + "VALUES (#{item.fileId}, #{item.userId}, #{item.fileMd5}, #{item.filePid}, "
+            + "VALUES (#{item.fileId}, #{item.userId}, #{item.fileMd5}, #{item.fileSampleHash}, #{item.filePid}, "
             + "#{item.fileName}, #{item.filePath}, #{item.fileSize}, #{item.fileCover}, "
             + "#{item.fileCategory}, #{item.fileType}, #{item.folderType}, #{item.status}, "
             + "#{item.delFlag}, #{item.recoveryTime}, #{item.createTime}, #{item.lastUpdateTime}) "
@@ -41,6 +42,10 @@ public interface FileInfoMapper extends BaseMapper<FileInfo> {
             + "SET status = #{bean.status}, "
             + "file_size = #{bean.fileSize}, "
             + "file_cover = #{bean.fileCover}, "
+            + "file_sample_hash = COALESCE(#{bean.fileSampleHash}, file_sample_hash), "
+            + "video_duration = COALESCE(#{bean.videoDuration}, video_duration), "
+            + "video_width = COALESCE(#{bean.videoWidth}, video_width), "
+            + "video_height = COALESCE(#{bean.videoHeight}, video_height), "
             + "recovery_time = COALESCE(#{bean.recoveryTime}, recovery_time), "
             + "last_update_time = CURRENT_TIMESTAMP "
             + "WHERE file_id = #{fileId} AND user_id = #{userId} AND status = #{oldStatus}")
@@ -150,13 +155,54 @@ public interface FileInfoMapper extends BaseMapper<FileInfo> {
             @Param("cursorId") String cursorId,
             @Param("pageSize") int pageSize);
 
-    @Select("SELECT file_id, file_size, file_path, file_md5, user_id, file_cover "
+    @Select("SELECT file_id, file_size, file_path, file_md5, file_sample_hash, user_id, file_cover "
             + "FROM file_info "
             + "WHERE file_md5 = #{fileMd5} AND status = #{status} "
             + "LIMIT 1")
     FileInfo selectOneByMd5AndStatus(@Param("fileMd5") String fileMd5,
             @Param("status") Integer status);
 
+    /**
+     * 按 MD5 批量查询可秒传的源文件，每个 MD5 只返回一条（走 idx_file_md5）.
+     */
+    @Select("<script>"
+            + "SELECT DISTINCT ON (file_md5) file_md5, file_size "
+            + "FROM file_info "
+            + "WHERE status = #{status} AND file_size IS NOT NULL AND file_md5 IN "
+            + "<foreach collection='fileMd5List' item='md5' open='(' separator=',' close=')'>#{md5}</foreach>"
+            + "</script>")
+    List<FileInfo> selectByMd5ListAndStatus(@Param("fileMd5List") Collection<String> fileMd5List,
+            @Param("status") Integer status);
+
+    /**
+     * 是否存在抽样指纹相同的可用文件（走 idx_file_sample_hash）.
+     */
+    @Select("SELECT EXISTS (SELECT 1 FROM file_info WHERE file_sample_hash = #{sampleHash} AND status = #{status})")
+    boolean existsBySampleHashAndStatus(@Param("sampleHash") String sampleHash, @Param("status") Integer status);
+
+    /**
+     * 是否存在大小相同但还没有抽样指纹的可用文件（走 idx_file_info_unsampled_size）.
+     */
+    @Select("SELECT EXISTS (SELECT 1 FROM file_info WHERE file_size = #{fileSize} AND file_sample_hash IS NULL "
+            + "AND status = #{status} AND folder_type = 0)")
+    boolean existsUnsampledBySize(@Param("fileSize") Long fileSize, @Param("status") Integer status);
+
+    /**
+     * 按存储路径顺序查询还没有抽样指纹的可用文件，同一路径的多条引用只返回一条（走 idx_file_info_unsampled_path）.
+     */
+    @Select("SELECT DISTINCT ON (file_path) file_path, file_size FROM file_info "
+            + "WHERE file_sample_hash IS NULL AND status = #{status} AND folder_type = 0 "
+            + "AND file_path > #{afterPath} ORDER BY file_path LIMIT #{limit}")
+    List<FileInfo> selectUnsampledAfterPath(@Param("afterPath") String afterPath, @Param("status") Integer status,
+            @Param("limit") int limit);
+
+    /**
+     * 为同一存储路径的所有引用补写抽样指纹，已有指纹的不覆盖.
+     */
+    @Update("UPDATE file_info SET file_sample_hash = #{sampleHash} "
+            + "WHERE file_path = #{filePath} AND file_sample_hash IS NULL")
+    int updateSampleHashByPath(@Param("filePath") String filePath, @Param("sampleHash") String sampleHash);
+
     @Select("SELECT DISTINCT file_md5 FROM file_info WHERE file_md5 IS NOT NULL")
     List<String> selectAllMd5();
 
@@ -0,0 +1,98 @@
+package com.easypan.mappers;
+
+import com.easypan.entity.po.HlsCache;
+import com.mybatisflex.core.BaseMapper;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 按需切片记录数据库操作接口.
+ *
+ * <p>状态：0 未切片、1 已切片、2 淘汰中. 淘汰时先从 1 改为 2，删除切片目录后改回 0，再次播放时重新切片；
+ * 切片完成只能从 0 改为 1. 淘汰中的 {@code last_access_time} 记录开始淘汰的时间.
+ */
+@Mapper
+public interface HlsCacheMapper extends BaseMapper<HlsCache> {
+
+    @Insert("INSERT INTO hls_cache (hls_path, status, size_bytes, last_access_time, create_time) "
+            + "VALUES (#{hlsPath}, 0, 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP) "
+            + "ON CONFLICT (hls_path) DO NOTHING")
+    int insertPending(@Param("hlsPath") String hlsPath);
+
+    @Select("SELECT * FROM hls_cache WHERE hls_path = #{hlsPath}")
+    HlsCache selectByPath(@Param("hlsPath") String hlsPath);
+
+    /**
+     * 切片完成，只在未切片状态下更新.
+     *
+     * @return 0 表示记录已删除或不是未切片状态
+     */
+    @Update("UPDATE hls_cache SET status = 1, size_bytes = #{sizeBytes}, last_access_time = CURRENT_TIMESTAMP "
+            + "WHERE hls_path = #{hlsPath} AND status = 0")
+    int markReady(@Param("hlsPath") String hlsPath, @Param("sizeBytes") long sizeBytes);
+
+    /**
+     * 刷新最后播放时间，距上次刷新不足 {@code intervalSeconds} 时不写，避免每次播放都更新.
+     */
+    @Update("UPDATE hls_cache SET last_access_time = CURRENT_TIMESTAMP "
+            + "WHERE hls_path = #{hlsPath} AND status = 1 "
+            + "AND last_access_time < CURRENT_TIMESTAMP - #{intervalSeconds} * INTERVAL '1 second'")
+    int touch(@Param("hlsPath") String hlsPath, @Param("intervalSeconds") long intervalSeconds);
+
+    @Select("SELECT COALESCE(SUM(size_bytes), 0) FROM hls_cache WHERE status = 1")
+    long sumReadySize();
+
+    /**
+     * 最久未播放、且空闲超过 {@code idleSeconds} 的已切片记录（走 idx_hls_cache_lru）.
+     */
+    @Select("SELECT * FROM hls_cache WHERE status = 1 "
+            + "AND last_access_time < CURRENT_TIMESTAMP - #{idleSeconds} * INTERVAL '1 second' "
+            + "ORDER BY last_access_time LIMIT #{limit}")
+    List<HlsCache> selectEvictable(@Param("idleSeconds") long idleSeconds, @Param("limit") int limit);
+
+    /**
+     * 标记为淘汰中，期间被重新播放过则不更新.
+     *
+     * @return 0 表示不再满足淘汰条件
+     */
+    @Update("UPDATE hls_cache SET status = 2, last_access_time = CURRENT_TIMESTAMP "
+            + "WHERE hls_path = #{hlsPath} AND status = 1 "
+            + "AND last_access_time < CURRENT_TIMESTAMP - #{idleSeconds} * INTERVAL '1 second'")
+    int markEvicting(@Param("hlsPath") String hlsPath, @Param("idleSeconds") long idleSeconds);
+
+    /**
+     * 切片目录已删除，淘汰中改回未切片.
+     */
+    @Update("UPDATE hls_cache SET status = 0, size_bytes = 0 WHERE hls_path = #{hlsPath} AND status = 2")
+    int finishEviction(@Param("hlsPath") String hlsPath);
+
+    /**
+     * 淘汰中超过 {@code staleSeconds} 的记录，淘汰节点可能已退出.
+     */
+    @Select("SELECT * FROM hls_cache WHERE status = 2 "
+            + "AND last_access_time < CURRENT_TIMESTAMP - #{staleSeconds} * INTERVAL '1 second' LIMIT #{limit}")
+    List<HlsCache> selectStaleEvicting(@Param("staleSeconds") long staleSeconds, @Param("limit") int limit);
+
+    /**
+     * 接手遗留的淘汰，重置开始时间.
+     *
+     * @return 0 表示已被其他节点接手或已完成
+     */
+    @Update("UPDATE hls_cache SET last_access_time = CURRENT_TIMESTAMP "
+            + "WHERE hls_path = #{hlsPath} AND status = 2 "
+            + "AND last_access_time < CURRENT_TIMESTAMP - #{staleSeconds} * INTERVAL '1 second'")
+    int restartEviction(@Param("hlsPath") String hlsPath, @Param("staleSeconds") long staleSeconds);
+
+    @Delete("<script>"
+            + "DELETE FROM hls_cache WHERE hls_path IN "
+            + "<foreach collection='hlsPaths' item='p' open='(' separator=',' close=')'>#{p}</foreach>"
+            + "</script>")
+    int deleteByPaths(@Param("hlsPaths") Collection<String> hlsPaths);
+}
@@ -0,0 +1,82 @@
+package com.easypan.mappers;
+
+import com.easypan.entity.po.StorageBlock;
+import com.mybatisflex.core.BaseMapper;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+
+/**
+ * 去重存储块数据库操作接口.
+ *
+ * <p>引用计数的增减都是单条语句，由行锁保证原子；引用归零的块只记墓碑（{@code delete_after}），
+ * 块对象由回收任务在持有行锁的事务内删除，墓碑期间再次引用会清空墓碑并取消回收.
+ */
+@Mapper
+public interface StorageBlockMapper extends BaseMapper<StorageBlock> {
+
+    /**
+     * 块记录存在时增加 1 次引用并清除墓碑.
+     *
+     * @return 块对象是否已写入；块记录不存在时返回 null
+     */
+    @Select("UPDATE storage_block SET ref_count = ref_count + 1, delete_after = NULL "
+            + "WHERE block_hash = #{blockHash} RETURNING stored")
+    @Options(flushCache = Options.FlushCachePolicy.TRUE, useCache = false)
+    Boolean retainExisting(@Param("blockHash") String blockHash);
+
+    /**
+     * 块不存在时插入并计 1 次引用，块对象待写入.
+     *
+     * @return 1 表示新块，0 表示块已存在
+     */
+    @Insert("INSERT INTO storage_block (block_hash, block_size, ref_count, stored, create_time) "
+            + "VALUES (#{blockHash}, #{blockSize}, 1, FALSE, CURRENT_TIMESTAMP) "
+            + "ON CONFLICT (block_hash) DO NOTHING")
+    int insertIfAbsent(@Param("blockHash") String blockHash, @Param("blockSize") int blockSize);
+
+    @Update("UPDATE storage_block SET stored = TRUE WHERE block_hash = #{blockHash}")
+    int markStored(@Param("blockHash") String blockHash);
+
+    /**
+     * 减少 1 次引用，归零时记墓碑.
+     *
+     * @param blockHash    块哈希
+     * @param graceSeconds 墓碑宽限期（秒）
+     * @return 更新行数
+     */
+    @Update("UPDATE storage_block SET ref_count = ref_count - 1, "
+            + "delete_after = CASE WHEN ref_count <= 1 "
+            + "THEN CURRENT_TIMESTAMP + #{graceSeconds} * INTERVAL '1 second' ELSE NULL END "
+            + "WHERE block_hash = #{blockHash}")
+    int releaseRef(@Param("blockHash") String blockHash, @Param("graceSeconds") long graceSeconds);
+
+    /**
+     * 查询墓碑已到期的块.
+     *
+     * @param limit 数量上限
+     * @return 块哈希列表
+     */
+    @Select("SELECT block_hash FROM storage_block WHERE delete_after < CURRENT_TIMESTAMP AND ref_count <= 0 "
+            + "ORDER BY delete_after LIMIT #{limit}")
+    List<String> selectExpired(@Param("limit") int limit);
+
+    /**
+     * 在当前事务内锁定仍可回收的块，已被其他事务锁定的跳过.
+     *
+     * @return 块哈希；已被再次引用、已被回收或正被锁定时返回 null
+     */
+    @Select("SELECT block_hash FROM storage_block WHERE block_hash = #{blockHash} "
+            + "AND delete_after < CURRENT_TIMESTAMP AND ref_count <= 0 FOR UPDATE SKIP LOCKED")
+    @Options(flushCache = Options.FlushCachePolicy.TRUE, useCache = false)
+    String lockExpired(@Param("blockHash") String blockHash);
+
+    @Delete("DELETE FROM storage_block WHERE block_hash = #{blockHash}")
+    int deleteBlock(@Param("blockHash") String blockHash);
+}
@@ -0,0 +1,105 @@
+package com.easypan.mappers;
+
+import com.easypan.entity.po.TranscodeJob;
+import com.mybatisflex.core.BaseMapper;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 转码任务数据库操作接口.
+ *
+ * <p>状态取值见 {@link com.easypan.entity.enums.TranscodeJobStatusEnums}：0 等待、1 执行中、2 失败.
+ */
+@Mapper
+public interface TranscodeJobMapper extends BaseMapper<TranscodeJob> {
+
+    /**
+     * 创建任务，创建节点同时持有租约，节点存活期间任务不会被其他节点接管.
+     */
+    @Insert("INSERT INTO transcode_job (file_id, user_id, tenant_id, lane, file_size, status, attempts, "
+            + "lease_owner, lease_until, create_time, update_time) "
+            + "VALUES (#{job.fileId}, #{job.userId}, #{job.tenantId}, #{job.lane}, #{job.fileSize}, 0, 0, "
+            + "#{job.leaseOwner}, CURRENT_TIMESTAMP + #{leaseSeconds} * INTERVAL '1 second', "
+            + "CURRENT_TIMESTAMP, CURRENT_TIMESTAMP) "
+            + "ON CONFLICT (file_id, user_id) DO NOTHING")
+    int insertJob(@Param("job") TranscodeJob job, @Param("leaseSeconds") long leaseSeconds);
+
+    @Select("SELECT * FROM transcode_job WHERE file_id = #{fileId} AND user_id = #{userId}")
+    TranscodeJob selectByFileIdAndUserId(@Param("fileId") String fileId, @Param("userId") String userId);
+
+    /**
+     * 领取任务：租约属于本节点或已过期时才能领取，成功后执行次数加一.
+     *
+     * @return 1 表示领取成功
+     */
+    @Update("UPDATE transcode_job SET status = 1, lease_owner = #{owner}, "
+            + "lease_until = CURRENT_TIMESTAMP + #{leaseSeconds} * INTERVAL '1 second', "
+            + "attempts = attempts + 1, update_time = CURRENT_TIMESTAMP "
+            + "WHERE file_id = #{fileId} AND user_id = #{userId} AND status IN (0, 1) "
+            + "AND (lease_owner = #{owner} OR lease_until <= CURRENT_TIMESTAMP)")
+    int claim(@Param("fileId") String fileId, @Param("userId") String userId, @Param("owner") String owner,
+            @Param("leaseSeconds") long leaseSeconds);
+
+    /**
+     * 续约本节点排队中与执行中的任务.
+     */
+    @Update("<script>"
+            + "UPDATE transcode_job SET lease_until = CURRENT_TIMESTAMP + #{leaseSeconds} * INTERVAL '1 second' "
+            + "WHERE lease_owner = #{owner} AND status IN (0, 1) AND file_id IN "
+            + "<foreach collection='fileIds' item='fid' open='(' separator=',' close=')'>#{fid}</foreach>"
+            + "</script>")
+    int renewLeases(@Param("owner") String owner, @Param("fileIds") Collection<String> fileIds,
+            @Param("leaseSeconds") long leaseSeconds);
+
+    /**
+     * 记录已完成的阶段，租约已被其他节点接管时不更新.
+     *
+     * @return 0 表示租约已丢失
+     */
+    @Update("UPDATE transcode_job SET stage = #{stage}, update_time = CURRENT_TIMESTAMP "
+            + "WHERE file_id = #{fileId} AND user_id = #{userId} AND lease_owner = #{owner} AND status = 1")
+    int updateStage(@Param("fileId") String fileId, @Param("userId") String userId, @Param("owner") String owner,
+            @Param("stage") String stage);
+
+    /**
+     * 失败后等待重试，{@code delaySeconds} 后可再次领取.
+     */
+    @Update("UPDATE transcode_job SET status = 0, last_error = #{error}, "
+            + "lease_until = CURRENT_TIMESTAMP + #{delaySeconds} * INTERVAL '1 second', "
+            + "update_time = CURRENT_TIMESTAMP "
+            + "WHERE file_id = #{fileId} AND user_id = #{userId} AND lease_owner = #{owner}")
+    int markRetry(@Param("fileId") String fileId, @Param("userId") String userId, @Param("owner") String owner,
+            @Param("error") String error, @Param("delaySeconds") long delaySeconds);
+
+    /**
+     * 重试次数用尽，保留记录供排查.
+     */
+    @Update("UPDATE transcode_job SET status = 2, last_error = #{error}, lease_owner = NULL, "
+            + "update_time = CURRENT_TIMESTAMP "
+            + "WHERE file_id = #{fileId} AND user_id = #{userId} AND lease_owner = #{owner}")
+    int markFailed(@Param("fileId") String fileId, @Param("userId") String userId, @Param("owner") String owner,
+            @Param("error") String error);
+
+    @Delete("DELETE FROM transcode_job WHERE file_id = #{fileId} AND user_id = #{userId}")
+    int deleteByFileIdAndUserId(@Param("fileId") String fileId, @Param("userId") String userId);
+
+    /**
+     * 查询租约已过期（节点宕机或重试等待结束）的任务.
+     */
+    @Select("SELECT * FROM transcode_job WHERE status IN (0, 1) AND lease_until <= CURRENT_TIMESTAMP "
+            + "ORDER BY lease_until LIMIT #{limit}")
+    List<TranscodeJob> selectRecoverable(@Param("limit") int limit);
+
+    /**
+     * 未完成任务的临时分片目录名（{userId}{fileId}），清理孤儿分片时跳过.
+     */
+    @Select("SELECT user_id || file_id FROM transcode_job WHERE status IN (0, 1)")
+    List<String> selectActiveTempFolderNames();
+}
@@ -0,0 +1,534 @@
+package com.easypan.service;
+
+import com.easypan.component.TenantContextHolder;
+import com.easypan.component.UploadRateLimiter;
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.dto.BatchUploadResultDto;
+import com.easypan.entity.dto.SessionWebUserDto;
+import com.easypan.entity.enums.DateTimePatternEnum;
+import com.easypan.entity.enums.FileDelFlagEnums;
+import com.easypan.entity.enums.FileFolderTypeEnums;
+import com.easypan.entity.enums.FileStatusEnums;
+import com.easypan.entity.enums.FileTypeEnums;
+import com.easypan.entity.enums.ResponseCodeEnum;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.exception.BusinessException;
+import com.easypan.exception.RateLimitedException;
+import com.easypan.mappers.FileInfoMapper;
+import com.easypan.strategy.StorageStrategy;
+import com.easypan.utils.DateUtil;
+import com.easypan.utils.FileTypeValidator;
+import com.easypan.utils.SampledFingerprint;
+import com.easypan.utils.StringTools;
+import com.easypan.utils.TarStreamReader;
+import com.mybatisflex.core.query.QueryWrapper;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+
+import static com.easypan.entity.po.table.FileInfoTableDef.FILE_INFO;
+
+/**
+ * 批量小文件上传服务.
+ *
+ * <p>一次请求携带整个目录：tar 归档以原始请求体流式读取，边读边解包；multipart 请求则逐个读取
+ * {@code files} 部件，部件文件名即相对路径. 每个条目在写盘的同一遍读取中完成魔数校验与 MD5 计算，
+ * 条目路径中的目录按需复用同名目录或新建；所有记录在流读完后通过一次批量写入入库.
+ *
+ * <p>相比逐个调用 uploadFile，空间按条目内容字节数预留：multipart 的部件大小事先已知，一次预留；tar 请求体中的
+ * 头部、PAX 记录与块填充不占用空间，不能作为预留依据，预留随条目逐个扩大. 限流按条目字节数扣减本地租约，
+ * 额度不足时暂停读取而不是拒绝整批；非媒体文件直接写入最终位置并由虚拟线程并发写入存储，
+ * 图片与视频仍走转码流程生成封面.
+ */
+@Service
+@Slf4j
+public class BatchUploadService {
+
+    private static final int HEADER_PEEK_SIZE = 16;
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 限流等待的累计上限，超过后放弃本次批量上传.
+     */
+    private static final long MAX_THROTTLE_WAIT_SECONDS = 60;
+
+    @Resource
+    private FileInfoService fileInfoService;
+
+    @Resource
+    private FileInfoMapper fileInfoMapper;
+
+    @Resource
+    private QuotaReservationService quotaReservationService;
+
+    @Resource
+    private UploadRateLimiter uploadRateLimiter;
+
+    @Resource
+    private AppConfig appConfig;
+
+    @Resource
+    @Qualifier("storageFailoverService")
+    private StorageStrategy storageStrategy;
+
+    @Resource
+    @Qualifier("virtualThreadExecutor")
+    private AsyncTaskExecutor virtualThreadExecutor;
+
+    @Value("${app.storage.type:local}")
+    private String storageType;
+
+    @Value("${app.upload.batch.max-entries:50000}")
+    private int maxEntries = 50000;
+
+    @Value("${app.upload.batch.max-entry-size:16777216}")
+    private long maxEntrySize = 16L * 1024 * 1024;
+
+    @Value("${app.upload.batch.store-parallelism:16}")
+    private int storeParallelism = 16;
+
+    /**
+     * 上传 tar 归档.
+     *
+     * @param webUserDto 用户信息
+     * @param filePid    目标目录ID
+     * @param body       请求体
+     * @return 上传结果
+     */
+    public BatchUploadResultDto uploadTar(SessionWebUserDto webUserDto, String filePid, InputStream body) {
+        TarStreamReader reader = new TarStreamReader(body);
+        return upload(webUserDto, filePid, -1L, () -> {
+            TarStreamReader.Entry entry = reader.nextEntry();
+            return entry == null ? null : new BatchEntry(entry.name(), entry.size(), entry.directory(), reader);
+        });
+    }
+
+    /**
+     * 上传 multipart 中的多个文件部件.
+     *
+     * @param webUserDto 用户信息
+     * @param filePid    目标目录ID
+     * @param files      文件部件，文件名为相对路径
+     * @return 上传结果
+     */
+    public BatchUploadResultDto uploadParts(SessionWebUserDto webUserDto, String filePid, List<MultipartFile> files) {
+        long payloadSize = files.stream().mapToLong(MultipartFile::getSize).sum();
+        Iterator<MultipartFile> iterator = files.iterator();
+        InputStream[] current = new InputStream[1];
+        return upload(webUserDto, filePid, payloadSize, () -> {
+            if (current[0] != null) {
+                current[0].close();
+                current[0] = null;
+            }
+            if (!iterator.hasNext()) {
+                return null;
+            }
+            MultipartFile file = iterator.next();
+            current[0] = file.getInputStream();
+            return new BatchEntry(file.getOriginalFilename(), file.getSize(), false, current[0]);
+        });
+    }
+
+    private BatchUploadResultDto upload(SessionWebUserDto webUserDto, String filePid, long payloadSize,
+            EntrySource source) {
+        String userId = webUserDto.getUserId();
+        String tenantId = TenantContextHolder.getTenantId();
+        checkTargetFolder(userId, filePid);
+
+        BatchContext context = new BatchContext(webUserDto, filePid);
+        if (payloadSize > 0) {
+            // 条目总大小事先已知时先整体预留，空间不足时不读取条目内容
+            quotaReservationService.reserve(userId, tenantId, context.reservationId, payloadSize);
+        }
+        try {
+            BatchEntry entry;
+            while ((entry = source.next()) != null) {
+                String path = normalizePath(entry.name());
+                if (path == null) {
+                    context.failedFiles.add(entry.name() + ": 非法路径");
+                    continue;
+                }
+                if (entry.directory()) {
+                    resolveFolder(context, path);
+                    continue;
+                }
+                if (++context.entryCount > maxEntries) {
+                    throw new BusinessException("单次批量上传的文件数超过上限 " + maxEntries);
+                }
+                if (entry.size() > maxEntrySize) {
+                    context.failedFiles.add(path + ": 文件过大，请使用分片上传");
+                    continue;
+                }
+                quotaReservationService.reserve(userId, tenantId, context.reservationId,
+                        context.totalSize + entry.size());
+                int slash = path.lastIndexOf('/');
+                String fileName = path.substring(slash + 1);
+                String fileSuffix = StringTools.getFileSuffix(fileName);
+                if (FileTypeValidator.isDangerousFileType(fileSuffix)) {
+                    context.failedFiles.add(path + ": 不允许上传可执行文件类型");
+                    continue;
+                }
+                throttle(userId, tenantId, entry.size());
+                String parentId = slash < 0 ? filePid : resolveFolder(context, path.substring(0, slash));
+                storeEntry(context, entry, path, parentId, fileName, fileSuffix);
+            }
+            awaitStores(context);
+            fileInfoService.saveBatchUpload(webUserDto, context.reservationId, context.records, context.totalSize);
+        } catch (IOException e) {
+            log.error("批量上传读取失败: userId={}", userId, e);
+            discard(context);
+            throw new BusinessException("批量上传失败，请检查归档是否完整");
+        } catch (RuntimeException e) {
+            discard(context);
+            throw e;
+        }
+
+        log.info("批量上传完成: userId={}, files={}, folders={}, totalSize={}, failed={}",
+                userId, context.uploadedCount, context.folderCount, context.totalSize, context.failedFiles.size());
+        return BatchUploadResultDto.builder()
+                .uploadedCount(context.uploadedCount)
+                .folderCount(context.folderCount)
+                .totalSize(context.totalSize)
+                .failedFiles(context.failedFiles)
+                .build();
+    }
+
+    /**
+     * 写出单个条目：先读头部校验魔数，再与 MD5 计算同一遍写盘.
+     */
+    private void storeEntry(BatchContext context, BatchEntry entry, String path, String parentId, String fileName,
+            String fileSuffix) throws IOException {
+        InputStream in = entry.stream();
+        byte[] header = in.readNBytes(HEADER_PEEK_SIZE);
+        if (!FileTypeValidator.validateFileType(new ByteArrayInputStream(header), fileSuffix)) {
+            context.failedFiles.add(path + ": 文件类型不匹配");
+            return;
+        }
+
+        String userId = context.webUserDto.getUserId();
+        String fileId = StringTools.getRandomString(Constants.LENGTH_10);
+        String realFileName = userId + fileId + fileSuffix;
+        FileTypeEnums fileTypeEnum = FileTypeEnums.getFileTypeBySuffix(fileSuffix);
+        // 媒体文件落到临时目录的单个分片，由转码流程合并、上传并生成封面
+        boolean transfer = FileTypeEnums.VIDEO == fileTypeEnum || FileTypeEnums.IMAGE == fileTypeEnum;
+        File target = transfer
+                ? new File(appConfig.getProjectFolder() + Constants.FILE_FOLDER_TEMP + userId + fileId, "0")
+                : new File(appConfig.getFileRootPath() + "/" + context.month + "/" + realFileName);
+        File folder = target.getParentFile();
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new BusinessException("创建目录失败");
+        }
+        context.localFiles.add(transfer ? folder : target);
+
+        MessageDigest md5 = newMd5();
+        long size = header.length;
+        try (OutputStream out = Files.newOutputStream(target.toPath())) {
+            md5.update(header);
+            out.write(header);
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                md5.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+                size += read;
+            }
+        }
+        if (size != entry.size()) {
+            throw new IOException("条目长度与声明不一致: " + path);
+        }
+
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setFileId(fileId);
+        fileInfo.setUserId(userId);
+        fileInfo.setFileMd5(HexFormat.of().formatHex(md5.digest()));
+        fileInfo.setFileSampleHash(SampledFingerprint.compute(target));
+        fileInfo.setFilePid(parentId);
+        fileInfo.setFileName(uniqueName(context, parentId, fileName));
+        fileInfo.setFilePath(context.month + "/" + realFileName);
+        fileInfo.setFileSize(size);
+        fileInfo.setFileCategory(fileTypeEnum.getCategory().getCategory());
+        fileInfo.setFileType(fileTypeEnum.getType());
+        fileInfo.setStatus(transfer ? FileStatusEnums.TRANSFER.getStatus() : FileStatusEnums.USING.getStatus());
+        fileInfo.setFolderType(FileFolderTypeEnums.FILE.getType());
+        fileInfo.setDelFlag(FileDelFlagEnums.USING.getFlag());
+        fileInfo.setCreateTime(context.now);
+        fileInfo.setLastUpdateTime(context.now);
+        context.records.add(fileInfo);
+        context.uploadedCount++;
+        context.totalSize += size;
+
+        if (!transfer) {
+            submitStore(context, target, fileInfo.getFilePath());
+        }
+    }
+
+    /**
+     * 并发写入存储，在途数量受信号量限制，读取流因此获得背压.
+     */
+    private void submitStore(BatchContext context, File source, String path) {
+        context.storePermits.acquireUninterruptibly();
+        context.stores.add(CompletableFuture.runAsync(() -> {
+            try {
+                storageStrategy.upload(source, path);
+                synchronized (context.storedPaths) {
+                    context.storedPaths.add(path);
+                }
+                if (!com.easypan.entity.enums.StorageTypeEnum.LOCAL.getCode().equals(storageType)) {
+                    FileUtils.deleteQuietly(source);
+                }
+            } finally {
+                context.storePermits.release();
+            }
+        }, virtualThreadExecutor));
+    }
+
+    private void awaitStores(BatchContext context) {
+        try {
+            CompletableFuture.allOf(context.stores.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            log.error("批量上传写入存储失败: userId={}", context.webUserDto.getUserId(), e.getCause());
+            throw new BusinessException("文件上传失败，请重试");
+        }
+    }
+
+    private void discard(BatchContext context) {
+        quotaReservationService.release(context.webUserDto.getUserId(), TenantContextHolder.getTenantId(),
+                context.reservationId);
+        try {
+            CompletableFuture.allOf(context.stores.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+        } catch (RuntimeException ignored) {
+            // 只等待在途写入结束，失败原因已由调用方处理
+        }
+        context.localFiles.forEach(FileUtils::deleteQuietly);
+        if (!context.storedPaths.isEmpty()) {
+            try {
+                storageStrategy.deleteBatch(context.storedPaths);
+            } catch (RuntimeException e) {
+                log.warn("批量上传失败后清理存储对象失败: count={}", context.storedPaths.size(), e);
+            }
+        }
+    }
+
+    /**
+     * 解析目录路径对应的目录ID：优先复用目标位置已有的同名目录，否则新建.
+     */
+    private String resolveFolder(BatchContext context, String dirPath) {
+        String folderId = context.folderIds.get(dirPath);
+        if (folderId != null) {
+            return folderId;
+        }
+        int slash = dirPath.lastIndexOf('/');
+        String parentId = slash < 0 ? context.rootPid : resolveFolder(context, dirPath.substring(0, slash));
+        String folderName = dirPath.substring(slash + 1);
+
+        if (!context.createdFolderIds.contains(parentId)) {
+            FileInfo existing = fileInfoMapper.selectOneByQuery(QueryWrapper.create()
+                    .where(FILE_INFO.USER_ID.eq(context.webUserDto.getUserId()))
+                    .and(FILE_INFO.FILE_PID.eq(parentId))
+                    .and(FILE_INFO.FILE_NAME.eq(folderName))
+                    .and(FILE_INFO.FOLDER_TYPE.eq(FileFolderTypeEnums.FOLDER.getType()))
+                    .and(FILE_INFO.DEL_FLAG.eq(FileDelFlagEnums.USING.getFlag()))
+                    .limit(1));
+            if (existing != null) {
+                context.folderIds.put(dirPath, existing.getFileId());
+                return existing.getFileId();
+            }
+        }
+
+        FileInfo folder = new FileInfo();
+        folder.setFileId(StringTools.getRandomString(Constants.LENGTH_10));
+        folder.setUserId(context.webUserDto.getUserId());
+        folder.setFilePid(parentId);
+        folder.setFileName(uniqueName(context, parentId, folderName));
+        folder.setFolderType(FileFolderTypeEnums.FOLDER.getType());
+        folder.setStatus(FileStatusEnums.USING.getStatus());
+        folder.setDelFlag(FileDelFlagEnums.USING.getFlag());
+        folder.setCreateTime(context.now);
+        folder.setLastUpdateTime(context.now);
+        context.records.add(folder);
+        context.createdFolderIds.add(folder.getFileId());
+        context.folderIds.put(dirPath, folder.getFileId());
+        context.folderCount++;
+        return folder.getFileId();
+    }
+
+    /**
+     * 同一目录下重名时自动改名；已有目录的文件名只查询一次.
+     */
+    private String uniqueName(BatchContext context, String parentId, String name) {
+        Set<String> names = context.namesByPid.computeIfAbsent(parentId, pid -> {
+            if (context.createdFolderIds.contains(pid)) {
+                return new HashSet<>();
+            }
+            return new HashSet<>(fileInfoMapper.selectListByQueryAs(QueryWrapper.create()
+                    .select(FILE_INFO.FILE_NAME)
+                    .where(FILE_INFO.USER_ID.eq(context.webUserDto.getUserId()))
+                    .and(FILE_INFO.FILE_PID.eq(pid))
+                    .and(FILE_INFO.DEL_FLAG.eq(FileDelFlagEnums.USING.getFlag())), String.class));
+        });
+        String candidate = name;
+        while (!names.add(candidate)) {
+            candidate = StringTools.rename(name);
+        }
+        return candidate;
+    }
+
+    private void checkTargetFolder(String userId, String filePid) {
+        if (Constants.ZERO_STR.equals(filePid)) {
+            return;
+        }
+        FileInfo folder = fileInfoMapper.selectOneByQuery(QueryWrapper.create()
+                .where(FILE_INFO.FILE_ID.eq(filePid))
+                .and(FILE_INFO.USER_ID.eq(userId))
+                .and(FILE_INFO.FOLDER_TYPE.eq(FileFolderTypeEnums.FOLDER.getType()))
+                .and(FILE_INFO.DEL_FLAG.eq(FileDelFlagEnums.USING.getFlag())));
+        if (folder == null) {
+            throw new BusinessException(ResponseCodeEnum.CODE_603);
+        }
+    }
+
+    /**
+     * 字节速率限流：额度不足时按建议时间暂停读取，累计等待过久才放弃.
+     */
+    private void throttle(String userId, String tenantId, long bytes) {
+        long waited = 0;
+        while (true) {
+            try {
+                uploadRateLimiter.acquire(userId, tenantId, bytes);
+                return;
+            } catch (RateLimitedException e) {
+                waited += e.getRetryAfterSeconds();
+                if (waited > MAX_THROTTLE_WAIT_SECONDS) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(e.getRetryAfterSeconds() * 1000);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new BusinessException("批量上传已中断");
+                }
+            }
+        }
+    }
+
+    /**
+     * 规范化条目路径，拒绝绝对路径与 {@code ..}.
+     *
+     * @param name 条目原始路径
+     * @return 以 / 分隔、无首尾分隔符的相对路径；非法时返回 null
+     */
+    static String normalizePath(String name) {
+        if (name == null) {
+            return null;
+        }
+        String path = name.replace('\\', '/');
+        if (path.startsWith("/") || path.matches("^[A-Za-z]:.*")) {
+            return null;
+        }
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty() || ".".equals(segment)) {
+                continue;
+            }
+            if ("..".equals(segment) || segment.length() > 200) {
+                return null;
+            }
+            segments.add(segment);
+        }
+        return segments.isEmpty() ? null : String.join("/", segments);
+    }
+
+    private static MessageDigest newMd5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface EntrySource {
+
+        BatchEntry next() throws IOException;
+    }
+
+    private record BatchEntry(String name, long size, boolean directory, InputStream stream) {
+    }
+
+    /**
+     * 单次批量上传的状态.
+     */
+    private final class BatchContext {
+
+        private final SessionWebUserDto webUserDto;
+
+        private final String reservationId = "batch-" + StringTools.getRandomString(Constants.LENGTH_10);
+
+        private final String rootPid;
+
+        private final Date now = new Date();
+
+        private final String month;
+
+        private final Map<String, String> folderIds = new HashMap<>();
+
+        private final Set<String> createdFolderIds = new HashSet<>();
+
+        private final Map<String, Set<String>> namesByPid = new HashMap<>();
+
+        private final List<FileInfo> records = new ArrayList<>();
+
+        private final List<String> failedFiles = new ArrayList<>();
+
+        private final List<File> localFiles = new ArrayList<>();
+
+        private final List<String> storedPaths = Collections.synchronizedList(new ArrayList<>());
+
+        private final List<CompletableFuture<Void>> stores = new ArrayList<>();
+
+        private final Semaphore storePermits = new Semaphore(Math.max(1, storeParallelism));
+
+        private int entryCount;
+
+        private int uploadedCount;
+
+        private int folderCount;
+
+        private long totalSize;
+
+        private BatchContext(SessionWebUserDto webUserDto, String rootPid) {
+            this.webUserDto = webUserDto;
+            this.rootPid = rootPid;
+            this.month = DateUtil.format(now, DateTimePatternEnum.YYYYMM.getPattern());
+        }
+    }
+}
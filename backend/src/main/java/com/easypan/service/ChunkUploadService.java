@@ -1,19 +1,27 @@
 package com.easypan.service;
 
 import com.easypan.component.S3Component;
+import com.easypan.component.UploadSessionStore;
+import com.easypan.entity.dto.MergeProgressDto;
 import com.easypan.entity.dto.UploadResultDto;
 import com.easypan.exception.BusinessException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import jakarta.annotation.Resource;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -37,6 +45,9 @@ public class ChunkUploadService {
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
+    @Autowired
+    private UploadSessionStore uploadSessionStore;
+
     @Resource
     @Qualifier("virtualThreadExecutor")
     private AsyncTaskExecutor virtualThreadExecutor;
@@ -46,11 +57,6 @@ public class ChunkUploadService {
      */
     private static final int MAX_CONCURRENT_CHUNKS = 5;
 
-    /**
-     * Redis key 前缀：记录上传中的分片.
-     */
-    private static final String UPLOAD_PROGRESS_KEY = "upload:progress:";
-
     /**
      * 分片上传（带并发控制）.
      *
@@ -69,29 +75,26 @@ public class ChunkUploadService {
             Integer totalChunks,
             MultipartFile chunkFile) throws IOException {
 
-        String uploadKey = UPLOAD_PROGRESS_KEY + userId + ":" + fileMd5;
-
-        Long currentConcurrent = redisTemplate.opsForSet().size(uploadKey + ":uploading");
-        if (currentConcurrent != null && currentConcurrent >= MAX_CONCURRENT_CHUNKS) {
-            log.warn("并发上传数超限: userId={}, fileMd5={}, current={}", userId, fileMd5, currentConcurrent);
+        if (!uploadSessionStore.tryAcquireChunkSlot(userId, fileMd5, chunkIndex, MAX_CONCURRENT_CHUNKS)) {
+            log.warn("并发上传数超限: userId={}, fileMd5={}, chunkIndex={}", userId, fileMd5, chunkIndex);
             throw new BusinessException("并发上传数超限，请稍后重试");
         }
 
-        redisTemplate.opsForSet().add(uploadKey + ":uploading", chunkIndex);
-        redisTemplate.expire(uploadKey + ":uploading", 1, TimeUnit.HOURS);
-
         try {
-            String chunkPath = String.format("chunks/%s/%s/%d", userId, fileMd5, chunkIndex);
-            s3Component.uploadBytes(chunkPath, chunkFile.getBytes());
+            uploadSessionStore.initSession(userId, fileMd5, totalChunks, null);
+
+            String chunkPath = chunkPath(userId, fileMd5, chunkIndex);
+            // 流式上传，避免每个在途分片都在堆上拷贝一份完整字节数组
+            try (InputStream inputStream = chunkFile.getInputStream()) {
+                s3Component.uploadStream(chunkPath, inputStream, chunkFile.getSize());
+            }
 
             log.info("分片上传成功: userId={}, fileMd5={}, chunkIndex={}/{}",
                     userId, fileMd5, chunkIndex, totalChunks);
 
-            redisTemplate.opsForSet().add(uploadKey + ":completed", chunkIndex);
-            redisTemplate.expire(uploadKey + ":completed", 24, TimeUnit.HOURS);
+            uploadSessionStore.markChunk(userId, fileMd5, chunkIndex, chunkFile.getSize());
 
-            Long completedCount = redisTemplate.opsForSet().size(uploadKey + ":completed");
-            if (completedCount != null && completedCount.intValue() == totalChunks) {
+            if (uploadSessionStore.getCompletedChunks(userId, fileMd5) == totalChunks) {
                 log.info("所有分片上传完成，准备合并: userId={}, fileMd5={}", userId, fileMd5);
                 return new UploadResultDto(fileMd5, "merge_ready");
             }
@@ -102,7 +105,7 @@ public class ChunkUploadService {
             log.error("分片上传失败: userId={}, fileMd5={}, chunkIndex={}", userId, fileMd5, chunkIndex, e);
             throw e;
         } finally {
-            redisTemplate.opsForSet().remove(uploadKey + ":uploading", chunkIndex);
+            uploadSessionStore.releaseChunkSlot(userId, fileMd5, chunkIndex);
         }
     }
 
@@ -114,9 +117,7 @@ public class ChunkUploadService {
      * @return 已上传分片数
      */
     public Long getCompletedChunkCount(String userId, String fileMd5) {
-        String uploadKey = UPLOAD_PROGRESS_KEY + userId + ":" + fileMd5;
-        Long count = redisTemplate.opsForSet().size(uploadKey + ":completed");
-        return count != null ? count : 0L;
+        return (long) uploadSessionStore.getCompletedChunks(userId, fileMd5);
     }
 
     /**
@@ -128,9 +129,7 @@ public class ChunkUploadService {
      * @return 是否已上传
      */
     public boolean isChunkUploaded(String userId, String fileMd5, Integer chunkIndex) {
-        String uploadKey = UPLOAD_PROGRESS_KEY + userId + ":" + fileMd5;
-        Boolean isMember = redisTemplate.opsForSet().isMember(uploadKey + ":completed", (Object) chunkIndex);
-        return Boolean.TRUE.equals(isMember);
+        return uploadSessionStore.isChunkMarked(userId, fileMd5, chunkIndex);
     }
 
     /**
@@ -140,9 +139,7 @@ public class ChunkUploadService {
      * @param fileMd5 文件MD5值
      */
     public void clearUploadProgress(String userId, String fileMd5) {
-        String uploadKey = UPLOAD_PROGRESS_KEY + userId + ":" + fileMd5;
-        redisTemplate.delete(uploadKey + ":uploading");
-        redisTemplate.delete(uploadKey + ":completed");
+        uploadSessionStore.clearSession(userId, fileMd5);
         log.info("清理上传进度: userId={}, fileMd5={}", userId, fileMd5);
     }
 
@@ -151,6 +148,21 @@ public class ChunkUploadService {
      */
     private static final String MERGE_STATUS_KEY = "easypan:merge:status:";
 
+    /**
+     * Redis key 前缀：合并进度（Hash，completedParts / totalParts）.
+     */
+    private static final String MERGE_PROGRESS_KEY = "easypan:merge:progress:";
+
+    private static final String FIELD_COMPLETED_PARTS = "completedParts";
+
+    private static final String FIELD_TOTAL_PARTS = "totalParts";
+
+    /**
+     * 合并时同时在途的 UploadPartCopy 请求数.
+     */
+    @Value("${app.upload.merge.parallelism:8}")
+    private int mergeParallelism = 8;
+
     /**
      * 合并分片文件.
      *
@@ -167,20 +179,21 @@ public class ChunkUploadService {
         String statusKey = MERGE_STATUS_KEY + userId + ":" + fileMd5;
         redisTemplate.opsForValue().set(statusKey, "merging", 30, TimeUnit.MINUTES);
 
+        String progressKey = MERGE_PROGRESS_KEY + userId + ":" + fileMd5;
+        redisTemplate.opsForHash().putAll(progressKey,
+                Map.of(FIELD_COMPLETED_PARTS, 0, FIELD_TOTAL_PARTS, totalChunks));
+        redisTemplate.expire(progressKey, 30, TimeUnit.MINUTES);
+
         CompletableFuture.runAsync(() -> {
             String finalPath = String.format("files/%s/%s", userId, fileMd5);
             String uploadId = null;
             try {
                 // 1. 初始化分片上传
                 uploadId = s3Component.createMultipartUpload(finalPath);
-                List<CompletedPart> completedParts = new ArrayList<>();
 
-                // 2. 遍历分片并执行服务端复制
-                for (int i = 0; i < totalChunks; i++) {
-                    String chunkPath = String.format("chunks/%s/%s/%d", userId, fileMd5, i);
-                    CompletedPart part = s3Component.uploadPartCopy(chunkPath, finalPath, uploadId, i + 1);
-                    completedParts.add(part);
-                }
+                // 2. 并发执行服务端复制，按分段号落位保证顺序
+                List<CompletedPart> completedParts = copyPartsConcurrently(userId, fileMd5, finalPath, uploadId,
+                        totalChunks, progressKey);
 
                 // 3. 完成分片上传
                 s3Component.completeMultipartUpload(finalPath, uploadId, completedParts);
@@ -188,15 +201,17 @@ public class ChunkUploadService {
 
                 // T16: 更新合并状态为成功
                 redisTemplate.opsForValue().set(statusKey, "success", 10, TimeUnit.MINUTES);
+                redisTemplate.expire(progressKey, 10, TimeUnit.MINUTES);
 
-                // 4. 清理分片
+                // 4. 批量清理分片（deleteObjects 每批最多 1000 个 Key）
+                List<String> chunkPaths = new ArrayList<>(totalChunks);
                 for (int i = 0; i < totalChunks; i++) {
-                    String chunkPath = String.format("chunks/%s/%s/%d", userId, fileMd5, i);
-                    try {
-                        s3Component.deleteFileAsync(chunkPath);
-                    } catch (Exception e) {
-                        log.warn("清理分片失败: chunkPath={}", chunkPath, e);
-                    }
+                    chunkPaths.add(chunkPath(userId, fileMd5, i));
+                }
+                try {
+                    s3Component.deleteObjects(chunkPaths);
+                } catch (Exception e) {
+                    log.warn("清理分片失败: userId={}, fileMd5={}", userId, fileMd5, e);
                 }
 
                 clearUploadProgress(userId, fileMd5);
@@ -205,6 +220,7 @@ public class ChunkUploadService {
                 log.error("文件合并失败: userId={}, fileMd5={}", userId, fileMd5, e);
                 // T16: 更新合并状态为失败
                 redisTemplate.opsForValue().set(statusKey, "failed", 10, TimeUnit.MINUTES);
+                redisTemplate.expire(progressKey, 10, TimeUnit.MINUTES);
                 if (uploadId != null) {
                     try {
                         s3Component.abortMultipartUpload(finalPath, uploadId);
@@ -219,6 +235,68 @@ public class ChunkUploadService {
         return new UploadResultDto(fileMd5, "merging");
     }
 
+    /**
+     * 并发复制分片，同时在途的 UploadPartCopy 不超过 {@code mergeParallelism}.
+     */
+    private List<CompletedPart> copyPartsConcurrently(String userId, String fileMd5, String finalPath,
+            String uploadId, int totalChunks, String progressKey) throws InterruptedException {
+        CompletedPart[] parts = new CompletedPart[totalChunks];
+        Semaphore permits = new Semaphore(Math.max(1, mergeParallelism));
+        AtomicBoolean failed = new AtomicBoolean(false);
+        List<CompletableFuture<Void>> futures = new ArrayList<>(totalChunks);
+        for (int i = 0; i < totalChunks && !failed.get(); i++) {
+            permits.acquire();
+            int index = i;
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    parts[index] = s3Component.uploadPartCopy(chunkPath(userId, fileMd5, index), finalPath,
+                            uploadId, index + 1);
+                    redisTemplate.opsForHash().increment(progressKey, FIELD_COMPLETED_PARTS, 1);
+                } catch (RuntimeException e) {
+                    failed.set(true);
+                    throw e;
+                } finally {
+                    permits.release();
+                }
+            }, virtualThreadExecutor));
+        }
+        // 等待全部在途复制结束后再返回，失败时由调用方中止分片上传
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        if (failed.get() || futures.size() != totalChunks) {
+            throw new BusinessException("分片合并失败");
+        }
+        return Arrays.asList(parts);
+    }
+
+    private static String chunkPath(String userId, String fileMd5, int chunkIndex) {
+        return String.format("chunks/%s/%s/%d", userId, fileMd5, chunkIndex);
+    }
+
+    /**
+     * 查询合并进度.
+     *
+     * @param userId  用户ID
+     * @param fileMd5 文件MD5值
+     * @return 合并进度，未发起合并或已过期时返回 null
+     */
+    public MergeProgressDto getMergeProgress(String userId, String fileMd5) {
+        String status = getMergeStatus(userId, fileMd5);
+        if (status == null) {
+            return null;
+        }
+        Map<Object, Object> progress = redisTemplate.opsForHash().entries(MERGE_PROGRESS_KEY + userId + ":"
+                + fileMd5);
+        return MergeProgressDto.builder()
+                .status(status)
+                .completedParts(toInteger(progress.get(FIELD_COMPLETED_PARTS)))
+                .totalParts(toInteger(progress.get(FIELD_TOTAL_PARTS)))
+                .build();
+    }
+
+    private static Integer toInteger(Object value) {
+        return value instanceof Number number ? number.intValue() : null;
+    }
+
     /**
      * 查询合并状态（T16 新增）.
      *
@@ -131,8 +131,38 @@ public interface FileInfoService {
      * @param chunks 总分片数
      * @return 上传结果
      */
+    default UploadResultDto uploadFile(SessionWebUserDto webUserDto, String fileId, MultipartFile file,
+            String fileName, String filePid, String fileMd5, Integer chunkIndex, Integer chunks) {
+        return uploadFile(webUserDto, fileId, file, fileName, filePid, fileMd5, chunkIndex, chunks, null);
+    }
+
+    /**
+     * 上传文件（携带客户端分片大小）.
+     *
+     * @param webUserDto 用户信息
+     * @param fileId 文件ID
+     * @param file 文件
+     * @param fileName 文件名
+     * @param filePid 父目录ID
+     * @param fileMd5 文件MD5
+     * @param chunkIndex 分片索引
+     * @param chunks 总分片数
+     * @param chunkSize 客户端分片大小，为空时由非末片推断
+     * @return 上传结果
+     */
     UploadResultDto uploadFile(SessionWebUserDto webUserDto, String fileId, MultipartFile file,
-            String fileName, String filePid, String fileMd5, Integer chunkIndex, Integer chunks);
+            String fileName, String filePid, String fileMd5, Integer chunkIndex, Integer chunks, Long chunkSize);
+
+    /**
+     * 批量上传入库：一次批量写入文件与目录记录，提交后把空间预留转为已用，转码中的文件在提交后触发转码.
+     *
+     * @param webUserDto    用户信息
+     * @param reservationId 空间预留标识
+     * @param fileInfoList  文件与目录记录
+     * @param totalSize     文件总大小
+     */
+    void saveBatchUpload(SessionWebUserDto webUserDto, String reservationId, List<FileInfo> fileInfoList,
+            long totalSize);
 
     /**
      * 重命名.
@@ -0,0 +1,254 @@
+package com.easypan.service;
+
+import com.easypan.component.HotObjectCache;
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.dto.StorageObjectStatDto;
+import com.easypan.strategy.StorageFactory;
+import com.easypan.strategy.StorageStrategy;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * HLS 分片预读服务.
+ *
+ * <p>播放器请求第 N 个分片后，异步把后面 K 个分片读入 {@link HotObjectCache}，远程存储部署下后续分片不再
+ * 等待一次冷读取. 请求播放列表时预读开头的分片，减少起播等待.
+ *
+ * <p>K 按播放速度调整：以同一用户连续分片请求间隔的指数平均估算播放速度，与切片时长相同时预读
+ * {@code app.hls.prefetch.base-ahead} 个，起播缓冲等快于实时的阶段按比例增加，最多
+ * {@code app.hls.prefetch.max-ahead} 个；起播与拖动后间隔未知，按最大值预读. 节点上同时进行的预读受
+ * {@code app.hls.prefetch.max-concurrent} 限制，超出时放弃而不排队. 本地存储或超过缓存大小上限的分片不预读.
+ */
+@Service
+@Slf4j
+public class HlsPrefetchService {
+
+    private static final Pattern SEGMENT_PATTERN = Pattern.compile("^(.+)/([^/]+)_(\\d+)\\.ts$");
+
+    private static final long SEGMENT_MILLIS = TimeUnit.SECONDS.toMillis(Constants.HLS_SEGMENT_SECONDS);
+
+    /**
+     * 间隔指数平均中新样本的权重.
+     */
+    private static final double EWMA_WEIGHT = 0.3;
+
+    @Resource
+    private StorageFactory storageFactory;
+
+    @Resource
+    private HotObjectCache hotObjectCache;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    @Qualifier("virtualThreadExecutor")
+    private AsyncTaskExecutor virtualThreadExecutor;
+
+    @Value("${app.hls.prefetch.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.hls.prefetch.base-ahead:2}")
+    private int baseAhead = 2;
+
+    @Value("${app.hls.prefetch.max-ahead:4}")
+    private int maxAhead = 4;
+
+    @Value("${app.hls.prefetch.max-concurrent:8}")
+    private int maxConcurrent = 8;
+
+    private Semaphore permits;
+
+    private Cache<String, PlaybackSession> sessions;
+
+    private Counter prefetchedCounter;
+
+    private Counter droppedCounter;
+
+    @PostConstruct
+    public void init() {
+        maxAhead = Math.max(1, maxAhead);
+        baseAhead = Math.max(1, Math.min(baseAhead, maxAhead));
+        permits = new Semaphore(Math.max(1, maxConcurrent));
+        sessions = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterAccess(10, TimeUnit.MINUTES)
+                .build();
+        if (meterRegistry != null) {
+            prefetchedCounter = Counter.builder("hls.prefetch.segments")
+                    .description("HLS segments read ahead into the hot object cache")
+                    .tag("result", "loaded")
+                    .register(meterRegistry);
+            droppedCounter = Counter.builder("hls.prefetch.segments")
+                    .description("HLS segments read ahead into the hot object cache")
+                    .tag("result", "dropped")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 播放列表已输出，预读开头的分片.
+     *
+     * @param userId 用户ID
+     * @param hlsDir 切片目录
+     * @param fileId 文件ID，用于分片命名
+     */
+    public void onPlaylistServed(String userId, String hlsDir, String fileId) {
+        if (!enabled) {
+            return;
+        }
+        sessions.invalidate(sessionKey(userId, hlsDir));
+        schedule(hlsDir, fileId, -1, maxAhead);
+    }
+
+    /**
+     * 分片已输出，按播放速度预读后续分片.
+     *
+     * @param userId      用户ID
+     * @param segmentPath 分片存储路径，形如 {@code {切片目录}/{fileId}_0007.ts}
+     */
+    public void onSegmentServed(String userId, String segmentPath) {
+        if (!enabled || segmentPath == null) {
+            return;
+        }
+        Matcher matcher = SEGMENT_PATTERN.matcher(segmentPath);
+        if (!matcher.matches()) {
+            return;
+        }
+        String hlsDir = matcher.group(1);
+        int index;
+        try {
+            index = Integer.parseInt(matcher.group(3));
+        } catch (NumberFormatException e) {
+            return;
+        }
+        PlaybackSession session = sessions.get(sessionKey(userId, hlsDir), key -> new PlaybackSession());
+        double interval = session.record(index, System.nanoTime());
+        schedule(hlsDir, matcher.group(2), index, aheadFor(interval));
+    }
+
+    /**
+     * 按连续分片请求的平均间隔计算预读数量.
+     *
+     * @param intervalMillis 平均间隔（毫秒），小于 0 表示未知（起播或拖动后）
+     * @return 预读分片数
+     */
+    public int aheadFor(double intervalMillis) {
+        if (intervalMillis < 0) {
+            return maxAhead;
+        }
+        // 播放速度：每个分片的时长与取分片间隔之比，起播缓冲时明显大于 1
+        double rate = SEGMENT_MILLIS / Math.max(1.0, intervalMillis);
+        long ahead = (long) Math.ceil(baseAhead * Math.min(rate, (double) maxAhead));
+        return (int) Math.max(1, Math.min(maxAhead, ahead));
+    }
+
+    private void schedule(String hlsDir, String fileId, int index, int ahead) {
+        List<String> targets = new ArrayList<>(ahead);
+        for (int next = index + 1; next <= index + ahead; next++) {
+            String path = hlsDir + "/" + fileId + "_" + String.format("%04d", next) + ".ts";
+            if (!hotObjectCache.isCachedOrLoading(path)) {
+                targets.add(path);
+            }
+        }
+        if (targets.isEmpty()) {
+            return;
+        }
+        if (!permits.tryAcquire()) {
+            increment(droppedCounter, targets.size());
+            return;
+        }
+        try {
+            virtualThreadExecutor.execute(() -> {
+                try {
+                    prefetch(targets);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            log.debug("[HLS] 提交分片预读失败: hlsDir={}", hlsDir, e);
+        }
+    }
+
+    /**
+     * 按顺序读入分片，遇到不存在的分片（播放列表末尾）即停止.
+     */
+    private void prefetch(List<String> targets) {
+        StorageStrategy storage = storageFactory.getStorageStrategy();
+        for (String path : targets) {
+            try {
+                if (hotObjectCache.isCachedOrLoading(path)) {
+                    continue;
+                }
+                StorageObjectStatDto stat = storage.stat(path);
+                if (stat == null) {
+                    return;
+                }
+                if (!hotObjectCache.accepts(path, stat.getSize()) || storage.getLocalFile(path) != null) {
+                    return;
+                }
+                hotObjectCache.get(path, stat, () -> storage.download(path));
+                increment(prefetchedCounter, 1);
+            } catch (Exception e) {
+                log.debug("[HLS] 分片预读失败: path={}", path, e);
+                return;
+            }
+        }
+    }
+
+    private static void increment(Counter counter, int amount) {
+        if (counter != null) {
+            counter.increment(amount);
+        }
+    }
+
+    private static String sessionKey(String userId, String hlsDir) {
+        return userId + ":" + hlsDir;
+    }
+
+    /**
+     * 单个用户观看单个视频的分片请求记录.
+     */
+    private static final class PlaybackSession {
+
+        private int lastIndex = -1;
+
+        private long lastNanos;
+
+        private double intervalMillis = -1;
+
+        /**
+         * 记录一次分片请求，返回更新后的平均间隔；不连续的请求（拖动、重新起播）清空估计.
+         */
+        private synchronized double record(int index, long nanos) {
+            if (lastIndex >= 0 && index == lastIndex + 1) {
+                double sample = TimeUnit.NANOSECONDS.toMillis(nanos - lastNanos);
+                intervalMillis = intervalMillis < 0 ? sample
+                        : EWMA_WEIGHT * sample + (1 - EWMA_WEIGHT) * intervalMillis;
+            } else if (index != lastIndex) {
+                intervalMillis = -1;
+            }
+            lastIndex = index;
+            lastNanos = nanos;
+            return intervalMillis;
+        }
+    }
+}
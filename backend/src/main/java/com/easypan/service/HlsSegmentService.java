@@ -0,0 +1,384 @@
+package com.easypan.service;
+
+import com.easypan.component.HotObjectCache;
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.enums.StorageTypeEnum;
+import com.easypan.entity.po.HlsCache;
+import com.easypan.exception.BusinessException;
+import com.easypan.exception.ServiceUnavailableException;
+import com.easypan.mappers.HlsCacheMapper;
+import com.easypan.strategy.StorageFactory;
+import com.easypan.strategy.StorageStrategy;
+import com.easypan.utils.StringTools;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 视频按需切片服务.
+ *
+ * <p>{@code app.hls.mode=lazy} 时上传只保存原视频（仍生成封面与探测信息），并登记一条未切片记录；首次请求
+ * 播放列表时才切片并上传到原来的切片目录，之后与上传时切片的视频走相同的读取路径. 同一节点上对同一视频的
+ * 并发请求共用一次切片，同时切片的视频数受 {@code app.hls.lazy-concurrency} 限制.
+ *
+ * <p>按需生成的切片总量超过 {@code app.hls.storage-budget-mb} 时，按最后播放时间淘汰最冷的视频切片，
+ * 淘汰后记录回到未切片状态，再次播放时重新切片；最近 {@code app.hls.min-idle-minutes} 内播放过的不淘汰.
+ * 播放列表与分片请求都会刷新最后播放时间，分片请求在节点内按视频限频，长时间播放的视频不会在中途被淘汰.
+ * 上传时已切片的视频没有记录，不参与淘汰.
+ *
+ * <p>淘汰时记录先进入淘汰中状态，删除切片目录后才回到未切片；淘汰中到来的播放请求直接返回 503 与
+ * {@code Retry-After}，由客户端稍后重试，不占用请求线程等待. 切片完成只能从未切片状态标记为已切片，删除不会落在新切片之后，不会出现已切片但存储中没有切片的记录.
+ * 节点在淘汰中途退出时，超过 {@code app.hls.stale-eviction-minutes} 的淘汰中记录由下一次淘汰任务接着完成.
+ */
+@Service
+@Slf4j
+public class HlsSegmentService {
+
+    /**
+     * 未切片.
+     */
+    public static final int STATUS_PENDING = 0;
+
+    /**
+     * 已切片.
+     */
+    public static final int STATUS_READY = 1;
+
+    /**
+     * 淘汰中，切片目录正在删除.
+     */
+    public static final int STATUS_EVICTING = 2;
+
+    private static final String MODE_LAZY = "lazy";
+
+    private static final long TOUCH_INTERVAL_SECONDS = 60;
+
+    /**
+     * 视频暂不可播放（淘汰中、切片未完成）时建议客户端重试的等待秒数.
+     */
+    private static final long RETRY_AFTER_SECONDS = 5;
+
+    @Resource
+    private HlsCacheMapper hlsCacheMapper;
+
+    @Resource
+    private MediaTranscodeService mediaTranscodeService;
+
+    @Resource
+    private StorageFactory storageFactory;
+
+    @Resource
+    private AppConfig appConfig;
+
+    @Resource
+    private HotObjectCache hotObjectCache;
+
+    @Resource
+    @Qualifier("virtualThreadExecutor")
+    private AsyncTaskExecutor virtualThreadExecutor;
+
+    @Value("${app.storage.type:local}")
+    private String storageType = StorageTypeEnum.LOCAL.getCode();
+
+    @Value("${app.hls.mode:eager}")
+    private String mode = "eager";
+
+    @Value("${app.hls.lazy-concurrency:0}")
+    private int lazyConcurrency = 0;
+
+    @Value("${app.hls.wait-timeout-seconds:300}")
+    private long waitTimeoutSeconds = 300;
+
+    @Value("${app.hls.storage-budget-mb:0}")
+    private long storageBudgetMb = 0;
+
+    @Value("${app.hls.min-idle-minutes:60}")
+    private long minIdleMinutes = 60;
+
+    @Value("${app.hls.stale-eviction-minutes:10}")
+    private long staleEvictionMinutes = 10;
+
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    private Semaphore permits;
+
+    /**
+     * 最近已刷新过播放时间的切片目录，分片请求在有效期内不再写库.
+     */
+    private Cache<String, Boolean> recentlyTouched;
+
+    @PostConstruct
+    public void init() {
+        int concurrency = lazyConcurrency > 0 ? lazyConcurrency
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        permits = new Semaphore(concurrency);
+        recentlyTouched = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(TOUCH_INTERVAL_SECONDS, TimeUnit.SECONDS)
+                .build();
+        if (isLazy()) {
+            log.info("[HLS] 按需切片已启用: concurrency={}, budgetMb={}, minIdleMinutes={}", concurrency,
+                    storageBudgetMb, minIdleMinutes);
+        }
+    }
+
+    /**
+     * 是否为按需切片模式.
+     *
+     * @return 是否按需切片
+     */
+    public boolean isLazy() {
+        return MODE_LAZY.equalsIgnoreCase(mode);
+    }
+
+    /**
+     * 切片目录的存储路径：原文件路径去掉后缀.
+     *
+     * @param filePath 原文件存储路径
+     * @return 切片目录路径
+     */
+    public static String hlsPathOf(String filePath) {
+        int dot = filePath.lastIndexOf('.');
+        return dot > 0 ? filePath.substring(0, dot) : filePath;
+    }
+
+    /**
+     * 登记未切片的视频，上传转码时调用.
+     *
+     * @param filePath 原文件存储路径
+     */
+    public void registerPending(String filePath) {
+        hlsCacheMapper.insertPending(hlsPathOf(filePath));
+    }
+
+    /**
+     * 确保视频已切片，读取播放列表前调用. 上传时已切片或已按需切片的直接返回，否则切片完成后返回.
+     *
+     * @param fileId   文件ID，用于切片命名
+     * @param filePath 原文件存储路径
+     */
+    public void ensureSegments(String fileId, String filePath) {
+        String hlsPath = hlsPathOf(filePath);
+        HlsCache cache = hlsCacheMapper.selectByPath(hlsPath);
+        if (cache == null) {
+            return;
+        }
+        rejectIfEvicting(cache);
+        if (Integer.valueOf(STATUS_READY).equals(cache.getStatus())) {
+            hlsCacheMapper.touch(hlsPath, TOUCH_INTERVAL_SECONDS);
+            return;
+        }
+        CompletableFuture<Void> created = new CompletableFuture<>();
+        CompletableFuture<Void> future = inFlight.putIfAbsent(hlsPath, created);
+        if (future == null) {
+            future = created;
+            // 在独立线程上切片，请求方超时或断开后切片仍继续，后续请求直接复用结果
+            virtualThreadExecutor.execute(() -> {
+                try {
+                    segment(fileId, filePath, hlsPath);
+                    created.complete(null);
+                } catch (Throwable e) {
+                    created.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(hlsPath, created);
+                }
+            });
+        }
+        try {
+            future.get(waitTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            throw notReady();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("视频切片被中断");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BusinessException businessException) {
+                throw businessException;
+            }
+            log.error("[HLS] 按需切片失败: hlsPath={}", hlsPath, e.getCause());
+            throw new BusinessException("视频切片失败");
+        }
+    }
+
+    /**
+     * 分片已输出，刷新视频的最后播放时间. 同一视频在节点内每 {@value #TOUCH_INTERVAL_SECONDS} 秒最多写库一次；
+     * 未设置存储预算时不淘汰，无需刷新.
+     *
+     * @param filePath 原文件存储路径
+     */
+    public void touch(String filePath) {
+        if (storageBudgetMb <= 0 || filePath == null) {
+            return;
+        }
+        String hlsPath = hlsPathOf(filePath);
+        if (recentlyTouched.asMap().putIfAbsent(hlsPath, Boolean.TRUE) == null) {
+            hlsCacheMapper.touch(hlsPath, TOUCH_INTERVAL_SECONDS);
+        }
+    }
+
+    /**
+     * 记录处于淘汰中时切片目录正在删除，提示客户端稍后重试.
+     */
+    private static void rejectIfEvicting(HlsCache cache) {
+        if (cache != null && Integer.valueOf(STATUS_EVICTING).equals(cache.getStatus())) {
+            throw notReady();
+        }
+    }
+
+    private static ServiceUnavailableException notReady() {
+        return new ServiceUnavailableException("视频正在准备中，请稍后重试", RETRY_AFTER_SECONDS);
+    }
+
+    private void segment(String fileId, String filePath, String hlsPath) throws Exception {
+        permits.acquire();
+        File workDir = new File(appConfig.getProjectFolder() + Constants.FILE_FOLDER_TEMP + "hls_"
+                + StringTools.getRandomString(Constants.LENGTH_10));
+        try {
+            // 等待许可期间可能已由其他请求完成
+            HlsCache cache = hlsCacheMapper.selectByPath(hlsPath);
+            rejectIfEvicting(cache);
+            if (cache != null && Integer.valueOf(STATUS_READY).equals(cache.getStatus())) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            StorageStrategy storageStrategy = storageFactory.getStorageStrategy();
+            File hlsFolder = new File(workDir, "hls");
+            if (!hlsFolder.mkdirs()) {
+                throw new BusinessException("创建切片目录失败: " + hlsFolder.getPath());
+            }
+            File source = resolveSource(storageStrategy, filePath, workDir);
+            mediaTranscodeService.transcodeToHls(source, hlsFolder, fileId, null, 0);
+            long size = FileUtils.sizeOfDirectory(hlsFolder);
+            storageStrategy.uploadDirectory(hlsPath, hlsFolder);
+            if (hlsCacheMapper.markReady(hlsPath, size) == 0) {
+                // 视频已删除，或其他节点已完成切片后又进入淘汰，记录保持原状态，由客户端重试时按其状态处理
+                log.warn("[HLS] 切片完成时记录已不是未切片状态: hlsPath={}", hlsPath);
+                throw notReady();
+            }
+            log.info("[HLS] 按需切片完成: hlsPath={}, size={}, costMs={}", hlsPath, size,
+                    System.currentTimeMillis() - start);
+        } finally {
+            FileUtils.deleteQuietly(workDir);
+            permits.release();
+        }
+    }
+
+    /**
+     * 本地存储且未按块去重时直接读取原文件，否则从存储下载到临时目录.
+     */
+    private File resolveSource(StorageStrategy storageStrategy, String filePath, File workDir) throws IOException {
+        if (StorageTypeEnum.LOCAL.getCode().equals(storageType) && !storageFactory.isBlockStored(filePath)) {
+            File local = new File(appConfig.getFileRootPath(), filePath);
+            if (local.isFile()) {
+                return local;
+            }
+        }
+        File source = new File(workDir, "source" + StringTools.getFileSuffix(filePath));
+        try (InputStream in = storageStrategy.download(filePath)) {
+            FileUtils.copyInputStreamToFile(in, source);
+        }
+        return source;
+    }
+
+    /**
+     * 按存储预算淘汰最冷的按需切片.
+     *
+     * @param batchSize 每批查询数量
+     * @return 淘汰的视频数
+     */
+    public int evictOverBudget(int batchSize) {
+        if (storageBudgetMb <= 0) {
+            return 0;
+        }
+        recoverStaleEvictions(batchSize);
+        long budget = storageBudgetMb * 1024 * 1024;
+        long idleSeconds = TimeUnit.MINUTES.toSeconds(minIdleMinutes);
+        long total = hlsCacheMapper.sumReadySize();
+        int evicted = 0;
+        while (total > budget) {
+            List<HlsCache> candidates = hlsCacheMapper.selectEvictable(idleSeconds, batchSize);
+            int before = evicted;
+            for (HlsCache candidate : candidates) {
+                if (total <= budget) {
+                    break;
+                }
+                // 先标记淘汰中再删目录：被重新播放过的跳过，删除期间到来的请求等待删除完成后再切片
+                if (hlsCacheMapper.markEvicting(candidate.getHlsPath(), idleSeconds) == 0) {
+                    continue;
+                }
+                deleteSegments(candidate.getHlsPath());
+                total -= candidate.getSizeBytes() == null ? 0L : candidate.getSizeBytes();
+                evicted++;
+            }
+            if (evicted == before) {
+                // 剩余的切片都在最近播放过，暂时超出预算
+                break;
+            }
+        }
+        if (evicted > 0) {
+            log.info("[HLS] 淘汰冷门视频切片: count={}, remainingBytes={}, budgetBytes={}", evicted, total, budget);
+        }
+        return evicted;
+    }
+
+    /**
+     * 接着完成节点中途退出时遗留的淘汰.
+     */
+    private void recoverStaleEvictions(int batchSize) {
+        long staleSeconds = TimeUnit.MINUTES.toSeconds(staleEvictionMinutes);
+        for (HlsCache stale : hlsCacheMapper.selectStaleEvicting(staleSeconds, batchSize)) {
+            // 重新标记，多个节点同时恢复时只有一个继续删除
+            if (hlsCacheMapper.restartEviction(stale.getHlsPath(), staleSeconds) > 0) {
+                log.warn("[HLS] 继续未完成的切片淘汰: {}", stale.getHlsPath());
+                deleteSegments(stale.getHlsPath());
+            }
+        }
+    }
+
+    /**
+     * 删除淘汰中的切片目录，随后把记录改回未切片. 删除失败时同样改回未切片，再次播放时重新切片覆盖.
+     */
+    private void deleteSegments(String hlsPath) {
+        try {
+            storageFactory.getStorageStrategy().deleteDirectory(hlsPath);
+        } catch (Exception e) {
+            log.warn("[HLS] 删除切片目录失败: {}", hlsPath, e);
+        }
+        // 重新切片后分片内容可能不同，不能继续使用缓存的旧分片
+        hotObjectCache.invalidatePrefix(hlsPath + "/");
+        hlsCacheMapper.finishEviction(hlsPath);
+    }
+
+    /**
+     * 视频删除后移除记录.
+     *
+     * @param hlsPaths 切片目录路径
+     */
+    public void forget(Collection<String> hlsPaths) {
+        if (hlsPaths.isEmpty()) {
+            return;
+        }
+        hlsCacheMapper.deleteByPaths(hlsPaths);
+    }
+}
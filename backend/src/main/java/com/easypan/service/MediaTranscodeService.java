@@ -1,6 +1,9 @@
 package com.easypan.service;
 
+import com.easypan.entity.dto.VideoProbeDto;
+
 import java.io.File;
+import java.util.function.IntConsumer;
 
 /**
  * 媒体转码服务接口.
@@ -19,28 +22,35 @@ public interface MediaTranscodeService {
     boolean createThumbnail(File sourceFile, int width, File targetFile, boolean delSource);
 
     /**
-     * 生成视频封面.
+     * 视频一次转封装为 HLS 切片，同时截取封面并探测时长、分辨率与编码.
      *
-     * @param sourceFile 源文件
-     * @param width 宽度
-     * @param targetFile 目标文件
-     */
-    void createVideoCover(File sourceFile, int width, File targetFile);
-
-    /**
-     * 视频转码为 TS.
+     * <p>只启动一个 FFmpeg 进程：源文件直接复制码流写入 TS 切片与 index.m3u8，不产生完整的中间 TS 文件；
+     * 同一次解码的第一帧缩放后写为封面；探测结果取自 FFmpeg 打印的输入描述. 按需切片模式下上传时
+     * 只截封面（{@code hlsFolder} 为空），首次播放时再只切片（{@code coverFile} 为空），两者至少一个不为空.
      *
-     * @param sourceFilePath 源文件路径
-     * @param targetTsPath 目标 TS 路径
+     * @param sourceFile 源视频
+     * @param hlsFolder 切片目录，为空时不切片
+     * @param fileId 文件 ID，切片命名为 {fileId}_0000.ts
+     * @param coverFile 封面文件，为空时不截封面
+     * @param coverWidth 封面宽度
+     * @return 探测结果
      */
-    void transcodeToTs(String sourceFilePath, String targetTsPath);
+    default VideoProbeDto transcodeToHls(File sourceFile, File hlsFolder, String fileId, File coverFile,
+            int coverWidth) {
+        return transcodeToHls(sourceFile, hlsFolder, fileId, coverFile, coverWidth, null);
+    }
 
     /**
-     * 切割 TS 为 M3U8.
+     * 同 {@link #transcodeToHls(File, File, String, File, int)}，并按 FFmpeg {@code -progress} 输出回报进度.
      *
-     * @param sourceTsPath 源 TS 路径
-     * @param targetFolder 目标文件夹
-     * @param fileId 文件 ID
+     * @param sourceFile 源视频
+     * @param hlsFolder 切片目录，为空时不切片
+     * @param fileId 文件 ID，切片命名为 {fileId}_0000.ts
+     * @param coverFile 封面文件，为空时不截封面
+     * @param coverWidth 封面宽度
+     * @param progressListener 进度回调，参数为 0-100 的百分比，可为空
+     * @return 探测结果
      */
-    void cutToM3u8(String sourceTsPath, String targetFolder, String fileId);
+    VideoProbeDto transcodeToHls(File sourceFile, File hlsFolder, String fileId, File coverFile, int coverWidth,
+            IntConsumer progressListener);
 }
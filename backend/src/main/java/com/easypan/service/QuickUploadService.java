@@ -1,20 +1,36 @@
 package com.easypan.service;
 
+import com.easypan.component.RedisComponent;
+import com.easypan.entity.dto.QuickUploadCheckDto;
+import com.easypan.entity.dto.StorageObjectStatDto;
 import com.easypan.entity.dto.UploadResultDto;
 import com.easypan.entity.enums.FileDelFlagEnums;
 import com.easypan.entity.enums.FileStatusEnums;
 import com.easypan.entity.po.FileInfo;
+import com.easypan.exception.BusinessException;
 import com.easypan.mappers.FileInfoMapper;
+import com.easypan.strategy.StorageFactory;
+import com.easypan.strategy.StorageStrategy;
+import com.easypan.utils.SampledFingerprint;
 import com.easypan.utils.StringTools;
 import com.mybatisflex.core.query.QueryWrapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 import static com.easypan.entity.po.table.FileInfoTableDef.FILE_INFO;
 
@@ -31,8 +47,133 @@ public class QuickUploadService {
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
+    @Autowired
+    private RedisComponent redisComponent;
+
     private static final String FILE_MD5_KEY = "file:md5:";
     private static final long MD5_CACHE_TTL_DAYS = 7;
+    private static final Pattern MD5_PATTERN = Pattern.compile("^[0-9a-f]{32}$");
+
+    @Autowired
+    private StorageFactory storageFactory;
+
+    @Value("${app.upload.quick-check.max-md5s:5000}")
+    private int maxCheckSize = 5000;
+
+    /**
+     * 补算抽样指纹的扫描位置（存储路径），本节点内有效.
+     */
+    private volatile String backfillCursor = "";
+
+    /**
+     * 按抽样指纹判断客户端是否需要计算完整 MD5.
+     *
+     * <p>指纹由文件大小与头、中、尾块得出，不同则内容必然不同，未命中时客户端可跳过完整 MD5 直接上传，
+     * 由服务端在合并分片时算出 MD5；命中（可能是同一文件，也可能是抽样碰撞）时才需要完整 MD5 走秒传判定.
+     * 未提供指纹的旧客户端保持原有流程. 抽样指纹上线前的文件由 {@link #backfillSampleHashes(int)} 补算，
+     * 补算完成前存在大小相同但没有指纹的文件时，同样要求完整 MD5，避免与这些文件重复的上传错过秒传.
+     *
+     * @param sampleHash 抽样指纹
+     * @param fileSize   文件大小，可为 null
+     * @return 是否需要完整 MD5
+     */
+    public boolean isFullHashRequired(String sampleHash, Long fileSize) {
+        if (StringTools.isEmpty(sampleHash)) {
+            return true;
+        }
+        String normalized = sampleHash.trim().toLowerCase(Locale.ROOT);
+        if (!MD5_PATTERN.matcher(normalized).matches()) {
+            return true;
+        }
+        Integer status = FileStatusEnums.USING.getStatus();
+        boolean matched = fileInfoMapper.existsBySampleHashAndStatus(normalized, status);
+        if (!matched && (fileSize == null || fileInfoMapper.existsUnsampledBySize(fileSize, status))) {
+            log.debug("存在未补算抽样指纹的同大小文件 - sampleHash: {}, fileSize: {}", normalized, fileSize);
+            return true;
+        }
+        log.debug("抽样指纹判重 - sampleHash: {}, matched: {}", normalized, matched);
+        return matched;
+    }
+
+    /**
+     * 为抽样指纹上线前的文件补算指纹.
+     *
+     * <p>按存储路径顺序分批处理，同一路径的所有引用一次补齐；读取失败的文件跳过，一轮扫描结束后从头开始，
+     * 下一轮重试. 指纹只读取对象的头、中、尾三个区间.
+     *
+     * @param limit 单批数量
+     * @return 本批扫描的存储路径数，小于 {@code limit} 表示本轮已扫描完
+     */
+    public int backfillSampleHashes(int limit) {
+        List<FileInfo> batch = fileInfoMapper.selectUnsampledAfterPath(backfillCursor,
+                FileStatusEnums.USING.getStatus(), limit);
+        if (batch.size() < limit) {
+            backfillCursor = "";
+        } else {
+            backfillCursor = batch.get(batch.size() - 1).getFilePath();
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        StorageStrategy storage = storageFactory.getStorageStrategy();
+        int filled = 0;
+        for (FileInfo fileInfo : batch) {
+            String filePath = fileInfo.getFilePath();
+            try {
+                StorageObjectStatDto stat = storage.stat(filePath);
+                if (stat == null) {
+                    log.debug("补算抽样指纹跳过不存在的对象: {}", filePath);
+                    continue;
+                }
+                String sampleHash = SampledFingerprint.compute(stat.getSize(),
+                        (offset, length) -> storage.download(filePath, offset, length));
+                filled += fileInfoMapper.updateSampleHashByPath(filePath, sampleHash);
+            } catch (IOException | RuntimeException e) {
+                log.warn("补算抽样指纹失败: {}", filePath, e);
+            }
+        }
+        log.info("补算抽样指纹 - scanned: {}, filledRows: {}", batch.size(), filled);
+        return batch.size();
+    }
+
+    /**
+     * 批量秒传预检.
+     *
+     * <p>先用内存中的 MD5 布隆过滤器剔除一定不存在的 MD5，剩余的用一次 IN 查询确认，
+     * 同步大量重复文件的目录时只需一次往返. 预检不创建文件记录，秒传仍走 uploadFile 首片.
+     *
+     * @param fileMd5List 文件 MD5 列表
+     * @return 可秒传的 MD5 及文件大小，其余列为需上传
+     */
+    public QuickUploadCheckDto batchCheck(List<String> fileMd5List) {
+        if (fileMd5List.size() > maxCheckSize) {
+            throw new BusinessException("单次预检的 MD5 数量不能超过 " + maxCheckSize);
+        }
+        Set<String> candidates = new LinkedHashSet<>();
+        List<String> missing = new ArrayList<>();
+        for (String raw : fileMd5List) {
+            String fileMd5 = raw == null ? "" : raw.trim().toLowerCase(Locale.ROOT);
+            if (!MD5_PATTERN.matcher(fileMd5).matches()) {
+                missing.add(raw);
+            } else if (redisComponent.mightContainFileMd5(fileMd5)) {
+                candidates.add(fileMd5);
+            } else {
+                missing.add(fileMd5);
+            }
+        }
+
+        Map<String, Long> available = new HashMap<>();
+        if (!candidates.isEmpty()) {
+            for (FileInfo fileInfo : fileInfoMapper.selectByMd5ListAndStatus(candidates,
+                    FileStatusEnums.USING.getStatus())) {
+                available.put(fileInfo.getFileMd5(), fileInfo.getFileSize());
+            }
+            candidates.stream().filter(md5 -> !available.containsKey(md5)).forEach(missing::add);
+        }
+        log.debug("批量秒传预检 - total: {}, bloomHit: {}, available: {}",
+                fileMd5List.size(), candidates.size(), available.size());
+        return QuickUploadCheckDto.builder().available(available).missing(missing).build();
+    }
 
     /**
      * 检查是否可以秒传.
@@ -107,6 +248,7 @@ public class QuickUploadService {
         newFile.setFileId(StringTools.getRandomString(10));
         newFile.setUserId(userId);
         newFile.setFileMd5(existingFile.getFileMd5());
+        newFile.setFileSampleHash(existingFile.getFileSampleHash());
         newFile.setFilePid(filePid);
         newFile.setFileName(fileName);
         newFile.setFilePath(existingFile.getFilePath());
@@ -0,0 +1,245 @@
+package com.easypan.service;
+
+import com.easypan.component.RedisComponent;
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.enums.ResponseCodeEnum;
+import com.easypan.exception.BusinessException;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 上传空间预留服务.
+ *
+ * <p>上传开始时在 Lua 脚本中原子地检查 {@code used + reserved + 本次} 是否超出用户空间与租户配额，
+ * 通过后累加用户、租户计数的 reserved 字段，并发上传之间不再出现先读后判的竞态. 上传完成时把预留转为已用，
+ * 失败或中止时释放；预留记录与到期索引都在 Redis 中，节点重启不丢失，过期预留由定时任务回收.
+ *
+ * <p>Key 设计：
+ *
+ * <p>- easypan:quota:resv:{userId}:{reservationId} - Hash，字段 bytes（已预留字节）/ accepted（已接收分片字节之和）/
+ * tenant / c:{chunkIndex}（已计入的分片）
+ *
+ * <p>- easypan:quota:resv:expiry - ZSet，成员 {userId}:{reservationId}，分值为到期时间（毫秒）
+ *
+ * <p>uploadInit 已知文件大小时一次预留全部空间，之后每个分片只在脚本中登记；未协商的旧客户端则随分片到达逐步扩大预留.
+ */
+@Service
+@Slf4j
+public class QuotaReservationService {
+
+    private static final String RESERVATION_KEY_PREFIX = "easypan:quota:resv:";
+
+    private static final String EXPIRY_KEY = "easypan:quota:resv:expiry";
+
+    private static final String FIELD_TENANT = "tenant";
+
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+
+    /**
+     * KEYS：预留记录、用户计数、租户计数、到期索引；ARGV：分片字段（无则为空串）、分片字节、最少预留字节、
+     * 有效期（秒）、索引成员、租户ID.
+     * 返回 {状态, 附加值}：1 成功（附加值为当前预留）；0 空间不足（1 用户 / 2 租户）；-1 / -2 用户 / 租户计数未加载.
+     */
+    private static final DefaultRedisScript<List> RESERVE_SCRIPT = new DefaultRedisScript<>(
+            "local field = ARGV[1] "
+                    + "local isNew = field ~= '' and redis.call('HEXISTS', KEYS[1], field) == 0 "
+                    + "local accepted = tonumber(redis.call('HGET', KEYS[1], 'accepted') or '0') "
+                    + "if isNew then accepted = accepted + tonumber(ARGV[2]) end "
+                    + "local cur = tonumber(redis.call('HGET', KEYS[1], 'bytes') or '0') "
+                    + "local need = math.max(tonumber(ARGV[3]), accepted) "
+                    + "local ttl = tonumber(ARGV[4]) "
+                    + "if need > cur then "
+                    + "  local delta = need - cur "
+                    + "  local u = redis.call('HMGET', KEYS[2], 'used', 'total', 'reserved') "
+                    + "  if not u[1] or not u[2] then return {-1, 0} end "
+                    + "  local t = redis.call('HMGET', KEYS[3], 'used', 'quota', 'reserved') "
+                    + "  if not t[1] or not t[2] then return {-2, 0} end "
+                    + "  if tonumber(u[1]) + tonumber(u[3] or '0') + delta > tonumber(u[2]) then return {0, 1} end "
+                    + "  local quota = tonumber(t[2]) "
+                    + "  if quota >= 0 and tonumber(t[1]) + tonumber(t[3] or '0') + delta > quota then "
+                    + "    return {0, 2} "
+                    + "  end "
+                    + "  for i = 2, 3 do "
+                    + "    redis.call('HINCRBY', KEYS[i], 'reserved', string.format('%d', delta)) "
+                    + "    if redis.call('TTL', KEYS[i]) < ttl then redis.call('EXPIRE', KEYS[i], ttl) end "
+                    + "  end "
+                    + "  redis.call('HSET', KEYS[1], 'bytes', string.format('%d', need), 'tenant', ARGV[6]) "
+                    + "  cur = need "
+                    + "end "
+                    + "if isNew then "
+                    + "  redis.call('HSET', KEYS[1], field, ARGV[2], 'accepted', string.format('%d', accepted)) "
+                    + "end "
+                    + "local now = redis.call('TIME') "
+                    + "redis.call('ZADD', KEYS[4], tonumber(now[1]) * 1000 + ttl * 1000, ARGV[5]) "
+                    + "redis.call('EXPIRE', KEYS[1], ttl * 2) "
+                    + "return {1, cur}",
+            List.class);
+
+    /**
+     * KEYS：预留记录、用户计数、租户计数、到期索引；ARGV：转为已用的字节（释放时为 0）、索引成员.
+     * 删除预留记录并从计数中扣回预留，返回原预留字节；重复调用是安全的.
+     */
+    private static final DefaultRedisScript<Long> SETTLE_SCRIPT = new DefaultRedisScript<>(
+            "local bytes = tonumber(redis.call('HGET', KEYS[1], 'bytes') or '0') "
+                    + "redis.call('DEL', KEYS[1]) "
+                    + "redis.call('ZREM', KEYS[4], ARGV[2]) "
+                    + "local actual = tonumber(ARGV[1]) "
+                    + "for i = 2, 3 do "
+                    + "  if redis.call('EXISTS', KEYS[i]) == 1 then "
+                    + "    if bytes > 0 and redis.call('HINCRBY', KEYS[i], 'reserved', "
+                    + "        string.format('%d', -bytes)) < 0 then "
+                    + "      redis.call('HSET', KEYS[i], 'reserved', 0) "
+                    + "    end "
+                    + "    if actual ~= 0 and redis.call('HINCRBY', KEYS[i], 'used', ARGV[1]) < 0 then "
+                    + "      redis.call('HSET', KEYS[i], 'used', 0) "
+                    + "    end "
+                    + "  end "
+                    + "end "
+                    + "return bytes",
+            Long.class);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisComponent redisComponent;
+
+    @Resource
+    private TenantQuotaService tenantQuotaService;
+
+    @Value("${app.upload.session-ttl-seconds:86400}")
+    private long ttlSeconds = 86400;
+
+    /**
+     * 预留至少 {@code bytes} 字节，已有预留不小于该值时只刷新有效期.
+     *
+     * @param userId        用户ID
+     * @param tenantId      租户ID
+     * @param reservationId 预留标识（fileId 或批量上传标识）
+     * @param bytes         最少预留字节
+     */
+    public void reserve(String userId, String tenantId, String reservationId, long bytes) {
+        execute(userId, tenantId, reservationId, "", 0L, bytes);
+    }
+
+    /**
+     * 登记一个分片，预留不足以覆盖已接收的分片时扩大预留；同一分片重传不会重复计入.
+     *
+     * @param userId        用户ID
+     * @param tenantId      租户ID
+     * @param reservationId 预留标识
+     * @param chunkIndex    分片序号
+     * @param chunkBytes    分片字节
+     */
+    public void reserveChunk(String userId, String tenantId, String reservationId, int chunkIndex,
+            long chunkBytes) {
+        execute(userId, tenantId, reservationId, "c:" + chunkIndex, chunkBytes, 0L);
+    }
+
+    /**
+     * 把预留转为已用空间.
+     *
+     * @param userId        用户ID
+     * @param tenantId      租户ID，预留记录中已保存时以记录为准
+     * @param reservationId 预留标识
+     * @param actualBytes   实际占用字节
+     */
+    public void commit(String userId, String tenantId, String reservationId, long actualBytes) {
+        settle(userId, tenantId, reservationId, actualBytes);
+    }
+
+    /**
+     * 释放预留.
+     *
+     * @param userId        用户ID
+     * @param tenantId      租户ID，预留记录中已保存时以记录为准
+     * @param reservationId 预留标识
+     */
+    public void release(String userId, String tenantId, String reservationId) {
+        long released = settle(userId, tenantId, reservationId, 0L);
+        if (released > 0) {
+            log.debug("释放上传预留: userId={}, reservationId={}, bytes={}", userId, reservationId, released);
+        }
+    }
+
+    /**
+     * 释放已过期的预留.
+     *
+     * @param limit 单次最多处理的数量
+     * @return 释放的数量
+     */
+    public int releaseExpired(int limit) {
+        Set<String> members = stringRedisTemplate.opsForZSet().rangeByScore(EXPIRY_KEY, 0,
+                System.currentTimeMillis(), 0, limit);
+        if (members == null || members.isEmpty()) {
+            return 0;
+        }
+        int released = 0;
+        for (String member : members) {
+            int separator = member.indexOf(':');
+            if (separator <= 0) {
+                stringRedisTemplate.opsForZSet().remove(EXPIRY_KEY, member);
+                continue;
+            }
+            long bytes = settle(member.substring(0, separator), null, member.substring(separator + 1), 0L);
+            log.info("回收过期上传预留: member={}, bytes={}", member, bytes);
+            released++;
+        }
+        return released;
+    }
+
+    private void execute(String userId, String tenantId, String reservationId, String chunkField, long chunkBytes,
+            long floorBytes) {
+        String member = userId + ":" + reservationId;
+        List<String> keys = List.of(RESERVATION_KEY_PREFIX + member,
+                Constants.REDIS_KEY_USER_SPACE_USE + userId,
+                Constants.REDIS_KEY_TENANT_STORAGE + tenantId,
+                EXPIRY_KEY);
+        for (int attempt = 0; attempt < MAX_LOAD_ATTEMPTS; attempt++) {
+            List<?> result = stringRedisTemplate.execute(RESERVE_SCRIPT, keys, chunkField,
+                    String.valueOf(chunkBytes), String.valueOf(floorBytes), String.valueOf(ttlSeconds), member,
+                    tenantId);
+            long status = ((Number) result.get(0)).longValue();
+            if (status == 1) {
+                return;
+            }
+            if (status == 0) {
+                boolean userScope = ((Number) result.get(1)).longValue() == 1;
+                log.info("上传空间不足: userId={}, tenantId={}, reservationId={}, scope={}",
+                        userId, tenantId, reservationId, userScope ? "user" : "tenant");
+                if (userScope) {
+                    throw new BusinessException(ResponseCodeEnum.CODE_904);
+                }
+                throw new BusinessException("租户存储空间不足");
+            }
+            // 计数缺失（过期或首次访问），从数据库重建后重试
+            if (status == -1) {
+                redisComponent.getUserSpaceUse(userId);
+            } else {
+                tenantQuotaService.loadTenantStorage(tenantId);
+            }
+        }
+        throw new BusinessException("空间计数加载失败，请重试");
+    }
+
+    private long settle(String userId, String tenantId, String reservationId, long actualBytes) {
+        String member = userId + ":" + reservationId;
+        String reservationKey = RESERVATION_KEY_PREFIX + member;
+        Object storedTenant = stringRedisTemplate.opsForHash().get(reservationKey, FIELD_TENANT);
+        String resolvedTenant = storedTenant != null ? storedTenant.toString() : tenantId;
+        Long bytes = stringRedisTemplate.execute(SETTLE_SCRIPT,
+                List.of(reservationKey,
+                        Constants.REDIS_KEY_USER_SPACE_USE + userId,
+                        Constants.REDIS_KEY_TENANT_STORAGE + resolvedTenant,
+                        EXPIRY_KEY),
+                String.valueOf(actualBytes), member);
+        return bytes == null ? 0L : bytes;
+    }
+}
@@ -1,13 +1,14 @@
 package com.easypan.service;
 
+import com.easypan.component.UploadSessionStore;
 import com.easypan.entity.dto.UploadProgressDto;
+import com.easypan.entity.dto.UploadSessionDto;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
-import java.util.Set;
-import java.util.concurrent.TimeUnit;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * 断点续传服务.
@@ -16,11 +17,7 @@ import java.util.concurrent.TimeUnit;
  *
  * <p>使用 Redis 记录上传进度，支持客户端断线重连后继续上传
  *
- * <p>Redis Key 设计：
- *
- * <p>- upload:progress:{userId}:{fileMd5}:completed - Set 类型，存储已完成的分片索引
- *
- * <p>- upload:progress:{userId}:{fileMd5}:total - String 类型，存储总分片数
+ * <p>进度存放在共享的 {@link UploadSessionStore} 中（会话 Hash + 分片位图），以文件 MD5 作为上传标识
  *
  * <p>需求：2.3.2
  */
@@ -29,17 +26,7 @@ import java.util.concurrent.TimeUnit;
 public class ResumableUploadService {
 
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
-
-    /**
-     * Redis Key 前缀.
-     */
-    private static final String UPLOAD_PROGRESS_KEY = "upload:progress:";
-
-    /**
-     * 上传进度过期时间（7天）.
-     */
-    private static final long PROGRESS_EXPIRE_DAYS = 7;
+    private UploadSessionStore uploadSessionStore;
 
     /**
      * 获取上传进度.
@@ -51,14 +38,9 @@ public class ResumableUploadService {
      * @return 上传进度信息
      */
     public UploadProgressDto getUploadProgress(String userId, String fileMd5) {
-        String uploadKey = buildUploadKey(userId, fileMd5);
-
-        Set<Object> completedChunks = redisTemplate.opsForSet().members(uploadKey + ":completed");
-
-        Object totalChunksObj = redisTemplate.opsForValue().get(uploadKey + ":total");
-        Integer totalChunks = totalChunksObj != null ? Integer.parseInt(totalChunksObj.toString()) : null;
-
-        int completedCount = completedChunks != null ? completedChunks.size() : 0;
+        UploadSessionDto session = uploadSessionStore.getSession(userId, fileMd5);
+        Integer totalChunks = session.getTotalChunks();
+        int completedCount = session.getCompletedChunks();
 
         log.debug("获取上传进度 - userId: {}, fileMd5: {}, 已完成: {}/{}",
                 userId, fileMd5, completedCount, totalChunks);
@@ -81,10 +63,7 @@ public class ResumableUploadService {
      * @return true 表示该分片已上传，false 表示未上传
      */
     public boolean isChunkUploaded(String userId, String fileMd5, Integer chunkIndex) {
-        String uploadKey = buildUploadKey(userId, fileMd5);
-        Boolean isMember = redisTemplate.opsForSet().isMember(uploadKey + ":completed", (Object) chunkIndex);
-
-        boolean uploaded = Boolean.TRUE.equals(isMember);
+        boolean uploaded = uploadSessionStore.isChunkMarked(userId, fileMd5, chunkIndex);
 
         log.debug("检查分片状态 - userId: {}, fileMd5: {}, chunkIndex: {}, 已上传: {}",
                 userId, fileMd5, chunkIndex, uploaded);
@@ -95,18 +74,15 @@ public class ResumableUploadService {
     /**
      * 记录分片上传完成.
      *
-     * <p>将已完成的分片索引添加到 Redis Set 中
+     * <p>将分片位图中对应位置 1，重复标记不会重复计数
      *
      * @param userId 用户ID
      * @param fileMd5 文件MD5值
      * @param chunkIndex 分片索引
+     * @param chunkBytes 分片字节数，计入已接收字节数
      */
-    public void markChunkCompleted(String userId, String fileMd5, Integer chunkIndex) {
-        String uploadKey = buildUploadKey(userId, fileMd5);
-
-        redisTemplate.opsForSet().add(uploadKey + ":completed", (Object) chunkIndex);
-
-        redisTemplate.expire(uploadKey + ":completed", PROGRESS_EXPIRE_DAYS, TimeUnit.DAYS);
+    public void markChunkCompleted(String userId, String fileMd5, Integer chunkIndex, long chunkBytes) {
+        uploadSessionStore.markChunk(userId, fileMd5, chunkIndex, chunkBytes);
 
         log.debug("标记分片完成 - userId: {}, fileMd5: {}, chunkIndex: {}",
                 userId, fileMd5, chunkIndex);
@@ -122,10 +98,7 @@ public class ResumableUploadService {
      * @param totalChunks 总分片数
      */
     public void initUploadTask(String userId, String fileMd5, Integer totalChunks) {
-        String uploadKey = buildUploadKey(userId, fileMd5);
-
-        redisTemplate.opsForValue().set(uploadKey + ":total", totalChunks,
-                PROGRESS_EXPIRE_DAYS, TimeUnit.DAYS);
+        uploadSessionStore.initSession(userId, fileMd5, totalChunks, null);
 
         log.info("初始化上传任务 - userId: {}, fileMd5: {}, totalChunks: {}",
                 userId, fileMd5, totalChunks);
@@ -140,11 +113,7 @@ public class ResumableUploadService {
      * @param fileMd5 文件MD5值
      */
     public void clearUploadProgress(String userId, String fileMd5) {
-        String uploadKey = buildUploadKey(userId, fileMd5);
-
-        redisTemplate.delete(uploadKey + ":completed");
-
-        redisTemplate.delete(uploadKey + ":total");
+        uploadSessionStore.clearSession(userId, fileMd5);
 
         log.info("清除上传进度 - userId: {}, fileMd5: {}", userId, fileMd5);
     }
@@ -169,13 +138,19 @@ public class ResumableUploadService {
     }
 
     /**
-     * 构建 Redis Key.
+     * 获取缺失的分片索引.
+     *
+     * <p>断点续传时客户端只需补传这些分片
      *
      * @param userId 用户ID
      * @param fileMd5 文件MD5值
-     * @return Redis Key
+     * @return 缺失分片索引（升序），未初始化总分片数时返回空列表
      */
-    private String buildUploadKey(String userId, String fileMd5) {
-        return UPLOAD_PROGRESS_KEY + userId + ":" + fileMd5;
+    public List<Integer> getMissingChunks(String userId, String fileMd5) {
+        Integer totalChunks = uploadSessionStore.getSession(userId, fileMd5).getTotalChunks();
+        if (totalChunks == null) {
+            return Collections.emptyList();
+        }
+        return uploadSessionStore.getMissingChunks(userId, fileMd5, totalChunks);
     }
 }
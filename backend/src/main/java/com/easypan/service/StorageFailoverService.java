@@ -1,5 +1,6 @@
 package com.easypan.service;
 
+import com.easypan.entity.dto.StorageObjectStatDto;
 import com.easypan.entity.enums.StorageTypeEnum;
 import com.easypan.strategy.StorageFactory;
 import com.easypan.strategy.StorageStrategy;
@@ -12,6 +13,7 @@ import jakarta.annotation.Resource;
 import java.io.File;
 import java.io.InputStream;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
 
 /**
  * 存储故障转移服务，实现主备存储切换.
@@ -99,6 +101,40 @@ public class StorageFailoverService implements StorageStrategy {
         }
     }
 
+    @Override
+    public void upload(File file, String path, LongConsumer progressListener) {
+        if (isCircuitOpen()) {
+            logger.warn("熔断开启，直接使用 Backup 上传: {}", path);
+            getBackup().upload(file, path, progressListener);
+            return;
+        }
+        try {
+            getPrimary().upload(file, path, progressListener);
+            onPrimarySuccess();
+        } catch (Exception e) {
+            onPrimaryFailure();
+            logger.error("Primary storage upload failed, switching to backup. Path: {}", path, e);
+            getBackup().upload(file, path, progressListener);
+        }
+    }
+
+    @Override
+    public void upload(byte[] content, String path) {
+        if (isCircuitOpen()) {
+            logger.warn("熔断开启，直接使用 Backup 上传: {}", path);
+            getBackup().upload(content, path);
+            return;
+        }
+        try {
+            getPrimary().upload(content, path);
+            onPrimarySuccess();
+        } catch (Exception e) {
+            onPrimaryFailure();
+            logger.error("Primary storage upload failed, switching to backup. Path: {}", path, e);
+            getBackup().upload(content, path);
+        }
+    }
+
     @Override
     public void uploadDirectory(String prefix, File directory) {
         if (isCircuitOpen()) {
@@ -133,6 +169,47 @@ public class StorageFailoverService implements StorageStrategy {
         }
     }
 
+    @Override
+    public InputStream download(String path, long offset, long length) {
+        if (isCircuitOpen()) {
+            logger.warn("熔断开启，直接使用 Backup 下载: {}", path);
+            return getBackup().download(path, offset, length);
+        }
+        try {
+            InputStream result = getPrimary().download(path, offset, length);
+            onPrimarySuccess();
+            return result;
+        } catch (Exception e) {
+            onPrimaryFailure();
+            logger.warn("Primary storage range download failed, attempting backup. Path: {}", path, e);
+            return getBackup().download(path, offset, length);
+        }
+    }
+
+    @Override
+    public StorageObjectStatDto stat(String path) {
+        if (isCircuitOpen()) {
+            return getBackup().stat(path);
+        }
+        try {
+            StorageObjectStatDto stat = getPrimary().stat(path);
+            onPrimarySuccess();
+            // 主存储上传失败时文件落在 Backup
+            return stat != null ? stat : getBackup().stat(path);
+        } catch (Exception e) {
+            onPrimaryFailure();
+            logger.warn("Primary storage stat failed, attempting backup. Path: {}", path, e);
+            return getBackup().stat(path);
+        }
+    }
+
+    @Override
+    public File getLocalFile(String path) {
+        // Backup 为本地存储，主存储写入失败的文件同样可以零拷贝输出
+        File file = isCircuitOpen() ? null : getPrimary().getLocalFile(path);
+        return file != null ? file : getBackup().getLocalFile(path);
+    }
+
     @Override
     public void delete(String path) {
         try {
@@ -38,14 +38,12 @@ public class TenantQuotaService {
     /**
      * 检查存储配额.
      *
+     * <p>已用量与上传中的预留量都计入，与 {@link QuotaReservationService} 的原子预留口径一致.
+     *
      * @param fileSize 待上传文件大小
      */
     public void checkStorageQuota(Long fileSize) {
         String tenantId = TenantContextHolder.getTenantId();
-        if (tenantId == null || "default".equals(tenantId)) {
-            // 默认租户可能有很大配额，但还是要检查
-        }
-
         TenantInfo tenantInfo = tenantInfoMapper.selectOneById(tenantId);
         if (tenantInfo == null) {
             // 租户不存在，可能是未初始化的默认租户
@@ -60,26 +58,44 @@ public class TenantQuotaService {
         // 优先从缓存获取已用存储
         Long usedStorage = redisComponent.getTenantUsedStorage(tenantId);
         if (usedStorage == null) {
-            // 缓存未命中，查询数据库
-            usedStorage = fileInfoMapper.selectObjectByQueryAs(
-                    QueryWrapper.create().select("sum(file_size)")
-                            .from(FILE_INFO)
-                            .where(FILE_INFO.DEL_FLAG.in(1, 2)),
-                    Long.class
-            );
-            if (usedStorage == null) {
-                usedStorage = 0L;
-            }
-            // 写入缓存
-            redisComponent.saveTenantUsedStorage(tenantId, usedStorage);
+            // 缓存未命中，查询数据库并写入缓存
+            usedStorage = selectUsedStorage();
+            redisComponent.saveTenantStorage(tenantId, usedStorage, tenantInfo.getStorageQuota());
         }
+        long reservedStorage = redisComponent.getTenantReservedStorage(tenantId);
 
-        if (usedStorage + fileSize > tenantInfo.getStorageQuota()) {
+        if (usedStorage + reservedStorage + fileSize > tenantInfo.getStorageQuota()) {
             throw new BusinessException(String.format("租户存储空间不足，总配额: %d MB, 已用: %d MB", 
                 tenantInfo.getStorageQuota() / 1024 / 1024, usedStorage / 1024 / 1024));
         }
     }
 
+    /**
+     * 从数据库重建租户存储计数（已用量与配额），供 Lua 预留脚本使用.
+     *
+     * @param tenantId 租户ID
+     */
+    public void loadTenantStorage(String tenantId) {
+        TenantInfo tenantInfo = tenantInfoMapper.selectOneById(tenantId);
+        if (tenantInfo != null && tenantInfo.getStatus() != null && tenantInfo.getStatus() == 0) {
+            throw new BusinessException("租户已被禁用");
+        }
+        // 未初始化的租户不限配额，与 checkStorageQuota 的处理一致
+        Long storageQuota = tenantInfo == null || tenantInfo.getStorageQuota() == null
+                ? -1L : tenantInfo.getStorageQuota();
+        redisComponent.saveTenantStorage(tenantId, selectUsedStorage(), storageQuota);
+    }
+
+    private Long selectUsedStorage() {
+        Long usedStorage = fileInfoMapper.selectObjectByQueryAs(
+                QueryWrapper.create().select("sum(file_size)")
+                        .from(FILE_INFO)
+                        .where(FILE_INFO.DEL_FLAG.in(1, 2)),
+                Long.class
+        );
+        return usedStorage == null ? 0L : usedStorage;
+    }
+
     /**
      * 更新租户已用存储（增量）.
      * 上传成功后调用。
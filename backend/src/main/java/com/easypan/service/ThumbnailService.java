@@ -0,0 +1,279 @@
+package com.easypan.service;
+
+import com.easypan.component.ImageThumbnailer;
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.enums.FileCategoryEnums;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.exception.BusinessException;
+import com.easypan.strategy.StorageFactory;
+import com.easypan.utils.StringTools;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 多尺寸缩略图服务.
+ *
+ * <p>按请求的宽度与格式（jpg、png、webp）即时生成图片缩略图，宽度向上取整到 {@code app.thumbnail.widths}
+ * 中的档位，且不超过原图宽度，避免任意宽度撑大缓存. 视频以上传时生成的封面为源. 同一变体的并发请求共用一次生成，
+ * 解码受 {@link ImageThumbnailer} 的内存预算约束.
+ *
+ * <p>生成结果存放在本地磁盘缓存目录，以文件 MD5 为键，秒传产生的相同文件共用缩略图；没有 MD5 的文件以存储路径
+ * 的摘要为键. 缓存总大小受 {@code app.thumbnail.cache-max-mb} 限制，超出时按 Caffeine 的访问频率与时间淘汰，
+ * 被淘汰的文件同时删除；启动时扫描目录恢复索引.
+ *
+ * <p>WebP 需要 classpath 中有 ImageIO 的 WebP 编码插件，不可用时改为输出 jpg.
+ */
+@Service
+@Slf4j
+public class ThumbnailService {
+
+    private static final String FORMAT_JPG = "jpg";
+
+    private static final String FORMAT_PNG = "png";
+
+    private static final String FORMAT_WEBP = "webp";
+
+    private static final String CACHE_FOLDER = "/thumbnail/";
+
+    private static final Pattern MD5_PATTERN = Pattern.compile("[0-9a-fA-F]{32}");
+
+    @Resource
+    private StorageFactory storageFactory;
+
+    @Resource
+    private AppConfig appConfig;
+
+    @Resource
+    private ImageThumbnailer imageThumbnailer;
+
+    @Value("${app.thumbnail.widths:150,300,600,1200}")
+    private int[] widths = {150, 300, 600, 1200};
+
+    @Value("${app.thumbnail.cache-max-mb:1024}")
+    private long cacheMaxMb = 1024;
+
+    private final Map<String, CompletableFuture<File>> inFlight = new ConcurrentHashMap<>();
+
+    private Cache<String, File> index;
+
+    private File cacheDir;
+
+    private boolean webpSupported;
+
+    @PostConstruct
+    public void init() {
+        widths = Arrays.stream(widths).filter(w -> w > 0).sorted().distinct().toArray();
+        if (widths.length == 0) {
+            throw new IllegalStateException("app.thumbnail.widths 至少需要一个正数宽度");
+        }
+        webpSupported = ImageIO.getImageWritersByFormatName(FORMAT_WEBP).hasNext();
+        cacheDir = new File(appConfig.getProjectFolder() + CACHE_FOLDER);
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            log.warn("[Thumbnail] 创建缓存目录失败: {}", cacheDir.getAbsolutePath());
+        }
+        // 权重以 KB 计，避免单个权重超过 int 范围
+        index = Caffeine.newBuilder()
+                .maximumWeight(Math.max(1L, cacheMaxMb) * 1024)
+                .weigher((String key, File file) -> (int) Math.max(1L, Math.min(Integer.MAX_VALUE,
+                        file.length() / 1024)))
+                .removalListener((String key, File file, RemovalCause cause) -> {
+                    if (cause.wasEvicted() && file != null) {
+                        FileUtils.deleteQuietly(file);
+                    }
+                })
+                .build();
+        restoreIndex();
+        log.info("[Thumbnail] 缩略图服务启动: widths={}, cacheMaxMb={}, cached={}, webp={}",
+                Arrays.toString(widths), cacheMaxMb, index.estimatedSize(), webpSupported);
+    }
+
+    /**
+     * 获取缩略图文件，不存在时生成.
+     *
+     * @param fileInfo 文件记录，需为图片或已有封面的视频
+     * @param width    期望宽度
+     * @param format   期望格式，为空时为 jpg
+     * @return 缩略图文件
+     */
+    public File getThumbnail(FileInfo fileInfo, Integer width, String format) {
+        String sourcePath = resolveSourcePath(fileInfo);
+        int targetWidth = snapWidth(width);
+        String targetFormat = resolveFormat(format);
+        String key = cacheKey(fileInfo, sourcePath) + "_" + targetWidth + "." + targetFormat;
+
+        File cached = index.getIfPresent(key);
+        if (cached != null && cached.isFile()) {
+            return cached;
+        }
+        CompletableFuture<File> created = new CompletableFuture<>();
+        CompletableFuture<File> future = inFlight.putIfAbsent(key, created);
+        if (future == null) {
+            future = created;
+            try {
+                File file = generate(sourcePath, key, targetWidth, targetFormat);
+                index.put(key, file);
+                created.complete(file);
+            } catch (Exception e) {
+                created.completeExceptionally(e);
+            } finally {
+                inFlight.remove(key, created);
+            }
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("生成缩略图被中断");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BusinessException businessException) {
+                throw businessException;
+            }
+            log.error("[Thumbnail] 生成缩略图失败: key={}", key, e.getCause());
+            throw new BusinessException("生成缩略图失败");
+        }
+    }
+
+    /**
+     * 响应的 Content-Type.
+     *
+     * @param thumbnail 缩略图文件
+     * @return Content-Type
+     */
+    public static String contentTypeOf(File thumbnail) {
+        String suffix = StringTools.getFileSuffix(thumbnail.getName()).replace(".", "");
+        return FORMAT_JPG.equals(suffix) ? "image/jpeg" : "image/" + suffix;
+    }
+
+    /**
+     * 向上取整到配置的宽度档位，超过最大档位时取最大档位.
+     *
+     * @param width 期望宽度，为空时取最小档位
+     * @return 档位宽度
+     */
+    public int snapWidth(Integer width) {
+        if (width == null || width <= 0) {
+            return widths[0];
+        }
+        for (int candidate : widths) {
+            if (candidate >= width) {
+                return candidate;
+            }
+        }
+        return widths[widths.length - 1];
+    }
+
+    private String resolveFormat(String format) {
+        String normalized = StringTools.isEmpty(format) ? FORMAT_JPG : format.toLowerCase(Locale.ROOT);
+        if ("jpeg".equals(normalized)) {
+            normalized = FORMAT_JPG;
+        }
+        if (FORMAT_WEBP.equals(normalized)) {
+            return webpSupported ? FORMAT_WEBP : FORMAT_JPG;
+        }
+        if (!FORMAT_JPG.equals(normalized) && !FORMAT_PNG.equals(normalized)) {
+            throw new BusinessException("不支持的缩略图格式: " + format);
+        }
+        return normalized;
+    }
+
+    private static String resolveSourcePath(FileInfo fileInfo) {
+        if (FileCategoryEnums.IMAGE.getCategory().equals(fileInfo.getFileCategory())) {
+            return fileInfo.getFilePath();
+        }
+        if (FileCategoryEnums.VIDEO.getCategory().equals(fileInfo.getFileCategory())
+                && !StringTools.isEmpty(fileInfo.getFileCover())) {
+            return fileInfo.getFileCover();
+        }
+        throw new BusinessException("该文件没有缩略图");
+    }
+
+    /**
+     * 相同内容的文件共用缩略图：图片以 MD5 为键，视频封面按存储路径区分.
+     */
+    private static String cacheKey(FileInfo fileInfo, String sourcePath) {
+        String md5 = fileInfo.getFileMd5();
+        // MD5 由客户端上报，作为文件名前校验格式
+        if (sourcePath.equals(fileInfo.getFilePath()) && md5 != null && MD5_PATTERN.matcher(md5).matches()) {
+            return md5.toLowerCase(Locale.ROOT);
+        }
+        return "p" + DigestUtils.md5Hex(sourcePath);
+    }
+
+    private File generate(String sourcePath, String key, int width, String format) throws IOException {
+        File target = fileOf(key);
+        if (target.isFile()) {
+            // 其他节点或重启前已生成
+            return target;
+        }
+        File parent = target.getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("创建缓存目录失败: " + parent.getPath());
+        }
+        File temp = new File(parent, key + "." + StringTools.getRandomString(6) + ".tmp");
+        try {
+            try (InputStream in = storageFactory.getStorageStrategy().download(sourcePath);
+                    OutputStream out = new FileOutputStream(temp)) {
+                imageThumbnailer.write(in, width, format, out);
+            }
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            FileUtils.deleteQuietly(temp);
+        }
+        log.debug("[Thumbnail] 生成缩略图: key={}, size={}", key, target.length());
+        return target;
+    }
+
+    /**
+     * 按键的前两个字符分目录，避免单个目录文件过多.
+     */
+    private File fileOf(String key) {
+        return new File(new File(cacheDir, key.substring(0, 2)), key);
+    }
+
+    private void restoreIndex() {
+        if (!cacheDir.isDirectory()) {
+            return;
+        }
+        try (Stream<java.nio.file.Path> files = Files.walk(cacheDir.toPath(), 2)) {
+            files.map(java.nio.file.Path::toFile)
+                    .filter(File::isFile)
+                    .sorted(Comparator.comparingLong(File::lastModified))
+                    .forEach(file -> {
+                        if (file.getName().endsWith(".tmp")) {
+                            FileUtils.deleteQuietly(file);
+                        } else {
+                            index.put(file.getName(), file);
+                        }
+                    });
+        } catch (IOException e) {
+            log.warn("[Thumbnail] 恢复缓存索引失败", e);
+        }
+    }
+}
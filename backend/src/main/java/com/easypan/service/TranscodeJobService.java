@@ -0,0 +1,178 @@
+package com.easypan.service;
+
+import com.easypan.component.TranscodeScheduler;
+import com.easypan.entity.enums.TranscodeStageEnums;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.entity.po.TranscodeJob;
+import com.easypan.exception.BusinessException;
+import com.easypan.mappers.TranscodeJobMapper;
+import com.easypan.utils.StringTools;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 转码任务持久化服务.
+ *
+ * <p>上传完成时在同一事务中写入任务，执行节点通过租约独占任务并定期续约，每完成一个阶段
+ * （合并、存储、封面、切片）记录一次. 节点宕机后租约到期，其他节点（或重启后的本节点）领取任务并从
+ * 最后完成的阶段之后继续. 失败按指数退避重试，次数用尽后保留记录与最后一次错误.
+ *
+ * <p>节点标识在进程启动时生成，重启后的节点不会误认为旧租约仍属于自己.
+ */
+@Service
+@Slf4j
+public class TranscodeJobService {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private static final int MAX_HOST_LENGTH = 50;
+
+    @Resource
+    private TranscodeJobMapper transcodeJobMapper;
+
+    @Value("${app.transcode.lease-seconds:120}")
+    private long leaseSeconds = 120;
+
+    @Value("${app.transcode.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    @Value("${app.transcode.retry-delay-seconds:30}")
+    private long retryDelaySeconds = 30;
+
+    private final String nodeId = resolveNodeId();
+
+    /**
+     * 创建任务，需在保存文件记录的事务中调用.
+     *
+     * @param fileInfo 文件记录
+     * @param tenantId 租户ID
+     */
+    public void create(FileInfo fileInfo, String tenantId) {
+        TranscodeJob job = new TranscodeJob();
+        job.setFileId(fileInfo.getFileId());
+        job.setUserId(fileInfo.getUserId());
+        job.setTenantId(tenantId);
+        job.setLane(TranscodeScheduler.laneOf(fileInfo.getFileName()).name());
+        job.setFileSize(fileInfo.getFileSize() == null ? 0L : fileInfo.getFileSize());
+        job.setLeaseOwner(nodeId);
+        transcodeJobMapper.insertJob(job, leaseSeconds);
+    }
+
+    /**
+     * 领取任务.
+     *
+     * @param fileId 文件ID
+     * @param userId 用户ID
+     * @return 任务，已完成或由其他节点持有时返回 null
+     */
+    public TranscodeJob claim(String fileId, String userId) {
+        if (transcodeJobMapper.claim(fileId, userId, nodeId, leaseSeconds) == 0) {
+            return null;
+        }
+        return transcodeJobMapper.selectByFileIdAndUserId(fileId, userId);
+    }
+
+    /**
+     * 记录阶段完成.
+     *
+     * @param job   任务
+     * @param stage 完成的阶段
+     */
+    public void completeStage(TranscodeJob job, TranscodeStageEnums stage) {
+        if (transcodeJobMapper.updateStage(job.getFileId(), job.getUserId(), nodeId, stage.name()) == 0) {
+            throw new BusinessException("转码任务租约已失效: " + job.getFileId());
+        }
+        job.setStage(stage.name());
+    }
+
+    /**
+     * 任务成功，删除记录.
+     *
+     * @param job 任务
+     */
+    public void finish(TranscodeJob job) {
+        transcodeJobMapper.deleteByFileIdAndUserId(job.getFileId(), job.getUserId());
+    }
+
+    /**
+     * 记录失败.
+     *
+     * @param job   任务
+     * @param error 失败原因
+     * @return true 表示稍后重试（或已由其他节点接管），false 表示重试次数已用尽
+     */
+    public boolean fail(TranscodeJob job, Throwable error) {
+        String message = StringTools.isEmpty(error.getMessage()) ? error.getClass().getSimpleName()
+                : error.getMessage();
+        if (message.length() > MAX_ERROR_LENGTH) {
+            message = message.substring(0, MAX_ERROR_LENGTH);
+        }
+        int attempts = job.getAttempts() == null ? 1 : job.getAttempts();
+        if (attempts >= maxAttempts) {
+            if (transcodeJobMapper.markFailed(job.getFileId(), job.getUserId(), nodeId, message) == 0) {
+                // 租约已被其他节点接管，由接管方决定结果
+                return true;
+            }
+            log.warn("[TranscodeJob] 重试次数用尽: fileId={}, attempts={}, stage={}, error={}",
+                    job.getFileId(), attempts, job.getStage(), message);
+            return false;
+        }
+        long delay = retryDelaySeconds << Math.min(attempts - 1, 10);
+        transcodeJobMapper.markRetry(job.getFileId(), job.getUserId(), nodeId, message, delay);
+        log.info("[TranscodeJob] 任务失败，{} 秒后重试: fileId={}, attempts={}, stage={}",
+                delay, job.getFileId(), attempts, job.getStage());
+        return true;
+    }
+
+    /**
+     * 续约本节点排队中与执行中的任务.
+     *
+     * @param fileIds 本节点持有的任务文件ID
+     */
+    public void renewLeases(Collection<String> fileIds) {
+        if (fileIds.isEmpty()) {
+            return;
+        }
+        transcodeJobMapper.renewLeases(nodeId, fileIds, leaseSeconds);
+    }
+
+    /**
+     * 查询可接管的任务.
+     *
+     * @param limit 数量上限
+     * @return 任务列表
+     */
+    public List<TranscodeJob> findRecoverable(int limit) {
+        return transcodeJobMapper.selectRecoverable(limit);
+    }
+
+    /**
+     * 未完成任务的临时分片目录名.
+     *
+     * @return 目录名集合
+     */
+    public Set<String> findActiveTempFolderNames() {
+        return new HashSet<>(transcodeJobMapper.selectActiveTempFolderNames());
+    }
+
+    private static String resolveNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        if (host.length() > MAX_HOST_LENGTH) {
+            host = host.substring(0, MAX_HOST_LENGTH);
+        }
+        return host + "-" + StringTools.getRandomString(6);
+    }
+}
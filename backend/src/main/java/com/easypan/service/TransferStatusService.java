@@ -0,0 +1,277 @@
+package com.easypan.service;
+
+import com.easypan.component.RedisComponent;
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.dto.FileTransferStatusDto;
+import com.easypan.entity.dto.TransferStatusEventDto;
+import com.easypan.entity.enums.FileStatusEnums;
+import com.easypan.entity.enums.TranscodeStageEnums;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * 转码状态推送服务.
+ *
+ * <p>转码工作线程在阶段开始、进度变化与结束时发布事件到 Redis 频道，每个节点只订阅一次该频道，收到事件后
+ * 转发给本节点上订阅了该文件的 SSE 连接；查看进度的连接不再各自轮询数据库. 进度同时写入 Redis，供
+ * {@code /transferStatus} 查询与新连接的首次快照使用.
+ *
+ * <p>每个连接的事件按收到的顺序排队，同一时刻最多一个虚拟线程写出，进度不会倒退，结束后到达的事件不再写出；
+ * 新连接在首次快照写出前收到的事件先排队，快照之后再写出.
+ */
+@Service
+@Slf4j
+public class TransferStatusService implements MessageListener {
+
+    /**
+     * SSE 连接的最长保持时间.
+     */
+    private static final long EMITTER_TIMEOUT_MILLIS = 30L * 60 * 1000;
+
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Resource
+    private RedisComponent redisComponent;
+
+    @Resource
+    @Qualifier("virtualThreadExecutor")
+    private AsyncTaskExecutor virtualThreadExecutor;
+
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this,
+                new ChannelTopic(Constants.REDIS_CHANNEL_TRANSFER_STATUS));
+    }
+
+    /**
+     * 订阅文件的转码状态. 先登记连接再读取当前状态，避免两者之间发布的结束事件丢失；已结束的直接推送
+     * 结果并关闭.
+     *
+     * @param userId        用户ID
+     * @param fileId        文件ID
+     * @param currentStatus 读取文件当前状态，文件不存在时返回空
+     * @return SSE 连接
+     */
+    public SseEmitter subscribe(String userId, String fileId, Supplier<Integer> currentStatus) {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MILLIS);
+        Subscriber subscriber = new Subscriber(emitter);
+        String key = keyOf(userId, fileId);
+        subscribers.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        Runnable unregister = () -> {
+            subscriber.closed = true;
+            subscribers.computeIfPresent(key, (k, set) -> {
+                set.remove(subscriber);
+                return set.isEmpty() ? null : set;
+            });
+        };
+        emitter.onCompletion(unregister);
+        emitter.onTimeout(unregister);
+        emitter.onError(ex -> unregister.run());
+
+        Integer status = currentStatus.get();
+        FileTransferStatusDto snapshot = new FileTransferStatusDto();
+        snapshot.setFileId(fileId);
+        // 文件已删除时按转码失败结束，与前端的结束判断一致
+        snapshot.setStatus(status == null ? FileStatusEnums.TRANSFER_FAIL.getStatus() : status);
+        snapshot.setProgress(redisComponent.getTransferProgress(userId, fileId));
+        // 快照写出后再写出登记以来排队的事件
+        if (!send(emitter, snapshot)) {
+            subscriber.closed = true;
+        }
+        subscriber.drain();
+        return emitter;
+    }
+
+    /**
+     * 发布转码阶段与进度.
+     *
+     * @param userId  用户ID
+     * @param fileId  文件ID
+     * @param stage   当前阶段
+     * @param percent 进度百分比，可为空
+     */
+    public void publishProgress(String userId, String fileId, TranscodeStageEnums stage, Integer percent) {
+        if (percent != null) {
+            redisComponent.saveTransferProgress(userId, fileId, percent);
+        }
+        publish(userId, fileId, FileStatusEnums.TRANSFER.getStatus(), stage.name(), percent);
+    }
+
+    /**
+     * 发布转码结束，订阅方收到后关闭连接.
+     *
+     * @param userId 用户ID
+     * @param fileId 文件ID
+     * @param status 最终状态
+     */
+    public void publishFinished(String userId, String fileId, Integer status) {
+        publish(userId, fileId, status, null, null);
+    }
+
+    /**
+     * 阶段进度回调：只在百分比增加时发布，FFmpeg 与存储上传的高频回调不会逐次写 Redis.
+     *
+     * @param userId 用户ID
+     * @param fileId 文件ID
+     * @param stage  当前阶段
+     * @return 进度回调，参数为 0-100 的百分比
+     */
+    public IntConsumer progressListener(String userId, String fileId, TranscodeStageEnums stage) {
+        int[] lastPercent = {-1};
+        return percent -> {
+            synchronized (lastPercent) {
+                if (percent <= lastPercent[0]) {
+                    return;
+                }
+                lastPercent[0] = percent;
+            }
+            publishProgress(userId, fileId, stage, percent);
+        };
+    }
+
+    private void publish(String userId, String fileId, Integer status, String stage, Integer percent) {
+        TransferStatusEventDto event = new TransferStatusEventDto();
+        event.setUserId(userId);
+        event.setFileId(fileId);
+        event.setStatus(status);
+        event.setStage(stage);
+        event.setProgress(percent);
+        try {
+            redisTemplate.convertAndSend(Constants.REDIS_CHANNEL_TRANSFER_STATUS, event);
+        } catch (Exception e) {
+            // 推送失败不影响转码，前端仍可通过 /transferStatus 查询
+            log.warn("[Transfer] 发布转码状态失败: fileId={}, status={}, stage={}", fileId, status, stage, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object value = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (!(value instanceof TransferStatusEventDto event)) {
+            return;
+        }
+        Set<Subscriber> targets = subscribers.get(keyOf(event.getUserId(), event.getFileId()));
+        if (targets == null || targets.isEmpty()) {
+            return;
+        }
+        FileTransferStatusDto dto = new FileTransferStatusDto();
+        dto.setFileId(event.getFileId());
+        dto.setStatus(event.getStatus());
+        dto.setProgress(event.getProgress());
+        dto.setStage(event.getStage());
+        // 在虚拟线程上写出，慢连接不阻塞订阅线程
+        for (Subscriber subscriber : targets) {
+            subscriber.offer(dto);
+        }
+    }
+
+    /**
+     * 本节点当前的订阅连接数.
+     *
+     * @return 连接数
+     */
+    public int subscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    /**
+     * 写出一个事件，结束状态写出后关闭连接.
+     *
+     * @return 连接是否仍然打开
+     */
+    private static boolean send(SseEmitter emitter, FileTransferStatusDto dto) {
+        try {
+            emitter.send(SseEmitter.event().data(dto));
+            if (!FileStatusEnums.TRANSFER.getStatus().equals(dto.getStatus())) {
+                emitter.complete();
+                return false;
+            }
+            return true;
+        } catch (Exception e) {
+            // 客户端已断开
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    private static String keyOf(String userId, String fileId) {
+        return userId + ":" + fileId;
+    }
+
+    /**
+     * 单个 SSE 连接及其待写出的事件.
+     */
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+
+        private final Queue<FileTransferStatusDto> pending = new ConcurrentLinkedQueue<>();
+
+        /**
+         * 是否有线程正在写出；创建时由订阅线程持有，首次快照写出后释放.
+         */
+        private final AtomicBoolean draining = new AtomicBoolean(true);
+
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void offer(FileTransferStatusDto dto) {
+            if (closed) {
+                return;
+            }
+            pending.add(dto);
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    virtualThreadExecutor.execute(this::drain);
+                } catch (RuntimeException e) {
+                    draining.set(false);
+                    log.warn("[Transfer] 提交状态推送失败: {}", e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * 按顺序写出排队的事件，调用方须已持有 {@link #draining}.
+         */
+        private void drain() {
+            do {
+                FileTransferStatusDto dto;
+                while ((dto = pending.poll()) != null) {
+                    if (!closed && !send(emitter, dto)) {
+                        closed = true;
+                    }
+                }
+                draining.set(false);
+                // 释放后到达的事件由本线程接着写出，或已由 offer 提交了新的写出任务
+            } while (!pending.isEmpty() && draining.compareAndSet(false, true));
+        }
+    }
+}
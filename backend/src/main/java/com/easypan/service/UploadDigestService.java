@@ -0,0 +1,216 @@
+package com.easypan.service;
+
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.constants.Constants;
+import com.easypan.exception.BusinessException;
+import com.easypan.utils.ResumableMd5;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上传摘要服务，在分片到达时增量计算服务端 MD5.
+ *
+ * <p>按分片序号顺序喂入摘要：到达的正好是下一片则立即计算，并继续消费已缓冲的后续分片；
+ * 乱序到达的分片先缓冲到 {@code temp/{userId}{fileId}.digest/} 目录. 摘要中间状态与下一片序号
+ * 持久化在 Redis 中，跨请求（及重启）可继续累计，最后一片到达时 MD5 已就绪，无需回读整个文件.
+ *
+ * <p>同一上传的分片可能落在不同节点上：下一片序号只通过 Redis 比较并设置推进，并发计入同一分片时
+ * 只有一方生效，另一方重新读取状态. 缓冲目录与分片暂存目录同在 {@code temp/} 下，与分片直写、合并
+ * 一样要求该目录在节点间共享（或按上传粘性路由）；缓冲文件写完后原子改名，其他节点不会读到半个分片.
+ * 缓冲后再检查一次下一片序号，推进序号的一方随后也会检查缓冲目录，两者至少有一方会消费该分片.
+ */
+@Service
+@Slf4j
+public class UploadDigestService {
+
+    private static final String DIGEST_KEY_PREFIX = "easypan:upload:digest:";
+
+    private static final String DIGEST_FOLDER_SUFFIX = ".digest";
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 状态中的下一片序号等于 ARGV[1]（Key 不存在视为 0）时写入 ARGV[2] 并设置有效期 ARGV[3]，返回 1；否则返回 0.
+     */
+    private static final DefaultRedisScript<Long> COMPARE_AND_SET_SCRIPT = new DefaultRedisScript<>(
+            "local current = redis.call('GET', KEYS[1]) "
+                    + "local nextIndex = 0 "
+                    + "if current then nextIndex = tonumber(string.match(current, '^(%d+):')) end "
+                    + "if nextIndex ~= tonumber(ARGV[1]) then return 0 end "
+                    + "redis.call('SET', KEYS[1], ARGV[2], 'EX', tonumber(ARGV[3])) "
+                    + "return 1",
+            Long.class);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private AppConfig appConfig;
+
+    /**
+     * 摘要状态有效期，与上传会话一致，暂停较久后续传不会丢失已计入的分片.
+     */
+    @Value("${app.upload.session-ttl-seconds:86400}")
+    private long ttlSeconds = 86400;
+
+    /**
+     * 将分片计入摘要，乱序分片先缓冲到磁盘.
+     *
+     * @param userId     用户ID
+     * @param fileId     文件ID
+     * @param chunkIndex 分片索引
+     * @param chunk      分片数据来源
+     */
+    public void update(String userId, String fileId, int chunkIndex, InputStreamSource chunk) {
+        String uploadKey = userId + fileId;
+        File bufferFolder = getBufferFolder(uploadKey);
+        try {
+            while (true) {
+                DigestState state = loadState(uploadKey);
+                if (chunkIndex < state.nextIndex) {
+                    return;
+                }
+                if (chunkIndex > state.nextIndex) {
+                    bufferChunk(bufferFolder, chunkIndex, chunk);
+                    // 只有乱序分片到达时也续期，避免已计入的状态先于会话过期
+                    stringRedisTemplate.expire(DIGEST_KEY_PREFIX + uploadKey, ttlSeconds, TimeUnit.SECONDS);
+                    break;
+                }
+                try (InputStream inputStream = chunk.getInputStream()) {
+                    feed(state.md5, inputStream);
+                }
+                if (compareAndSet(uploadKey, state)) {
+                    break;
+                }
+            }
+            drainBuffered(uploadKey, bufferFolder);
+        } catch (IOException e) {
+            log.error("分片摘要计算失败: userId={}, fileId={}, chunkIndex={}", userId, fileId, chunkIndex, e);
+            throw new BusinessException("文件校验失败");
+        }
+    }
+
+    /**
+     * 获取服务端计算的 MD5.
+     *
+     * @param userId 用户ID
+     * @param fileId 文件ID
+     * @param chunks 总分片数
+     * @return 所有分片均已按序计入时返回小写十六进制 MD5，否则返回 null
+     */
+    public String getDigest(String userId, String fileId, int chunks) {
+        DigestState state = loadState(userId + fileId);
+        return state.nextIndex == chunks ? state.md5.hexDigest() : null;
+    }
+
+    /**
+     * 清除摘要状态与缓冲分片.
+     *
+     * @param userId 用户ID
+     * @param fileId 文件ID
+     */
+    public void clear(String userId, String fileId) {
+        String uploadKey = userId + fileId;
+        stringRedisTemplate.delete(DIGEST_KEY_PREFIX + uploadKey);
+        FileUtils.deleteQuietly(getBufferFolder(uploadKey));
+    }
+
+    /**
+     * 消费已缓冲、现在已连续的后续分片；其他节点已计入同一分片时重新读取状态.
+     */
+    private void drainBuffered(String uploadKey, File bufferFolder) throws IOException {
+        while (true) {
+            DigestState state = loadState(uploadKey);
+            File buffered = new File(bufferFolder, String.valueOf(state.nextIndex));
+            if (!buffered.isFile()) {
+                return;
+            }
+            try (InputStream inputStream = Files.newInputStream(buffered.toPath())) {
+                feed(state.md5, inputStream);
+            } catch (NoSuchFileException e) {
+                // 已被其他节点消费
+                continue;
+            }
+            if (compareAndSet(uploadKey, state)) {
+                FileUtils.deleteQuietly(buffered);
+            }
+        }
+    }
+
+    private File getBufferFolder(String uploadKey) {
+        return new File(appConfig.getProjectFolder() + Constants.FILE_FOLDER_TEMP + uploadKey
+                + DIGEST_FOLDER_SUFFIX);
+    }
+
+    private void bufferChunk(File bufferFolder, int chunkIndex, InputStreamSource chunk) throws IOException {
+        if (!bufferFolder.exists() && !bufferFolder.mkdirs() && !bufferFolder.isDirectory()) {
+            throw new IOException("创建摘要缓冲目录失败: " + bufferFolder.getPath());
+        }
+        File target = new File(bufferFolder, String.valueOf(chunkIndex));
+        File partial = File.createTempFile("chunk-" + chunkIndex + "-", ".tmp", bufferFolder);
+        try (InputStream inputStream = chunk.getInputStream()) {
+            Files.copy(inputStream, partial.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(partial.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            FileUtils.deleteQuietly(partial);
+        }
+    }
+
+    private static void feed(ResumableMd5 md5, InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            md5.update(buffer, 0, read);
+        }
+    }
+
+    private DigestState loadState(String uploadKey) {
+        String encoded = stringRedisTemplate.opsForValue().get(DIGEST_KEY_PREFIX + uploadKey);
+        if (encoded != null) {
+            int separator = encoded.indexOf(':');
+            if (separator > 0) {
+                return new DigestState(Integer.parseInt(encoded.substring(0, separator)),
+                        ResumableMd5.fromState(encoded.substring(separator + 1)));
+            }
+        }
+        return new DigestState(0, new ResumableMd5());
+    }
+
+    /**
+     * 已计入 {@code state.nextIndex} 号分片的摘要仅在 Redis 中的序号未被推进时写回.
+     *
+     * @return true 表示写回成功
+     */
+    private boolean compareAndSet(String uploadKey, DigestState state) {
+        Long updated = stringRedisTemplate.execute(COMPARE_AND_SET_SCRIPT, List.of(DIGEST_KEY_PREFIX + uploadKey),
+                String.valueOf(state.nextIndex), (state.nextIndex + 1) + ":" + state.md5.exportState(),
+                String.valueOf(ttlSeconds));
+        return updated != null && updated == 1L;
+    }
+
+    private static final class DigestState {
+        private final int nextIndex;
+        private final ResumableMd5 md5;
+
+        private DigestState(int nextIndex, ResumableMd5 md5) {
+            this.nextIndex = nextIndex;
+            this.md5 = md5;
+        }
+    }
+}
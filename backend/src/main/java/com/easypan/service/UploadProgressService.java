@@ -2,6 +2,8 @@ package com.easypan.service;
 
 import com.easypan.entity.dto.UploadProgressDto;
 
+import java.util.List;
+
 /**
  * 上传进度服务接口.
  */
@@ -14,8 +16,9 @@ public interface UploadProgressService {
      * @param fileId      文件ID
      * @param chunkIndex  分片索引
      * @param totalChunks 总分片数
+     * @param chunkBytes  分片字节数
      */
-    void updateProgress(String userId, String fileId, Integer chunkIndex, Integer totalChunks);
+    void updateProgress(String userId, String fileId, Integer chunkIndex, Integer totalChunks, long chunkBytes);
 
     /**
      * 获取上传进度.
@@ -26,6 +29,44 @@ public interface UploadProgressService {
      */
     UploadProgressDto getProgress(String userId, String fileId);
 
+    /**
+     * 判断分片是否已记录为上传完成.
+     *
+     * @param userId     用户ID
+     * @param fileId     文件ID
+     * @param chunkIndex 分片索引
+     * @return true 表示已上传
+     */
+    boolean isChunkUploaded(String userId, String fileId, Integer chunkIndex);
+
+    /**
+     * 获取已上传的分片索引（升序）.
+     *
+     * @param userId 用户ID
+     * @param fileId 文件ID
+     * @return 分片索引列表
+     */
+    List<Integer> getUploadedChunks(String userId, String fileId);
+
+    /**
+     * 获取约定的分片大小.
+     *
+     * @param userId 用户ID
+     * @param fileId 文件ID
+     * @return 分片大小，未约定时返回 null
+     */
+    Long getChunkSize(String userId, String fileId);
+
+    /**
+     * 约定分片大小，已约定时保持原值.
+     *
+     * @param userId    用户ID
+     * @param fileId    文件ID
+     * @param chunks    总分片数
+     * @param chunkSize 分片大小
+     */
+    void saveChunkSize(String userId, String fileId, Integer chunks, Long chunkSize);
+
     /**
      * 清除上传进度.
      *
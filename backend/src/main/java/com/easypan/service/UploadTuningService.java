@@ -0,0 +1,253 @@
+package com.easypan.service;
+
+import com.easypan.component.UploadSessionStore;
+import com.easypan.entity.dto.UploadInitDto;
+import com.easypan.entity.dto.UploadSessionDto;
+import com.easypan.entity.enums.ResponseCodeEnum;
+import com.easypan.exception.BusinessException;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleSupplier;
+
+/**
+ * 上传分片协商服务.
+ *
+ * <p>每个分片请求完成后记录该用户的实测吞吐（分片字节 / 请求耗时）与往返时延（上一个分片响应结束到
+ * 下一个分片请求到达的间隙），以指数加权平均保存在 {@code easypan:upload:tuning:{userId}}. 初始化上传时：
+ *
+ * <p>- 分片大小取"吞吐 × 目标单片耗时"，按 MB 取整并限制在 multipart 请求上限以内；
+ *
+ * <p>- 并发数取"1 + 往返时延 / 单片传输耗时"，保证一片传输期间另一片能补上请求间隙；节点繁忙时减半.
+ *
+ * <p>没有历史数据时使用默认值. 协商结果写入上传会话，已存在的会话（断点续传）沿用原分片大小.
+ */
+@Service
+@Slf4j
+public class UploadTuningService {
+
+    /**
+     * 请求开始时间的请求属性名，由上传计时过滤器写入.
+     */
+    public static final String REQUEST_START_ATTRIBUTE = UploadTuningService.class.getName() + ".start";
+
+    private static final String TUNING_KEY_PREFIX = "easypan:upload:tuning:";
+
+    private static final String FIELD_BPS = "bps";
+    private static final String FIELD_RTT_MS = "rttMs";
+    private static final String FIELD_LAST_END = "lastEnd";
+
+    private static final long TUNING_TTL_DAYS = 7;
+
+    private static final long MB = 1024L * 1024;
+
+    /**
+     * 新样本权重.
+     */
+    private static final double EWMA_ALPHA = 0.3;
+
+    /**
+     * 超过该值的请求间隙视为客户端空闲，不计入往返时延.
+     */
+    private static final long MAX_RTT_SAMPLE_MS = 5000;
+
+    /**
+     * 小分片的耗时主要是请求开销，不计入吞吐.
+     */
+    private static final long MIN_THROUGHPUT_SAMPLE_BYTES = 256 * 1024;
+
+    /**
+     * multipart 请求中表单字段与边界预留的空间.
+     */
+    private static final long MULTIPART_OVERHEAD_BYTES = MB;
+
+    private final AtomicInteger activeUploads = new AtomicInteger();
+
+    private DoubleSupplier cpuLoad = UploadTuningService::systemCpuLoad;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private UploadSessionStore uploadSessionStore;
+
+    @Value("${spring.servlet.multipart.max-request-size:65MB}")
+    private DataSize maxRequestSize = DataSize.ofMegabytes(65);
+
+    @Value("${app.upload.tuning.default-chunk-size:10485760}")
+    private long defaultChunkSize = 10 * MB;
+
+    @Value("${app.upload.tuning.min-chunk-size:1048576}")
+    private long minChunkSize = MB;
+
+    @Value("${app.upload.tuning.max-chunk-size:67108864}")
+    private long maxChunkSize = 64 * MB;
+
+    @Value("${app.upload.tuning.target-chunk-seconds:4}")
+    private double targetChunkSeconds = 4;
+
+    @Value("${app.upload.tuning.default-parallelism:3}")
+    private int defaultParallelism = 3;
+
+    @Value("${app.upload.tuning.max-parallelism:6}")
+    private int maxParallelism = 6;
+
+    @Value("${app.upload.tuning.node-max-active-uploads:64}")
+    private int nodeMaxActiveUploads = 64;
+
+    @Value("${app.upload.tuning.busy-load:0.8}")
+    private double busyLoad = 0.8;
+
+    /**
+     * 分片请求开始.
+     */
+    public void uploadStarted() {
+        activeUploads.incrementAndGet();
+    }
+
+    /**
+     * 分片请求结束.
+     */
+    public void uploadFinished() {
+        activeUploads.decrementAndGet();
+    }
+
+    /**
+     * 协商分片方案并写入上传会话.
+     *
+     * @param userId   用户ID
+     * @param fileId   文件ID
+     * @param fileSize 文件大小
+     * @return 分片方案
+     */
+    public UploadInitDto recommend(String userId, String fileId, long fileSize) {
+        if (fileSize <= 0) {
+            throw new BusinessException(ResponseCodeEnum.CODE_600);
+        }
+        Stats stats = loadStats(userId);
+        UploadSessionDto session = uploadSessionStore.getSession(userId, fileId);
+        long chunkSize = session.getChunkSize() != null ? session.getChunkSize() : recommendChunkSize(stats);
+        int chunks = (int) Math.max(1L, (fileSize + chunkSize - 1) / chunkSize);
+        if (session.getTotalChunks() != null && session.getTotalChunks() != chunks) {
+            throw new BusinessException("上传会话与文件不一致，请重新上传");
+        }
+        int parallelism = Math.min(recommendParallelism(stats, chunkSize), chunks);
+        uploadSessionStore.initSession(userId, fileId, chunks, chunkSize);
+        log.debug("上传分片协商: userId={}, fileId={}, bps={}, rttMs={}, chunkSize={}, parallelism={}",
+                userId, fileId, stats.bps, stats.rttMs, chunkSize, parallelism);
+        return UploadInitDto.builder()
+                .fileId(fileId)
+                .chunkSize(chunkSize)
+                .chunks(chunks)
+                .parallelism(parallelism)
+                .build();
+    }
+
+    /**
+     * 记录一次分片请求的实测数据.
+     *
+     * @param userId             用户ID
+     * @param bytes              分片字节数
+     * @param requestStartMillis 请求到达时间，为 null 时忽略
+     */
+    public void recordChunk(String userId, long bytes, Long requestStartMillis) {
+        if (requestStartMillis == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        String key = TUNING_KEY_PREFIX + userId;
+        try {
+            HashOperations<String, Object, Object> hash = stringRedisTemplate.opsForHash();
+            List<Object> values = hash.multiGet(key, List.of(FIELD_BPS, FIELD_RTT_MS, FIELD_LAST_END));
+            // 同一用户的并发分片可能交错更新，平均值本身容忍个别样本丢失，不加锁
+            Map<String, String> updates = new HashMap<>();
+            if (bytes >= MIN_THROUGHPUT_SAMPLE_BYTES) {
+                double sample = bytes * 1000.0 / Math.max(1L, now - requestStartMillis);
+                updates.put(FIELD_BPS, String.valueOf((long) ewma(toDouble(values.get(0)), sample)));
+            }
+            Double lastEnd = toDouble(values.get(2));
+            if (lastEnd != null) {
+                long gap = requestStartMillis - lastEnd.longValue();
+                if (gap > 0 && gap <= MAX_RTT_SAMPLE_MS) {
+                    updates.put(FIELD_RTT_MS, String.valueOf((long) ewma(toDouble(values.get(1)), gap)));
+                }
+            }
+            updates.put(FIELD_LAST_END, String.valueOf(now));
+            hash.putAll(key, updates);
+            stringRedisTemplate.expire(key, TUNING_TTL_DAYS, TimeUnit.DAYS);
+        } catch (RuntimeException e) {
+            log.warn("记录上传实测数据失败: userId={}", userId, e);
+        }
+    }
+
+    /**
+     * 当前节点负载，取 CPU 负载与在途上传占比的较大值.
+     *
+     * @return 负载，1 表示满载
+     */
+    public double nodeLoad() {
+        double uploads = nodeMaxActiveUploads > 0 ? (double) activeUploads.get() / nodeMaxActiveUploads : 0;
+        return Math.max(cpuLoad.getAsDouble(), uploads);
+    }
+
+    private long recommendChunkSize(Stats stats) {
+        long upper = Math.max(minChunkSize,
+                Math.min(maxChunkSize, maxRequestSize.toBytes() - MULTIPART_OVERHEAD_BYTES));
+        long size = stats.bps != null ? (long) (stats.bps * targetChunkSeconds) : defaultChunkSize;
+        size = size / MB * MB;
+        return Math.min(upper, Math.max(minChunkSize, size));
+    }
+
+    private int recommendParallelism(Stats stats, long chunkSize) {
+        int parallelism = defaultParallelism;
+        if (stats.bps != null && stats.rttMs != null) {
+            double transferMs = chunkSize * 1000.0 / stats.bps;
+            parallelism = 1 + (int) Math.ceil(stats.rttMs / transferMs);
+        }
+        if (nodeLoad() >= busyLoad) {
+            parallelism /= 2;
+        }
+        return Math.max(1, Math.min(maxParallelism, parallelism));
+    }
+
+    private Stats loadStats(String userId) {
+        try {
+            List<Object> values = stringRedisTemplate.opsForHash()
+                    .multiGet(TUNING_KEY_PREFIX + userId, List.of(FIELD_BPS, FIELD_RTT_MS));
+            Double bps = toDouble(values.get(0));
+            return new Stats(bps != null && bps > 0 ? bps : null, toDouble(values.get(1)));
+        } catch (RuntimeException e) {
+            log.warn("读取上传实测数据失败，使用默认分片方案: userId={}", userId, e);
+            return new Stats(null, null);
+        }
+    }
+
+    private static double ewma(Double previous, double sample) {
+        return previous == null ? sample : previous + EWMA_ALPHA * (sample - previous);
+    }
+
+    private static Double toDouble(Object value) {
+        return value != null ? Double.valueOf(value.toString()) : null;
+    }
+
+    private static double systemCpuLoad() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        double load = os.getSystemLoadAverage();
+        return load < 0 ? 0 : load / os.getAvailableProcessors();
+    }
+
+    private record Stats(Double bps, Double rttMs) {
+    }
+}
@@ -1,11 +1,14 @@
 package com.easypan.service.impl;
 
 import com.easypan.component.RedisComponent;
+import com.easypan.component.TenantContextHolder;
 import com.easypan.entity.config.AppConfig;
 import com.easypan.entity.constants.Constants;
 import com.easypan.entity.dto.SessionWebUserDto;
+import com.easypan.entity.dto.UploadProgressDto;
 import com.easypan.entity.dto.UploadResultDto;
 import com.easypan.entity.dto.UserSpaceDto;
+import com.easypan.entity.dto.VideoProbeDto;
 import com.easypan.entity.enums.DateTimePatternEnum;
 import com.easypan.entity.enums.FileDelFlagEnums;
 import com.easypan.entity.enums.FileFolderTypeEnums;
@@ -13,6 +16,7 @@ import com.easypan.entity.enums.FileStatusEnums;
 import com.easypan.entity.enums.FileTypeEnums;
 import com.easypan.entity.enums.PageSize;
 import com.easypan.entity.enums.ResponseCodeEnum;
+import com.easypan.entity.enums.TranscodeStageEnums;
 import com.easypan.entity.enums.UploadStatusEnums;
 import com.easypan.entity.po.FileInfo;
 import com.easypan.entity.po.UserInfo;
@@ -23,16 +27,21 @@ import com.easypan.exception.BusinessException;
 import com.easypan.mappers.FileInfoMapper;
 import com.easypan.mappers.UserInfoMapper;
 import com.easypan.service.FileInfoService;
+import com.easypan.service.HlsSegmentService;
 import com.easypan.service.MediaTranscodeService;
+import com.easypan.service.TransferStatusService;
 import com.easypan.utils.DateUtil;
 import com.easypan.utils.QueryWrapperBuilder;
+import com.easypan.utils.SampledFingerprint;
 import com.easypan.utils.StringTools;
+import com.google.common.collect.Lists;
 import com.mybatisflex.core.query.QueryWrapper;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionSynchronization;
@@ -54,6 +63,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 
 import static com.easypan.entity.po.table.FileInfoTableDef.FILE_INFO;
@@ -67,6 +77,11 @@ public class FileInfoServiceImpl implements FileInfoService {
 
     private static final Logger logger = LoggerFactory.getLogger(FileInfoServiceImpl.class);
 
+    /**
+     * 批量写入时每条 SQL 脚本包含的记录数.
+     */
+    private static final int BATCH_INSERT_SIZE = 500;
+
     @Resource
     @Lazy
     private FileInfoServiceImpl fileInfoService;
@@ -84,12 +99,24 @@ public class FileInfoServiceImpl implements FileInfoService {
     private RedisComponent redisComponent;
 
     @Resource
-    private com.easypan.component.UploadRateLimiter uploadRateLimiter;
+    private com.easypan.component.ChunkDirectWriter chunkDirectWriter;
+
+    @Resource
+    private com.easypan.component.TranscodeScheduler transcodeScheduler;
+
+    @Resource
+    private com.easypan.service.TranscodeJobService transcodeJobService;
 
     @Resource
     @Qualifier("virtualThreadExecutor")
     private AsyncTaskExecutor virtualThreadExecutor;
 
+    @Resource
+    private HlsSegmentService hlsSegmentService;
+
+    @Resource
+    private TransferStatusService transferStatusService;
+
     @Resource
     private MediaTranscodeService mediaTranscodeService;
 
@@ -100,15 +127,24 @@ public class FileInfoServiceImpl implements FileInfoService {
     @Resource
     private com.easypan.service.TenantQuotaService tenantQuotaService;
 
+    @Resource
+    private com.easypan.service.QuotaReservationService quotaReservationService;
+
     @Value("${app.storage.type:local}")
     private String storageType;
 
+    @Resource
+    private com.easypan.strategy.StorageFactory storageFactory;
+
     @Resource
     private com.easypan.service.UploadProgressService uploadProgressService;
 
     @Resource
     private com.easypan.service.QuickUploadService quickUploadService;
 
+    @Resource
+    private com.easypan.service.UploadDigestService uploadDigestService;
+
     @Override
     public List<FileInfo> findListByParam(FileInfoQuery param) {
         QueryWrapper qw = QueryWrapperBuilder.build(param);
@@ -122,6 +158,9 @@ public class FileInfoServiceImpl implements FileInfoService {
                     FILE_INFO.FILE_SIZE,
                     FILE_INFO.FILE_NAME,
                     FILE_INFO.FILE_COVER,
+                    FILE_INFO.VIDEO_DURATION,
+                    FILE_INFO.VIDEO_WIDTH,
+                    FILE_INFO.VIDEO_HEIGHT,
                     FILE_INFO.FILE_PATH,
                     FILE_INFO.CREATE_TIME,
                     FILE_INFO.LAST_UPDATE_TIME,
@@ -142,6 +181,9 @@ public class FileInfoServiceImpl implements FileInfoService {
                     FILE_INFO.FILE_SIZE,
                     FILE_INFO.FILE_NAME,
                     FILE_INFO.FILE_COVER,
+                    FILE_INFO.VIDEO_DURATION,
+                    FILE_INFO.VIDEO_WIDTH,
+                    FILE_INFO.VIDEO_HEIGHT,
                     FILE_INFO.FILE_PATH,
                     FILE_INFO.CREATE_TIME,
                     FILE_INFO.LAST_UPDATE_TIME,
@@ -308,26 +350,26 @@ public class FileInfoServiceImpl implements FileInfoService {
 
     @Override
     public UploadResultDto uploadFile(SessionWebUserDto webUserDto, String fileId, MultipartFile file, String fileName,
-            String filePid, String fileMd5, Integer chunkIndex, Integer chunks) {
+            String filePid, String fileMd5, Integer chunkIndex, Integer chunks, Long chunkSize) {
 
         if (chunkIndex == null || chunks == null || chunkIndex < 0 || chunks <= 0 || chunkIndex >= chunks) {
             throw new BusinessException("非法的分片参数");
         }
 
-        if (!uploadRateLimiter.tryAcquire(webUserDto.getUserId())) {
-            throw new BusinessException("当前上传请求过多，请稍后重试");
-        }
-
-        tenantQuotaService.checkStorageQuota(file.getSize());
+        // 上传额度已由 UploadAdmissionFilter 在读取请求体之前按 Content-Length 申请
+        String tenantId = TenantContextHolder.getTenantId();
 
         File tempFileFolder = null;
-        Boolean uploadSuccess = true;
+        // 只有整个文件无法完成时才丢弃暂存数据与空间预留；单个分片失败后已写入的分片与 uploadInit 的预留
+        // 仍然有效，客户端重传该分片即可，放弃的上传由预留与会话到期清理
+        boolean discard = false;
         try {
             if (chunkIndex == 0) {
                 // 首片执行文件类型校验（扩展名 + 文件内容）。
                 String fileSuffix = StringTools.getFileSuffix(fileName);
 
                 if (com.easypan.utils.FileTypeValidator.isDangerousFileType(fileSuffix)) {
+                    discard = true;
                     throw new BusinessException("不允许上传可执行文件类型");
                 }
 
@@ -337,6 +379,7 @@ public class FileInfoServiceImpl implements FileInfoService {
                 try (InputStream inputStream = file.getInputStream()) {
                     if (!com.easypan.utils.FileTypeValidator.validateFileType(inputStream, fileSuffix)) {
                         logger.warn("文件类型校验失败: fileName={}, suffix={}", fileName, fileSuffix);
+                        discard = true;
                         throw new BusinessException("文件类型不匹配，请上传正确的文件");
                     }
                 } catch (IOException e) {
@@ -351,7 +394,6 @@ public class FileInfoServiceImpl implements FileInfoService {
             }
             resultDto.setFileId(fileId);
             final Date curDate = new Date();
-            UserSpaceDto spaceDto = redisComponent.getUserSpaceUse(webUserDto.getUserId());
 
             // 秒传逻辑
             if (chunkIndex == 0) {
@@ -365,8 +407,8 @@ public class FileInfoServiceImpl implements FileInfoService {
                         logger.warn("Quick upload source file has null fileSize, fallback. fileId={}",
                                 dbFile.getFileId());
                         dbFile = null;
-                    } else if (dbFileSize + spaceDto.getUseSpace() > spaceDto.getTotalSpace()) {
-                        throw new BusinessException(ResponseCodeEnum.CODE_904);
+                    } else {
+                        quotaReservationService.reserve(webUserDto.getUserId(), tenantId, fileId, dbFileSize);
                     }
 
                     if (dbFile != null) {
@@ -376,59 +418,191 @@ public class FileInfoServiceImpl implements FileInfoService {
                 }
             }
 
+            validateChunkPlan(webUserDto.getUserId(), fileId, file, chunkIndex, chunks);
+
             String tempFolderName = appConfig.getProjectFolder() + Constants.FILE_FOLDER_TEMP;
             String currentUserFolderName = webUserDto.getUserId() + fileId;
             tempFileFolder = new File(tempFolderName + currentUserFolderName);
-            if (!tempFileFolder.exists() && !tempFileFolder.mkdirs()) {
-                logger.error("Failed to create temp folder: {}", tempFileFolder.getAbsolutePath());
-                throw new BusinessException("创建临时目录失败");
-            }
-
-            Long currentTempSize = redisComponent.getFileTempSize(webUserDto.getUserId(), fileId);
-            if (file.getSize() + currentTempSize + spaceDto.getUseSpace() > spaceDto.getTotalSpace()) {
-                throw new BusinessException(ResponseCodeEnum.CODE_904);
+            if (!tempFileFolder.exists()) {
+                // 暂存目录已过期清理而会话仍记录已完成分片时，旧记录作废，否则这些分片会被当作已上传跳过
+                UploadProgressDto progress = uploadProgressService.getProgress(webUserDto.getUserId(), fileId);
+                if (progress != null && progress.getCompletedChunks() != null && progress.getCompletedChunks() > 0) {
+                    logger.warn("暂存目录已不存在，重置上传会话: userId={}, fileId={}", webUserDto.getUserId(), fileId);
+                    uploadProgressService.clearProgress(webUserDto.getUserId(), fileId);
+                    uploadDigestService.clear(webUserDto.getUserId(), fileId);
+                }
+                if (!tempFileFolder.mkdirs()) {
+                    logger.error("Failed to create temp folder: {}", tempFileFolder.getAbsolutePath());
+                    throw new BusinessException("创建临时目录失败");
+                }
             }
 
-            File newFile = new File(tempFileFolder.getPath() + "/" + chunkIndex);
+            // 用户空间与租户配额在同一个 Lua 脚本中原子检查并预留，重传的分片不会重复计入。
+            quotaReservationService.reserveChunk(webUserDto.getUserId(), tenantId, fileId, chunkIndex,
+                    file.getSize());
 
             // 文件写入是 IO 操作，不放在事务中执行。
-            if (!(newFile.exists() && newFile.length() == file.getSize())) {
-                file.transferTo(newFile);
-                if (newFile.length() != file.getSize()) {
-                    throw new BusinessException("分片大小校验失败，请重试上传");
-                }
-                redisComponent.saveFileTempSize(webUserDto.getUserId(), fileId, file.getSize());
-                // 记录上传进度，用于断点续传与前端展示。
-                uploadProgressService.updateProgress(webUserDto.getUserId(), fileId, chunkIndex, chunks);
+            InputStreamSource chunkSource;
+            if (chunkDirectWriter.isEnabled()) {
+                chunkSource = writeChunkDirect(webUserDto.getUserId(), fileId, tempFileFolder, file, chunkIndex,
+                        chunks, chunkSize);
+            } else {
+                chunkSource = writeChunkFile(webUserDto.getUserId(), fileId, tempFileFolder, file, chunkIndex,
+                        chunks);
             }
+            uploadDigestService.update(webUserDto.getUserId(), fileId, chunkIndex, chunkSource);
 
             if (chunkIndex < chunks - 1) {
                 resultDto.setStatus(UploadStatusEnums.UPLOADING.getCode());
                 return resultDto;
             }
 
+            // 上传会话在入库时清除，依赖约定分片大小的暂存分片需在此之前回填。
+            if (chunkDirectWriter.isDirectWriteFolder(tempFileFolder)) {
+                chunkDirectWriter.foldSpilledChunks(tempFileFolder,
+                        uploadProgressService.getChunkSize(webUserDto.getUserId(), fileId));
+            }
+
+            // 以服务端增量计算的 MD5 为准，避免错误的客户端 MD5 污染秒传索引；
+            // 抽样指纹未命中的客户端不计算完整 MD5，此时只采用服务端结果，因此服务端结果必须就绪。
+            String verifiedMd5 = uploadDigestService.getDigest(webUserDto.getUserId(), fileId, chunks);
+            if (verifiedMd5 == null) {
+                // 摘要未覆盖全部分片时无法确认文件完整，不能入库：仍有分片未到达时客户端补传即可；
+                // 分片已齐而摘要缺失说明摘要状态已丢失，只能丢弃后重新上传
+                UploadProgressDto progress = uploadProgressService.getProgress(webUserDto.getUserId(), fileId);
+                boolean allChunksReceived = progress != null && progress.getCompletedChunks() != null
+                        && progress.getCompletedChunks() >= chunks;
+                logger.warn("服务端 MD5 未就绪，拒绝完成上传: userId={}, fileId={}, allChunksReceived={}",
+                        webUserDto.getUserId(), fileId, allChunksReceived);
+                if (allChunksReceived) {
+                    discard = true;
+                    throw new BusinessException("文件校验失败，请重新上传");
+                }
+                throw new BusinessException("文件分片不完整，请继续上传缺失的分片");
+            } else if (!StringTools.isEmpty(fileMd5) && !verifiedMd5.equalsIgnoreCase(fileMd5)) {
+                logger.warn("文件 MD5 校验失败: userId={}, fileId={}, client={}, server={}",
+                        webUserDto.getUserId(), fileId, fileMd5, verifiedMd5);
+                discard = true;
+                throw new BusinessException("文件校验失败，请重新上传");
+            }
+
             // 最后一个分片上传完成，进入事务保存元数据。
-            return fileInfoService.completeUploadAndSave(webUserDto, fileId, filePid, fileMd5, fileName,
-                    currentUserFolderName, curDate);
+            UploadResultDto completed = fileInfoService.completeUploadAndSave(webUserDto, fileId, filePid,
+                    verifiedMd5, fileName, currentUserFolderName, curDate);
+            uploadDigestService.clear(webUserDto.getUserId(), fileId);
+            return completed;
 
         } catch (BusinessException e) {
-            uploadSuccess = false;
             logger.error("文件上传失败", e);
             throw e;
         } catch (Exception e) {
-            uploadSuccess = false;
             logger.error("文件上传失败", e);
             throw new BusinessException("文件上传失败");
         } finally {
-            uploadRateLimiter.release(webUserDto.getUserId());
-            if (tempFileFolder != null && !uploadSuccess) {
-                try {
-                    FileUtils.deleteDirectory(tempFileFolder);
-                } catch (IOException e) {
-                    logger.error("删除临时目录失败");
-                }
+            if (discard) {
+                discardUpload(webUserDto.getUserId(), tenantId, fileId);
+            }
+        }
+    }
+
+    /**
+     * 丢弃无法完成的上传：释放空间预留，删除暂存目录（含预分配文件），同时清除会话进度与摘要状态，
+     * 避免续传时把已不存在的分片当作已上传跳过。
+     */
+    private void discardUpload(String userId, String tenantId, String fileId) {
+        if (StringTools.isEmpty(fileId)) {
+            return;
+        }
+        quotaReservationService.release(userId, tenantId, fileId);
+        uploadProgressService.clearProgress(userId, fileId);
+        uploadDigestService.clear(userId, fileId);
+        File tempFileFolder = new File(appConfig.getProjectFolder() + Constants.FILE_FOLDER_TEMP + userId + fileId);
+        try {
+            FileUtils.deleteDirectory(tempFileFolder);
+        } catch (IOException e) {
+            logger.error("删除临时目录失败: {}", tempFileFolder.getPath(), e);
+        }
+    }
+
+    /**
+     * 按上传会话中已约定的分片方案（uploadInit 协商或首片确定）校验分片数与分片大小。
+     */
+    private void validateChunkPlan(String userId, String fileId, MultipartFile file, Integer chunkIndex,
+            Integer chunks) {
+        UploadProgressDto progress = uploadProgressService.getProgress(userId, fileId);
+        if (progress != null && progress.getTotalChunks() != null && !progress.getTotalChunks().equals(chunks)) {
+            throw new BusinessException("分片数与上传会话不一致");
+        }
+        Long agreedSize = uploadProgressService.getChunkSize(userId, fileId);
+        if (agreedSize == null || agreedSize <= 0) {
+            return;
+        }
+        boolean lastChunk = chunkIndex == chunks - 1;
+        if (lastChunk ? file.getSize() > agreedSize : file.getSize() != agreedSize) {
+            throw new BusinessException("分片大小与约定不一致");
+        }
+    }
+
+    /**
+     * 以独立分片文件形式落盘，最后一片到达后由 transferFile 合并。
+     */
+    private InputStreamSource writeChunkFile(String userId, String fileId, File tempFileFolder, MultipartFile file,
+            Integer chunkIndex, Integer chunks) throws IOException {
+        File newFile = new File(tempFileFolder.getPath() + "/" + chunkIndex);
+        if (newFile.exists() && newFile.length() == file.getSize()) {
+            return new FileSystemResource(newFile);
+        }
+        file.transferTo(newFile);
+        if (newFile.length() != file.getSize()) {
+            throw new BusinessException("分片大小校验失败，请重试上传");
+        }
+        redisComponent.saveFileTempSize(userId, fileId, file.getSize());
+        // 记录上传进度，用于断点续传与前端展示。
+        uploadProgressService.updateProgress(userId, fileId, chunkIndex, chunks, file.getSize());
+        // transferTo 可能直接移动 multipart 临时文件，之后只能从落盘分片读取。
+        return new FileSystemResource(newFile);
+    }
+
+    /**
+     * 按 chunkIndex * chunkSize 直接写入预分配文件，完成时只需截断并重命名。
+     *
+     * <p>分片大小优先取客户端传入值，其次取已记录值，再次由非末片自身长度推断；
+     * 都无法确定时（末片先到）暂存为独立分片文件，完成时回填。
+     */
+    private InputStreamSource writeChunkDirect(String userId, String fileId, File tempFileFolder,
+            MultipartFile file, Integer chunkIndex, Integer chunks, Long chunkSize) throws IOException {
+        if (uploadProgressService.isChunkUploaded(userId, fileId, chunkIndex)) {
+            return file;
+        }
+        boolean lastChunk = chunkIndex == chunks - 1;
+        Long agreedSize = uploadProgressService.getChunkSize(userId, fileId);
+        if (agreedSize == null) {
+            if (chunkSize != null && chunkSize > 0) {
+                agreedSize = chunkSize;
+            } else if (!lastChunk) {
+                agreedSize = file.getSize();
+            }
+            if (agreedSize != null) {
+                uploadProgressService.saveChunkSize(userId, fileId, chunks, agreedSize);
+            }
+        }
+        if (agreedSize != null && (lastChunk ? file.getSize() > agreedSize : file.getSize() != agreedSize)) {
+            throw new BusinessException("分片大小与约定不一致");
+        }
+
+        try (InputStream inputStream = file.getInputStream()) {
+            if (agreedSize != null) {
+                chunkDirectWriter.writeChunk(tempFileFolder, inputStream, file.getSize(), chunkIndex, chunks,
+                        agreedSize);
+            } else if (chunks == 1) {
+                chunkDirectWriter.writeChunk(tempFileFolder, inputStream, file.getSize(), 0, 1, file.getSize());
+            } else {
+                chunkDirectWriter.spillChunk(tempFileFolder, inputStream, chunkIndex);
             }
         }
+        redisComponent.saveFileTempSize(userId, fileId, file.getSize());
+        uploadProgressService.updateProgress(userId, fileId, chunkIndex, chunks, file.getSize());
+        return file;
     }
 
     /**
@@ -454,7 +628,7 @@ public class FileInfoServiceImpl implements FileInfoService {
         dbFile.setFileName(fileName);
         this.fileInfoMapper.insert(dbFile);
         resultDto.setStatus(UploadStatusEnums.UPLOAD_SECONDS.getCode());
-        updateUserSpace(webUserDto, dbFileSize);
+        settleUserSpace(webUserDto, fileId, dbFileSize);
 
         logger.info("秒传成功: userId={}, fileId={}, fileName={}, md5={}",
                 webUserDto.getUserId(), fileId, fileName, fileMd5);
@@ -489,14 +663,18 @@ public class FileInfoServiceImpl implements FileInfoService {
         fileInfo.setStatus(FileStatusEnums.TRANSFER.getStatus());
         fileInfo.setFolderType(FileFolderTypeEnums.FILE.getType());
         fileInfo.setDelFlag(FileDelFlagEnums.USING.getFlag());
+        Long totalSize = redisComponent.getFileTempSize(webUserDto.getUserId(), fileId);
+        // 预先记录总长度，直写模式完成时据此截断预分配文件。
+        fileInfo.setFileSize(totalSize);
         this.fileInfoMapper.insert(fileInfo);
+        // 转码任务与文件记录同一事务写入，节点在转码前宕机也能由其他节点接管
+        transcodeJobService.create(fileInfo, TenantContextHolder.getTenantId());
 
         if (!StringTools.isEmpty(fileMd5)) {
             redisComponent.addFileMd5ToBloom(fileMd5);
         }
 
-        Long totalSize = redisComponent.getFileTempSize(webUserDto.getUserId(), fileId);
-        updateUserSpace(webUserDto, totalSize);
+        settleUserSpace(webUserDto, fileId, totalSize);
         // 上传完成后清除进度
         uploadProgressService.clearProgress(webUserDto.getUserId(), fileId);
 
@@ -504,25 +682,92 @@ public class FileInfoServiceImpl implements FileInfoService {
 
         logger.info("文件元数据保存完成: userId={}, fileId={}", webUserDto.getUserId(), fileId);
 
-        // 使用事务同步机制，在事务提交后触发转码。
+        // 使用事务同步机制，在事务提交后把文件放入转码队列。
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
-                fileInfoService.transferFile(fileInfo.getFileId(), webUserDto);
+                transcodeScheduler.submit(fileInfo, webUserDto);
             }
         });
 
         return resultDto;
     }
 
+    /**
+     * 批量上传入库（事务方法）。
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void saveBatchUpload(SessionWebUserDto webUserDto, String reservationId, List<FileInfo> fileInfoList,
+            long totalSize) {
+        if (fileInfoList.isEmpty()) {
+            quotaReservationService.release(webUserDto.getUserId(), TenantContextHolder.getTenantId(),
+                    reservationId);
+            return;
+        }
+        for (List<FileInfo> batch : Lists.partition(fileInfoList, BATCH_INSERT_SIZE)) {
+            this.fileInfoMapper.insertOrUpdateBatch(batch);
+        }
+        settleUserSpace(webUserDto, reservationId, totalSize);
+        List<FileInfo> transferFiles = new ArrayList<>();
+        for (FileInfo fileInfo : fileInfoList) {
+            if (!StringTools.isEmpty(fileInfo.getFileMd5())) {
+                redisComponent.addFileMd5ToBloom(fileInfo.getFileMd5());
+            }
+            if (FileStatusEnums.TRANSFER.getStatus().equals(fileInfo.getStatus())) {
+                transcodeJobService.create(fileInfo, TenantContextHolder.getTenantId());
+                transferFiles.add(fileInfo);
+            }
+        }
+        logger.info("批量上传入库完成: userId={}, records={}, totalSize={}, transfer={}",
+                webUserDto.getUserId(), fileInfoList.size(), totalSize, transferFiles.size());
+        if (transferFiles.isEmpty()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                transferFiles.forEach(fileInfo -> transcodeScheduler.submit(fileInfo, webUserDto));
+            }
+        });
+    }
+
     private void updateUserSpace(SessionWebUserDto webUserDto, Long totalSize) {
         Integer count = userInfoMapper.updateUserSpace(webUserDto.getUserId(), totalSize, null);
         if (count == 0) {
             throw new BusinessException(ResponseCodeEnum.CODE_904);
         }
-        UserSpaceDto spaceDto = redisComponent.getUserSpaceUse(webUserDto.getUserId());
-        spaceDto.setUseSpace(spaceDto.getUseSpace() + totalSize);
-        redisComponent.saveUserSpaceUse(webUserDto.getUserId(), spaceDto);
+        redisComponent.incrementUserSpaceUse(webUserDto.getUserId(), totalSize);
+        tenantQuotaService.updateUsedStorage(totalSize);
+    }
+
+    /**
+     * 记录上传占用的空间，并在事务结束后结算上传预留：提交则预留转为已用，回滚则释放。
+     */
+    private void settleUserSpace(SessionWebUserDto webUserDto, String reservationId, Long totalSize) {
+        long size = totalSize == null ? 0L : totalSize;
+        if (size > 0) {
+            Integer count = userInfoMapper.updateUserSpace(webUserDto.getUserId(), size, null);
+            if (count == 0) {
+                throw new BusinessException(ResponseCodeEnum.CODE_904);
+            }
+        }
+        String userId = webUserDto.getUserId();
+        String tenantId = TenantContextHolder.getTenantId();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            quotaReservationService.commit(userId, tenantId, reservationId, size);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    quotaReservationService.commit(userId, tenantId, reservationId, size);
+                } else {
+                    quotaReservationService.release(userId, tenantId, reservationId);
+                }
+            }
+        });
     }
 
     private String autoRename(String filePid, String userId, String fileName) {
@@ -539,29 +784,32 @@ public class FileInfoServiceImpl implements FileInfoService {
     }
 
     /**
-     * 异步转码文件。
+     * 按阶段执行转码任务：合并分片、上传存储、生成封面、视频切片，由
+     * {@link com.easypan.component.TranscodeScheduler} 的工作线程在领取任务租约后调用。
+     *
+     * <p>每完成一个阶段写入任务表，重试或其他节点接管时跳过已完成的阶段；合并后的本地文件已不存在
+     * （例如由其他节点接管）时从存储下载。失败时按任务的重试策略稍后重试，次数用尽才把文件标记为转码失败。
      *
-     * @param fileId     文件ID
+     * @param job        已领取的转码任务
      * @param webUserDto 用户会话信息
      */
-    @Async("virtualThreadExecutor")
-    public void transferFile(String fileId, SessionWebUserDto webUserDto) {
-        Boolean transferSuccess = true;
+    public void transferFile(com.easypan.entity.po.TranscodeJob job, SessionWebUserDto webUserDto) {
+        String fileId = job.getFileId();
+        boolean transferSuccess = false;
+        boolean retry = false;
         String targetFilePath = null;
         String cover = null;
-        FileTypeEnums fileTypeEnum = null;
+        String sampleHash = null;
+        VideoProbeDto videoProbe = null;
         FileInfo fileInfo = getFileInfoByFileIdAndUserId(fileId, webUserDto.getUserId());
+        if (fileInfo == null || !FileStatusEnums.TRANSFER.getStatus().equals(fileInfo.getStatus())) {
+            transcodeJobService.finish(job);
+            return;
+        }
         try {
-            if (fileInfo == null || !FileStatusEnums.TRANSFER.getStatus().equals(fileInfo.getStatus())) {
-                return;
-            }
             String tempFolderName = appConfig.getProjectFolder() + Constants.FILE_FOLDER_TEMP;
             String currentUserFolderName = webUserDto.getUserId() + fileId;
             File fileFolder = new File(tempFolderName + currentUserFolderName);
-            if (!fileFolder.exists() && !fileFolder.mkdirs()) {
-                logger.error("Failed to create folder: {}", fileFolder.getAbsolutePath());
-                throw new BusinessException("创建目录失败");
-            }
             String fileSuffix = StringTools.getFileSuffix(fileInfo.getFileName());
             String month = DateUtil.format(fileInfo.getCreateTime(), DateTimePatternEnum.YYYYMM.getPattern());
             String targetFolderName = appConfig.getFileRootPath();
@@ -572,76 +820,156 @@ public class FileInfoServiceImpl implements FileInfoService {
             }
             String realFileName = currentUserFolderName + fileSuffix;
             targetFilePath = targetFolder.getPath() + "/" + realFileName;
-            unionWithNIO(fileFolder.getPath(), targetFilePath, fileInfo.getFileName(), true);
-
+            File targetFile = new File(targetFilePath);
             com.easypan.strategy.StorageStrategy storageStrategy = this.storageStrategy;
-            storageStrategy.upload(new File(targetFilePath), fileInfo.getFilePath());
 
-            fileTypeEnum = FileTypeEnums.getFileTypeBySuffix(fileSuffix);
+            if (!TranscodeStageEnums.MERGE.isCompletedBy(job.getStage())) {
+                transferStatusService.publishProgress(webUserDto.getUserId(), fileId, TranscodeStageEnums.MERGE,
+                        null);
+                if (!fileFolder.exists()) {
+                    throw new BusinessException("分片目录不存在，无法合并: " + fileFolder.getPath());
+                }
+                if (chunkDirectWriter.isDirectWriteFolder(fileFolder)) {
+                    if (fileInfo.getFileSize() == null) {
+                        throw new BusinessException("文件大小未知，无法完成上传");
+                    }
+                    chunkDirectWriter.finish(fileFolder, targetFile, fileInfo.getFileSize());
+                } else {
+                    unionWithNIO(fileFolder.getPath(), targetFilePath, fileInfo.getFileName(), true);
+                }
+                transcodeJobService.completeStage(job, TranscodeStageEnums.MERGE);
+            } else if (!targetFile.exists()) {
+                if (!TranscodeStageEnums.STORE.isCompletedBy(job.getStage())) {
+                    throw new BusinessException("合并后的文件不存在，无法继续: " + targetFilePath);
+                }
+                // 由其他节点接管或本地文件已清理，从存储取回后继续后续阶段
+                try (InputStream in = storageStrategy.download(fileInfo.getFilePath())) {
+                    FileUtils.copyInputStreamToFile(in, targetFile);
+                }
+            }
+            sampleHash = computeSampleHash(targetFile);
+
+            if (!TranscodeStageEnums.STORE.isCompletedBy(job.getStage())) {
+                long targetSize = Math.max(1L, targetFile.length());
+                IntConsumer storeProgress = transferStatusService.progressListener(webUserDto.getUserId(), fileId,
+                        TranscodeStageEnums.STORE);
+                storageStrategy.upload(targetFile, fileInfo.getFilePath(),
+                        uploaded -> storeProgress.accept((int) Math.min(100L, uploaded * 100 / targetSize)));
+                transcodeJobService.completeStage(job, TranscodeStageEnums.STORE);
+            }
 
-            logger.info("开始转码文件: fileId={}, userId={}, fileType={}",
-                    fileId, webUserDto.getUserId(), fileTypeEnum);
+            FileTypeEnums fileTypeEnum = FileTypeEnums.getFileTypeBySuffix(fileSuffix);
+            logger.info("开始转码文件: fileId={}, userId={}, fileType={}, resumeAfter={}",
+                    fileId, webUserDto.getUserId(), fileTypeEnum, job.getStage());
 
             if (FileTypeEnums.VIDEO == fileTypeEnum) {
-                cutFile4Video(fileId, targetFilePath);
                 cover = month + "/" + currentUserFolderName + Constants.IMAGE_PNG_SUFFIX;
-                String coverPath = targetFolderName + "/" + cover;
-                File coverFile = new File(coverPath);
-                mediaTranscodeService.createVideoCover(new File(targetFilePath), Constants.LENGTH_150, coverFile);
-                if (coverFile.exists()) {
-                    storageStrategy.upload(coverFile, cover);
-                }
-                String tsFolderName = targetFilePath.substring(0, targetFilePath.lastIndexOf("."));
-                File tsFolder = new File(tsFolderName);
-                if (tsFolder.exists()) {
-                    storageStrategy.uploadDirectory(
-                            fileInfo.getFilePath().substring(0, fileInfo.getFilePath().lastIndexOf(".")), tsFolder);
-                }
             } else if (FileTypeEnums.IMAGE == fileTypeEnum) {
                 cover = month + "/" + realFileName.replace(".", "_.");
-                String coverPath = targetFolderName + "/" + cover;
-                File coverFile = new File(coverPath);
-                Boolean created = mediaTranscodeService.createThumbnail(new File(targetFilePath), Constants.LENGTH_150,
+            }
+            if (FileTypeEnums.IMAGE == fileTypeEnum && !TranscodeStageEnums.COVER.isCompletedBy(job.getStage())) {
+                transferStatusService.publishProgress(webUserDto.getUserId(), fileId, TranscodeStageEnums.COVER,
+                        null);
+                File coverFile = new File(targetFolderName + "/" + cover);
+                Boolean created = mediaTranscodeService.createThumbnail(targetFile, Constants.LENGTH_150,
                         coverFile, false);
                 if (!created) {
-                    FileUtils.copyFile(new File(targetFilePath), coverFile);
+                    FileUtils.copyFile(targetFile, coverFile);
                 }
                 storageStrategy.upload(coverFile, cover);
+                transcodeJobService.completeStage(job, TranscodeStageEnums.COVER);
             }
-        } catch (RuntimeException e) {
-            logger.error("文件转码失败: fileId={}, userId={}", fileId, webUserDto.getUserId(), e);
-            transferSuccess = false;
+
+            // 视频的封面与切片由同一个 FFmpeg 进程产出，作为 HLS 阶段一并完成；按需切片模式下只截封面，
+            // 切片推迟到首次播放
+            if (FileTypeEnums.VIDEO == fileTypeEnum && !TranscodeStageEnums.HLS.isCompletedBy(job.getStage())) {
+                boolean lazyHls = hlsSegmentService.isLazy();
+                File tsFolder = null;
+                if (!lazyHls) {
+                    tsFolder = new File(targetFilePath.substring(0, targetFilePath.lastIndexOf(".")));
+                    if (!tsFolder.exists() && !tsFolder.mkdirs()) {
+                        throw new BusinessException("创建切片目录失败: " + tsFolder.getPath());
+                    }
+                }
+                File coverFile = new File(targetFolderName + "/" + cover);
+                videoProbe = mediaTranscodeService.transcodeToHls(targetFile, tsFolder, fileId, coverFile,
+                        Constants.LENGTH_150, transferStatusService.progressListener(webUserDto.getUserId(), fileId,
+                                TranscodeStageEnums.HLS));
+                if (coverFile.exists()) {
+                    storageStrategy.upload(coverFile, cover);
+                }
+                if (lazyHls) {
+                    hlsSegmentService.registerPending(fileInfo.getFilePath());
+                } else {
+                    storageStrategy.uploadDirectory(HlsSegmentService.hlsPathOf(fileInfo.getFilePath()), tsFolder);
+                }
+                transcodeJobService.completeStage(job, TranscodeStageEnums.HLS);
+            }
+            transferSuccess = true;
         } catch (Exception e) {
-            logger.error("文件转码失败: fileId={}, userId={}", fileId, webUserDto.getUserId(), e);
-            transferSuccess = false;
+            logger.error("文件转码失败: fileId={}, userId={}, stage={}", fileId, webUserDto.getUserId(),
+                    job.getStage(), e);
+            retry = transcodeJobService.fail(job, e);
         } finally {
-            FileInfo updateInfo = new FileInfo();
-            File targetFile = targetFilePath != null ? new File(targetFilePath) : null;
-            updateInfo.setFileSize(targetFile != null && targetFile.exists() ? targetFile.length() : 0L);
-            updateInfo.setFileCover(cover);
-            updateInfo.setStatus(
-                    transferSuccess ? FileStatusEnums.USING.getStatus() : FileStatusEnums.TRANSFER_FAIL.getStatus());
-            fileInfoMapper.updateFileStatusWithOldStatus(fileId, webUserDto.getUserId(), updateInfo,
-                    FileStatusEnums.TRANSFER.getStatus());
-
-            // transferFile() 通过 MultiLevelCacheService（L1/L2）读取 FileInfo，
-            // 这里必须主动失效缓存，避免“转码中”状态在缓存中滞留。
-            try {
-                multiLevelCacheService.evictFileInfo(fileId, webUserDto.getUserId());
-            } catch (Exception e) {
-                logger.warn("转码后清理文件缓存失败: fileId={}, userId={}",
-                        fileId, webUserDto.getUserId(), e);
+            if (!retry) {
+                FileInfo updateInfo = new FileInfo();
+                File targetFile = targetFilePath != null ? new File(targetFilePath) : null;
+                updateInfo.setFileSize(targetFile != null && targetFile.exists() ? targetFile.length()
+                        : (transferSuccess ? fileInfo.getFileSize() : Long.valueOf(0L)));
+                updateInfo.setFileCover(cover);
+                updateInfo.setFileSampleHash(sampleHash);
+                if (videoProbe != null) {
+                    updateInfo.setVideoDuration(videoProbe.getDurationMillis());
+                    updateInfo.setVideoWidth(videoProbe.getWidth());
+                    updateInfo.setVideoHeight(videoProbe.getHeight());
+                }
+                updateInfo.setStatus(transferSuccess ? FileStatusEnums.USING.getStatus()
+                        : FileStatusEnums.TRANSFER_FAIL.getStatus());
+                fileInfoMapper.updateFileStatusWithOldStatus(fileId, webUserDto.getUserId(), updateInfo,
+                        FileStatusEnums.TRANSFER.getStatus());
+                if (transferSuccess) {
+                    transcodeJobService.finish(job);
+                }
+
+                // transferFile() 通过 MultiLevelCacheService（L1/L2）读取 FileInfo，
+                // 这里必须主动失效缓存，避免“转码中”状态在缓存中滞留。
+                try {
+                    multiLevelCacheService.evictFileInfo(fileId, webUserDto.getUserId());
+                } catch (Exception e) {
+                    logger.warn("转码后清理文件缓存失败: fileId={}, userId={}",
+                            fileId, webUserDto.getUserId(), e);
+                }
+                transferStatusService.publishFinished(webUserDto.getUserId(), fileId, updateInfo.getStatus());
             }
 
-            if (targetFilePath != null
+            // 等待重试时保留本地文件，下次执行无需重新下载；存储上传之前的本地文件更是唯一副本
+            if (targetFilePath != null && !retry
                     && !com.easypan.entity.enums.StorageTypeEnum.LOCAL.getCode().equals(storageType)) {
                 FileUtils.deleteQuietly(new File(targetFilePath));
                 String tsFolderName = targetFilePath.substring(0, targetFilePath.lastIndexOf("."));
                 FileUtils.deleteQuietly(new File(tsFolderName));
             }
+            if (targetFilePath != null && transferSuccess
+                    && com.easypan.entity.enums.StorageTypeEnum.LOCAL.getCode().equals(storageType)
+                    && storageFactory.isBlockStored(fileInfo.getFilePath())) {
+                // 已按块去重存储，本地不再保留完整文件（切片与封面仍在原目录）
+                FileUtils.deleteQuietly(new File(targetFilePath));
+            }
 
-            logger.info("转码流程结束: fileId={}, userId={}, success={}",
-                    fileId, webUserDto.getUserId(), transferSuccess);
+            logger.info("转码流程结束: fileId={}, userId={}, success={}, retry={}",
+                    fileId, webUserDto.getUserId(), transferSuccess, retry);
+        }
+    }
+
+    /**
+     * 计算合并后文件的抽样指纹，失败时只记录日志，文件不参与抽样判重.
+     */
+    private static String computeSampleHash(File file) {
+        try {
+            return SampledFingerprint.compute(file);
+        } catch (IOException e) {
+            logger.warn("计算抽样指纹失败: {}", file.getPath(), e);
+            return null;
         }
     }
 
@@ -657,7 +985,9 @@ public class FileInfoServiceImpl implements FileInfoService {
             throw new BusinessException("未找到分片文件");
         }
 
-        Arrays.sort(chunks, Comparator.comparing(File::getName));
+        // 分片文件名为数字序号，先比长度再比字典序即为数值顺序（避免 10 排在 2 之前）。
+        Arrays.sort(chunks, Comparator.comparingInt((File chunk) -> chunk.getName().length())
+                .thenComparing(File::getName));
 
         java.nio.file.Path targetPath = java.nio.file.Paths.get(toFilePath);
         try (java.nio.channels.FileChannel outChannel = java.nio.channels.FileChannel.open(
@@ -701,22 +1031,6 @@ public class FileInfoServiceImpl implements FileInfoService {
         }
     }
 
-    private void cutFile4Video(String fileId, String videoFilePath) {
-        File tsFolder = new File(videoFilePath.substring(0, videoFilePath.lastIndexOf(".")));
-        if (!tsFolder.exists() && !tsFolder.mkdirs()) {
-            logger.error("Failed to create ts folder: {}", tsFolder.getAbsolutePath());
-            return;
-        }
-
-        String tsPath = tsFolder + "/" + Constants.TS_NAME;
-        mediaTranscodeService.transcodeToTs(videoFilePath, tsPath);
-        mediaTranscodeService.cutToM3u8(tsPath, tsFolder.getPath(), fileId);
-        File tsFile = new File(tsPath);
-        if (tsFile.exists() && !tsFile.delete()) {
-            logger.warn("Failed to delete ts file: {}", tsPath);
-        }
-    }
-
     @Override
     @Transactional(rollbackFor = Exception.class)
     public FileInfo rename(String fileId, String userId, String fileName) {
@@ -1067,6 +1381,7 @@ public class FileInfoServiceImpl implements FileInfoService {
                                 logger.warn("批量删除存储目录失败: {}", dir, e);
                             }
                         }
+                        hlsSegmentService.forget(dirsToDelete);
                     }
                 } catch (Exception e) {
                     logger.warn("批量删除存储文件失败", e);
@@ -1201,6 +1516,7 @@ public class FileInfoServiceImpl implements FileInfoService {
         info.setFileId(newId);
         info.setUserId(userId);
         info.setFileMd5(source.getFileMd5());
+        info.setFileSampleHash(source.getFileSampleHash());
         info.setFilePid(newPid);
         info.setFileSize(source.getFileSize());
         info.setFileName(source.getFileName());
@@ -1275,8 +1591,10 @@ public class FileInfoServiceImpl implements FileInfoService {
 
         File[] userChunkDirs = tempDir.listFiles();
         if (userChunkDirs != null) {
+            // 尚未合并的转码任务仍需要分片目录，不能按过期删除
+            java.util.Set<String> activeFolders = transcodeJobService.findActiveTempFolderNames();
             for (File userChunkDir : userChunkDirs) {
-                if (userChunkDir.isDirectory()) {
+                if (userChunkDir.isDirectory() && !activeFolders.contains(userChunkDir.getName())) {
                     // 目录最后修改时间超过 24 小时，视为异常中断遗留目录。
                     if (now - userChunkDir.lastModified() > expireTime) {
                         try {
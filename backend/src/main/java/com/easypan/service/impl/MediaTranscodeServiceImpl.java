@@ -1,19 +1,31 @@
 package com.easypan.service.impl;
 
+import com.easypan.component.ImageThumbnailer;
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.dto.VideoProbeDto;
 import com.easypan.exception.BusinessException;
 import com.easypan.service.MediaTranscodeService;
+import com.easypan.utils.FfmpegProbeParser;
+import com.easypan.utils.StringTools;
+import jakarta.annotation.Resource;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import javax.imageio.ImageIO;
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 /**
  * 媒体转码服务实现类.
@@ -23,6 +35,9 @@ public class MediaTranscodeServiceImpl implements MediaTranscodeService {
 
     private static final Logger logger = LoggerFactory.getLogger(MediaTranscodeServiceImpl.class);
 
+    @Resource
+    private ImageThumbnailer imageThumbnailer;
+
     private static final String FFMPEG_PATH;
 
     static {
@@ -37,11 +52,17 @@ public class MediaTranscodeServiceImpl implements MediaTranscodeService {
 
     @Override
     public boolean createThumbnail(File sourceFile, int width, File targetFile, boolean delSource) {
+        String format = StringTools.getFileSuffix(targetFile.getName()).replace(".", "").toLowerCase();
+        if (!ImageIO.getImageWritersByFormatName(format).hasNext()) {
+            logger.warn("没有 {} 编码器，不生成缩略图: {}", format, targetFile.getName());
+            return false;
+        }
         try {
-            // 使用 Thumbnailator 生成缩略图，不需要 FFmpeg
-            net.coobird.thumbnailator.Thumbnails.of(sourceFile)
-                    .width(width)
-                    .toFile(targetFile);
+            // 先读文件头再按输出尺寸子采样解码，超大图片不会解码完整像素
+            try (InputStream in = new FileInputStream(sourceFile);
+                    OutputStream out = new FileOutputStream(targetFile)) {
+                imageThumbnailer.write(in, width, format, out);
+            }
 
             if (delSource) {
                 FileUtils.forceDelete(sourceFile);
@@ -54,77 +75,75 @@ public class MediaTranscodeServiceImpl implements MediaTranscodeService {
     }
 
     @Override
-    public void createVideoCover(File sourceFile, int width, File targetFile) {
-        try {
-            List<String> cmd = new ArrayList<>();
-            cmd.add(FFMPEG_PATH);
-            cmd.add("-i");
-            cmd.add(sourceFile.getAbsolutePath());
-            cmd.add("-y");
-            cmd.add("-vframes");
-            cmd.add("1");
-            cmd.add("-vf");
-            cmd.add("scale=" + width + ":" + width + "/a");
-            cmd.add(targetFile.getAbsolutePath());
-
-            executeCommand(cmd);
-        } catch (Exception e) {
-            logger.error("生成视频封面失败", e);
-        }
-    }
-
-    @Override
-    public void transcodeToTs(String sourceFilePath, String targetTsPath) {
+    public VideoProbeDto transcodeToHls(File sourceFile, File hlsFolder, String fileId, File coverFile,
+            int coverWidth, IntConsumer progressListener) {
         List<String> cmd = new ArrayList<>();
-        // 使用 JAVE2 获取内嵌 FFmpeg 路径
         cmd.add(FFMPEG_PATH);
         cmd.add("-y");
-        cmd.add("-i");
-        cmd.add(sourceFilePath);
-        cmd.add("-vcodec");
-        cmd.add("copy");
-        cmd.add("-acodec");
-        cmd.add("copy");
-        cmd.add("-vbsf");
-        cmd.add("h264_mp4toannexb");
-        cmd.add(targetTsPath);
-
-        try {
-            executeCommand(cmd);
-        } catch (Exception e) {
-            logger.error("转码 TS 失败", e);
-            throw new BusinessException("转码失败");
+        if (progressListener != null) {
+            // 进度以 key=value 行周期写到标准输出，与标准错误合并读取
+            cmd.add("-nostats");
+            cmd.add("-progress");
+            cmd.add("pipe:1");
         }
-    }
-
-    @Override
-    public void cutToM3u8(String sourceTsPath, String targetFolder, String fileId) {
-        List<String> cmd = new ArrayList<>();
-        // 使用 JAVE2 获取内嵌 FFmpeg 路径
-        cmd.add(FFMPEG_PATH);
         cmd.add("-i");
-        cmd.add(sourceTsPath);
-        cmd.add("-c");
-        cmd.add("copy");
-        cmd.add("-map");
-        cmd.add("0");
-        cmd.add("-f");
-        cmd.add("segment");
-        cmd.add("-segment_list");
-        cmd.add(targetFolder + "/index.m3u8");
-        cmd.add("-segment_time");
-        cmd.add("30");
-        cmd.add(targetFolder + "/" + fileId + "_%4d.ts");
+        cmd.add(sourceFile.getAbsolutePath());
+        if (hlsFolder != null) {
+            // 复制第一条视频与音频流直接切片，mpegts 封装会自动插入 h264/hevc 所需的 annexb 转换
+            cmd.add("-map");
+            cmd.add("0:v:0");
+            cmd.add("-map");
+            cmd.add("0:a:0?");
+            cmd.add("-c");
+            cmd.add("copy");
+            cmd.add("-f");
+            cmd.add("segment");
+            cmd.add("-segment_format");
+            cmd.add("mpegts");
+            cmd.add("-segment_list");
+            cmd.add(hlsFolder.getPath() + "/" + Constants.M3U8_NAME);
+            cmd.add("-segment_list_type");
+            cmd.add("m3u8");
+            cmd.add("-segment_time");
+            cmd.add(String.valueOf(Constants.HLS_SEGMENT_SECONDS));
+            cmd.add(hlsFolder.getPath() + "/" + fileId + "_%04d.ts");
+        }
+        if (coverFile != null) {
+            // 第一帧缩放为封面
+            cmd.add("-map");
+            cmd.add("0:v:0");
+            cmd.add("-frames:v");
+            cmd.add("1");
+            cmd.add("-vf");
+            cmd.add("scale=" + coverWidth + ":-2");
+            cmd.add("-update");
+            cmd.add("1");
+            cmd.add(coverFile.getAbsolutePath());
+        }
 
+        FfmpegProbeParser probe = new FfmpegProbeParser();
         try {
-            executeCommand(cmd);
+            executeCommand(cmd, line -> {
+                probe.accept(line);
+                if (progressListener != null) {
+                    int percent = probe.progressPercent(line);
+                    if (percent >= 0) {
+                        progressListener.accept(percent);
+                    }
+                }
+            });
         } catch (Exception e) {
-            logger.error("切割 M3U8 失败", e);
-            throw new BusinessException("切片失败");
+            logger.error("视频处理失败: {}", sourceFile.getPath(), e);
+            throw new BusinessException(hlsFolder != null ? "切片失败" : "生成视频封面失败");
         }
+        VideoProbeDto result = probe.result();
+        logger.info("视频处理完成: fileId={}, hls={}, duration={}ms, resolution={}x{}, video={}, audio={}",
+                fileId, hlsFolder != null, result.getDurationMillis(), result.getWidth(), result.getHeight(),
+                result.getVideoCodec(), result.getAudioCodec());
+        return result;
     }
 
-    private void executeCommand(List<String> cmd) throws BusinessException {
+    private void executeCommand(List<String> cmd, Consumer<String> outputHandler) throws BusinessException {
         if (cmd == null || cmd.isEmpty()) {
             return;
         }
@@ -141,6 +160,7 @@ public class MediaTranscodeServiceImpl implements MediaTranscodeService {
                 String line;
                 while ((line = reader.readLine()) != null) {
                     logger.debug("FFmpeg output: {}", line);
+                    outputHandler.accept(line);
                 }
             }
 
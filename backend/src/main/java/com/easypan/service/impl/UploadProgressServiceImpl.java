@@ -1,51 +1,63 @@
 package com.easypan.service.impl;
 
-import com.easypan.component.RedisUtils;
-import com.easypan.entity.constants.Constants;
+import com.easypan.component.UploadSessionStore;
 import com.easypan.entity.dto.UploadProgressDto;
+import com.easypan.entity.dto.UploadSessionDto;
 import com.easypan.service.UploadProgressService;
 import jakarta.annotation.Resource;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 /**
  * 上传进度服务实现.
+ *
+ * <p>进度记录在共享的 {@link UploadSessionStore} 中，以 fileId 作为上传标识.
  */
 @Service("uploadProgressService")
 public class UploadProgressServiceImpl implements UploadProgressService {
 
     @Resource
-    private RedisUtils<Object> redisUtils;
-
-    private static final String PROGRESS_KEY_PREFIX = "upload:progress:";
+    private UploadSessionStore uploadSessionStore;
 
     @Override
-    public void updateProgress(String userId, String fileId, Integer chunkIndex, Integer totalChunks) {
-        String key = getProgressKey(userId, fileId);
-        // 当前使用简单的分片计数策略.
-        // 该实现假设分片上传成功后再记入进度；若需要追踪缺失分片，应使用 BitMap/BitSet 或 Redis Set.
-        // 这里采用 Redis Set 记录唯一分片索引，避免重复上传导致计数失真.
-        redisUtils.setSet(key, chunkIndex);
-        redisUtils.expire(key, Constants.REDIS_KEY_EXPIRES_ONE_HOUR); // 1 小时过期
+    public void updateProgress(String userId, String fileId, Integer chunkIndex, Integer totalChunks,
+            long chunkBytes) {
+        uploadSessionStore.initSession(userId, fileId, totalChunks, null);
+        uploadSessionStore.markChunk(userId, fileId, chunkIndex, chunkBytes);
     }
 
     @Override
     public UploadProgressDto getProgress(String userId, String fileId) {
-        String key = getProgressKey(userId, fileId);
-        long uploadedCount = redisUtils.getSetSize(key);
-
-        // 默认不在 Redis 持久化 totalChunks，通常由前端持有；也可在首片上传时写入.
-        // 当前实现只返回已完成分片数，保持读写链路简单稳定.
+        UploadSessionDto session = uploadSessionStore.getSession(userId, fileId);
         return UploadProgressDto.builder()
-                .completedChunks((int) uploadedCount)
+                .completedChunks(session.getCompletedChunks())
+                .totalChunks(session.getTotalChunks())
                 .build();
     }
 
     @Override
-    public void clearProgress(String userId, String fileId) {
-        redisUtils.delete(getProgressKey(userId, fileId));
+    public boolean isChunkUploaded(String userId, String fileId, Integer chunkIndex) {
+        return uploadSessionStore.isChunkMarked(userId, fileId, chunkIndex);
     }
 
-    private String getProgressKey(String userId, String fileId) {
-        return PROGRESS_KEY_PREFIX + userId + ":" + fileId;
+    @Override
+    public List<Integer> getUploadedChunks(String userId, String fileId) {
+        return uploadSessionStore.getMarkedChunks(userId, fileId);
+    }
+
+    @Override
+    public Long getChunkSize(String userId, String fileId) {
+        return uploadSessionStore.getSession(userId, fileId).getChunkSize();
+    }
+
+    @Override
+    public void saveChunkSize(String userId, String fileId, Integer chunks, Long chunkSize) {
+        uploadSessionStore.initSession(userId, fileId, chunks, chunkSize);
+    }
+
+    @Override
+    public void clearProgress(String userId, String fileId) {
+        uploadSessionStore.clearSession(userId, fileId);
     }
 }
@@ -2,19 +2,28 @@ package com.easypan.strategy;
 
 import com.easypan.entity.enums.StorageTypeEnum;
 import com.easypan.exception.BusinessException;
+import com.easypan.mappers.FileBlockManifestMapper;
+import com.easypan.mappers.StorageBlockMapper;
+import com.easypan.strategy.impl.DedupStorageStrategy;
 import com.easypan.strategy.impl.LocalStorageStrategy;
 import com.easypan.strategy.impl.OssStorageStrategy;
+import com.easypan.utils.FastCdcChunker;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 存储策略工厂，根据配置获取对应的存储策略实例.
+ *
+ * <p>开启 {@code app.storage.dedup.enabled} 后，默认存储策略会包装为 {@link DedupStorageStrategy}，
+ * 读写删除统一经过块清单；按类型获取的策略（如故障转移的本地备份）不做包装.
  */
 @Component
 public class StorageFactory implements ApplicationContextAware {
@@ -22,10 +31,33 @@ public class StorageFactory implements ApplicationContextAware {
     @Value("${app.storage.type:local}")
     private String storageType;
 
+    @Value("${app.storage.dedup.enabled:false}")
+    private boolean dedupEnabled;
+
+    @Value("${app.storage.dedup.min-file-size:4194304}")
+    private long dedupMinFileSize;
+
+    @Value("${app.storage.dedup.min-block-size:262144}")
+    private int dedupMinBlockSize;
+
+    @Value("${app.storage.dedup.avg-block-size:1048576}")
+    private int dedupAvgBlockSize;
+
+    @Value("${app.storage.dedup.max-block-size:4194304}")
+    private int dedupMaxBlockSize;
+
+    @Value("${app.storage.dedup.block-grace-seconds:3600}")
+    private long dedupBlockGraceSeconds;
+
     private static final Map<String, StorageStrategy> STRATEGY_MAP = new ConcurrentHashMap<>();
 
+    private ApplicationContext applicationContext;
+
+    private volatile DedupStorageStrategy dedupStrategy;
+
     @Override
     public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        this.applicationContext = applicationContext;
         Map<String, StorageStrategy> beans = applicationContext.getBeansOfType(StorageStrategy.class);
         beans.values().forEach(strategy -> {
             if (strategy instanceof LocalStorageStrategy) {
@@ -50,9 +82,43 @@ public class StorageFactory implements ApplicationContextAware {
         if (strategy == null) {
             throw new BusinessException("存储配置错误，未找到有效的存储策略，请联系管理员");
         }
+        if (dedupEnabled) {
+            return getDedupStrategy(strategy);
+        }
         return strategy;
     }
 
+    /**
+     * 判断路径是否以去重块清单形式存储.
+     *
+     * @param path 存储路径
+     * @return true 表示已按块存储，底层不再需要完整文件
+     */
+    public boolean isBlockStored(String path) {
+        return dedupEnabled && getStorageStrategy() instanceof DedupStorageStrategy dedup
+                && dedup.isBlockStored(path);
+    }
+
+    private DedupStorageStrategy getDedupStrategy(StorageStrategy delegate) {
+        DedupStorageStrategy current = dedupStrategy;
+        if (current == null || current.getDelegate() != delegate) {
+            synchronized (this) {
+                current = dedupStrategy;
+                if (current == null || current.getDelegate() != delegate) {
+                    current = new DedupStorageStrategy(delegate,
+                            applicationContext.getBean(StorageBlockMapper.class),
+                            applicationContext.getBean(FileBlockManifestMapper.class),
+                            new FastCdcChunker(dedupMinBlockSize, dedupAvgBlockSize, dedupMaxBlockSize),
+                            dedupMinFileSize,
+                            new TransactionTemplate(applicationContext.getBean(PlatformTransactionManager.class)),
+                            dedupBlockGraceSeconds);
+                    dedupStrategy = current;
+                }
+            }
+        }
+        return current;
+    }
+
     public StorageStrategy getStorageStrategy(String type) {
         return STRATEGY_MAP.get(type);
     }
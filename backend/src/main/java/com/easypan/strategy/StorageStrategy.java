@@ -1,5 +1,11 @@
 package com.easypan.strategy;
 
+import com.easypan.entity.dto.StorageObjectStatDto;
+import com.easypan.exception.BusinessException;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+
+import java.io.IOException;
 import java.io.InputStream;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -23,6 +29,26 @@ public interface StorageStrategy {
      */
     void upload(java.io.File file, String path);
 
+    /**
+     * 上传文件并回调进度.
+     *
+     * @param file             文件
+     * @param path             存储路径
+     * @param progressListener 进度回调，参数为累计已上传字节数
+     */
+    default void upload(java.io.File file, String path, java.util.function.LongConsumer progressListener) {
+        upload(file, path);
+        progressListener.accept(file.length());
+    }
+
+    /**
+     * 上传字节内容.
+     *
+     * @param content 内容
+     * @param path    存储路径
+     */
+    void upload(byte[] content, String path);
+
     /**
      * 上传目录.
      *
@@ -39,6 +65,46 @@ public interface StorageStrategy {
      */
     InputStream download(String path);
 
+    /**
+     * 下载文件的一段，用于 HTTP 范围请求. 默认实现从头读取并跳过 {@code offset} 字节，支持按位置读取的
+     * 存储应覆盖.
+     *
+     * @param path   存储路径
+     * @param offset 起始偏移
+     * @param length 读取长度，小于 0 表示读到末尾
+     * @return 文件输入流，最多返回 {@code length} 字节
+     */
+    default InputStream download(String path, long offset, long length) {
+        InputStream in = download(path);
+        try {
+            IOUtils.skipFully(in, offset);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(in);
+            throw new BusinessException("文件下载失败，请重试");
+        }
+        return length < 0 ? in : new BoundedInputStream(in, length);
+    }
+
+    /**
+     * 获取对象大小与修改时间.
+     *
+     * @param path 存储路径
+     * @return 元信息，对象不存在或存储不支持时为 null
+     */
+    default StorageObjectStatDto stat(String path) {
+        return null;
+    }
+
+    /**
+     * 对象对应的本地完整文件，用于零拷贝输出.
+     *
+     * @param path 存储路径
+     * @return 本地文件，远程存储、按块存储或文件不存在时为 null
+     */
+    default java.io.File getLocalFile(String path) {
+        return null;
+    }
+
     /**
      * 删除文件.
      *
@@ -65,5 +131,16 @@ public interface StorageStrategy {
         return null;
     }
 
+    /**
+     * 生成供反向代理回源的短时效链接.
+     *
+     * @param path       存储路径
+     * @param ttlSeconds 有效期（秒）
+     * @return 链接，本地存储或没有完整对象时为 null
+     */
+    default String generateInternalUrl(String path, long ttlSeconds) {
+        return null;
+    }
+
     void init();
 }
@@ -0,0 +1,399 @@
+package com.easypan.strategy.impl;
+
+import com.easypan.entity.dto.StorageObjectStatDto;
+import com.easypan.entity.po.FileBlockManifest;
+import com.easypan.exception.BusinessException;
+import com.easypan.mappers.FileBlockManifestMapper;
+import com.easypan.mappers.StorageBlockMapper;
+import com.easypan.strategy.StorageStrategy;
+import com.easypan.utils.FastCdcChunker;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * 块级去重存储策略，装饰实际的存储策略.
+ *
+ * <p>大于阈值的文件按 {@link FastCdcChunker} 切成变长块，以 SHA-256 为键，每个唯一块只通过
+ * 底层策略存储一次（{@code blocks/{前两位}/{hash}}），文件本身只保存一份有序块清单. 下载时按清单
+ * 依次打开块对象拼成一个流；删除时递减块引用.
+ *
+ * <p>块记录与块对象由所有节点共享，引用增减都是数据库上的单条原子语句. 引用归零的块只记墓碑，
+ * 由 {@link #purgeExpiredBlocks(int)} 在宽限期后于行锁内删除对象与记录；宽限期内再次引用会清除墓碑，
+ * 回收开始后到来的引用会等待行锁，随后按新块重新写入. 宽限期同时保证删除前已开始的下载能读完.
+ *
+ * <p>没有清单的路径（小文件、封面、HLS 切片、启用去重之前上传的文件）原样透传给底层策略.
+ *
+ * <p>输出一个对象通常先后调用 stat、getLocalFile 与 download，清单（包括“没有清单”）在节点内缓存
+ * {@value #MANIFEST_CACHE_SECONDS} 秒，一次输出只查一次库. 本节点写入或删除清单时立即失效；
+ * 其他节点的改动最多在有效期后可见，期间删除的文件其块仍在宽限期内，按旧清单读取不受影响.
+ */
+public class DedupStorageStrategy implements StorageStrategy {
+
+    private static final Logger logger = LoggerFactory.getLogger(DedupStorageStrategy.class);
+
+    /**
+     * 块对象 Key 前缀.
+     */
+    public static final String BLOCK_KEY_PREFIX = "blocks/";
+
+    private static final int MANIFEST_BATCH_SIZE = 1000;
+
+    private static final long MANIFEST_CACHE_SECONDS = 30;
+
+    /**
+     * 清单缓存按块数计权的上限.
+     */
+    private static final long MANIFEST_CACHE_MAX_BLOCKS = 200_000;
+
+    private final StorageStrategy delegate;
+
+    private final StorageBlockMapper storageBlockMapper;
+
+    private final FileBlockManifestMapper fileBlockManifestMapper;
+
+    private final FastCdcChunker chunker;
+
+    private final long minFileSize;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final long graceSeconds;
+
+    private final Cache<String, List<FileBlockManifest>> manifestCache = Caffeine.newBuilder()
+            .maximumWeight(MANIFEST_CACHE_MAX_BLOCKS)
+            .weigher((String path, List<FileBlockManifest> blocks) -> Math.max(1, blocks.size()))
+            .expireAfterWrite(MANIFEST_CACHE_SECONDS, TimeUnit.SECONDS)
+            .build();
+
+    public DedupStorageStrategy(StorageStrategy delegate, StorageBlockMapper storageBlockMapper,
+            FileBlockManifestMapper fileBlockManifestMapper, FastCdcChunker chunker, long minFileSize,
+            TransactionTemplate transactionTemplate, long graceSeconds) {
+        this.delegate = delegate;
+        this.storageBlockMapper = storageBlockMapper;
+        this.fileBlockManifestMapper = fileBlockManifestMapper;
+        this.chunker = chunker;
+        this.minFileSize = minFileSize;
+        this.transactionTemplate = transactionTemplate;
+        this.graceSeconds = graceSeconds;
+    }
+
+    public StorageStrategy getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * 判断路径是否以块清单形式存储.
+     *
+     * @param path 存储路径
+     * @return true 表示存在块清单
+     */
+    public boolean isBlockStored(String path) {
+        return !manifestOf(path).isEmpty();
+    }
+
+    @Override
+    public void upload(MultipartFile file, String path) {
+        delegate.upload(file, path);
+    }
+
+    @Override
+    public void upload(byte[] content, String path) {
+        delegate.upload(content, path);
+    }
+
+    @Override
+    public void upload(File file, String path) {
+        upload(file, path, null);
+    }
+
+    @Override
+    public void upload(File file, String path, LongConsumer progressListener) {
+        if (file.length() < minFileSize) {
+            if (progressListener != null) {
+                delegate.upload(file, path, progressListener);
+            } else {
+                delegate.upload(file, path);
+            }
+            return;
+        }
+        releaseBlocks(path);
+
+        List<FileBlockManifest> manifest = new ArrayList<>();
+        long newBytes = 0L;
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            long[] stored = new long[1];
+            long[] processed = new long[1];
+            chunker.split(inputStream, (data, offset, length) -> {
+                sha256.update(data, offset, length);
+                String blockHash = HexFormat.of().formatHex(sha256.digest());
+                if (retainBlock(blockHash, data, offset, length)) {
+                    stored[0] += length;
+                }
+                manifest.add(new FileBlockManifest(path, manifest.size(), blockHash, length));
+                processed[0] += length;
+                if (progressListener != null) {
+                    progressListener.accept(processed[0]);
+                }
+            });
+            newBytes = stored[0];
+            for (int i = 0; i < manifest.size(); i += MANIFEST_BATCH_SIZE) {
+                fileBlockManifestMapper.insertManifest(
+                        manifest.subList(i, Math.min(i + MANIFEST_BATCH_SIZE, manifest.size())));
+            }
+        } catch (IOException | NoSuchAlgorithmException | RuntimeException e) {
+            logger.error("块去重存储失败: path={}", path, e);
+            fileBlockManifestMapper.deleteByFilePath(path);
+            manifest.forEach(block -> releaseBlock(block.getBlockHash()));
+            throw new BusinessException("文件上传失败，请重试");
+        } finally {
+            manifestCache.invalidate(path);
+        }
+        logger.info("块去重存储完成: path={}, size={}, blocks={}, newBytes={}",
+                path, file.length(), manifest.size(), newBytes);
+    }
+
+    @Override
+    public void uploadDirectory(String prefix, File directory) {
+        delegate.uploadDirectory(prefix, directory);
+    }
+
+    @Override
+    public InputStream download(String path) {
+        List<FileBlockManifest> manifest = manifestOf(path);
+        if (manifest.isEmpty()) {
+            return delegate.download(path);
+        }
+        Iterator<FileBlockManifest> blocks = manifest.iterator();
+        // 逐块按需打开，同一时刻只持有一个块对象的连接
+        return new SequenceInputStream(new Enumeration<>() {
+            @Override
+            public boolean hasMoreElements() {
+                return blocks.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                if (!blocks.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return delegate.download(blockKey(blocks.next().getBlockHash()));
+            }
+        });
+    }
+
+    @Override
+    public InputStream download(String path, long offset, long length) {
+        List<FileBlockManifest> manifest = manifestOf(path);
+        if (manifest.isEmpty()) {
+            return delegate.download(path, offset, length);
+        }
+        long end = length < 0 ? Long.MAX_VALUE : offset + length;
+        // 只打开与区间相交的块，首尾两块按块内区间读取
+        List<long[]> slices = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        long blockStart = 0;
+        for (FileBlockManifest block : manifest) {
+            long blockEnd = blockStart + block.getBlockSize();
+            if (blockEnd > offset && blockStart < end) {
+                long from = Math.max(offset, blockStart) - blockStart;
+                long to = Math.min(end, blockEnd) - blockStart;
+                slices.add(new long[] {from, to - from});
+                keys.add(blockKey(block.getBlockHash()));
+            }
+            if (blockEnd >= end) {
+                break;
+            }
+            blockStart = blockEnd;
+        }
+        Iterator<String> blockKeys = keys.iterator();
+        Iterator<long[]> blockSlices = slices.iterator();
+        return new SequenceInputStream(new Enumeration<>() {
+            @Override
+            public boolean hasMoreElements() {
+                return blockKeys.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                if (!blockKeys.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                long[] slice = blockSlices.next();
+                return delegate.download(blockKeys.next(), slice[0], slice[1]);
+            }
+        });
+    }
+
+    @Override
+    public StorageObjectStatDto stat(String path) {
+        List<FileBlockManifest> manifest = manifestOf(path);
+        if (manifest.isEmpty()) {
+            return delegate.stat(path);
+        }
+        // 块对象被多个文件共用，修改时间没有意义
+        long size = manifest.stream().mapToLong(FileBlockManifest::getBlockSize).sum();
+        return new StorageObjectStatDto(size, -1L);
+    }
+
+    @Override
+    public File getLocalFile(String path) {
+        // 按块存储的文件没有完整的本地文件
+        if (isBlockStored(path)) {
+            return null;
+        }
+        return delegate.getLocalFile(path);
+    }
+
+    @Override
+    public void delete(String key) {
+        releaseBlocks(key);
+        delegate.delete(key);
+    }
+
+    @Override
+    public void deleteBatch(List<String> keys) {
+        keys.forEach(this::releaseBlocks);
+        delegate.deleteBatch(keys);
+    }
+
+    @Override
+    public void deleteDirectory(String path) {
+        delegate.deleteDirectory(path);
+    }
+
+    @Override
+    public String getUrl(String path) {
+        return delegate.getUrl(path);
+    }
+
+    @Override
+    public String generatePresignedUrl(String path, String fileName) {
+        // 块存储的文件没有完整对象可供直连，返回 null 由服务端拼接下载
+        if (isBlockStored(path)) {
+            return null;
+        }
+        return delegate.generatePresignedUrl(path, fileName);
+    }
+
+    @Override
+    public String generateInternalUrl(String path, long ttlSeconds) {
+        if (isBlockStored(path)) {
+            return null;
+        }
+        return delegate.generateInternalUrl(path, ttlSeconds);
+    }
+
+    @Override
+    public void init() {
+        delegate.init();
+    }
+
+    /**
+     * 回收墓碑已到期的块.
+     *
+     * <p>每个块在单独的事务内先锁定记录再删除对象与记录，对象删除失败时事务回滚、墓碑保留到下次回收.
+     * 回收期间到来的引用会等待行锁，事务提交后按新块重新写入；多个节点同时回收时已锁定的块会被跳过.
+     *
+     * @param limit 单次回收数量上限
+     * @return 实际回收的块数
+     */
+    public int purgeExpiredBlocks(int limit) {
+        int purged = 0;
+        for (String blockHash : storageBlockMapper.selectExpired(limit)) {
+            try {
+                Boolean deleted = transactionTemplate.execute(status -> {
+                    if (storageBlockMapper.lockExpired(blockHash) == null) {
+                        return false;
+                    }
+                    delegate.delete(blockKey(blockHash));
+                    storageBlockMapper.deleteBlock(blockHash);
+                    return true;
+                });
+                if (Boolean.TRUE.equals(deleted)) {
+                    purged++;
+                }
+            } catch (RuntimeException e) {
+                logger.warn("回收存储块失败: blockHash={}", blockHash, e);
+            }
+        }
+        return purged;
+    }
+
+    /**
+     * 登记一次块引用，块首次出现或记录存在但对象尚未写入时写入底层存储.
+     *
+     * <p>块对象以内容哈希为 Key，并发写入同一块的结果相同，不需要互斥.
+     *
+     * @return true 表示写入了块对象
+     */
+    private boolean retainBlock(String blockHash, byte[] data, int offset, int length) {
+        while (true) {
+            Boolean stored = storageBlockMapper.retainExisting(blockHash);
+            if (Boolean.TRUE.equals(stored)) {
+                return false;
+            }
+            // 记录不存在时插入；插入冲突说明其他上传刚插入了记录，重新走引用分支
+            if (stored != null || storageBlockMapper.insertIfAbsent(blockHash, length) > 0) {
+                try {
+                    delegate.upload(Arrays.copyOfRange(data, offset, offset + length), blockKey(blockHash));
+                    storageBlockMapper.markStored(blockHash);
+                } catch (RuntimeException e) {
+                    releaseBlock(blockHash);
+                    throw e;
+                }
+                return true;
+            }
+        }
+    }
+
+    private void releaseBlocks(String path) {
+        List<FileBlockManifest> manifest = fileBlockManifestMapper.selectByFilePath(path);
+        if (manifest.isEmpty()) {
+            return;
+        }
+        fileBlockManifestMapper.deleteByFilePath(path);
+        manifestCache.invalidate(path);
+        manifest.forEach(block -> releaseBlock(block.getBlockHash()));
+    }
+
+    /**
+     * 读取清单，没有清单时为空列表.
+     */
+    private List<FileBlockManifest> manifestOf(String path) {
+        return manifestCache.get(path, key -> List.copyOf(fileBlockManifestMapper.selectByFilePath(key)));
+    }
+
+    private void releaseBlock(String blockHash) {
+        try {
+            storageBlockMapper.releaseRef(blockHash, graceSeconds);
+        } catch (RuntimeException e) {
+            logger.warn("释放存储块失败: blockHash={}", blockHash, e);
+        }
+    }
+
+    static String blockKey(String blockHash) {
+        return BLOCK_KEY_PREFIX + blockHash.substring(0, 2) + "/" + blockHash;
+    }
+}
@@ -1,10 +1,12 @@
 package com.easypan.strategy.impl;
 
 import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.dto.StorageObjectStatDto;
 import com.easypan.exception.BusinessException;
 import com.easypan.strategy.StorageStrategy;
 import jakarta.annotation.Resource;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -14,6 +16,10 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 /**
  * 本地存储策略实现类.
@@ -62,6 +68,22 @@ public class LocalStorageStrategy implements StorageStrategy {
         }
     }
 
+    @Override
+    public void upload(byte[] content, String path) {
+        try {
+            File targetFile = new File(getFullPath(path));
+            File folder = targetFile.getParentFile();
+            if (folder != null && !folder.exists() && !folder.mkdirs()) {
+                logger.error("Failed to create directory: {}", folder.getAbsolutePath());
+                throw new BusinessException("创建目录失败");
+            }
+            FileUtils.writeByteArrayToFile(targetFile, content);
+        } catch (IOException e) {
+            logger.error("Upload file to local failed", e);
+            throw new BusinessException("文件上传失败，请重试");
+        }
+    }
+
     @Override
     public void uploadDirectory(String prefix, File directory) {
         try {
@@ -87,6 +109,35 @@ public class LocalStorageStrategy implements StorageStrategy {
         }
     }
 
+    @Override
+    public InputStream download(String path, long offset, long length) {
+        try {
+            // 定位读取，不必从头跳过
+            FileChannel channel = FileChannel.open(Path.of(getFullPath(path)), StandardOpenOption.READ);
+            channel.position(offset);
+            InputStream in = Channels.newInputStream(channel);
+            return length < 0 ? in : new BoundedInputStream(in, length);
+        } catch (IOException e) {
+            logger.error("Download file range from local failed", e);
+            throw new BusinessException("文件下载失败，请重试");
+        }
+    }
+
+    @Override
+    public StorageObjectStatDto stat(String path) {
+        File file = new File(getFullPath(path));
+        if (!file.isFile()) {
+            return null;
+        }
+        return new StorageObjectStatDto(file.length(), file.lastModified());
+    }
+
+    @Override
+    public File getLocalFile(String path) {
+        File file = new File(getFullPath(path));
+        return file.isFile() ? file : null;
+    }
+
     @Override
     public void delete(String path) {
         File file = new File(getFullPath(path));
@@ -2,6 +2,7 @@ package com.easypan.strategy.impl;
 
 import com.easypan.component.S3Component;
 import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.dto.StorageObjectStatDto;
 import com.easypan.exception.BusinessException;
 import com.easypan.strategy.StorageStrategy;
 import jakarta.annotation.Resource;
@@ -9,10 +10,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
+import java.util.function.LongConsumer;
 
 /**
  * OSS 存储策略实现类.
@@ -44,6 +48,16 @@ public class OssStorageStrategy implements StorageStrategy {
         s3Component.uploadFile(path, file);
     }
 
+    @Override
+    public void upload(File file, String path, LongConsumer progressListener) {
+        s3Component.uploadFile(path, file, progressListener);
+    }
+
+    @Override
+    public void upload(byte[] content, String path) {
+        s3Component.uploadBytes(path, content);
+    }
+
     @Override
     public void uploadDirectory(String prefix, File directory) {
         s3Component.uploadDirectory(prefix, directory);
@@ -54,6 +68,21 @@ public class OssStorageStrategy implements StorageStrategy {
         return s3Component.getInputStream(path);
     }
 
+    @Override
+    public InputStream download(String path, long offset, long length) {
+        return s3Component.getInputStream(path, offset, length);
+    }
+
+    @Override
+    public StorageObjectStatDto stat(String path) {
+        HeadObjectResponse head = s3Component.headObject(path);
+        if (head == null) {
+            return null;
+        }
+        return new StorageObjectStatDto(head.contentLength(),
+                head.lastModified() != null ? head.lastModified().toEpochMilli() : -1L);
+    }
+
     @Override
     public void delete(String path) {
         s3Component.deleteFile(path);
@@ -81,6 +110,11 @@ public class OssStorageStrategy implements StorageStrategy {
         return s3Component.generatePresignedUrl(path, fileName);
     }
 
+    @Override
+    public String generateInternalUrl(String path, long ttlSeconds) {
+        return s3Component.generateInternalUrl(path, Duration.ofSeconds(ttlSeconds));
+    }
+
     @Override
     public void init() {
         // S3Component 在 Spring 启动阶段已完成初始化。
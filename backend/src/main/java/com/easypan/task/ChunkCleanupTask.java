@@ -1,6 +1,7 @@
 package com.easypan.task;
 
 import com.easypan.component.S3Component;
+import com.easypan.component.UploadSessionStore;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
@@ -25,7 +26,6 @@ public class ChunkCleanupTask {
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
-    private static final String UPLOAD_PROGRESS_KEY_PREFIX = "upload:progress:";
     private static final String CHUNK_PATH_PREFIX = "chunks/";
 
     /**
@@ -36,7 +36,8 @@ public class ChunkCleanupTask {
         log.info("[ChunkCleanup] 开始清理过期分片文件...");
         
         try {
-            Set<String> keys = redisTemplate.keys(UPLOAD_PROGRESS_KEY_PREFIX + "*:completed");
+            Set<String> keys = redisTemplate.keys(UploadSessionStore.SESSION_KEY_PREFIX + "*"
+                    + UploadSessionStore.CHUNKS_KEY_SUFFIX);
             if (keys == null || keys.isEmpty()) {
                 log.info("[ChunkCleanup] 没有找到需要清理的上传记录");
                 return;
@@ -46,7 +47,10 @@ public class ChunkCleanupTask {
             for (String key : keys) {
                 Long ttl = redisTemplate.getExpire(key, TimeUnit.HOURS);
                 if (ttl != null && ttl < 0) {
-                    String[] parts = key.replace(UPLOAD_PROGRESS_KEY_PREFIX, "").split(":");
+                    String sessionKey = key.substring(0, key.length() - UploadSessionStore.CHUNKS_KEY_SUFFIX.length());
+                    // 会话 Key 形如 upload:session:{userId:uploadId}，花括号为哈希标签
+                    String[] parts = sessionKey.substring(UploadSessionStore.SESSION_KEY_PREFIX.length())
+                            .replace("{", "").replace("}", "").split(":");
                     if (parts.length >= 2) {
                         String userId = parts[0];
                         String fileMd5 = parts[1];
@@ -56,7 +60,7 @@ public class ChunkCleanupTask {
                     }
                     
                     redisTemplate.delete(key);
-                    redisTemplate.delete(key.replace(":completed", ":uploading"));
+                    redisTemplate.delete(sessionKey);
                 }
             }
             
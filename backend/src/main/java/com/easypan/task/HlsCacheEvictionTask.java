@@ -0,0 +1,39 @@
+package com.easypan.task;
+
+import com.easypan.service.HlsSegmentService;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按需切片淘汰任务.
+ *
+ * <p>按存储预算淘汰最久未播放的按需切片，未配置预算时不做任何事. 淘汰以数据库条件更新为准，多个节点
+ * 同时执行不会重复删除.
+ */
+@Component
+@Slf4j
+public class HlsCacheEvictionTask {
+
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
+    @Resource
+    private HlsSegmentService hlsSegmentService;
+
+    @Value("${app.hls.eviction-batch-size:" + DEFAULT_BATCH_SIZE + "}")
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * 淘汰超出预算的切片.
+     */
+    @Scheduled(fixedDelayString = "${app.hls.eviction-interval-ms:600000}")
+    public void evictColdSegments() {
+        try {
+            hlsSegmentService.evictOverBudget(batchSize);
+        } catch (Exception e) {
+            log.error("[HLS] 淘汰冷门视频切片失败", e);
+        }
+    }
+}
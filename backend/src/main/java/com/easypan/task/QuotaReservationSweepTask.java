@@ -0,0 +1,42 @@
+package com.easypan.task;
+
+import com.easypan.service.QuotaReservationService;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 过期上传预留回收任务.
+ *
+ * <p>客户端中途放弃的上传不会走到完成或失败分支，其预留在会话过期后由此任务释放. 回收脚本幂等，
+ * 多个节点同时执行不会重复扣减.
+ */
+@Component
+@Slf4j
+public class QuotaReservationSweepTask {
+
+    private static final int DEFAULT_BATCH_SIZE = 200;
+
+    @Resource
+    private QuotaReservationService quotaReservationService;
+
+    @Value("${app.quota.reservation.sweep-batch-size:" + DEFAULT_BATCH_SIZE + "}")
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * 释放过期预留.
+     */
+    @Scheduled(fixedDelayString = "${app.quota.reservation.sweep-interval-ms:60000}")
+    public void releaseExpiredReservations() {
+        try {
+            int released;
+            do {
+                released = quotaReservationService.releaseExpired(batchSize);
+            } while (released >= batchSize);
+        } catch (Exception e) {
+            log.error("[QuotaSweep] 回收过期上传预留失败", e);
+        }
+    }
+}
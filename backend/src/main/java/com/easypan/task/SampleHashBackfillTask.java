@@ -0,0 +1,49 @@
+package com.easypan.task;
+
+import com.easypan.service.QuickUploadService;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 抽样指纹补算任务.
+ *
+ * <p>为抽样指纹上线前的文件补算指纹，补齐后这些文件的重复上传才能通过抽样判重进入秒传. 补写是带
+ * {@code file_sample_hash IS NULL} 条件的更新，多个节点同时执行只会重复读取，不会写出不一致的结果.
+ */
+@Component
+@Slf4j
+public class SampleHashBackfillTask {
+
+    private static final int DEFAULT_BATCH_SIZE = 200;
+
+    @Resource
+    private QuickUploadService quickUploadService;
+
+    @Value("${app.upload.sample-hash-backfill.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.upload.sample-hash-backfill.batch-size:" + DEFAULT_BATCH_SIZE + "}")
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * 补算一轮.
+     */
+    @Scheduled(initialDelayString = "${app.upload.sample-hash-backfill.initial-delay-ms:60000}",
+            fixedDelayString = "${app.upload.sample-hash-backfill.interval-ms:600000}")
+    public void backfill() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int scanned;
+            do {
+                scanned = quickUploadService.backfillSampleHashes(batchSize);
+            } while (scanned >= batchSize);
+        } catch (Exception e) {
+            log.error("[SampleHash] 补算抽样指纹失败", e);
+        }
+    }
+}
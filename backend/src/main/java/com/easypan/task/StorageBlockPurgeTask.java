@@ -0,0 +1,48 @@
+package com.easypan.task;
+
+import com.easypan.strategy.StorageFactory;
+import com.easypan.strategy.StorageStrategy;
+import com.easypan.strategy.impl.DedupStorageStrategy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 去重块回收任务.
+ *
+ * <p>删除墓碑已过宽限期的去重块，未启用块级去重时不做任何事. 每个块在行锁内回收，多个节点同时执行
+ * 不会重复删除，也不会删掉刚被重新引用的块.
+ */
+@Component
+@Slf4j
+public class StorageBlockPurgeTask {
+
+    private static final int DEFAULT_BATCH_SIZE = 200;
+
+    @Resource
+    private StorageFactory storageFactory;
+
+    @Value("${app.storage.dedup.purge-batch-size:" + DEFAULT_BATCH_SIZE + "}")
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * 回收到期的块.
+     */
+    @Scheduled(fixedDelayString = "${app.storage.dedup.purge-interval-ms:300000}")
+    public void purgeExpiredBlocks() {
+        try {
+            StorageStrategy storage = storageFactory.getStorageStrategy();
+            if (!(storage instanceof DedupStorageStrategy dedup)) {
+                return;
+            }
+            int purged;
+            do {
+                purged = dedup.purgeExpiredBlocks(batchSize);
+            } while (purged >= batchSize);
+        } catch (Exception e) {
+            log.error("[DedupPurge] 回收去重存储块失败", e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.easypan.task;
+
+import com.easypan.component.TranscodeScheduler;
+import com.easypan.entity.po.TranscodeJob;
+import com.easypan.service.TranscodeJobService;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 转码任务续约与回收任务.
+ *
+ * <p>定期为本节点排队中与执行中的任务续约；启动后及之后定期接管租约已过期的任务（持有节点宕机，
+ * 或失败后的重试等待已结束），重新放入本节点的转码队列. 多个节点同时接管同一任务时只有一个能领取成功.
+ */
+@Component
+@Slf4j
+public class TranscodeJobRecoveryTask {
+
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
+    @Resource
+    private TranscodeJobService transcodeJobService;
+
+    @Resource
+    private TranscodeScheduler transcodeScheduler;
+
+    @Value("${app.transcode.recovery-batch-size:" + DEFAULT_BATCH_SIZE + "}")
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * 续约本节点持有的任务.
+     */
+    @Scheduled(fixedDelayString = "${app.transcode.heartbeat-interval-ms:30000}")
+    public void renewLeases() {
+        try {
+            transcodeJobService.renewLeases(transcodeScheduler.heldFileIds());
+        } catch (Exception e) {
+            log.error("[TranscodeRecovery] 转码任务续约失败", e);
+        }
+    }
+
+    /**
+     * 接管租约过期的任务.
+     */
+    @Scheduled(initialDelayString = "${app.transcode.recovery-initial-delay-ms:10000}",
+            fixedDelayString = "${app.transcode.recovery-interval-ms:30000}")
+    public void recoverExpiredJobs() {
+        try {
+            List<TranscodeJob> jobs = transcodeJobService.findRecoverable(batchSize);
+            for (TranscodeJob job : jobs) {
+                transcodeScheduler.submit(job);
+            }
+            if (!jobs.isEmpty()) {
+                log.info("[TranscodeRecovery] 接管过期转码任务: count={}", jobs.size());
+            }
+        } catch (Exception e) {
+            log.error("[TranscodeRecovery] 接管过期转码任务失败", e);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.easypan.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.SplittableRandom;
+
+/**
+ * FastCDC 风格的内容定义分块器.
+ *
+ * <p>以 Gear 滚动哈希寻找切点：前 {@code minSize} 字节直接跳过；到达平均块大小前使用位数更多的掩码
+ * （更难命中），之后使用位数更少的掩码（更易命中），即"归一化分块"，使块大小集中在平均值附近；
+ * 到达 {@code maxSize} 时强制切分. 切点只取决于附近内容，文件中间插入或删除少量字节只影响相邻的块，
+ * 其余块的哈希保持不变，从而可以跨版本去重.
+ */
+public final class FastCdcChunker {
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // 固定种子：切点必须在所有节点、所有版本间保持一致
+        SplittableRandom random = new SplittableRandom(0x6561737970616EL);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final int minSize;
+
+    private final int avgSize;
+
+    private final int maxSize;
+
+    private final long maskS;
+
+    private final long maskL;
+
+    /**
+     * 构造分块器.
+     *
+     * @param minSize 最小块大小
+     * @param avgSize 平均块大小，须为 2 的幂
+     * @param maxSize 最大块大小
+     */
+    public FastCdcChunker(int minSize, int avgSize, int maxSize) {
+        if (minSize <= 0 || minSize > avgSize || avgSize > maxSize || Integer.bitCount(avgSize) != 1) {
+            throw new IllegalArgumentException(
+                    "非法的分块参数: min=" + minSize + ", avg=" + avgSize + ", max=" + maxSize);
+        }
+        this.minSize = minSize;
+        this.avgSize = avgSize;
+        this.maxSize = maxSize;
+        int bits = Integer.numberOfTrailingZeros(avgSize);
+        // Gear 哈希左移累加，高位受更多历史字节影响，掩码取高位
+        this.maskS = -1L << (Long.SIZE - (bits + 1));
+        this.maskL = -1L << (Long.SIZE - (bits - 1));
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 计算从 offset 开始的下一个块长度.
+     *
+     * @param data   数据
+     * @param offset 起始位置
+     * @param length 可用长度；未到流末尾时调用方应保证不小于 {@code maxSize}
+     * @return 块长度
+     */
+    public int cut(byte[] data, int offset, int length) {
+        if (length <= minSize) {
+            return length;
+        }
+        int limit = Math.min(length, maxSize);
+        int normal = Math.min(limit, avgSize);
+        long hash = 0L;
+        int i = minSize;
+        for (; i < normal; i++) {
+            hash = (hash << 1) + GEAR[data[offset + i] & 0xff];
+            if ((hash & maskS) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < limit; i++) {
+            hash = (hash << 1) + GEAR[data[offset + i] & 0xff];
+            if ((hash & maskL) == 0) {
+                return i + 1;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * 将输入流切分为块并依次回调，回调中的数组会被复用，需要保留时自行拷贝.
+     *
+     * @param inputStream 输入流
+     * @param consumer    块回调
+     * @throws IOException 读取或回调失败
+     */
+    public void split(InputStream inputStream, BlockConsumer consumer) throws IOException {
+        byte[] buffer = new byte[maxSize * 2];
+        int start = 0;
+        int end = 0;
+        boolean eof = false;
+        while (true) {
+            if (!eof && end - start < maxSize) {
+                System.arraycopy(buffer, start, buffer, 0, end - start);
+                end -= start;
+                start = 0;
+                while (end < buffer.length) {
+                    int read = inputStream.read(buffer, end, buffer.length - end);
+                    if (read == -1) {
+                        eof = true;
+                        break;
+                    }
+                    end += read;
+                }
+            }
+            if (start == end) {
+                return;
+            }
+            int length = cut(buffer, start, end - start);
+            consumer.accept(buffer, start, length);
+            start += length;
+        }
+    }
+
+    /**
+     * 块回调.
+     */
+    @FunctionalInterface
+    public interface BlockConsumer {
+
+        /**
+         * 处理一个块.
+         *
+         * @param data   数据
+         * @param offset 起始位置
+         * @param length 块长度
+         * @throws IOException 处理失败
+         */
+        void accept(byte[] data, int offset, int length) throws IOException;
+    }
+}
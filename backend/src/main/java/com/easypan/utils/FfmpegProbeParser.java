@@ -0,0 +1,171 @@
+package com.easypan.utils;
+
+import com.easypan.entity.dto.VideoProbeDto;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 从 FFmpeg 的输出中解析输入文件的时长、分辨率与编码.
+ *
+ * <p>FFmpeg 在开始处理前会打印 {@code Input #0} 的描述（与 ffprobe 的默认输出相同），转码命令本身就能
+ * 拿到探测结果，无需再单独启动 ffprobe. 逐行喂入，{@code Output #} 之后的内容忽略，避免把输出流当成输入.
+ * 只取第一条视频流（跳过内嵌封面图）与第一条音频流；带 90/270 度旋转信息时交换宽高，得到显示尺寸.
+ *
+ * <p>命令带 {@code -progress pipe:1} 时，{@link #progressPercent} 把周期输出的 {@code out_time_us} 按输入时长
+ * 换算为百分比.
+ */
+public final class FfmpegProbeParser {
+
+    private static final Pattern DURATION = Pattern.compile("Duration:\\s*(\\d+):(\\d{2}):(\\d{2}(?:\\.\\d+)?)");
+
+    private static final Pattern VIDEO_STREAM = Pattern.compile("Stream #\\d+:\\d+.*?: Video: (\\w+)");
+
+    private static final Pattern AUDIO_STREAM = Pattern.compile("Stream #\\d+:\\d+.*?: Audio: (\\w+)");
+
+    private static final Pattern RESOLUTION = Pattern.compile("[ ,](\\d{2,5})x(\\d{2,5})(?=[ ,\\]]|$)");
+
+    private static final Pattern ROTATE = Pattern.compile(
+            "(?:rotate\\s*:\\s*(-?\\d+))|(?:rotation of (-?\\d+(?:\\.\\d+)?) degrees)");
+
+    private static final String OUT_TIME_US = "out_time_us=";
+
+    /**
+     * 旧版本 FFmpeg 的同名字段，单位同样是微秒.
+     */
+    private static final String OUT_TIME_MS = "out_time_ms=";
+
+    private static final String PROGRESS_END = "progress=end";
+
+    private Long durationMillis;
+
+    private Integer width;
+
+    private Integer height;
+
+    private String videoCodec;
+
+    private String audioCodec;
+
+    private Integer rotation;
+
+    private boolean inVideoStream;
+
+    private boolean done;
+
+    /**
+     * 解析完整输出.
+     *
+     * @param lines FFmpeg 输出行
+     * @return 探测结果
+     */
+    public static VideoProbeDto parse(List<String> lines) {
+        FfmpegProbeParser parser = new FfmpegProbeParser();
+        lines.forEach(parser::accept);
+        return parser.result();
+    }
+
+    /**
+     * 喂入一行输出.
+     *
+     * @param line 输出行
+     */
+    public void accept(String line) {
+        if (done || line == null) {
+            return;
+        }
+        if (line.startsWith("Output #")) {
+            done = true;
+            return;
+        }
+        Matcher matcher = DURATION.matcher(line);
+        if (durationMillis == null && matcher.find()) {
+            durationMillis = Math.round((Long.parseLong(matcher.group(1)) * 3600
+                    + Long.parseLong(matcher.group(2)) * 60
+                    + Double.parseDouble(matcher.group(3))) * 1000);
+            return;
+        }
+        if (line.contains("Stream #")) {
+            inVideoStream = false;
+            matcher = VIDEO_STREAM.matcher(line);
+            if (videoCodec == null && !line.contains("(attached pic)") && matcher.find()) {
+                videoCodec = matcher.group(1);
+                Matcher size = RESOLUTION.matcher(line.substring(matcher.end()));
+                if (size.find()) {
+                    width = Integer.parseInt(size.group(1));
+                    height = Integer.parseInt(size.group(2));
+                }
+                inVideoStream = true;
+                return;
+            }
+            matcher = AUDIO_STREAM.matcher(line);
+            if (audioCodec == null && matcher.find()) {
+                audioCodec = matcher.group(1);
+            }
+            return;
+        }
+        // 旋转信息出现在视频流的 metadata / side data 中
+        if (inVideoStream && rotation == null) {
+            matcher = ROTATE.matcher(line);
+            if (matcher.find()) {
+                String value = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+                rotation = (int) Math.round(Double.parseDouble(value));
+            }
+        }
+    }
+
+    /**
+     * 从 {@code -progress} 输出行换算处理进度.
+     *
+     * @param line 输出行
+     * @return 进度百分比（0-100），不是进度行或时长未知时为 -1
+     */
+    public int progressPercent(String line) {
+        if (line == null) {
+            return -1;
+        }
+        if (line.startsWith(PROGRESS_END)) {
+            return 100;
+        }
+        String value;
+        if (line.startsWith(OUT_TIME_US)) {
+            value = line.substring(OUT_TIME_US.length());
+        } else if (line.startsWith(OUT_TIME_MS)) {
+            value = line.substring(OUT_TIME_MS.length());
+        } else {
+            return -1;
+        }
+        if (durationMillis == null || durationMillis <= 0) {
+            return -1;
+        }
+        try {
+            long outMillis = Long.parseLong(value.trim()) / 1000;
+            return (int) Math.max(0L, Math.min(100L, outMillis * 100 / durationMillis));
+        } catch (NumberFormatException e) {
+            // 尚未输出时为 N/A
+            return -1;
+        }
+    }
+
+    /**
+     * 当前的解析结果.
+     *
+     * @return 探测结果，未识别的字段为空
+     */
+    public VideoProbeDto result() {
+        Integer displayWidth = width;
+        Integer displayHeight = height;
+        if (rotation != null && Math.abs(rotation) % 180 == 90) {
+            displayWidth = height;
+            displayHeight = width;
+        }
+        return VideoProbeDto.builder()
+                .durationMillis(durationMillis)
+                .width(displayWidth)
+                .height(displayHeight)
+                .videoCodec(videoCodec)
+                .audioCodec(audioCodec)
+                .build();
+    }
+}
@@ -0,0 +1,166 @@
+package com.easypan.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * 可导出中间状态的 MD5 实现.
+ *
+ * <p>JDK 的 {@link java.security.MessageDigest} 无法序列化中间状态，分片上传跨请求（甚至跨重启）
+ * 累计摘要时需要把 A/B/C/D 寄存器、已处理字节数和未满 64 字节的缓冲一并持久化，
+ * 这里按 RFC 1321 实现并通过 {@link #exportState()} / {@link #fromState(String)} 往返.
+ */
+public final class ResumableMd5 {
+
+    private static final int BLOCK_SIZE = 64;
+
+    private static final int[] SHIFTS = {
+            7, 12, 17, 22, 7, 12, 17, 22, 7, 12, 17, 22, 7, 12, 17, 22,
+            5, 9, 14, 20, 5, 9, 14, 20, 5, 9, 14, 20, 5, 9, 14, 20,
+            4, 11, 16, 23, 4, 11, 16, 23, 4, 11, 16, 23, 4, 11, 16, 23,
+            6, 10, 15, 21, 6, 10, 15, 21, 6, 10, 15, 21, 6, 10, 15, 21
+    };
+
+    private static final int[] TABLE = new int[64];
+
+    static {
+        for (int i = 0; i < 64; i++) {
+            TABLE[i] = (int) (long) ((1L << 32) * Math.abs(Math.sin(i + 1)));
+        }
+    }
+
+    private int a = 0x67452301;
+    private int b = 0xefcdab89;
+    private int c = 0x98badcfe;
+    private int d = 0x10325476;
+
+    private long byteCount;
+
+    private final byte[] buffer = new byte[BLOCK_SIZE];
+
+    private int bufferLength;
+
+    /**
+     * 追加数据.
+     *
+     * @param data   数据
+     * @param offset 起始位置
+     * @param length 长度
+     */
+    public void update(byte[] data, int offset, int length) {
+        byteCount += length;
+        int pos = offset;
+        int end = offset + length;
+        if (bufferLength > 0) {
+            int fill = Math.min(BLOCK_SIZE - bufferLength, length);
+            System.arraycopy(data, pos, buffer, bufferLength, fill);
+            bufferLength += fill;
+            pos += fill;
+            if (bufferLength < BLOCK_SIZE) {
+                return;
+            }
+            processBlock(buffer, 0);
+            bufferLength = 0;
+        }
+        while (end - pos >= BLOCK_SIZE) {
+            processBlock(data, pos);
+            pos += BLOCK_SIZE;
+        }
+        if (pos < end) {
+            System.arraycopy(data, pos, buffer, 0, end - pos);
+            bufferLength = end - pos;
+        }
+    }
+
+    /**
+     * 计算当前已追加数据的 MD5，不影响后续继续追加.
+     *
+     * @return 小写十六进制 MD5
+     */
+    public String hexDigest() {
+        ResumableMd5 copy = fromState(exportState());
+        long bitLength = copy.byteCount << 3;
+        int padLength = (copy.bufferLength < 56 ? 56 : 120) - copy.bufferLength;
+        byte[] padding = new byte[padLength + 8];
+        padding[0] = (byte) 0x80;
+        ByteBuffer.wrap(padding, padLength, 8).order(ByteOrder.LITTLE_ENDIAN).putLong(bitLength);
+        copy.update(padding, 0, padding.length);
+
+        ByteBuffer out = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(copy.a).putInt(copy.b).putInt(copy.c).putInt(copy.d);
+        return HexFormat.of().formatHex(out.array());
+    }
+
+    /**
+     * 导出中间状态.
+     *
+     * @return Base64 编码的状态
+     */
+    public String exportState() {
+        ByteBuffer state = ByteBuffer.allocate(24 + bufferLength).order(ByteOrder.LITTLE_ENDIAN);
+        state.putInt(a).putInt(b).putInt(c).putInt(d).putLong(byteCount);
+        state.put(buffer, 0, bufferLength);
+        return Base64.getEncoder().encodeToString(state.array());
+    }
+
+    /**
+     * 从导出的状态恢复.
+     *
+     * @param encoded {@link #exportState()} 的结果
+     * @return 恢复后的实例
+     */
+    public static ResumableMd5 fromState(String encoded) {
+        byte[] raw = Base64.getDecoder().decode(encoded);
+        if (raw.length < 24 || raw.length - 24 >= BLOCK_SIZE) {
+            throw new IllegalArgumentException("非法的 MD5 状态");
+        }
+        ByteBuffer state = ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN);
+        ResumableMd5 md5 = new ResumableMd5();
+        md5.a = state.getInt();
+        md5.b = state.getInt();
+        md5.c = state.getInt();
+        md5.d = state.getInt();
+        md5.byteCount = state.getLong();
+        md5.bufferLength = raw.length - 24;
+        state.get(md5.buffer, 0, md5.bufferLength);
+        return md5;
+    }
+
+    private void processBlock(byte[] block, int offset) {
+        int[] words = new int[16];
+        ByteBuffer.wrap(block, offset, BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(words);
+
+        int aa = a;
+        int bb = b;
+        int cc = c;
+        int dd = d;
+        for (int i = 0; i < 64; i++) {
+            int f;
+            int g;
+            if (i < 16) {
+                f = (bb & cc) | (~bb & dd);
+                g = i;
+            } else if (i < 32) {
+                f = (dd & bb) | (~dd & cc);
+                g = (5 * i + 1) & 15;
+            } else if (i < 48) {
+                f = bb ^ cc ^ dd;
+                g = (3 * i + 5) & 15;
+            } else {
+                f = cc ^ (bb | ~dd);
+                g = (7 * i) & 15;
+            }
+            int temp = dd;
+            dd = cc;
+            cc = bb;
+            bb = bb + Integer.rotateLeft(aa + f + TABLE[i] + words[g], SHIFTS[i]);
+            aa = temp;
+        }
+        a += aa;
+        b += bb;
+        c += cc;
+        d += dd;
+    }
+}
@@ -0,0 +1,240 @@
+package com.easypan.utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 流式 tar 读取器.
+ *
+ * <p>按 512 字节块顺序解析 ustar 格式，支持 GNU 长文件名（{@code L}）与 PAX 扩展头中的 {@code path}，
+ * 符号链接、设备文件等其他类型直接跳过. 读取器本身即当前条目的数据流，调用 {@link #nextEntry()}
+ * 时自动跳过上一个条目未读完的数据，全程不缓冲整个归档.
+ */
+public final class TarStreamReader extends InputStream {
+
+    private static final int BLOCK_SIZE = 512;
+
+    /**
+     * 扩展头（长文件名、PAX）的长度上限.
+     */
+    private static final int MAX_EXTENDED_HEADER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+
+    private final byte[] header = new byte[BLOCK_SIZE];
+
+    private long remaining;
+
+    private long padding;
+
+    private boolean finished;
+
+    public TarStreamReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * 读取下一个条目的头部.
+     *
+     * @return 条目，归档结束时返回 null
+     * @throws IOException 读取失败或头部校验失败
+     */
+    public Entry nextEntry() throws IOException {
+        skipCurrent();
+        String extendedName = null;
+        while (!finished) {
+            if (!readHeader()) {
+                finished = true;
+                return null;
+            }
+            String name = readString(header, 0, 100);
+            long size = readNumber(header, 124, 12);
+            byte type = header[156];
+            if (readString(header, 257, 5).equals("ustar")) {
+                String prefix = readString(header, 345, 155);
+                if (!prefix.isEmpty()) {
+                    name = prefix + "/" + name;
+                }
+            }
+            remaining = size;
+            padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+
+            if (type == 'L') {
+                // GNU 长文件名以 NUL 结尾
+                String longName = readExtendedHeader();
+                int nul = longName.indexOf('\0');
+                extendedName = nul < 0 ? longName : longName.substring(0, nul);
+                continue;
+            }
+            if (type == 'x') {
+                String path = parsePaxPath(readExtendedHeader());
+                if (path != null) {
+                    extendedName = path;
+                }
+                continue;
+            }
+            if (extendedName != null) {
+                name = extendedName;
+                extendedName = null;
+            }
+            boolean directory = type == '5' || (type == '0' || type == 0) && name.endsWith("/");
+            if (directory) {
+                return new Entry(name, 0L, true);
+            }
+            if (type == '0' || type == 0 || type == '7') {
+                return new Entry(name, size, false);
+            }
+            skipCurrent();
+        }
+        return null;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (remaining <= 0) {
+            return -1;
+        }
+        int b = in.read();
+        if (b == -1) {
+            throw new EOFException("tar 条目数据不完整");
+        }
+        remaining--;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (remaining <= 0) {
+            return -1;
+        }
+        int n = in.read(b, off, (int) Math.min(len, remaining));
+        if (n == -1) {
+            throw new EOFException("tar 条目数据不完整");
+        }
+        remaining -= n;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean readHeader() throws IOException {
+        int read = in.readNBytes(header, 0, BLOCK_SIZE);
+        if (read == 0) {
+            return false;
+        }
+        if (read < BLOCK_SIZE) {
+            throw new EOFException("tar 头部不完整");
+        }
+        boolean empty = true;
+        for (byte b : header) {
+            if (b != 0) {
+                empty = false;
+                break;
+            }
+        }
+        // 全零块是归档结束标记
+        if (empty) {
+            return false;
+        }
+        long expected = readNumber(header, 148, 8);
+        long sum = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            sum += (i >= 148 && i < 156) ? ' ' : (header[i] & 0xff);
+        }
+        if (sum != expected) {
+            throw new IOException("tar 头部校验失败");
+        }
+        return true;
+    }
+
+    private String readExtendedHeader() throws IOException {
+        if (remaining > MAX_EXTENDED_HEADER_SIZE) {
+            throw new IOException("tar 扩展头过大");
+        }
+        byte[] data = readNBytes((int) remaining);
+        skipCurrent();
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    private void skipCurrent() throws IOException {
+        long toSkip = remaining + padding;
+        remaining = 0;
+        padding = 0;
+        while (toSkip > 0) {
+            long skipped = in.skip(toSkip);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    throw new EOFException("tar 条目数据不完整");
+                }
+                skipped = 1;
+            }
+            toSkip -= skipped;
+        }
+    }
+
+    private static String parsePaxPath(String records) {
+        int pos = 0;
+        while (pos < records.length()) {
+            int space = records.indexOf(' ', pos);
+            int newline = records.indexOf('\n', pos);
+            if (space < 0 || newline < 0) {
+                break;
+            }
+            String record = records.substring(space + 1, newline);
+            if (record.startsWith("path=")) {
+                return record.substring("path=".length());
+            }
+            pos = newline + 1;
+        }
+        return null;
+    }
+
+    private static String readString(byte[] data, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && data[end] != 0) {
+            end++;
+        }
+        return new String(data, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static long readNumber(byte[] data, int offset, int length) throws IOException {
+        // GNU 扩展：最高位为 1 时按大端二进制存储（超过 8GB 的大小）
+        if ((data[offset] & 0x80) != 0) {
+            long value = data[offset] & 0x7f;
+            for (int i = offset + 1; i < offset + length; i++) {
+                value = (value << 8) | (data[i] & 0xff);
+            }
+            return value;
+        }
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = data[i];
+            if (b == 0 || b == ' ') {
+                if (value > 0) {
+                    break;
+                }
+                continue;
+            }
+            if (b < '0' || b > '7') {
+                throw new IOException("tar 头部数值非法");
+            }
+            value = (value << 3) + (b - '0');
+        }
+        return value;
+    }
+
+    /**
+     * tar 条目.
+     *
+     * @param name      条目路径
+     * @param size      数据长度
+     * @param directory 是否为目录
+     */
+    public record Entry(String name, long size, boolean directory) {
+    }
+}
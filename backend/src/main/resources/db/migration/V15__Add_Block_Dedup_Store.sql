@@ -0,0 +1,31 @@
+-- V15__Add_Block_Dedup_Store.sql
+-- 块级去重存储：内容定义分块（FastCDC）后的唯一块与文件块清单
+
+CREATE TABLE IF NOT EXISTS storage_block (
+    block_hash CHAR(64) PRIMARY KEY,
+    block_size INTEGER NOT NULL,
+    ref_count BIGINT NOT NULL DEFAULT 0,
+    create_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS file_block_manifest (
+    file_path VARCHAR(200) NOT NULL,
+    seq INTEGER NOT NULL,
+    block_hash CHAR(64) NOT NULL,
+    block_size INTEGER NOT NULL,
+    PRIMARY KEY (file_path, seq)
+);
+
+CREATE INDEX IF NOT EXISTS idx_file_block_manifest_block_hash ON file_block_manifest(block_hash);
+
+COMMENT ON TABLE storage_block IS '去重存储块表';
+COMMENT ON COLUMN storage_block.block_hash IS '块内容 SHA-256（十六进制）';
+COMMENT ON COLUMN storage_block.block_size IS '块大小（字节）';
+COMMENT ON COLUMN storage_block.ref_count IS '被文件块清单引用的次数，归零后删除块对象';
+COMMENT ON COLUMN storage_block.create_time IS '创建时间';
+
+COMMENT ON TABLE file_block_manifest IS '文件块清单表，按序号拼接即为原文件';
+COMMENT ON COLUMN file_block_manifest.file_path IS '文件存储路径（与 file_info.file_path 一致）';
+COMMENT ON COLUMN file_block_manifest.seq IS '块序号，从 0 开始';
+COMMENT ON COLUMN file_block_manifest.block_hash IS '块内容 SHA-256';
+COMMENT ON COLUMN file_block_manifest.block_size IS '块大小（字节）';
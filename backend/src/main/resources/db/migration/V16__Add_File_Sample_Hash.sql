@@ -0,0 +1,9 @@
+-- V16__Add_File_Sample_Hash.sql
+-- 文件抽样指纹：大小 + 头/中/尾块的 MD5，秒传前快速判重，指纹未命中时客户端无需计算完整 MD5
+
+ALTER TABLE file_info ADD COLUMN IF NOT EXISTS file_sample_hash VARCHAR(32);
+
+CREATE INDEX IF NOT EXISTS idx_file_sample_hash ON file_info(file_sample_hash)
+    WHERE file_sample_hash IS NOT NULL;
+
+COMMENT ON COLUMN file_info.file_sample_hash IS '抽样指纹（文件大小与头、中、尾各 64KB 的 MD5），历史文件为空';
@@ -0,0 +1,36 @@
+-- V17__Add_Transcode_Job.sql
+-- 转码任务表：上传完成时与文件记录同一事务写入，节点宕机后由其他节点按租约回收并从已完成阶段继续
+
+CREATE TABLE IF NOT EXISTS transcode_job (
+    file_id VARCHAR(20) NOT NULL,
+    user_id VARCHAR(20) NOT NULL,
+    tenant_id VARCHAR(10) DEFAULT 'default',
+    lane VARCHAR(10) NOT NULL,
+    file_size BIGINT NOT NULL DEFAULT 0,
+    status SMALLINT NOT NULL DEFAULT 0,
+    stage VARCHAR(10),
+    attempts INTEGER NOT NULL DEFAULT 0,
+    last_error VARCHAR(500),
+    lease_owner VARCHAR(64),
+    lease_until TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    create_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    update_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (file_id, user_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_transcode_job_lease ON transcode_job(lease_until) WHERE status IN (0, 1);
+
+COMMENT ON TABLE transcode_job IS '转码任务表，任务成功后删除';
+COMMENT ON COLUMN transcode_job.file_id IS '文件ID';
+COMMENT ON COLUMN transcode_job.user_id IS '用户ID';
+COMMENT ON COLUMN transcode_job.tenant_id IS '租户ID';
+COMMENT ON COLUMN transcode_job.lane IS '转码队列：IMAGE/ VIDEO';
+COMMENT ON COLUMN transcode_job.file_size IS '文件大小（字节），用于小文件优先';
+COMMENT ON COLUMN transcode_job.status IS '0:等待 1:执行中 2:失败（重试次数用尽）';
+COMMENT ON COLUMN transcode_job.stage IS '最后完成的阶段：MERGE/ STORE/ COVER/ HLS，为空表示尚未开始';
+COMMENT ON COLUMN transcode_job.attempts IS '已执行次数';
+COMMENT ON COLUMN transcode_job.last_error IS '最近一次失败原因';
+COMMENT ON COLUMN transcode_job.lease_owner IS '持有租约的节点';
+COMMENT ON COLUMN transcode_job.lease_until IS '租约到期时间，到期后其他节点可接管；重试等待期间为下次可执行时间';
+COMMENT ON COLUMN transcode_job.create_time IS '创建时间';
+COMMENT ON COLUMN transcode_job.update_time IS '更新时间';
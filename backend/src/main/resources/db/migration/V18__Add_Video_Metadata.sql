@@ -0,0 +1,10 @@
+-- V18__Add_Video_Metadata.sql
+-- 视频元数据：转码时由 FFmpeg 探测的时长与显示分辨率，历史视频为空
+
+ALTER TABLE file_info ADD COLUMN IF NOT EXISTS video_duration BIGINT;
+ALTER TABLE file_info ADD COLUMN IF NOT EXISTS video_width INTEGER;
+ALTER TABLE file_info ADD COLUMN IF NOT EXISTS video_height INTEGER;
+
+COMMENT ON COLUMN file_info.video_duration IS '视频时长（毫秒）';
+COMMENT ON COLUMN file_info.video_width IS '视频显示宽度（已按旋转信息交换宽高）';
+COMMENT ON COLUMN file_info.video_height IS '视频显示高度';
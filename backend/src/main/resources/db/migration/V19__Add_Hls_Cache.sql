@@ -0,0 +1,18 @@
+-- V19__Add_Hls_Cache.sql
+-- 按需切片记录：按需模式下上传只保存原视频，首次播放时切片；冷门视频的切片按存储预算以 LRU 淘汰
+
+CREATE TABLE IF NOT EXISTS hls_cache (
+    hls_path VARCHAR(200) PRIMARY KEY,
+    status SMALLINT NOT NULL DEFAULT 0,
+    size_bytes BIGINT NOT NULL DEFAULT 0,
+    last_access_time TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    create_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_hls_cache_lru ON hls_cache(last_access_time) WHERE status = 1;
+
+COMMENT ON TABLE hls_cache IS '按需切片记录，上传时已切片的视频没有记录';
+COMMENT ON COLUMN hls_cache.hls_path IS '切片目录的存储路径（原文件路径去掉后缀）';
+COMMENT ON COLUMN hls_cache.status IS '0:未切片（尚未播放或已被淘汰） 1:已切片';
+COMMENT ON COLUMN hls_cache.size_bytes IS '切片总大小（字节）';
+COMMENT ON COLUMN hls_cache.last_access_time IS '最后播放时间，LRU 淘汰依据';
@@ -0,0 +1,15 @@
+-- V20__Add_Storage_Block_Tombstone.sql
+-- 去重块延迟回收：引用归零的块先记墓碑，宽限期后由回收任务在行锁内删除对象，宽限期内再次引用即取消回收
+
+ALTER TABLE storage_block ADD COLUMN IF NOT EXISTS stored BOOLEAN NOT NULL DEFAULT TRUE;
+ALTER TABLE storage_block ADD COLUMN IF NOT EXISTS delete_after TIMESTAMP;
+
+-- 升级前遗留的零引用记录直接进入回收
+UPDATE storage_block SET delete_after = CURRENT_TIMESTAMP WHERE ref_count <= 0 AND delete_after IS NULL;
+
+CREATE INDEX IF NOT EXISTS idx_storage_block_delete_after ON storage_block(delete_after)
+    WHERE delete_after IS NOT NULL;
+
+COMMENT ON COLUMN storage_block.ref_count IS '被文件块清单引用的次数，归零后记墓碑等待回收';
+COMMENT ON COLUMN storage_block.stored IS '块对象是否已写入底层存储，未写入时复用方需自行写入';
+COMMENT ON COLUMN storage_block.delete_after IS '墓碑：引用归零后可回收的时间，再次引用时清空';
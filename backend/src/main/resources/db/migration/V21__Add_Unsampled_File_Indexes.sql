@@ -0,0 +1,11 @@
+-- V21__Add_Unsampled_File_Indexes.sql
+-- 抽样指纹补算：V16 之前的文件没有抽样指纹，由补算任务按存储路径顺序补齐；补齐前按大小判断是否存在未补算的同大小文件.
+-- 两个部分索引只包含尚未补算的行，补算完成后为空
+
+CREATE INDEX IF NOT EXISTS idx_file_info_unsampled_path ON file_info(file_path)
+    WHERE file_sample_hash IS NULL AND status = 2 AND folder_type = 0;
+
+CREATE INDEX IF NOT EXISTS idx_file_info_unsampled_size ON file_info(file_size)
+    WHERE file_sample_hash IS NULL AND status = 2 AND folder_type = 0;
+
+COMMENT ON COLUMN file_info.file_sample_hash IS '抽样指纹（文件大小与头、中、尾各 64KB 的 MD5），历史文件由补算任务补齐';
@@ -0,0 +1,7 @@
+-- V22__Add_Hls_Cache_Evicting_Status.sql
+-- 按需切片淘汰中状态：删除切片目录期间记录为 2，删除完成后才回到未切片，避免删除落在重新切片之后
+
+CREATE INDEX IF NOT EXISTS idx_hls_cache_evicting ON hls_cache(last_access_time) WHERE status = 2;
+
+COMMENT ON COLUMN hls_cache.status IS '0:未切片（尚未播放或已被淘汰） 1:已切片 2:淘汰中（正在删除切片目录）';
+COMMENT ON COLUMN hls_cache.last_access_time IS '最后播放时间，LRU 淘汰依据；淘汰中时为开始淘汰的时间';
@@ -0,0 +1,263 @@
+package com.easypan.service;
+
+import com.easypan.component.UploadRateLimiter;
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.dto.SessionWebUserDto;
+import com.easypan.entity.enums.ResponseCodeEnum;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.exception.BusinessException;
+import com.easypan.mappers.FileInfoMapper;
+import com.easypan.strategy.StorageStrategy;
+import com.mybatisflex.core.query.QueryWrapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("批量小文件上传服务测试")
+class BatchUploadServiceTest {
+
+    private static final String USER_ID = "u1";
+
+    @Mock
+    private FileInfoService fileInfoService;
+
+    @Mock
+    private FileInfoMapper fileInfoMapper;
+
+    @Mock
+    private QuotaReservationService quotaReservationService;
+
+    @Mock
+    private UploadRateLimiter uploadRateLimiter;
+
+    @Mock
+    private AppConfig appConfig;
+
+    @Mock
+    private StorageStrategy storageStrategy;
+
+    @Mock
+    private AsyncTaskExecutor virtualThreadExecutor;
+
+    @InjectMocks
+    private BatchUploadService batchUploadService;
+
+    @TempDir
+    Path tempDir;
+
+    private SessionWebUserDto webUserDto;
+
+    @BeforeEach
+    void setUp() {
+        webUserDto = new SessionWebUserDto();
+        webUserDto.setUserId(USER_ID);
+        ReflectionTestUtils.setField(batchUploadService, "storageType", "local");
+        String root = tempDir.toString().replace("\\", "/");
+        lenient().when(appConfig.getFileRootPath()).thenReturn(root);
+        lenient().when(appConfig.getProjectFolder()).thenReturn(root + "/");
+        lenient().doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(virtualThreadExecutor).execute(any(Runnable.class));
+    }
+
+    @Test
+    @DisplayName("条目路径包含 .. 、绝对路径或盘符时拒绝")
+    void normalizePath_shouldRejectTraversal() {
+        assertNull(BatchUploadService.normalizePath("../etc/passwd"));
+        assertNull(BatchUploadService.normalizePath("a/../../b.txt"));
+        assertNull(BatchUploadService.normalizePath("docs\\..\\..\\b.txt"));
+        assertNull(BatchUploadService.normalizePath("/etc/passwd"));
+        assertNull(BatchUploadService.normalizePath("C:\\Windows\\win.ini"));
+        assertNull(BatchUploadService.normalizePath("./"));
+        assertNull(BatchUploadService.normalizePath(null));
+    }
+
+    @Test
+    @DisplayName("规范化路径分隔符并去掉空段与 .")
+    void normalizePath_shouldNormalizeSeparators() {
+        assertEquals("a/b/c.txt", BatchUploadService.normalizePath("a/./b//c.txt"));
+        assertEquals("a/b.txt", BatchUploadService.normalizePath("a\\b.txt"));
+        assertEquals("dir", BatchUploadService.normalizePath("dir/"));
+    }
+
+    @Test
+    @DisplayName("与目标目录已有文件及本批其他条目重名时自动改名，已有文件名只查询一次")
+    void uploadParts_nameCollision_shouldRename() {
+        when(fileInfoMapper.selectListByQueryAs(any(QueryWrapper.class), eq(String.class)))
+                .thenReturn(List.of("a.txt"));
+
+        batchUploadService.uploadParts(webUserDto, "0",
+                List.of(part("a.txt", 10), part("a.txt", 20), part("b.txt", 30)));
+
+        List<String> names = savedRecords().stream().map(FileInfo::getFileName).toList();
+        assertEquals(3, names.size());
+        assertEquals(3, Set.copyOf(names).size());
+        assertEquals("b.txt", names.get(2));
+        for (String renamed : names.subList(0, 2)) {
+            assertTrue(renamed.startsWith("a_") && renamed.endsWith(".txt"), renamed);
+        }
+        verify(fileInfoMapper, times(1)).selectListByQueryAs(any(QueryWrapper.class), eq(String.class));
+    }
+
+    @Test
+    @DisplayName("读取中途失败时释放预留，并删除已写入的本地文件与存储对象")
+    void uploadParts_midStreamFailure_shouldDiscard() throws Exception {
+        MultipartFile broken = new MockMultipartFile("files", "b.txt", "text/plain", new byte[20]) {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                throw new IOException("connection reset");
+            }
+        };
+
+        assertThrows(BusinessException.class, () -> batchUploadService.uploadParts(webUserDto, "0",
+                List.of(part("a.txt", 10), broken)));
+
+        ArgumentCaptor<String> storedPath = ArgumentCaptor.forClass(String.class);
+        verify(storageStrategy).upload(any(java.io.File.class), storedPath.capture());
+        verify(storageStrategy).deleteBatch(List.of(storedPath.getValue()));
+        verify(quotaReservationService).release(eq(USER_ID), any(), startsWith("batch-"));
+        verify(fileInfoService, never()).saveBatchUpload(any(), any(), anyList(), anyLong());
+        assertTrue(regularFiles().isEmpty());
+    }
+
+    @Test
+    @DisplayName("空间不足时不读取条目内容也不写入存储")
+    void uploadParts_quotaExceeded_shouldRejectBeforeReading() {
+        doThrow(new BusinessException(ResponseCodeEnum.CODE_904)).when(quotaReservationService)
+                .reserve(eq(USER_ID), any(), anyString(), eq(30L));
+
+        assertThrows(BusinessException.class, () -> batchUploadService.uploadParts(webUserDto, "0",
+                List.of(part("a.txt", 10), part("b.txt", 20))));
+
+        verifyNoInteractions(storageStrategy, uploadRateLimiter);
+        verify(fileInfoService, never()).saveBatchUpload(any(), any(), anyList(), anyLong());
+        assertTrue(regularFiles().isEmpty());
+    }
+
+    @Test
+    @DisplayName("tar 归档按条目内容字节逐个扩大预留，不按含头部与填充的请求体长度预留")
+    void uploadTar_shouldReservePayloadBytesOnly() throws Exception {
+        byte[] tar = tar("a.txt", 100, "dir/b.txt", 200);
+
+        batchUploadService.uploadTar(webUserDto, "0", new ByteArrayInputStream(tar));
+
+        ArgumentCaptor<Long> reserved = ArgumentCaptor.forClass(Long.class);
+        verify(quotaReservationService, times(2)).reserve(eq(USER_ID), any(), anyString(), reserved.capture());
+        assertEquals(List.of(100L, 300L), reserved.getAllValues());
+        verify(fileInfoService).saveBatchUpload(eq(webUserDto), startsWith("batch-"), anyList(), eq(300L));
+    }
+
+    @Test
+    @DisplayName("tar 归档中途空间不足时释放预留并清理已写入的条目")
+    void uploadTar_quotaExceededMidStream_shouldDiscard() throws Exception {
+        // 第一个条目的预留不应命中该桩，按严格桩规则会报参数不匹配，这里放宽
+        lenient().doThrow(new BusinessException(ResponseCodeEnum.CODE_904)).when(quotaReservationService)
+                .reserve(eq(USER_ID), any(), anyString(), eq(300L));
+
+        assertThrows(BusinessException.class, () -> batchUploadService.uploadTar(webUserDto, "0",
+                new ByteArrayInputStream(tar("a.txt", 100, "b.txt", 200))));
+
+        verify(storageStrategy, times(1)).upload(any(java.io.File.class), anyString());
+        verify(storageStrategy).deleteBatch(anyList());
+        verify(quotaReservationService).release(eq(USER_ID), any(), startsWith("batch-"));
+        verify(fileInfoService, never()).saveBatchUpload(any(), any(), anyList(), anyLong());
+        assertTrue(regularFiles().isEmpty());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<FileInfo> savedRecords() {
+        ArgumentCaptor<List<FileInfo>> records = ArgumentCaptor.forClass(List.class);
+        verify(fileInfoService).saveBatchUpload(eq(webUserDto), startsWith("batch-"), records.capture(), anyLong());
+        return records.getValue().stream().filter(info -> info.getFileSize() != null).collect(Collectors.toList());
+    }
+
+    private List<Path> regularFiles() {
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            return files.filter(Files::isRegularFile).toList();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MockMultipartFile part(String name, int size) {
+        return new MockMultipartFile("files", name, "text/plain", new byte[size]);
+    }
+
+    private static byte[] tar(String firstName, int firstSize, String secondName, int secondSize)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeEntry(out, firstName, new byte[firstSize]);
+        writeEntry(out, secondName, new byte[secondSize]);
+        out.write(new byte[1024]);
+        return out.toByteArray();
+    }
+
+    private static void writeEntry(ByteArrayOutputStream out, String name, byte[] data) throws IOException {
+        byte[] header = new byte[512];
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+        putOctal(header, 100, 8, 0644);
+        putOctal(header, 124, 12, data.length);
+        header[156] = '0';
+        System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6);
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long sum = 0;
+        for (byte b : header) {
+            sum += b & 0xff;
+        }
+        putOctal(header, 148, 7, sum);
+        out.write(header);
+        out.write(data);
+        out.write(new byte[(512 - data.length % 512) % 512]);
+    }
+
+    private static void putOctal(byte[] header, int offset, int length, long value) {
+        String octal = String.format("%0" + (length - 1) + "o", value);
+        System.arraycopy(octal.getBytes(StandardCharsets.US_ASCII), 0, header, offset, length - 1);
+        header[offset + length - 1] = 0;
+    }
+}
@@ -1,6 +1,7 @@
 package com.easypan.service;
 
 import com.easypan.component.S3Component;
+import com.easypan.component.UploadSessionStore;
 import com.easypan.entity.dto.UploadResultDto;
 import com.easypan.exception.BusinessException;
 import org.springframework.test.util.ReflectionTestUtils;
@@ -12,12 +13,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.SetOperations;
 import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -34,11 +37,14 @@ class ChunkUploadServiceTest {
     private RedisTemplate<String, Object> redisTemplate;
 
     @Mock
-    private SetOperations<String, Object> setOperations;
+    private UploadSessionStore uploadSessionStore;
 
     @Mock
     private ValueOperations<String, Object> valueOperations;
 
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
     @Mock
     private MultipartFile chunkFile;
 
@@ -55,8 +61,8 @@ class ChunkUploadServiceTest {
     void setUp() {
         userId = "user123";
         fileMd5 = "abc123def456";
-        lenient().when(redisTemplate.opsForSet()).thenReturn(setOperations);
         lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(redisTemplate.opsForHash()).thenReturn(hashOperations);
         ReflectionTestUtils.setField(chunkUploadService, "virtualThreadExecutor", virtualThreadExecutor);
     }
 
@@ -67,10 +73,11 @@ class ChunkUploadServiceTest {
         Integer totalChunks = 10;
         byte[] chunkData = "test chunk data".getBytes();
 
-        when(setOperations.size(anyString())).thenReturn(0L);
-        when(chunkFile.getBytes()).thenReturn(chunkData);
-        when(setOperations.add(anyString(), any())).thenReturn(1L);
-        when(setOperations.size(contains(":completed"))).thenReturn(1L);
+        when(uploadSessionStore.tryAcquireChunkSlot(userId, fileMd5, chunkIndex, 5)).thenReturn(true);
+        InputStream chunkStream = new ByteArrayInputStream(chunkData);
+        when(chunkFile.getInputStream()).thenReturn(chunkStream);
+        when(chunkFile.getSize()).thenReturn((long) chunkData.length);
+        when(uploadSessionStore.getCompletedChunks(userId, fileMd5)).thenReturn(1);
 
         UploadResultDto result = chunkUploadService.uploadChunk(userId, fileMd5, chunkIndex, totalChunks, chunkFile);
 
@@ -78,9 +85,11 @@ class ChunkUploadServiceTest {
         assertEquals("uploading", result.getStatus());
         assertEquals(fileMd5, result.getFileId());
 
-        verify(s3Component, times(1)).uploadBytes(anyString(), eq(chunkData));
-        verify(setOperations, times(2)).add(anyString(), any());
-        verify(setOperations, times(1)).remove(anyString(), any());
+        verify(s3Component, times(1)).uploadStream(anyString(), eq(chunkStream), eq((long) chunkData.length));
+        verify(s3Component, never()).uploadBytes(anyString(), any());
+        verify(uploadSessionStore, times(1)).initSession(userId, fileMd5, totalChunks, null);
+        verify(uploadSessionStore, times(1)).markChunk(userId, fileMd5, chunkIndex, chunkData.length);
+        verify(uploadSessionStore, times(1)).releaseChunkSlot(userId, fileMd5, chunkIndex);
     }
 
     @Test
@@ -89,14 +98,15 @@ class ChunkUploadServiceTest {
         Integer chunkIndex = 0;
         Integer totalChunks = 10;
 
-        when(setOperations.size(contains(":uploading"))).thenReturn(5L);
+        when(uploadSessionStore.tryAcquireChunkSlot(userId, fileMd5, chunkIndex, 5)).thenReturn(false);
 
         BusinessException exception = assertThrows(BusinessException.class, () -> {
             chunkUploadService.uploadChunk(userId, fileMd5, chunkIndex, totalChunks, chunkFile);
         });
 
         assertTrue(exception.getMessage().contains("并发上传数超限"));
-        verify(s3Component, never()).uploadBytes(anyString(), any());
+        verify(s3Component, never()).uploadStream(anyString(), any(), anyLong());
+        verify(uploadSessionStore, never()).releaseChunkSlot(anyString(), anyString(), anyInt());
     }
 
     @Test
@@ -106,10 +116,9 @@ class ChunkUploadServiceTest {
         Integer totalChunks = 10;
         byte[] chunkData = "test chunk data".getBytes();
 
-        when(setOperations.size(contains(":uploading"))).thenReturn(0L);
-        when(chunkFile.getBytes()).thenReturn(chunkData);
-        when(setOperations.add(anyString(), any())).thenReturn(1L);
-        when(setOperations.size(contains(":completed"))).thenReturn(10L);
+        when(uploadSessionStore.tryAcquireChunkSlot(userId, fileMd5, chunkIndex, 5)).thenReturn(true);
+        when(chunkFile.getInputStream()).thenReturn(new ByteArrayInputStream(chunkData));
+        when(uploadSessionStore.getCompletedChunks(userId, fileMd5)).thenReturn(10);
 
         UploadResultDto result = chunkUploadService.uploadChunk(userId, fileMd5, chunkIndex, totalChunks, chunkFile);
 
@@ -123,18 +132,18 @@ class ChunkUploadServiceTest {
     void testIsChunkUploaded() {
         Integer chunkIndex = 5;
 
-        when(setOperations.isMember(anyString(), any(Object.class))).thenReturn(Boolean.TRUE);
+        when(uploadSessionStore.isChunkMarked(userId, fileMd5, chunkIndex)).thenReturn(true);
 
         boolean result = chunkUploadService.isChunkUploaded(userId, fileMd5, chunkIndex);
 
         assertTrue(result);
-        verify(setOperations, times(1)).isMember(anyString(), any(Object.class));
+        verify(uploadSessionStore, times(1)).isChunkMarked(userId, fileMd5, chunkIndex);
     }
 
     @Test
     @DisplayName("获取已上传分片数量")
     void testGetCompletedChunkCount() {
-        when(setOperations.size(anyString())).thenReturn(7L);
+        when(uploadSessionStore.getCompletedChunks(userId, fileMd5)).thenReturn(7);
 
         Long count = chunkUploadService.getCompletedChunkCount(userId, fileMd5);
 
@@ -144,11 +153,9 @@ class ChunkUploadServiceTest {
     @Test
     @DisplayName("清理上传进度")
     void testClearUploadProgress() {
-        when(redisTemplate.delete(anyString())).thenReturn(true);
-
         chunkUploadService.clearUploadProgress(userId, fileMd5);
 
-        verify(redisTemplate, times(2)).delete(anyString());
+        verify(uploadSessionStore, times(1)).clearSession(userId, fileMd5);
     }
 
     @Test
@@ -157,15 +164,15 @@ class ChunkUploadServiceTest {
         Integer chunkIndex = 0;
         Integer totalChunks = 10;
 
-        when(setOperations.size(anyString())).thenReturn(0L);
-        when(chunkFile.getBytes()).thenThrow(new IOException("读取文件失败"));
-        when(setOperations.add(anyString(), any())).thenReturn(1L);
+        when(uploadSessionStore.tryAcquireChunkSlot(userId, fileMd5, chunkIndex, 5)).thenReturn(true);
+        when(chunkFile.getInputStream()).thenThrow(new IOException("读取文件失败"));
 
         assertThrows(IOException.class, () -> {
             chunkUploadService.uploadChunk(userId, fileMd5, chunkIndex, totalChunks, chunkFile);
         });
 
-        verify(setOperations, times(1)).remove(contains(":uploading"), eq(chunkIndex));
+        verify(uploadSessionStore, times(1)).releaseChunkSlot(userId, fileMd5, chunkIndex);
+        verify(uploadSessionStore, never()).markChunk(anyString(), anyString(), anyInt(), anyLong());
     }
 
     @Test
@@ -179,4 +186,46 @@ class ChunkUploadServiceTest {
         assertEquals("merging", result.getStatus());
         assertEquals(fileMd5, result.getFileId());
     }
+
+    @Test
+    @DisplayName("合并应并发复制全部分段、按序完成并批量清理分片")
+    @SuppressWarnings("unchecked")
+    void testMergeChunks_CopiesPartsInOrderAndBatchDeletes() {
+        Integer totalChunks = 3;
+        ReflectionTestUtils.setField(chunkUploadService, "virtualThreadExecutor",
+                new org.springframework.core.task.support.TaskExecutorAdapter(Runnable::run));
+        when(s3Component.createMultipartUpload(anyString())).thenReturn("upload-1");
+        when(s3Component.uploadPartCopy(anyString(), anyString(), eq("upload-1"), anyInt()))
+                .thenAnswer(inv -> software.amazon.awssdk.services.s3.model.CompletedPart.builder()
+                        .partNumber(inv.getArgument(3)).eTag("etag").build());
+
+        chunkUploadService.mergeChunks(userId, fileMd5, totalChunks);
+
+        org.mockito.ArgumentCaptor<java.util.List<software.amazon.awssdk.services.s3.model.CompletedPart>> parts =
+                org.mockito.ArgumentCaptor.forClass(java.util.List.class);
+        verify(s3Component).completeMultipartUpload(anyString(), eq("upload-1"), parts.capture());
+        assertEquals(java.util.List.of(1, 2, 3), parts.getValue().stream()
+                .map(software.amazon.awssdk.services.s3.model.CompletedPart::partNumber).toList());
+        verify(hashOperations, times(3)).increment(anyString(), eq("completedParts"), eq(1L));
+        verify(s3Component).deleteObjects(java.util.List.of(
+                "chunks/user123/abc123def456/0", "chunks/user123/abc123def456/1", "chunks/user123/abc123def456/2"));
+        verify(s3Component, never()).deleteFileAsync(anyString());
+        verify(valueOperations).set(anyString(), eq("success"), eq(10L), eq(java.util.concurrent.TimeUnit.MINUTES));
+    }
+
+    @Test
+    @DisplayName("分段复制失败应中止分片上传并标记失败")
+    void testMergeChunks_PartCopyFailureAborts() {
+        ReflectionTestUtils.setField(chunkUploadService, "virtualThreadExecutor",
+                new org.springframework.core.task.support.TaskExecutorAdapter(Runnable::run));
+        when(s3Component.createMultipartUpload(anyString())).thenReturn("upload-2");
+        when(s3Component.uploadPartCopy(anyString(), anyString(), eq("upload-2"), anyInt()))
+                .thenThrow(new RuntimeException("copy failed"));
+
+        chunkUploadService.mergeChunks(userId, fileMd5, 2);
+
+        verify(s3Component).abortMultipartUpload(anyString(), eq("upload-2"));
+        verify(s3Component, never()).completeMultipartUpload(anyString(), anyString(), any());
+        verify(valueOperations).set(anyString(), eq("failed"), eq(10L), eq(java.util.concurrent.TimeUnit.MINUTES));
+    }
 }
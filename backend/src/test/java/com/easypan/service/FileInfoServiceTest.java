@@ -5,7 +5,6 @@ import com.easypan.component.UploadRateLimiter;
 import com.easypan.entity.config.AppConfig;
 import com.easypan.entity.dto.SessionWebUserDto;
 import com.easypan.entity.dto.UploadResultDto;
-import com.easypan.entity.dto.UserSpaceDto;
 import com.easypan.entity.enums.FileFolderTypeEnums;
 import com.easypan.entity.enums.UploadStatusEnums;
 import com.easypan.entity.po.FileInfo;
@@ -63,6 +62,9 @@ class FileInfoServiceTest {
     @Mock
     private TenantQuotaService tenantQuotaService;
 
+    @Mock
+    private QuotaReservationService quotaReservationService;
+
     @BeforeEach
     void setUp() {
         // Handle self-injection for transactional methods if necessary
@@ -91,19 +93,11 @@ class FileInfoServiceTest {
         FileInfo existingFile = new FileInfo();
         existingFile.setFileMd5(fileMd5);
 
-        // Mock Rate Limiter
-        when(uploadRateLimiter.tryAcquire(anyString())).thenReturn(true);
         existingFile.setFileSize(100L);
         existingFile.setFilePath("path/to/file");
 
         // Mock finding list returns this file
 
-        // Mock user space check
-        UserSpaceDto userSpaceDto = new UserSpaceDto();
-        userSpaceDto.setUseSpace(0L);
-        userSpaceDto.setTotalSpace(1000L);
-        when(redisComponent.getUserSpaceUse(userId)).thenReturn(userSpaceDto);
-
         // Mock Instant Upload success path
         when(redisComponent.mightContainFileMd5(eq(fileMd5))).thenReturn(true);
         when(fileInfoMapper.selectOneByMd5AndStatus(eq(fileMd5), anyInt())).thenReturn(existingFile);
@@ -119,6 +113,9 @@ class FileInfoServiceTest {
         assertNotNull(result);
         assertEquals(UploadStatusEnums.UPLOAD_SECONDS.getCode(), result.getStatus());
         verify(fileInfoMapper, times(1)).insert(any(FileInfo.class));
+        // Space is reserved atomically, then the reservation is converted to usage
+        verify(quotaReservationService).reserve(eq(userId), any(), eq(fileId), eq(100L));
+        verify(quotaReservationService).commit(eq(userId), any(), eq(fileId), eq(100L));
     }
 
     @Test
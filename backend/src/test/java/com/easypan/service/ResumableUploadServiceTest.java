@@ -30,6 +30,7 @@ class ResumableUploadServiceTest {
 
     private static final String TEST_USER_ID = "test_user_123";
     private static final String TEST_FILE_MD5 = "d41d8cd98f00b204e9800998ecf8427e";
+    private static final long CHUNK_BYTES = 5L * 1024 * 1024;
 
     @BeforeEach
     void setUp() {
@@ -64,9 +65,9 @@ class ResumableUploadServiceTest {
         resumableUploadService.initUploadTask(TEST_USER_ID, TEST_FILE_MD5, totalChunks);
 
         // When
-        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 0);
-        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 1);
-        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 2);
+        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 0, CHUNK_BYTES);
+        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 1, CHUNK_BYTES);
+        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 2, CHUNK_BYTES);
 
         // Then
         UploadProgressDto progress = resumableUploadService.getUploadProgress(TEST_USER_ID, TEST_FILE_MD5);
@@ -81,8 +82,8 @@ class ResumableUploadServiceTest {
     void testIsChunkUploaded() {
         // Given
         resumableUploadService.initUploadTask(TEST_USER_ID, TEST_FILE_MD5, 5);
-        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 0);
-        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 2);
+        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 0, CHUNK_BYTES);
+        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 2, CHUNK_BYTES);
 
         // When & Then
         assertTrue(resumableUploadService.isChunkUploaded(TEST_USER_ID, TEST_FILE_MD5, 0));
@@ -100,14 +101,14 @@ class ResumableUploadServiceTest {
         resumableUploadService.initUploadTask(TEST_USER_ID, TEST_FILE_MD5, totalChunks);
 
         // When - 上传部分分片
-        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 0);
-        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 1);
+        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 0, CHUNK_BYTES);
+        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 1, CHUNK_BYTES);
 
         // Then - 未完成
         assertFalse(resumableUploadService.isUploadCompleted(TEST_USER_ID, TEST_FILE_MD5));
 
         // When - 上传最后一个分片
-        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 2);
+        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 2, CHUNK_BYTES);
 
         // Then - 已完成
         assertTrue(resumableUploadService.isUploadCompleted(TEST_USER_ID, TEST_FILE_MD5));
@@ -122,8 +123,8 @@ class ResumableUploadServiceTest {
     void testClearUploadProgress() {
         // Given
         resumableUploadService.initUploadTask(TEST_USER_ID, TEST_FILE_MD5, 5);
-        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 0);
-        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 1);
+        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 0, CHUNK_BYTES);
+        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 1, CHUNK_BYTES);
 
         // When
         resumableUploadService.clearUploadProgress(TEST_USER_ID, TEST_FILE_MD5);
@@ -143,9 +144,9 @@ class ResumableUploadServiceTest {
         resumableUploadService.initUploadTask(TEST_USER_ID, TEST_FILE_MD5, 5);
 
         // When - 多次标记同一分片
-        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 0);
-        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 0);
-        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 0);
+        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 0, CHUNK_BYTES);
+        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 0, CHUNK_BYTES);
+        resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, 0, CHUNK_BYTES);
 
         // Then - 应该只计数一次
         UploadProgressDto progress = resumableUploadService.getUploadProgress(TEST_USER_ID, TEST_FILE_MD5);
@@ -162,7 +163,7 @@ class ResumableUploadServiceTest {
 
         // 上传前5个分片
         for (int i = 0; i < 5; i++) {
-            resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, i);
+            resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, i, CHUNK_BYTES);
         }
 
         // When - 模拟客户端断线重连，查询进度
@@ -176,7 +177,7 @@ class ResumableUploadServiceTest {
         // When - 继续上传剩余分片（跳过已上传的）
         for (int i = 5; i < 10; i++) {
             if (!resumableUploadService.isChunkUploaded(TEST_USER_ID, TEST_FILE_MD5, i)) {
-                resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, i);
+                resumableUploadService.markChunkCompleted(TEST_USER_ID, TEST_FILE_MD5, i, CHUNK_BYTES);
             }
         }
 
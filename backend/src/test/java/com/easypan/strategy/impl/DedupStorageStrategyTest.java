@@ -0,0 +1,269 @@
+package com.easypan.strategy.impl;
+
+import com.easypan.entity.po.FileBlockManifest;
+import com.easypan.mappers.FileBlockManifestMapper;
+import com.easypan.mappers.StorageBlockMapper;
+import com.easypan.strategy.StorageStrategy;
+import com.easypan.utils.FastCdcChunker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DisplayName("DedupStorageStrategy 块级去重存储测试")
+class DedupStorageStrategyTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final Map<String, byte[]> objects = new HashMap<>();
+    private final Map<String, Long> refCounts = new HashMap<>();
+    private final Set<String> storedBlocks = new HashSet<>();
+    private final Map<String, List<FileBlockManifest>> manifests = new HashMap<>();
+
+    private StorageStrategy delegate;
+    private FileBlockManifestMapper manifestMapper;
+    private DedupStorageStrategy strategy;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        delegate = mock(StorageStrategy.class);
+        doAnswer(inv -> objects.put(inv.getArgument(1), inv.getArgument(0)))
+                .when(delegate).upload(any(byte[].class), anyString());
+        doAnswer(inv -> objects.remove(inv.getArgument(0))).when(delegate).delete(anyString());
+        when(delegate.download(anyString()))
+                .thenAnswer(inv -> new ByteArrayInputStream(objects.get(inv.getArgument(0))));
+        when(delegate.download(anyString(), anyLong(), anyLong())).thenAnswer(inv -> {
+            byte[] object = objects.get(inv.getArgument(0));
+            int offset = (int) (long) inv.getArgument(1);
+            long length = inv.getArgument(2);
+            int end = length < 0 ? object.length : (int) Math.min(object.length, offset + length);
+            return new ByteArrayInputStream(Arrays.copyOfRange(object, offset, end));
+        });
+
+        StorageBlockMapper blockMapper = mock(StorageBlockMapper.class);
+        when(blockMapper.retainExisting(anyString())).thenAnswer(inv -> {
+            String hash = inv.getArgument(0);
+            return refCounts.computeIfPresent(hash, (k, v) -> v + 1) != null ? storedBlocks.contains(hash) : null;
+        });
+        when(blockMapper.insertIfAbsent(anyString(), anyInt()))
+                .thenAnswer(inv -> refCounts.putIfAbsent(inv.getArgument(0), 1L) == null ? 1 : 0);
+        when(blockMapper.markStored(anyString())).thenAnswer(inv -> storedBlocks.add(inv.getArgument(0)) ? 1 : 0);
+        when(blockMapper.releaseRef(anyString(), anyLong()))
+                .thenAnswer(inv -> refCounts.computeIfPresent(inv.getArgument(0), (k, v) -> v - 1) != null ? 1 : 0);
+        // 宽限期由 SQL 判断，这里视为引用归零即到期
+        when(blockMapper.selectExpired(anyInt())).thenAnswer(inv -> refCounts.entrySet().stream()
+                .filter(e -> e.getValue() <= 0).map(Map.Entry::getKey).toList());
+        when(blockMapper.lockExpired(anyString()))
+                .thenAnswer(inv -> refCounts.getOrDefault(inv.getArgument(0), 1L) <= 0 ? inv.getArgument(0) : null);
+        when(blockMapper.deleteBlock(anyString())).thenAnswer(inv -> {
+            storedBlocks.remove(inv.getArgument(0));
+            return refCounts.remove(inv.getArgument(0)) != null ? 1 : 0;
+        });
+
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(inv -> inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        manifestMapper = mock(FileBlockManifestMapper.class);
+        when(manifestMapper.insertManifest(any())).thenAnswer(inv -> {
+            List<FileBlockManifest> rows = inv.getArgument(0);
+            rows.forEach(row -> manifests.computeIfAbsent(row.getFilePath(), k -> new ArrayList<>()).add(row));
+            return rows.size();
+        });
+        when(manifestMapper.selectByFilePath(anyString()))
+                .thenAnswer(inv -> new ArrayList<>(manifests.getOrDefault(inv.getArgument(0), List.of())));
+        when(manifestMapper.deleteByFilePath(anyString()))
+                .thenAnswer(inv -> manifests.remove(inv.getArgument(0)) != null ? 1 : 0);
+
+        strategy = new DedupStorageStrategy(delegate, blockMapper, manifestMapper,
+                new FastCdcChunker(2 * 1024, 8 * 1024, 32 * 1024), 16 * 1024, transactionTemplate, 3600);
+    }
+
+    @Test
+    @DisplayName("相近文件应共享绝大多数块且下载能还原各自内容")
+    void upload_nearDuplicate_shouldShareBlocksAndReassemble() throws Exception {
+        byte[] original = randomBytes(256 * 1024);
+        byte[] edited = original.clone();
+        edited[128 * 1024] ^= 0x5a;
+
+        strategy.upload(write("a.bin", original), "202610/a.bin");
+        int blocksAfterFirst = objects.size();
+        strategy.upload(write("b.bin", edited), "202610/b.bin");
+
+        assertTrue(objects.size() - blocksAfterFirst <= 2, "新增块过多: " + (objects.size() - blocksAfterFirst));
+        assertArrayEquals(original, readAll(strategy.download("202610/a.bin")));
+        assertArrayEquals(edited, readAll(strategy.download("202610/b.bin")));
+        assertEquals(null, strategy.generatePresignedUrl("202610/a.bin", "a.bin"));
+    }
+
+    @Test
+    @DisplayName("范围下载只读取相交的块，拼出的内容与原文件区间一致")
+    void downloadRange_shouldReadIntersectingBlocksOnly() throws Exception {
+        byte[] content = randomBytes(256 * 1024);
+        strategy.upload(write("a.bin", content), "202610/a.bin");
+        int offset = 100_000;
+        int length = 20_000;
+
+        assertArrayEquals(Arrays.copyOfRange(content, offset, offset + length),
+                readAll(strategy.download("202610/a.bin", offset, length)));
+        assertArrayEquals(Arrays.copyOfRange(content, offset, content.length),
+                readAll(strategy.download("202610/a.bin", offset, -1)));
+        assertEquals(content.length, strategy.stat("202610/a.bin").getSize());
+        verify(delegate, never()).download(anyString());
+    }
+
+    @Test
+    @DisplayName("删除文件只回收不再被引用的块")
+    void delete_shouldKeepSharedBlocks() throws Exception {
+        byte[] content = randomBytes(128 * 1024);
+        strategy.upload(write("a.bin", content), "202610/a.bin");
+        strategy.upload(write("b.bin", content), "202610/b.bin");
+        int blockCount = objects.size();
+
+        strategy.delete("202610/a.bin");
+        assertEquals(0, strategy.purgeExpiredBlocks(100));
+        assertEquals(blockCount, objects.size());
+        assertArrayEquals(content, readAll(strategy.download("202610/b.bin")));
+
+        strategy.delete("202610/b.bin");
+        // 引用归零只记墓碑，块对象由回收任务删除
+        assertEquals(blockCount, objects.size());
+        assertEquals(blockCount, strategy.purgeExpiredBlocks(100));
+        assertTrue(objects.isEmpty());
+        assertTrue(refCounts.isEmpty());
+    }
+
+    @Test
+    @DisplayName("墓碑期间再次引用应取消回收且不重复写入块对象")
+    void retain_duringGrace_shouldCancelPurge() throws Exception {
+        byte[] content = randomBytes(128 * 1024);
+        strategy.upload(write("a.bin", content), "202610/a.bin");
+        int blockCount = objects.size();
+        strategy.delete("202610/a.bin");
+
+        strategy.upload(write("b.bin", content), "202610/b.bin");
+
+        assertEquals(0, strategy.purgeExpiredBlocks(100));
+        assertEquals(blockCount, objects.size());
+        assertArrayEquals(content, readAll(strategy.download("202610/b.bin")));
+        verify(delegate, times(blockCount)).upload(any(byte[].class), anyString());
+    }
+
+    @Test
+    @DisplayName("块记录已存在但对象尚未写入时应由复用方写入")
+    void retain_unstoredBlock_shouldUploadObject() throws Exception {
+        byte[] content = randomBytes(64 * 1024);
+        strategy.upload(write("a.bin", content), "202610/a.bin");
+        // 模拟另一节点刚插入记录、尚未写完对象
+        storedBlocks.clear();
+        objects.clear();
+
+        strategy.upload(write("b.bin", content), "202610/b.bin");
+
+        assertArrayEquals(content, readAll(strategy.download("202610/b.bin")));
+        assertEquals(refCounts.size(), storedBlocks.size());
+    }
+
+    @Test
+    @DisplayName("删除块对象失败时保留墓碑等待下次回收")
+    void purge_deleteFailure_shouldKeepTombstone() throws Exception {
+        strategy.upload(write("a.bin", randomBytes(64 * 1024)), "202610/a.bin");
+        strategy.delete("202610/a.bin");
+        int blockCount = refCounts.size();
+        doThrow(new RuntimeException("storage down")).when(delegate).delete(anyString());
+
+        assertEquals(0, strategy.purgeExpiredBlocks(100));
+        assertEquals(blockCount, refCounts.size());
+    }
+
+    @Test
+    @DisplayName("输出一个对象时清单只查询一次，透传对象同样如此")
+    void serve_shouldQueryManifestOnce() throws Exception {
+        byte[] content = randomBytes(64 * 1024);
+        strategy.upload(write("a.bin", content), "202610/a.bin");
+        objects.put("202610/small.txt", new byte[100]);
+
+        strategy.stat("202610/a.bin");
+        strategy.getLocalFile("202610/a.bin");
+        assertArrayEquals(content, readAll(strategy.download("202610/a.bin")));
+        strategy.stat("202610/small.txt");
+        strategy.getLocalFile("202610/small.txt");
+        strategy.download("202610/small.txt", 0, 10);
+
+        // 上传前清理旧清单时查询过一次
+        verify(manifestMapper, times(2)).selectByFilePath("202610/a.bin");
+        verify(manifestMapper, times(1)).selectByFilePath("202610/small.txt");
+    }
+
+    @Test
+    @DisplayName("删除后清单缓存立即失效")
+    void delete_shouldInvalidateManifestCache() throws Exception {
+        strategy.upload(write("a.bin", randomBytes(64 * 1024)), "202610/a.bin");
+        assertTrue(strategy.isBlockStored("202610/a.bin"));
+
+        strategy.delete("202610/a.bin");
+
+        assertFalse(strategy.isBlockStored("202610/a.bin"));
+    }
+
+    @Test
+    @DisplayName("小于阈值的文件应直接交给底层存储")
+    void upload_smallFile_shouldPassThrough() throws Exception {
+        java.io.File small = write("small.txt", new byte[100]);
+        strategy.upload(small, "202610/small.txt");
+
+        verify(delegate).upload(small, "202610/small.txt");
+        verify(delegate, never()).upload(any(byte[].class), anyString());
+    }
+
+    private java.io.File write(String name, byte[] content) throws Exception {
+        Path file = tempDir.resolve(name);
+        Files.write(file, content);
+        return file.toFile();
+    }
+
+    private static byte[] readAll(InputStream inputStream) throws Exception {
+        try (inputStream) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+}
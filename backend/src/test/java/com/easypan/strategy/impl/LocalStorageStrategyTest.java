@@ -10,6 +10,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 class LocalStorageStrategyTest {
 
@@ -32,4 +33,28 @@ class LocalStorageStrategyTest {
             assertEquals("ok", value);
         }
     }
+
+    @Test
+    void downloadRangeShouldReadFromPositionAndStat() throws Exception {
+        Path tempRoot = Files.createTempDirectory("easy-pan-storage");
+        Path projectFolder = tempRoot.resolve("file");
+        Path dataFile = projectFolder.resolve("202602").resolve("range.txt");
+        Files.createDirectories(dataFile.getParent());
+        Files.writeString(dataFile, "0123456789", StandardCharsets.UTF_8);
+
+        AppConfig appConfig = new AppConfig();
+        appConfig.setProjectFolder(projectFolder.toString().replace("\\", "/") + "/");
+
+        LocalStorageStrategy strategy = new LocalStorageStrategy();
+        ReflectionTestUtils.setField(strategy, "appConfig", appConfig);
+
+        try (InputStream inputStream = strategy.download("202602/range.txt", 3, 4)) {
+            assertEquals("3456", new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        try (InputStream inputStream = strategy.download("202602/range.txt", 7, -1)) {
+            assertEquals("789", new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals(10L, strategy.stat("202602/range.txt").getSize());
+        assertNull(strategy.stat("202602/missing.txt"));
+    }
 }
@@ -0,0 +1,67 @@
+package com.easypan.unit.component;
+
+import com.easypan.component.ChunkDirectWriter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("ChunkDirectWriter 分片直写测试")
+class ChunkDirectWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ChunkDirectWriter writer = new ChunkDirectWriter();
+
+    @Test
+    @DisplayName("乱序写入的分片完成后应按偏移拼成原文件")
+    void writeChunk_outOfOrder_shouldProduceOriginalFile() throws Exception {
+        byte[] content = "0123456789abcdefghij-tail".getBytes(StandardCharsets.UTF_8);
+        int chunkSize = 10;
+        int chunks = 3;
+        File folder = Files.createDirectories(tempDir.resolve("u1f1")).toFile();
+
+        for (int index : new int[] {2, 0, 1}) {
+            int start = index * chunkSize;
+            int length = Math.min(chunkSize, content.length - start);
+            writer.writeChunk(folder, new ByteArrayInputStream(content, start, length), length, index, chunks,
+                    chunkSize);
+        }
+        assertTrue(writer.isDirectWriteFolder(folder));
+
+        File target = tempDir.resolve("target.bin").toFile();
+        writer.finish(folder, target, content.length);
+
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+        assertFalse(folder.exists());
+    }
+
+    @Test
+    @DisplayName("分片大小未知时暂存的末片应在完成时回填到正确偏移")
+    void spillChunk_shouldBeFoldedBackOnFinish() throws Exception {
+        byte[] content = "aaaabbbbcc".getBytes(StandardCharsets.UTF_8);
+        File folder = Files.createDirectories(tempDir.resolve("u1f2")).toFile();
+
+        writer.spillChunk(folder, new ByteArrayInputStream(content, 8, 2), 2);
+        writer.writeChunk(folder, new ByteArrayInputStream(content, 0, 4), 4, 0, 3, 4);
+        writer.writeChunk(folder, new ByteArrayInputStream(content, 4, 4), 4, 1, 3, 4);
+
+        File target = tempDir.resolve("target2.bin").toFile();
+        writer.foldSpilledChunks(folder, 4L);
+        writer.finish(folder, target, content.length);
+
+        assertEquals(content.length, target.length());
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+    }
+}
@@ -0,0 +1,135 @@
+package com.easypan.unit.component;
+
+import com.easypan.component.HotObjectCache;
+import com.easypan.entity.dto.StorageObjectStatDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("HotObjectCache 热点对象缓存测试")
+class HotObjectCacheTest {
+
+    private static final byte[] SEGMENT = "segment-bytes".getBytes(StandardCharsets.US_ASCII);
+
+    private static final StorageObjectStatDto STAT = new StorageObjectStatDto(SEGMENT.length, 1_000L);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private HotObjectCache hotObjectCache;
+
+    @BeforeEach
+    void setUp() {
+        hotObjectCache = new HotObjectCache();
+        ReflectionTestUtils.setField(hotObjectCache, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(hotObjectCache, "maxObjectKb", 1L);
+        hotObjectCache.init();
+    }
+
+    @Test
+    @DisplayName("只接受配置后缀且不超过大小上限的对象")
+    void accepts_shouldCheckSuffixAndSize() {
+        assertTrue(hotObjectCache.accepts("202610/u1f1/f1_0001.ts", 1024));
+        assertTrue(hotObjectCache.accepts("202610/u1f1/index.M3U8", 10));
+        assertFalse(hotObjectCache.accepts("202610/u1f1/f1_0001.ts", 1025));
+        assertFalse(hotObjectCache.accepts("202610/u1f1.mp4", 10));
+        assertFalse(hotObjectCache.accepts("202610/noext", 10));
+    }
+
+    @Test
+    @DisplayName("并发未命中只读取一次存储")
+    void get_concurrentMisses_shouldLoadOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        HotObjectCache.ObjectLoader loader = () -> {
+            loads.incrementAndGet();
+            awaitQuietly(release);
+            return new ByteArrayInputStream(SEGMENT);
+        };
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<HotObjectCache.CachedObject> first = pool.submit(() -> hotObjectCache.get("a.ts", STAT, loader));
+            while (loads.get() == 0) {
+                Thread.onSpinWait();
+            }
+            Future<HotObjectCache.CachedObject> second = pool.submit(() -> hotObjectCache.get("a.ts", STAT, loader));
+            Future<HotObjectCache.CachedObject> third = pool.submit(() -> hotObjectCache.get("a.ts", STAT, loader));
+            Thread.sleep(50);
+            release.countDown();
+
+            HotObjectCache.CachedObject object = first.get(5, TimeUnit.SECONDS);
+            assertSame(object, second.get(5, TimeUnit.SECONDS));
+            assertSame(object, third.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+            assertTrue(object.data().isDirect());
+            assertEquals(1_000L, object.lastModified());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("命中与未命中计入命中率指标")
+    void getIfPresent_shouldRecordHitRate() {
+        assertNull(hotObjectCache.getIfPresent("a.ts"));
+        hotObjectCache.get("a.ts", STAT, () -> new ByteArrayInputStream(SEGMENT));
+
+        HotObjectCache.CachedObject cached = hotObjectCache.getIfPresent("a.ts");
+
+        assertNotNull(cached);
+        assertEquals(SEGMENT.length, cached.size());
+        assertEquals(0.5, meterRegistry.get("cache.hotObject.hit.rate").gauge().value());
+        assertEquals(SEGMENT.length, meterRegistry.get("cache.hotObject.bytes").gauge().value());
+    }
+
+    @Test
+    @DisplayName("对象比元信息短时不缓存")
+    void get_truncatedObject_shouldNotCache() {
+        InputStream shortStream = new ByteArrayInputStream(SEGMENT, 0, 3);
+
+        assertThrows(RuntimeException.class,
+                () -> hotObjectCache.get("a.ts", STAT, () -> shortStream));
+        assertNull(hotObjectCache.getIfPresent("a.ts"));
+    }
+
+    @Test
+    @DisplayName("按前缀失效切片目录下的缓存")
+    void invalidatePrefix_shouldRemoveMatchingEntries() {
+        hotObjectCache.get("202610/u1f1/f1_0001.ts", STAT, () -> new ByteArrayInputStream(SEGMENT));
+        hotObjectCache.get("202610/u1f2/f2_0001.ts", STAT, () -> new ByteArrayInputStream(SEGMENT));
+
+        hotObjectCache.invalidatePrefix("202610/u1f1/");
+
+        assertNull(hotObjectCache.getIfPresent("202610/u1f1/f1_0001.ts"));
+        assertNotNull(hotObjectCache.getIfPresent("202610/u1f2/f2_0001.ts"));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) throws IOException {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+}
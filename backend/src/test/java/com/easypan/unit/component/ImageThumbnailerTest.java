@@ -0,0 +1,75 @@
+package com.easypan.unit.component;
+
+import com.easypan.component.ImageThumbnailer;
+import com.easypan.exception.BusinessException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("ImageThumbnailer 内存受限缩略图测试")
+class ImageThumbnailerTest {
+
+    private ImageThumbnailer imageThumbnailer;
+
+    @BeforeEach
+    void setUp() {
+        imageThumbnailer = new ImageThumbnailer();
+        ReflectionTestUtils.setField(imageThumbnailer, "decodeMemoryMb", 64);
+        imageThumbnailer.init();
+    }
+
+    @Test
+    @DisplayName("子采样步长应使解码宽度不低于输出宽度的两倍")
+    void subsamplingStep_shouldKeepTwiceTargetWidth() {
+        assertEquals(1, ImageThumbnailer.subsamplingStep(400, 300));
+        assertEquals(1, ImageThumbnailer.subsamplingStep(599, 300));
+        assertEquals(2, ImageThumbnailer.subsamplingStep(1200, 300));
+        assertEquals(66, ImageThumbnailer.subsamplingStep(20000, 150));
+    }
+
+    @Test
+    @DisplayName("许可数应按解码像素估算，且不超过总预算")
+    void permitsFor_shouldBeClampedToBudget() {
+        assertEquals(1, imageThumbnailer.permitsFor(300, 200, 1, 150));
+        // 子采样后 303x152 像素，不足 1MB
+        assertEquals(1, imageThumbnailer.permitsFor(20000, 10000, 66, 150));
+        // 完整解码 2 亿像素远超预算
+        assertEquals(64, imageThumbnailer.permitsFor(20000, 10000, 1, 150));
+    }
+
+    @Test
+    @DisplayName("大图应子采样解码并按比例缩放到目标宽度")
+    void write_largeImage_shouldScaleToWidth() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        imageThumbnailer.write(new ByteArrayInputStream(png(4000, 2000)), 150, "jpg", out);
+
+        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(150, thumbnail.getWidth());
+        assertEquals(75, thumbnail.getHeight());
+    }
+
+    @Test
+    @DisplayName("无法识别的图片应抛出业务异常")
+    void write_unsupportedInput_shouldThrow() {
+        ByteArrayInputStream in = new ByteArrayInputStream("not an image".getBytes());
+
+        assertThrows(BusinessException.class,
+                () -> imageThumbnailer.write(in, 150, "jpg", new ByteArrayOutputStream()));
+    }
+
+    private static byte[] png(int width, int height) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+}
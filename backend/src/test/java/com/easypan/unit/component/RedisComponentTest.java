@@ -18,6 +18,12 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -36,6 +42,12 @@ class RedisComponentTest {
     @Mock
     private FileInfoMapper fileInfoMapper;
 
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
     @InjectMocks
     private RedisComponent redisComponent;
 
@@ -141,7 +153,9 @@ class RedisComponentTest {
     @Test
     @DisplayName("获取用户空间使用情况 - 缓存命中")
     void testGetUserSpaceUse_CacheHit() {
-        when(redisUtils.get(Constants.REDIS_KEY_USER_SPACE_USE + testUserId)).thenReturn(testUserSpace);
+        String key = Constants.REDIS_KEY_USER_SPACE_USE + testUserId;
+        when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.multiGet(eq(key), anyCollection())).thenReturn(Arrays.asList("1048576", "5242880"));
 
         UserSpaceDto result = redisComponent.getUserSpaceUse(testUserId);
 
@@ -155,7 +169,9 @@ class RedisComponentTest {
     @DisplayName("获取用户空间使用情况 - 缓存未命中")
     void testGetUserSpaceUse_CacheMiss() {
         Long usedSpace = 2L * 1024L * 1024L;
-        when(redisUtils.get(Constants.REDIS_KEY_USER_SPACE_USE + testUserId)).thenReturn(null);
+        String key = Constants.REDIS_KEY_USER_SPACE_USE + testUserId;
+        when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.multiGet(eq(key), anyCollection())).thenReturn(Arrays.asList(null, null));
         when(fileInfoMapper.selectUseSpace(testUserId)).thenReturn(usedSpace);
         when(redisUtils.get(Constants.REDIS_KEY_SYS_SETTING)).thenReturn(testSysSettings);
 
@@ -165,23 +181,16 @@ class RedisComponentTest {
         assertEquals(usedSpace, result.getUseSpace());
         assertEquals(5L * Constants.MB, result.getTotalSpace());
         verify(fileInfoMapper, times(1)).selectUseSpace(testUserId);
-        verify(redisUtils, times(1)).setex(
-                eq(Constants.REDIS_KEY_USER_SPACE_USE + testUserId),
-                any(UserSpaceDto.class),
-                eq((long) CacheTTL.WARM_DATA)
-        );
+        verifySpaceFieldsSaved(key, String.valueOf(usedSpace), String.valueOf(5L * Constants.MB));
     }
 
     @Test
-    @DisplayName("保存用户空间使用情况")
+    @DisplayName("保存用户空间使用情况 - 只写 used / total 字段")
     void testSaveUserSpaceUse() {
         redisComponent.saveUserSpaceUse(testUserId, testUserSpace);
 
-        verify(redisUtils, times(1)).setex(
-                eq(Constants.REDIS_KEY_USER_SPACE_USE + testUserId),
-                eq(testUserSpace),
-                eq((long) CacheTTL.WARM_DATA)
-        );
+        verifySpaceFieldsSaved(Constants.REDIS_KEY_USER_SPACE_USE + testUserId,
+                String.valueOf(testUserSpace.getUseSpace()), String.valueOf(testUserSpace.getTotalSpace()));
     }
 
     @Test
@@ -198,11 +207,17 @@ class RedisComponentTest {
         assertEquals(testUserInfo.getTotalSpace(), result.getTotalSpace());
         verify(fileInfoMapper, times(1)).selectUseSpace(testUserId);
         verify(userInfoMapper, times(1)).selectOneByQuery(any(QueryWrapper.class));
-        verify(redisUtils, times(1)).setex(
-                eq(Constants.REDIS_KEY_USER_SPACE_USE + testUserId),
-                any(UserSpaceDto.class),
-                eq((long) CacheTTL.WARM_DATA)
-        );
+        verifySpaceFieldsSaved(Constants.REDIS_KEY_USER_SPACE_USE + testUserId,
+                String.valueOf(usedSpace), String.valueOf(testUserInfo.getTotalSpace()));
+    }
+
+    @Test
+    @DisplayName("增量更新用户空间 - 通过脚本 HINCRBY used 字段")
+    void testIncrementUserSpaceUse() {
+        redisComponent.incrementUserSpaceUse(testUserId, 100L);
+
+        verify(stringRedisTemplate).execute(any(RedisScript.class),
+                eq(List.of(Constants.REDIS_KEY_USER_SPACE_USE + testUserId)), eq("used"), eq("100"));
     }
 
     @Test
@@ -276,16 +291,17 @@ class RedisComponentTest {
     }
 
     @Test
-    @DisplayName("获取用户空间 - 数据库返回null")
+    @DisplayName("获取用户空间 - 数据库返回null时按 0 计")
     void testGetUserSpaceUse_DatabaseReturnsNull() {
-        when(redisUtils.get(Constants.REDIS_KEY_USER_SPACE_USE + testUserId)).thenReturn(null);
+        when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.multiGet(anyString(), anyCollection())).thenReturn(Arrays.asList(null, null));
         when(fileInfoMapper.selectUseSpace(testUserId)).thenReturn(null);
         when(redisUtils.get(Constants.REDIS_KEY_SYS_SETTING)).thenReturn(testSysSettings);
 
         UserSpaceDto result = redisComponent.getUserSpaceUse(testUserId);
 
         assertNotNull(result);
-        assertNull(result.getUseSpace());
+        assertEquals(0L, result.getUseSpace());
         assertEquals(5L * Constants.MB, result.getTotalSpace());
     }
 
@@ -405,4 +421,9 @@ class RedisComponentTest {
 
         verify(redisUtils).delete(Constants.REDIS_KEY_REFRESH_TOKEN + testUserId);
     }
+
+    private void verifySpaceFieldsSaved(String key, String used, String total) {
+        verify(stringRedisTemplate).execute(any(RedisScript.class), eq(List.of(key)),
+                eq(String.valueOf(CacheTTL.WARM_DATA)), eq("used"), eq(used), eq("total"), eq(total));
+    }
 }
@@ -467,4 +467,115 @@ class S3ComponentTest {
 
         log.info("✓ 测试通过：异常信息包含足够的上下文");
     }
+
+    /**
+     * 测试场景 11：超过阈值的文件走分段并发上传
+     *
+     * 验证：
+     * - 应创建分段上传并按分段号升序完成
+     * - 进度回调最终应等于文件大小
+     */
+    @Test
+    void testUploadFile_AboveThreshold_UsesParallelMultipart() throws Exception {
+        File testFile = createSizedFile("multipart.bin", 11 * 1024 * 1024);
+        enableMultipart();
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenAnswer(inv -> UploadPartResponse.builder()
+                        .eTag("etag-" + inv.getArgument(0, UploadPartRequest.class).partNumber()).build());
+        java.util.concurrent.atomic.AtomicLong progress = new java.util.concurrent.atomic.AtomicLong();
+
+        s3Component.uploadFile(TEST_KEY, testFile, uploaded -> progress.accumulateAndGet(uploaded, Math::max));
+
+        org.mockito.ArgumentCaptor<CompleteMultipartUploadRequest> captor =
+                org.mockito.ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3Client).completeMultipartUpload(captor.capture());
+        assertThat(captor.getValue().multipartUpload().parts())
+                .extracting(CompletedPart::partNumber)
+                .containsExactly(1, 2, 3);
+        assertThat(progress.get()).isEqualTo(testFile.length());
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    /**
+     * 测试场景 12：分段重试耗尽后中止分段上传
+     *
+     * 验证：
+     * - 失败分段应按配置次数重试
+     * - 最终应调用 abortMultipartUpload 且不完成上传
+     */
+    @Test
+    void testUploadFile_PartFailure_RetriesThenAborts() throws Exception {
+        File testFile = createSizedFile("multipart-fail.bin", 6 * 1024 * 1024);
+        enableMultipart();
+        ReflectionTestUtils.setField(s3Component, "multipartPartAttempts", 2);
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-2").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().message("分段写入失败").statusCode(500).build());
+
+        assertThatThrownBy(() -> s3Component.uploadFile(TEST_KEY, testFile, null))
+                .isInstanceOf(S3Exception.class);
+
+        verify(s3Client, times(4)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    /**
+     * 测试场景 13：流式上传应携带内容长度且不读取为字节数组
+     */
+    @Test
+    void testUploadStream_SetsContentLength() {
+        byte[] content = "streamed chunk".getBytes();
+        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenReturn(PutObjectResponse.builder().build());
+
+        s3Component.uploadStream(TEST_KEY, new java.io.ByteArrayInputStream(content), content.length);
+
+        org.mockito.ArgumentCaptor<PutObjectRequest> requestCaptor =
+                org.mockito.ArgumentCaptor.forClass(PutObjectRequest.class);
+        org.mockito.ArgumentCaptor<RequestBody> bodyCaptor = org.mockito.ArgumentCaptor.forClass(RequestBody.class);
+        verify(s3Client).putObject(requestCaptor.capture(), bodyCaptor.capture());
+        assertThat(requestCaptor.getValue().contentLength()).isEqualTo((long) content.length);
+        assertThat(bodyCaptor.getValue().optionalContentLength()).contains((long) content.length);
+    }
+
+    /**
+     * 测试场景 14：批量删除按 1000 个 Key 分批
+     */
+    @Test
+    void testDeleteObjects_SplitsIntoBatchesOfThousand() {
+        java.util.List<String> keys = java.util.stream.IntStream.range(0, 2500)
+                .mapToObj(i -> "chunks/u/md5/" + i).toList();
+        when(s3Client.deleteObjects(any(DeleteObjectsRequest.class)))
+                .thenReturn(DeleteObjectsResponse.builder().build());
+
+        s3Component.deleteObjects(keys);
+
+        org.mockito.ArgumentCaptor<DeleteObjectsRequest> captor =
+                org.mockito.ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(s3Client, times(3)).deleteObjects(captor.capture());
+        assertThat(captor.getAllValues()).extracting(request -> request.delete().objects().size())
+                .containsExactly(1000, 1000, 500);
+    }
+
+    private void enableMultipart() {
+        org.springframework.core.task.SimpleAsyncTaskExecutor executor =
+                new org.springframework.core.task.SimpleAsyncTaskExecutor("s3-part-");
+        executor.setVirtualThreads(true);
+        ReflectionTestUtils.setField(s3Component, "virtualThreadExecutor", executor);
+        ReflectionTestUtils.setField(s3Component, "multipartThreshold", 1024L);
+        ReflectionTestUtils.setField(s3Component, "multipartPartSize", 5L * 1024 * 1024);
+        ReflectionTestUtils.setField(s3Component, "multipartMaxInflightBytes", 10L * 1024 * 1024);
+    }
+
+    private File createSizedFile(String name, int size) throws Exception {
+        File file = tempDir.resolve(name).toFile();
+        try (java.io.RandomAccessFile raf = new java.io.RandomAccessFile(file, "rw")) {
+            raf.setLength(size);
+        }
+        return file;
+    }
 }
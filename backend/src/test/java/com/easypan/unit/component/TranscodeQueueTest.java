@@ -0,0 +1,71 @@
+package com.easypan.unit.component;
+
+import com.easypan.component.TranscodeQueue;
+import com.easypan.component.TranscodeScheduler;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@DisplayName("TranscodeQueue 转码队列测试")
+class TranscodeQueueTest {
+
+    private static final long AGING_MS = 1000L;
+
+    @Test
+    @DisplayName("租户之间应轮转出队，租户内小文件优先")
+    void poll_shouldRotateTenantsAndPreferSmallFiles() {
+        TranscodeQueue queue = new TranscodeQueue(AGING_MS);
+        queue.offer(job("a-big", "A", 900, 0));
+        queue.offer(job("a-small", "A", 10, 0));
+        queue.offer(job("a-mid", "A", 100, 0));
+        queue.offer(job("b-only", "B", 5000, 0));
+
+        List<String> order = new ArrayList<>();
+        TranscodeQueue.Job job;
+        while ((job = queue.poll(10L)) != null) {
+            order.add(job.fileId());
+        }
+
+        assertEquals(List.of("a-small", "b-only", "a-mid", "a-big"), order);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    @DisplayName("排队超过老化时间的任务应优先于更小的新任务")
+    void poll_agedJob_shouldNotStarve() {
+        TranscodeQueue queue = new TranscodeQueue(AGING_MS);
+        queue.offer(job("old-big", "A", 1_000_000, 0));
+        queue.offer(job("new-small", "A", 1, 900));
+
+        assertEquals("new-small", queue.poll(500L).fileId());
+        queue.offer(job("newer-small", "A", 1, 1200));
+
+        assertEquals("old-big", queue.poll(1500L).fileId());
+        assertEquals("newer-small", queue.poll(1500L).fileId());
+        assertNull(queue.poll(1500L));
+    }
+
+    @Test
+    @DisplayName("队列为空时应等待到超时")
+    void poll_empty_shouldTimeout() throws InterruptedException {
+        assertNull(new TranscodeQueue(AGING_MS).poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @DisplayName("视频进入视频队列，其余文件进入轻量队列")
+    void laneOf_shouldSplitVideoFromOthers() {
+        assertEquals(TranscodeScheduler.Lane.VIDEO, TranscodeScheduler.laneOf("movie.mp4"));
+        assertEquals(TranscodeScheduler.Lane.IMAGE, TranscodeScheduler.laneOf("photo.jpg"));
+        assertEquals(TranscodeScheduler.Lane.IMAGE, TranscodeScheduler.laneOf("report.pdf"));
+    }
+
+    private static TranscodeQueue.Job job(String fileId, String tenantId, long size, long enqueuedAt) {
+        return new TranscodeQueue.Job(fileId, null, tenantId, size, enqueuedAt);
+    }
+}
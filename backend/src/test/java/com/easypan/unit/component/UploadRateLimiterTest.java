@@ -0,0 +1,130 @@
+package com.easypan.unit.component;
+
+import com.easypan.component.UploadRateLimiter;
+import com.easypan.exception.RateLimitedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UploadRateLimiter 字节速率准入测试")
+class UploadRateLimiterTest {
+
+    private static final long MB = 1024L * 1024;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @InjectMocks
+    private UploadRateLimiter uploadRateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        uploadRateLimiter.init();
+    }
+
+    @Test
+    @DisplayName("预取的租约额度应在本地扣减，用完后才再次访问 Redis")
+    void acquire_shouldConsumeLocalLeaseBeforeRedis() {
+        when(executeScript()).thenReturn(List.of(32 * MB, 0L));
+
+        for (int i = 0; i < 3; i++) {
+            uploadRateLimiter.acquire("u1", "t1", 10 * MB);
+        }
+        verify(stringRedisTemplate, times(1)).execute(any(RedisScript.class), anyList(),
+                any(), any(), any(), any(), any(), any(), any(), any(), any());
+
+        uploadRateLimiter.acquire("u1", "t1", 10 * MB);
+        verify(stringRedisTemplate, times(2)).execute(any(RedisScript.class), anyList(),
+                any(), any(), any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("额度不足时应拒绝并给出向上取整的重试秒数")
+    void acquire_insufficientTokens_shouldThrowWithRetryAfter() {
+        when(executeScript()).thenReturn(List.of(0L, 2500L));
+
+        RateLimitedException e = assertThrows(RateLimitedException.class,
+                () -> uploadRateLimiter.acquire("u1", "t1", 10 * MB));
+
+        assertEquals(3L, e.getRetryAfterSeconds());
+    }
+
+    @Test
+    @DisplayName("租约过期后不应继续使用本地余额")
+    void acquire_expiredLease_shouldGoToRedis() {
+        ReflectionTestUtils.setField(uploadRateLimiter, "leaseTtlMillis", 0L);
+        when(executeScript()).thenReturn(List.of(32 * MB, 0L));
+
+        uploadRateLimiter.acquire("u1", "t1", MB);
+        uploadRateLimiter.acquire("u1", "t1", MB);
+
+        verify(stringRedisTemplate, times(2)).execute(any(RedisScript.class), anyList(),
+                any(), any(), any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("过期租约的余额应在下一次申请时退回各桶")
+    void acquire_expiredLease_shouldRefundUnusedBalance() {
+        ReflectionTestUtils.setField(uploadRateLimiter, "leaseTtlMillis", 0L);
+        when(executeScript()).thenReturn(List.of(32 * MB, 0L));
+
+        uploadRateLimiter.acquire("u1", "t1", MB);
+        uploadRateLimiter.acquire("u1", "t1", MB);
+
+        // ARGV：期望、最少、退回，随后为三个桶的速率与容量
+        verify(stringRedisTemplate).execute(any(RedisScript.class), anyList(),
+                eq(String.valueOf(32 * MB)), eq(String.valueOf(MB)), eq(String.valueOf(31 * MB)),
+                any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("三个桶的 Key 应共用哈希标签，Redis Cluster 下落在同一槽位")
+    @SuppressWarnings("unchecked")
+    void acquire_shouldUseSameHashTagForAllBuckets() {
+        when(executeScript()).thenReturn(List.of(32 * MB, 0L));
+
+        uploadRateLimiter.acquire("u1", "t1", MB);
+
+        ArgumentCaptor<List<String>> keys = ArgumentCaptor.forClass(List.class);
+        verify(stringRedisTemplate).execute(any(RedisScript.class), keys.capture(),
+                any(), any(), any(), any(), any(), any(), any(), any(), any());
+        assertEquals(3, keys.getValue().size());
+        assertTrue(keys.getValue().stream().allMatch(key -> key.contains("{upload-admission}")));
+    }
+
+    @Test
+    @DisplayName("Redis 不可用时应放行上传")
+    void acquire_redisDown_shouldFailOpen() {
+        when(executeScript()).thenThrow(new RedisConnectionFailureException("down"));
+
+        assertDoesNotThrow(() -> uploadRateLimiter.acquire("u1", "t1", 10 * MB));
+    }
+
+    private Object executeScript() {
+        return stringRedisTemplate.execute(any(RedisScript.class), anyList(),
+                any(), any(), any(), any(), any(), any(), any(), any(), any());
+    }
+}
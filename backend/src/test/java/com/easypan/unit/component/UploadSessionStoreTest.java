@@ -0,0 +1,137 @@
+package com.easypan.unit.component;
+
+import com.easypan.component.UploadSessionStore;
+import com.easypan.entity.dto.UploadSessionDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UploadSessionStore 位图会话测试")
+class UploadSessionStoreTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private RedisConnection connection;
+
+    @Mock
+    private RedisStringCommands stringCommands;
+
+    @InjectMocks
+    private UploadSessionStore uploadSessionStore;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+        lenient().when(connection.stringCommands()).thenReturn(stringCommands);
+        lenient().when(stringRedisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(inv -> inv.<RedisCallback<?>>getArgument(0).doInRedis(connection));
+    }
+
+    @Test
+    @DisplayName("位图应按大端位序解析出已完成分片")
+    void getMarkedChunks_shouldDecodeBitmap() {
+        // 0b1010_0000, 0b0000_0001 -> 分片 0、2、15
+        when(stringCommands.get(any(byte[].class))).thenReturn(new byte[] {(byte) 0xA0, 0x01});
+
+        assertEquals(List.of(0, 2, 15), uploadSessionStore.getMarkedChunks("u1", "f1"));
+    }
+
+    @Test
+    @DisplayName("缺失分片应从 BITPOS 定位的首个空位开始扫描")
+    void getMissingChunks_shouldScanFromFirstGap() {
+        when(stringCommands.bitPos(any(byte[].class), eq(false), any())).thenReturn(1L);
+        when(stringCommands.get(any(byte[].class))).thenReturn(new byte[] {(byte) 0xA0});
+
+        assertEquals(List.of(1, 3, 4), uploadSessionStore.getMissingChunks("u1", "f1", 5));
+    }
+
+    @Test
+    @DisplayName("全部完成时缺失分片为空")
+    void getMissingChunks_allCompleted_shouldReturnEmpty() {
+        when(stringCommands.bitPos(any(byte[].class), eq(false), any())).thenReturn(8L);
+
+        assertTrue(uploadSessionStore.getMissingChunks("u1", "f1", 8).isEmpty());
+    }
+
+    @Test
+    @DisplayName("重复标记分片应返回 false")
+    @SuppressWarnings("unchecked")
+    void markChunk_duplicate_shouldReturnFalse() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any(), any()))
+                .thenReturn(0L, 1L);
+
+        assertTrue(uploadSessionStore.markChunk("u1", "f1", 3, 1024L));
+        assertFalse(uploadSessionStore.markChunk("u1", "f1", 3, 1024L));
+    }
+
+    @Test
+    @DisplayName("同一会话的多个 Key 使用同一哈希标签，Redis Cluster 下不会 CROSSSLOT")
+    @SuppressWarnings("unchecked")
+    void sessionKeys_shouldShareHashTag() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any(), any())).thenReturn(0L);
+
+        uploadSessionStore.markChunk("u1", "f1", 3, 1024L);
+        uploadSessionStore.clearSession("u1", "f1");
+
+        ArgumentCaptor<List<String>> scriptKeys = ArgumentCaptor.forClass(List.class);
+        verify(stringRedisTemplate).execute(any(RedisScript.class), scriptKeys.capture(), any(), any(), any());
+        assertEquals(List.of("upload:session:{u1:f1}", "upload:session:{u1:f1}:chunks"), scriptKeys.getValue());
+        verify(stringRedisTemplate).delete(List.of("upload:session:{u1:f1}", "upload:session:{u1:f1}:chunks",
+                "upload:session:{u1:f1}:inflight"));
+    }
+
+    @Test
+    @DisplayName("在途名额按分片短租约占用，名额已满时拒绝")
+    @SuppressWarnings("unchecked")
+    void tryAcquireChunkSlot_shouldUsePerChunkLease() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), eq(List.of("upload:session:{u1:f1}:inflight")),
+                eq("3"), any(), eq("5"), eq("120000"))).thenReturn(1L, 0L);
+
+        assertTrue(uploadSessionStore.tryAcquireChunkSlot("u1", "f1", 3, 5));
+        assertFalse(uploadSessionStore.tryAcquireChunkSlot("u1", "f1", 3, 5));
+    }
+
+    @Test
+    @DisplayName("会话 Hash 应映射为会话信息")
+    void getSession_shouldMapHashFields() {
+        when(hashOperations.entries("upload:session:{u1:f1}")).thenReturn(Map.of(
+                "totalChunks", "10", "chunkSize", "1048576", "completedChunks", "4", "receivedBytes", "4194304"));
+
+        UploadSessionDto session = uploadSessionStore.getSession("u1", "f1");
+
+        assertEquals(10, session.getTotalChunks());
+        assertEquals(1048576L, session.getChunkSize());
+        assertEquals(4, session.getCompletedChunks());
+        assertEquals(4194304L, session.getReceivedBytes());
+    }
+}
@@ -0,0 +1,298 @@
+package com.easypan.unit.controller;
+
+import com.easypan.component.HotObjectCache;
+import com.easypan.controller.ABaseController;
+import com.easypan.entity.dto.StorageObjectStatDto;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.strategy.StorageFactory;
+import com.easypan.strategy.StorageStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DisplayName("ABaseController.readFile 范围与条件请求测试")
+class ABaseControllerReadFileTest {
+
+    private static final String PATH = "202610/u1f1.bin";
+
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    private static final long MODIFIED = 1_790_000_000_000L;
+
+    private final TestController controller = new TestController();
+
+    private StorageStrategy storage;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        storage = mock(StorageStrategy.class);
+        StorageFactory storageFactory = mock(StorageFactory.class);
+        when(storageFactory.getStorageStrategy()).thenReturn(storage);
+        ReflectionTestUtils.setField(controller, "storageFactory", storageFactory);
+        when(storage.stat(PATH)).thenReturn(new StorageObjectStatDto(CONTENT.length, MODIFIED));
+        when(storage.download(PATH)).thenAnswer(inv -> new ByteArrayInputStream(CONTENT));
+        when(storage.download(anyString(), anyLong(), anyLong())).thenAnswer(inv -> {
+            int offset = (int) (long) inv.getArgument(1);
+            long length = inv.getArgument(2);
+            return new ByteArrayInputStream(Arrays.copyOfRange(CONTENT, offset, (int) (offset + length)));
+        });
+        request = new MockHttpServletRequest("GET", "/file/getFile");
+        response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    @DisplayName("没有 Range 时返回完整内容并带上校验头")
+    void readFile_noRange_shouldReturnFullContentWithValidators() throws Exception {
+        controller.serve(response, PATH, null);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+        assertEquals(10, response.getContentLengthLong());
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertNotNull(response.getHeader("ETag"));
+        assertEquals(MODIFIED / 1000 * 1000, response.getDateHeader("Last-Modified"));
+    }
+
+    @Test
+    @DisplayName("单段 Range 返回 206 与对应区间")
+    void readFile_singleRange_shouldReturnPartialContent() throws Exception {
+        request.addHeader("Range", "bytes=2-5");
+
+        controller.serve(response, PATH, null);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 2-5/10", response.getHeader("Content-Range"));
+        assertEquals("2345", response.getContentAsString());
+        verify(storage, never()).download(PATH);
+    }
+
+    @Test
+    @DisplayName("多段 Range 返回 multipart/byteranges")
+    void readFile_multiRange_shouldReturnByteRanges() throws Exception {
+        request.addHeader("Range", "bytes=0-1,-2");
+
+        controller.serve(response, PATH, null);
+
+        assertEquals(206, response.getStatus());
+        assertTrue(response.getContentType().startsWith("multipart/byteranges; boundary="));
+        String body = response.getContentAsString();
+        assertTrue(body.contains("Content-Range: bytes 0-1/10\r\n\r\n01"));
+        assertTrue(body.contains("Content-Range: bytes 8-9/10\r\n\r\n89"));
+    }
+
+    @Test
+    @DisplayName("越界的 Range 返回 416")
+    void readFile_unsatisfiableRange_shouldReturn416() {
+        request.addHeader("Range", "bytes=20-30");
+
+        controller.serve(response, PATH, null);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader("Content-Range"));
+    }
+
+    @Test
+    @DisplayName("ETag 匹配时返回 304，不读取存储")
+    void readFile_matchingEtag_shouldReturnNotModified() {
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setFilePath(PATH);
+        fileInfo.setFileSize((long) CONTENT.length);
+        fileInfo.setFileMd5("0123456789abcdef0123456789abcdef");
+        fileInfo.setLastUpdateTime(new Date(MODIFIED));
+        request.addHeader("If-None-Match", "\"0123456789abcdef0123456789abcdef-a\"");
+
+        controller.serve(response, PATH, fileInfo);
+
+        assertEquals(304, response.getStatus());
+        verify(storage, never()).stat(PATH);
+        verify(storage, never()).download(PATH);
+    }
+
+    @Test
+    @DisplayName("If-Range 与当前版本不一致时忽略 Range 返回完整内容")
+    void readFile_staleIfRange_shouldIgnoreRange() throws Exception {
+        request.addHeader("Range", "bytes=2-5");
+        request.addHeader("If-Range", "\"stale\"");
+
+        controller.serve(response, PATH, null);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+    }
+
+    @Test
+    @DisplayName("本地文件且连接器支持 sendfile 时只登记文件区间")
+    void readFile_localFileWithSendfile_shouldDelegateToConnector() throws Exception {
+        File local = localFile(64 * 1024);
+        when(storage.getLocalFile(PATH)).thenReturn(local);
+        when(storage.stat(PATH)).thenReturn(new StorageObjectStatDto(local.length(), MODIFIED));
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader("Range", "bytes=1024-");
+
+        controller.serve(response, PATH, null);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(local.getCanonicalPath(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(1024L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(64L * 1024, request.getAttribute("org.apache.tomcat.sendfile.end"));
+        assertEquals(63 * 1024, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length);
+        verify(storage, never()).download(anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("不支持 sendfile 时直接定位读取本地文件")
+    void readFile_localFileWithoutSendfile_shouldCopyFromFile() throws Exception {
+        File local = localFile(64 * 1024);
+        when(storage.getLocalFile(PATH)).thenReturn(local);
+        when(storage.stat(PATH)).thenReturn(new StorageObjectStatDto(local.length(), MODIFIED));
+        request.addHeader("Range", "bytes=10-19");
+
+        controller.serve(response, PATH, null);
+
+        assertEquals(206, response.getStatus());
+        assertArrayEquals(Arrays.copyOfRange(Files.readAllBytes(local.toPath()), 10, 20),
+                response.getContentAsByteArray());
+        verify(storage, never()).download(anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("x-accel 模式下本地文件返回内部跳转头，不输出内容")
+    void readFile_xAccelLocalFile_shouldRedirectToInternalLocation() throws Exception {
+        when(storage.getLocalFile(PATH)).thenReturn(localFile(16));
+        ReflectionTestUtils.setField(controller, "offloadMode", "x-accel");
+        request.addHeader("Range", "bytes=2-5");
+
+        controller.serve(response, PATH, null);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("/_offload/file/" + PATH, response.getHeader("X-Accel-Redirect"));
+        assertEquals(0, response.getContentAsByteArray().length);
+        verify(storage, never()).download(anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("x-accel 模式下远程存储经内部 location 回源到短时效链接")
+    void readFile_xAccelRemote_shouldRedirectToPresignedUrl() throws Exception {
+        when(storage.generateInternalUrl(PATH, 60L))
+                .thenReturn("http://minio:9000/easypan/" + PATH + "?X-Amz-Expires=60&X-Amz-Signature=abc");
+        ReflectionTestUtils.setField(controller, "offloadMode", "x-accel");
+
+        controller.serve(response, PATH, null);
+
+        assertEquals("/_offload/remote/http/minio:9000/easypan/" + PATH + "?X-Amz-Expires=60&X-Amz-Signature=abc",
+                response.getHeader("X-Accel-Redirect"));
+        assertEquals(0, response.getContentAsByteArray().length);
+        verify(storage, never()).download(PATH);
+    }
+
+    @Test
+    @DisplayName("x-sendfile 模式下远程存储无法卸载时由应用输出，条件请求仍先校验")
+    void readFile_xSendfileRemote_shouldFallBackToStreaming() throws Exception {
+        ReflectionTestUtils.setField(controller, "offloadMode", "x-sendfile");
+
+        controller.serve(response, PATH, null);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+        assertNull(response.getHeader("X-Sendfile"));
+
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        request.addHeader("If-None-Match", response.getHeader("ETag"));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, second));
+        when(storage.getLocalFile(PATH)).thenReturn(localFile(16));
+
+        controller.serve(second, PATH, null);
+
+        assertEquals(304, second.getStatus());
+        assertNull(second.getHeader("X-Sendfile"));
+    }
+
+    @Test
+    @DisplayName("热点缓存命中后范围请求不再访问存储")
+    void readFile_hotCache_shouldServeRepeatedRequestsFromMemory() throws Exception {
+        String segment = "202610/u1f1/f1_0001.ts";
+        when(storage.stat(segment)).thenReturn(new StorageObjectStatDto(CONTENT.length, MODIFIED));
+        when(storage.download(segment)).thenAnswer(inv -> new ByteArrayInputStream(CONTENT));
+        HotObjectCache hotObjectCache = new HotObjectCache();
+        hotObjectCache.init();
+        ReflectionTestUtils.setField(controller, "hotObjectCache", hotObjectCache);
+
+        controller.serveHot(response, segment);
+        assertEquals("0123456789", response.getContentAsString());
+
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        request.addHeader("Range", "bytes=3-4");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, second));
+        controller.serveHot(second, segment);
+
+        assertEquals(206, second.getStatus());
+        assertEquals("bytes 3-4/10", second.getHeader("Content-Range"));
+        assertEquals("34", second.getContentAsString());
+        verify(storage, times(1)).stat(segment);
+        verify(storage, times(1)).download(segment);
+        verify(storage, never()).download(anyString(), anyLong(), anyLong());
+    }
+
+    private File localFile(int size) throws Exception {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) i;
+        }
+        Path file = tempDir.resolve("u1f1.bin");
+        Files.write(file, bytes);
+        return file.toFile();
+    }
+
+    private static class TestController extends ABaseController {
+
+        void serve(MockHttpServletResponse response, String filePath, FileInfo fileInfo) {
+            readFile(response, filePath, fileInfo);
+        }
+
+        void serveHot(MockHttpServletResponse response, String filePath) {
+            readFile(response, filePath, null, true);
+        }
+    }
+}
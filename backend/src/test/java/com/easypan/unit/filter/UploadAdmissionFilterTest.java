@@ -0,0 +1,115 @@
+package com.easypan.unit.filter;
+
+import com.easypan.component.UploadRateLimiter;
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.dto.SessionWebUserDto;
+import com.easypan.entity.enums.ResponseCodeEnum;
+import com.easypan.exception.RateLimitedException;
+import com.easypan.filter.UploadAdmissionFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UploadAdmissionFilter 上传准入测试")
+class UploadAdmissionFilterTest {
+
+    @Mock
+    private UploadRateLimiter uploadRateLimiter;
+
+    @InjectMocks
+    private UploadAdmissionFilter uploadAdmissionFilter;
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    @DisplayName("按 Content-Length 为会话用户申请额度后放行")
+    void filter_sessionUser_shouldAcquireContentLength() throws Exception {
+        MockHttpServletRequest request = uploadRequest(4096);
+        SessionWebUserDto user = new SessionWebUserDto();
+        user.setUserId("u1");
+        user.setTenantId("t1");
+        request.getSession().setAttribute(Constants.SESSION_KEY, user);
+        MockFilterChain chain = new MockFilterChain();
+
+        uploadAdmissionFilter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        verify(uploadRateLimiter).acquire("u1", "t1", 4096L);
+        assertNotNull(chain.getRequest());
+    }
+
+    @Test
+    @DisplayName("JWT 用户按请求头中的租户申请额度")
+    void filter_jwtUser_shouldUseTenantHeader() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("u2", null, List.of()));
+        MockHttpServletRequest request = uploadRequest(2048);
+        request.addHeader("X-Tenant-Id", "t2");
+
+        uploadAdmissionFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        verify(uploadRateLimiter).acquire("u2", "t2", 2048L);
+    }
+
+    @Test
+    @DisplayName("额度不足时在读取请求体前返回限流响应")
+    void filter_rateLimited_shouldRejectWithoutReadingBody() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("u1", null, List.of()));
+        doThrow(new RateLimitedException(ResponseCodeEnum.CODE_610, 3L))
+                .when(uploadRateLimiter).acquire(anyString(), anyString(), anyLong());
+        MockHttpServletRequest request = uploadRequest(4096);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        uploadAdmissionFilter.doFilter(request, response, chain);
+
+        assertNull(chain.getRequest());
+        assertEquals("3", response.getHeader("Retry-After"));
+        assertTrue(response.getContentAsString().contains("\"code\":610"));
+    }
+
+    @Test
+    @DisplayName("未登录或其他路径的请求不申请额度")
+    void filter_anonymousOrOtherPath_shouldSkip() throws Exception {
+        uploadAdmissionFilter.doFilter(uploadRequest(4096), new MockHttpServletResponse(), new MockFilterChain());
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("u1", null, List.of()));
+        MockHttpServletRequest other = new MockHttpServletRequest("POST", "/api/file/uploadInit");
+        other.setContent(new byte[16]);
+        uploadAdmissionFilter.doFilter(other, new MockHttpServletResponse(), new MockFilterChain());
+
+        verify(uploadRateLimiter, never()).acquire(anyString(), anyString(), anyLong());
+    }
+
+    private static MockHttpServletRequest uploadRequest(int length) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/file/uploadFile");
+        request.setContent(new byte[length]);
+        return request;
+    }
+}
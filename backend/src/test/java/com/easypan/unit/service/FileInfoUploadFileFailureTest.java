@@ -0,0 +1,173 @@
+package com.easypan.unit.service;
+
+import com.easypan.component.ChunkDirectWriter;
+import com.easypan.component.RedisComponent;
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.dto.SessionWebUserDto;
+import com.easypan.entity.dto.UploadProgressDto;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.exception.BusinessException;
+import com.easypan.mappers.FileInfoMapper;
+import com.easypan.service.QuotaReservationService;
+import com.easypan.service.UploadDigestService;
+import com.easypan.service.UploadProgressService;
+import com.easypan.service.impl.FileInfoServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("FileInfoServiceImpl 分片上传失败处理测试")
+class FileInfoUploadFileFailureTest {
+
+    private static final String USER_ID = "u1";
+
+    private static final String FILE_ID = "f1";
+
+    @Mock
+    private AppConfig appConfig;
+
+    @Mock
+    private FileInfoMapper fileInfoMapper;
+
+    @Mock
+    private RedisComponent redisComponent;
+
+    @Mock
+    private QuotaReservationService quotaReservationService;
+
+    @Mock
+    private ChunkDirectWriter chunkDirectWriter;
+
+    @Mock
+    private UploadDigestService uploadDigestService;
+
+    @Mock
+    private UploadProgressService uploadProgressService;
+
+    @InjectMocks
+    private FileInfoServiceImpl fileInfoService;
+
+    @TempDir
+    Path tempDir;
+
+    private SessionWebUserDto webUserDto;
+
+    private File tempFolder;
+
+    @BeforeEach
+    void setUp() {
+        webUserDto = new SessionWebUserDto();
+        webUserDto.setUserId(USER_ID);
+        String projectFolder = tempDir.toString().replace("\\", "/") + "/";
+        lenient().when(appConfig.getProjectFolder()).thenReturn(projectFolder);
+        lenient().when(uploadProgressService.getProgress(USER_ID, FILE_ID))
+                .thenReturn(UploadProgressDto.builder().completedChunks(0).totalChunks(2).build());
+        lenient().when(uploadProgressService.getChunkSize(USER_ID, FILE_ID)).thenReturn(null);
+        tempFolder = new File(projectFolder + "temp/" + USER_ID + FILE_ID);
+    }
+
+    @Test
+    @DisplayName("单个分片写入失败时保留暂存目录、会话进度与空间预留")
+    void uploadFile_chunkFailure_shouldKeepPartFileAndSession() throws Exception {
+        assertTrue(tempFolder.mkdirs());
+        File partFile = new File(tempFolder, ChunkDirectWriter.PART_FILE_NAME);
+        assertTrue(partFile.createNewFile());
+        when(chunkDirectWriter.isEnabled()).thenReturn(true);
+        doThrow(new BusinessException("写入分片失败")).when(chunkDirectWriter)
+                .writeChunk(any(), any(), anyLong(), anyInt(), anyInt(), anyLong());
+
+        assertThrows(BusinessException.class, () -> fileInfoService.uploadFile(webUserDto, FILE_ID,
+                chunk(), "a.txt", "0", null, 1, 2, 4L));
+
+        assertTrue(partFile.isFile());
+        verify(quotaReservationService, never()).release(any(), any(), any());
+        verify(uploadProgressService, never()).clearProgress(any(), any());
+        verify(uploadDigestService, never()).clear(any(), any());
+    }
+
+    @Test
+    @DisplayName("MD5 校验失败时释放预留、删除暂存目录并清除会话进度与摘要状态")
+    void uploadFile_md5Mismatch_shouldDiscardUpload() {
+        assertTrue(tempFolder.mkdirs());
+        when(uploadDigestService.getDigest(USER_ID, FILE_ID, 2)).thenReturn("server-md5");
+
+        assertThrows(BusinessException.class, () -> fileInfoService.uploadFile(webUserDto, FILE_ID,
+                chunk(), "a.txt", "0", "client-md5", 1, 2, null));
+
+        assertFalse(tempFolder.exists());
+        verify(quotaReservationService).release(eq(USER_ID), any(), eq(FILE_ID));
+        verify(uploadProgressService).clearProgress(USER_ID, FILE_ID);
+        verify(uploadDigestService).clear(USER_ID, FILE_ID);
+    }
+
+    @Test
+    @DisplayName("服务端 MD5 未覆盖全部分片时拒绝完成上传，保留已上传分片")
+    void uploadFile_digestNotReady_withMissingChunks_shouldReject() {
+        assertTrue(tempFolder.mkdirs());
+        when(uploadDigestService.getDigest(USER_ID, FILE_ID, 2)).thenReturn(null);
+
+        assertThrows(BusinessException.class, () -> fileInfoService.uploadFile(webUserDto, FILE_ID,
+                chunk(), "a.txt", "0", "client-md5", 1, 2, null));
+
+        assertTrue(tempFolder.isDirectory());
+        verify(uploadProgressService, never()).clearProgress(any(), any());
+        verify(fileInfoMapper, never()).insert(any(FileInfo.class));
+    }
+
+    @Test
+    @DisplayName("分片已齐而服务端 MD5 缺失时丢弃上传")
+    void uploadFile_digestLost_shouldDiscardUpload() {
+        assertTrue(tempFolder.mkdirs());
+        when(uploadProgressService.getProgress(USER_ID, FILE_ID))
+                .thenReturn(UploadProgressDto.builder().completedChunks(2).totalChunks(2).build());
+        when(uploadDigestService.getDigest(USER_ID, FILE_ID, 2)).thenReturn(null);
+
+        assertThrows(BusinessException.class, () -> fileInfoService.uploadFile(webUserDto, FILE_ID,
+                chunk(), "a.txt", "0", null, 1, 2, null));
+
+        assertFalse(tempFolder.exists());
+        verify(uploadProgressService).clearProgress(USER_ID, FILE_ID);
+    }
+
+    @Test
+    @DisplayName("暂存目录已被清理而会话仍有已完成分片时，重置会话后再写入")
+    void uploadFile_missingTempFolder_shouldResetStaleSession() {
+        when(uploadProgressService.getProgress(USER_ID, FILE_ID))
+                .thenReturn(UploadProgressDto.builder().completedChunks(1).totalChunks(3).build(),
+                        UploadProgressDto.builder().completedChunks(1).totalChunks(3).build());
+
+        fileInfoService.uploadFile(webUserDto, FILE_ID, chunk(), "a.txt", "0", null, 1, 3, null);
+
+        verify(uploadProgressService).clearProgress(USER_ID, FILE_ID);
+        verify(uploadDigestService).clear(USER_ID, FILE_ID);
+        verify(uploadProgressService).updateProgress(eq(USER_ID), eq(FILE_ID), eq(1), eq(3), eq(4L));
+        assertTrue(tempFolder.isDirectory());
+    }
+
+    private static MockMultipartFile chunk() {
+        return new MockMultipartFile("file", "a.txt", "text/plain", new byte[] {1, 2, 3, 4});
+    }
+}
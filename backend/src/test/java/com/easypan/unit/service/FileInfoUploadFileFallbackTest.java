@@ -4,7 +4,6 @@ import com.easypan.component.RedisComponent;
 import com.easypan.entity.config.AppConfig;
 import com.easypan.entity.dto.SessionWebUserDto;
 import com.easypan.entity.dto.UploadResultDto;
-import com.easypan.entity.dto.UserSpaceDto;
 import com.easypan.entity.enums.UploadStatusEnums;
 import com.easypan.entity.po.FileInfo;
 import com.easypan.mappers.FileInfoMapper;
@@ -36,10 +35,16 @@ class FileInfoUploadFileFallbackTest {
         private RedisComponent redisComponent;
 
         @Mock
-        private com.easypan.component.UploadRateLimiter uploadRateLimiter;
+        private TenantQuotaService tenantQuotaService;
 
         @Mock
-        private TenantQuotaService tenantQuotaService;
+        private com.easypan.service.QuotaReservationService quotaReservationService;
+
+        @Mock
+        private com.easypan.component.ChunkDirectWriter chunkDirectWriter;
+
+        @Mock
+        private com.easypan.service.UploadDigestService uploadDigestService;
 
         @Mock
         private com.easypan.service.UploadProgressService uploadProgressService;
@@ -62,15 +67,6 @@ class FileInfoUploadFileFallbackTest {
                 String projectFolder = tempDir.toString().replace("\\", "/") + "/";
                 when(appConfig.getProjectFolder()).thenReturn(projectFolder);
 
-                when(uploadRateLimiter.tryAcquire(userId)).thenReturn(true);
-
-                UserSpaceDto spaceDto = new UserSpaceDto();
-                spaceDto.setUseSpace(0L);
-                spaceDto.setTotalSpace(1024L * 1024L * 1024L);
-                when(redisComponent.getUserSpaceUse(userId)).thenReturn(spaceDto);
-
-                when(redisComponent.getFileTempSize(userId, fileId)).thenReturn(0L);
-
                 // Simulate quick-upload hit but with incomplete metadata (fileSize is null)
                 when(redisComponent.mightContainFileMd5(fileMd5)).thenReturn(true);
                 FileInfo dbFile = new FileInfo();
@@ -105,7 +101,8 @@ class FileInfoUploadFileFallbackTest {
                 // If quick-upload path had been taken, it would insert a new FileInfo
                 // immediately.
                 verify(fileInfoMapper, never()).insert(any(FileInfo.class));
-                verify(uploadRateLimiter).release(userId);
-                verify(tenantQuotaService).checkStorageQuota(anyLong());
+                verify(quotaReservationService).reserveChunk(eq(userId), any(), eq(fileId), eq(0),
+                                eq((long) pngHeader.length));
+                verify(quotaReservationService, never()).reserve(any(), any(), any(), anyLong());
         }
 }
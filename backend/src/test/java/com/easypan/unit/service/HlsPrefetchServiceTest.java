@@ -0,0 +1,130 @@
+package com.easypan.unit.service;
+
+import com.easypan.component.HotObjectCache;
+import com.easypan.entity.dto.StorageObjectStatDto;
+import com.easypan.service.HlsPrefetchService;
+import com.easypan.strategy.StorageFactory;
+import com.easypan.strategy.StorageStrategy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("HlsPrefetchService 分片预读测试")
+class HlsPrefetchServiceTest {
+
+    private static final String DIR = "202610/u1f1";
+
+    private static final StorageObjectStatDto STAT = new StorageObjectStatDto(1024, 1_000L);
+
+    @Mock
+    private StorageFactory storageFactory;
+
+    @Mock
+    private StorageStrategy storageStrategy;
+
+    @Mock
+    private HotObjectCache hotObjectCache;
+
+    @Mock
+    private AsyncTaskExecutor virtualThreadExecutor;
+
+    @InjectMocks
+    private HlsPrefetchService hlsPrefetchService;
+
+    @BeforeEach
+    void setUp() {
+        hlsPrefetchService.init();
+        lenient().when(storageFactory.getStorageStrategy()).thenReturn(storageStrategy);
+        lenient().when(hotObjectCache.accepts(anyString(), anyLong())).thenReturn(true);
+        lenient().doAnswer(inv -> {
+            ((Runnable) inv.getArgument(0)).run();
+            return null;
+        }).when(virtualThreadExecutor).execute(any(Runnable.class));
+    }
+
+    @Test
+    @DisplayName("预读数量随播放速度调整，并限制在最大值内")
+    void aheadFor_shouldScaleWithPlaybackRate() {
+        // 间隔未知（起播、拖动）
+        assertEquals(4, hlsPrefetchService.aheadFor(-1));
+        // 与切片时长相同的正常播放
+        assertEquals(2, hlsPrefetchService.aheadFor(30_000));
+        // 缓冲阶段两倍速取分片
+        assertEquals(4, hlsPrefetchService.aheadFor(15_000));
+        // 暂停或慢速网络
+        assertEquals(1, hlsPrefetchService.aheadFor(120_000));
+    }
+
+    @Test
+    @DisplayName("首次请求分片时按最大值预读后续分片，跳过已缓存的")
+    void onSegmentServed_firstRequest_shouldPrefetchMaxAhead() {
+        when(storageStrategy.stat(anyString())).thenReturn(STAT);
+        lenient().when(hotObjectCache.isCachedOrLoading(DIR + "/f1_0009.ts")).thenReturn(true);
+
+        hlsPrefetchService.onSegmentServed("u1", DIR + "/f1_0007.ts");
+
+        verify(hotObjectCache).get(eq(DIR + "/f1_0008.ts"), eq(STAT), any());
+        verify(hotObjectCache, never()).get(eq(DIR + "/f1_0009.ts"), any(), any());
+        verify(hotObjectCache).get(eq(DIR + "/f1_0010.ts"), eq(STAT), any());
+        verify(hotObjectCache).get(eq(DIR + "/f1_0011.ts"), eq(STAT), any());
+        verify(hotObjectCache, never()).get(eq(DIR + "/f1_0012.ts"), any(), any());
+    }
+
+    @Test
+    @DisplayName("播放列表请求预读开头分片，到末尾即停止")
+    void onPlaylistServed_shouldStopAtLastSegment() {
+        when(storageStrategy.stat(DIR + "/f1_0000.ts")).thenReturn(STAT);
+        when(storageStrategy.stat(DIR + "/f1_0001.ts")).thenReturn(null);
+
+        hlsPrefetchService.onPlaylistServed("u1", DIR, "f1");
+
+        verify(hotObjectCache).get(eq(DIR + "/f1_0000.ts"), eq(STAT), any());
+        verify(storageStrategy, never()).stat(DIR + "/f1_0002.ts");
+        verify(hotObjectCache, times(1)).get(anyString(), any(), any());
+    }
+
+    @Test
+    @DisplayName("本地存储的分片不预读")
+    void onSegmentServed_localStorage_shouldSkip() {
+        when(storageStrategy.stat(anyString())).thenReturn(STAT);
+        when(storageStrategy.getLocalFile(anyString())).thenReturn(new File("segment.ts"));
+
+        hlsPrefetchService.onSegmentServed("u1", DIR + "/f1_0007.ts");
+
+        verify(hotObjectCache, never()).get(anyString(), any(), any());
+    }
+
+    @Test
+    @DisplayName("节点预读并发已满时直接放弃，不排队")
+    void onSegmentServed_noPermits_shouldDrop() {
+        ReflectionTestUtils.setField(hlsPrefetchService, "maxConcurrent", 1);
+        hlsPrefetchService.init();
+        doAnswer(inv -> null).when(virtualThreadExecutor).execute(any(Runnable.class));
+
+        hlsPrefetchService.onSegmentServed("u1", DIR + "/f1_0001.ts");
+        hlsPrefetchService.onSegmentServed("u2", "202610/u2f2/f2_0001.ts");
+
+        verify(virtualThreadExecutor, times(1)).execute(any(Runnable.class));
+    }
+}
@@ -0,0 +1,240 @@
+package com.easypan.unit.service;
+
+import com.easypan.component.HotObjectCache;
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.po.HlsCache;
+import com.easypan.exception.ServiceUnavailableException;
+import com.easypan.mappers.HlsCacheMapper;
+import com.easypan.service.HlsSegmentService;
+import com.easypan.service.MediaTranscodeService;
+import com.easypan.strategy.StorageFactory;
+import com.easypan.strategy.StorageStrategy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("HlsSegmentService 按需切片测试")
+class HlsSegmentServiceTest {
+
+    @Mock
+    private HlsCacheMapper hlsCacheMapper;
+
+    @Mock
+    private MediaTranscodeService mediaTranscodeService;
+
+    @Mock
+    private StorageFactory storageFactory;
+
+    @Mock
+    private StorageStrategy storageStrategy;
+
+    @Mock
+    private AppConfig appConfig;
+
+    @Mock
+    private AsyncTaskExecutor virtualThreadExecutor;
+
+    @Mock
+    private HotObjectCache hotObjectCache;
+
+    @InjectMocks
+    private HlsSegmentService hlsSegmentService;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        hlsSegmentService.init();
+    }
+
+    @Test
+    @DisplayName("上传时已切片的视频没有记录，直接返回")
+    void ensureSegments_eagerVideo_shouldDoNothing() {
+        when(hlsCacheMapper.selectByPath("202610/u1f1")).thenReturn(null);
+
+        hlsSegmentService.ensureSegments("f1", "202610/u1f1.mp4");
+
+        verify(hlsCacheMapper, never()).touch(any(), anyLong());
+        verify(mediaTranscodeService, never()).transcodeToHls(any(), any(), any(), any(), eq(0));
+    }
+
+    @Test
+    @DisplayName("已切片时只刷新播放时间")
+    void ensureSegments_ready_shouldTouch() {
+        when(hlsCacheMapper.selectByPath("202610/u1f1")).thenReturn(cache(1, 0L));
+
+        hlsSegmentService.ensureSegments("f1", "202610/u1f1.mp4");
+
+        verify(hlsCacheMapper).touch("202610/u1f1", 60L);
+        verify(mediaTranscodeService, never()).transcodeToHls(any(), any(), any(), any(), eq(0));
+    }
+
+    @Test
+    @DisplayName("分片请求刷新播放时间，同一视频在间隔内只写一次")
+    void touch_shouldThrottlePerVideo() {
+        ReflectionTestUtils.setField(hlsSegmentService, "storageBudgetMb", 1L);
+
+        hlsSegmentService.touch("202610/u1f1.mp4");
+        hlsSegmentService.touch("202610/u1f1.mp4");
+        hlsSegmentService.touch("202610/u2f2.mp4");
+
+        verify(hlsCacheMapper, times(1)).touch("202610/u1f1", 60L);
+        verify(hlsCacheMapper, times(1)).touch("202610/u2f2", 60L);
+    }
+
+    @Test
+    @DisplayName("未设置存储预算时分片请求不写库")
+    void touch_withoutBudget_shouldSkip() {
+        hlsSegmentService.touch("202610/u1f1.mp4");
+
+        verify(hlsCacheMapper, never()).touch(any(), anyLong());
+    }
+
+    @Test
+    @DisplayName("未切片时应直接读取本地原文件切片、上传并记录大小")
+    void ensureSegments_pending_shouldSegmentFromLocalFile() throws Exception {
+        Path source = tempDir.resolve("file/202610/u1f1.mp4");
+        Files.createDirectories(source.getParent());
+        Files.write(source, new byte[] {1, 2, 3});
+        when(hlsCacheMapper.selectByPath("202610/u1f1")).thenReturn(cache(0, 0L));
+        when(hlsCacheMapper.markReady("202610/u1f1", 100L)).thenReturn(1);
+        when(appConfig.getProjectFolder()).thenReturn(tempDir.toString());
+        when(appConfig.getFileRootPath()).thenReturn(tempDir.resolve("file").toString());
+        when(storageFactory.getStorageStrategy()).thenReturn(storageStrategy);
+        runInline();
+        doAnswer(invocation -> {
+            File folder = invocation.getArgument(1);
+            Files.write(folder.toPath().resolve("index.m3u8"), new byte[10]);
+            Files.write(folder.toPath().resolve("f1_0000.ts"), new byte[90]);
+            return null;
+        }).when(mediaTranscodeService).transcodeToHls(eq(source.toFile()), any(), eq("f1"), isNull(), eq(0));
+
+        hlsSegmentService.ensureSegments("f1", "202610/u1f1.mp4");
+
+        verify(storageStrategy).uploadDirectory(eq("202610/u1f1"), any(File.class));
+        verify(storageStrategy, never()).download(any());
+        verify(hlsCacheMapper).markReady("202610/u1f1", 100L);
+    }
+
+    @Test
+    @DisplayName("超出预算时按最后播放时间淘汰，降到预算内即停止")
+    void evictOverBudget_shouldEvictColdestUntilWithinBudget() {
+        ReflectionTestUtils.setField(hlsSegmentService, "storageBudgetMb", 1L);
+        long mb = 1024 * 1024;
+        when(hlsCacheMapper.sumReadySize()).thenReturn(3 * mb);
+        HlsCache coldest = cache(1, mb);
+        coldest.setHlsPath("202609/a");
+        HlsCache touched = cache(1, mb);
+        touched.setHlsPath("202609/b");
+        HlsCache colder = cache(1, mb);
+        colder.setHlsPath("202609/c");
+        when(hlsCacheMapper.selectEvictable(3600L, 100)).thenReturn(List.of(coldest, touched, colder));
+        when(hlsCacheMapper.markEvicting("202609/a", 3600L)).thenReturn(1);
+        when(hlsCacheMapper.markEvicting("202609/b", 3600L)).thenReturn(0);
+        when(hlsCacheMapper.markEvicting("202609/c", 3600L)).thenReturn(1);
+        when(storageFactory.getStorageStrategy()).thenReturn(storageStrategy);
+
+        assertEquals(2, hlsSegmentService.evictOverBudget(100));
+
+        verify(storageStrategy).deleteDirectory("202609/a");
+        verify(storageStrategy, never()).deleteDirectory("202609/b");
+        verify(storageStrategy).deleteDirectory("202609/c");
+        verify(hotObjectCache).invalidatePrefix("202609/a/");
+        verify(hotObjectCache, never()).invalidatePrefix("202609/b/");
+        // 删除目录之后才改回未切片
+        InOrder order = inOrder(storageStrategy, hlsCacheMapper);
+        order.verify(storageStrategy).deleteDirectory("202609/a");
+        order.verify(hlsCacheMapper).finishEviction("202609/a");
+        verify(hlsCacheMapper, never()).finishEviction("202609/b");
+    }
+
+    @Test
+    @DisplayName("淘汰中时直接返回 503 提示稍后重试，不在请求线程上等待")
+    void ensureSegments_evicting_shouldAskRetryWithoutWaiting() {
+        when(hlsCacheMapper.selectByPath("202610/u1f1")).thenReturn(cache(2, 0L));
+
+        ServiceUnavailableException e = assertThrows(ServiceUnavailableException.class,
+                () -> hlsSegmentService.ensureSegments("f1", "202610/u1f1.mp4"));
+
+        assertEquals(5L, e.getRetryAfterSeconds());
+        verify(hlsCacheMapper, times(1)).selectByPath("202610/u1f1");
+        verify(virtualThreadExecutor, never()).execute(any(Runnable.class));
+    }
+
+    @Test
+    @DisplayName("切片完成时记录已不是未切片状态应提示重试，不视为成功")
+    void ensureSegments_markReadyRejected_shouldAskRetry() throws Exception {
+        Path source = tempDir.resolve("file/202610/u1f1.mp4");
+        Files.createDirectories(source.getParent());
+        Files.write(source, new byte[] {1, 2, 3});
+        when(hlsCacheMapper.selectByPath("202610/u1f1")).thenReturn(cache(0, 0L));
+        when(hlsCacheMapper.markReady(eq("202610/u1f1"), anyLong())).thenReturn(0);
+        when(appConfig.getProjectFolder()).thenReturn(tempDir.toString());
+        when(appConfig.getFileRootPath()).thenReturn(tempDir.resolve("file").toString());
+        when(storageFactory.getStorageStrategy()).thenReturn(storageStrategy);
+        runInline();
+
+        ServiceUnavailableException e = assertThrows(ServiceUnavailableException.class,
+                () -> hlsSegmentService.ensureSegments("f1", "202610/u1f1.mp4"));
+        assertEquals("视频正在准备中，请稍后重试", e.getMessage());
+    }
+
+    @Test
+    @DisplayName("遗留的淘汰中记录应由淘汰任务接着删除")
+    void evictOverBudget_shouldRecoverStaleEvictions() {
+        ReflectionTestUtils.setField(hlsSegmentService, "storageBudgetMb", 1L);
+        HlsCache stale = cache(2, 0L);
+        stale.setHlsPath("202609/s");
+        when(hlsCacheMapper.selectStaleEvicting(600L, 100)).thenReturn(List.of(stale));
+        when(hlsCacheMapper.restartEviction("202609/s", 600L)).thenReturn(1);
+        when(storageFactory.getStorageStrategy()).thenReturn(storageStrategy);
+
+        assertEquals(0, hlsSegmentService.evictOverBudget(100));
+
+        verify(storageStrategy).deleteDirectory("202609/s");
+        verify(hlsCacheMapper).finishEviction("202609/s");
+    }
+
+    private void runInline() {
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(virtualThreadExecutor).execute(any(Runnable.class));
+    }
+
+    private static HlsCache cache(int status, long size) {
+        HlsCache cache = new HlsCache();
+        cache.setHlsPath("202610/u1f1");
+        cache.setStatus(status);
+        cache.setSizeBytes(size);
+        return cache;
+    }
+}
@@ -1,11 +1,16 @@
 package com.easypan.unit.service;
 
+import com.easypan.component.RedisComponent;
+import com.easypan.entity.dto.QuickUploadCheckDto;
 import com.easypan.entity.dto.UploadResultDto;
 import com.easypan.entity.enums.FileDelFlagEnums;
 import com.easypan.entity.enums.FileStatusEnums;
 import com.easypan.entity.po.FileInfo;
+import com.easypan.exception.BusinessException;
 import com.easypan.mappers.FileInfoMapper;
 import com.easypan.service.QuickUploadService;
+import com.easypan.strategy.StorageFactory;
+import com.easypan.strategy.StorageStrategy;
 import com.mybatisflex.core.query.QueryWrapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -41,6 +46,12 @@ class QuickUploadServiceTest {
     @Mock
     private ValueOperations<String, Object> valueOperations;
 
+    @Mock
+    private RedisComponent redisComponent;
+
+    @Mock
+    private StorageFactory storageFactory;
+
     @InjectMocks
     private QuickUploadService quickUploadService;
 
@@ -226,4 +237,108 @@ class QuickUploadServiceTest {
             assertNotEquals(existingFile.getFileId(), newFile.getFileId());
         }
     }
+
+    @Test
+    @DisplayName("批量预检 - 布隆过滤器剔除后只对剩余 MD5 做一次 IN 查询")
+    void testBatchCheck_BloomFilterThenSingleQuery() {
+        String hit = "0123456789abcdef0123456789abcdef";
+        String falsePositive = "fedcba9876543210fedcba9876543210";
+        when(redisComponent.mightContainFileMd5(TEST_FILE_MD5)).thenReturn(false);
+        when(redisComponent.mightContainFileMd5(hit)).thenReturn(true);
+        when(redisComponent.mightContainFileMd5(falsePositive)).thenReturn(true);
+        FileInfo source = new FileInfo();
+        source.setFileMd5(hit);
+        source.setFileSize(2048L);
+        when(fileInfoMapper.selectByMd5ListAndStatus(anyCollection(), eq(FileStatusEnums.USING.getStatus())))
+                .thenReturn(List.of(source));
+
+        QuickUploadCheckDto result = quickUploadService.batchCheck(
+                List.of(TEST_FILE_MD5, " " + hit.toUpperCase() + " ", falsePositive, hit, "not-a-md5"));
+
+        assertEquals(1, result.getAvailable().size());
+        assertEquals(2048L, result.getAvailable().get(hit));
+        assertTrue(result.getMissing().containsAll(List.of(TEST_FILE_MD5, falsePositive, "not-a-md5")));
+        assertEquals(3, result.getMissing().size());
+        verify(fileInfoMapper, times(1)).selectByMd5ListAndStatus(
+                argThat(md5s -> md5s.size() == 2 && md5s.contains(hit) && md5s.contains(falsePositive)),
+                anyInt());
+    }
+
+    @Test
+    @DisplayName("批量预检 - 全部未命中布隆过滤器时不查询数据库")
+    void testBatchCheck_AllFiltered_NoQuery() {
+        when(redisComponent.mightContainFileMd5(anyString())).thenReturn(false);
+
+        QuickUploadCheckDto result = quickUploadService.batchCheck(List.of(TEST_FILE_MD5));
+
+        assertTrue(result.getAvailable().isEmpty());
+        assertEquals(List.of(TEST_FILE_MD5), result.getMissing());
+        verify(fileInfoMapper, never()).selectByMd5ListAndStatus(anyCollection(), anyInt());
+    }
+
+    @Test
+    @DisplayName("批量预检 - 超过数量上限时拒绝")
+    void testBatchCheck_TooMany_ShouldThrow() {
+        List<String> md5s = Collections.nCopies(5001, TEST_FILE_MD5);
+
+        assertThrows(BusinessException.class, () -> quickUploadService.batchCheck(md5s));
+    }
+
+    @Test
+    @DisplayName("抽样指纹 - 未命中时不需要完整 MD5，命中或缺失时需要")
+    void testIsFullHashRequired() {
+        String sampleHash = "0123456789abcdef0123456789abcdef";
+        when(fileInfoMapper.existsBySampleHashAndStatus(sampleHash, FileStatusEnums.USING.getStatus()))
+                .thenReturn(false, true);
+        when(fileInfoMapper.existsUnsampledBySize(1024L, FileStatusEnums.USING.getStatus())).thenReturn(false);
+
+        assertFalse(quickUploadService.isFullHashRequired(sampleHash.toUpperCase(), 1024L));
+        assertTrue(quickUploadService.isFullHashRequired(sampleHash, 1024L));
+        assertTrue(quickUploadService.isFullHashRequired(null, 1024L));
+        assertTrue(quickUploadService.isFullHashRequired("bad", 1024L));
+        verify(fileInfoMapper, times(2)).existsBySampleHashAndStatus(anyString(), anyInt());
+    }
+
+    @Test
+    @DisplayName("抽样指纹 - 存在未补算指纹的同大小文件时仍需要完整 MD5")
+    void testIsFullHashRequired_UnsampledSameSize() {
+        String sampleHash = "0123456789abcdef0123456789abcdef";
+        when(fileInfoMapper.existsBySampleHashAndStatus(sampleHash, FileStatusEnums.USING.getStatus()))
+                .thenReturn(false);
+        when(fileInfoMapper.existsUnsampledBySize(1024L, FileStatusEnums.USING.getStatus())).thenReturn(true);
+
+        assertTrue(quickUploadService.isFullHashRequired(sampleHash, 1024L));
+    }
+
+    @Test
+    @DisplayName("补算抽样指纹 - 按区间读取存储对象，结果与本地计算一致")
+    void testBackfillSampleHashes() throws Exception {
+        byte[] content = new byte[300 * 1024];
+        new java.util.Random(7).nextBytes(content);
+        java.io.File local = java.io.File.createTempFile("sample", ".bin");
+        local.deleteOnExit();
+        java.nio.file.Files.write(local.toPath(), content);
+        String expected = com.easypan.utils.SampledFingerprint.compute(local);
+
+        FileInfo unsampled = new FileInfo();
+        unsampled.setFilePath("202610/a.bin");
+        FileInfo missing = new FileInfo();
+        missing.setFilePath("202610/b.bin");
+        when(fileInfoMapper.selectUnsampledAfterPath("", FileStatusEnums.USING.getStatus(), 10))
+                .thenReturn(List.of(unsampled, missing));
+        StorageStrategy storage = mock(StorageStrategy.class);
+        when(storageFactory.getStorageStrategy()).thenReturn(storage);
+        when(storage.stat("202610/a.bin"))
+                .thenReturn(new com.easypan.entity.dto.StorageObjectStatDto(content.length, 1L));
+        when(storage.download(eq("202610/a.bin"), anyLong(), anyLong())).thenAnswer(inv -> {
+            int offset = (int) (long) inv.getArgument(1);
+            int length = (int) (long) inv.getArgument(2);
+            return new java.io.ByteArrayInputStream(content, offset, length);
+        });
+        when(fileInfoMapper.updateSampleHashByPath("202610/a.bin", expected)).thenReturn(3);
+
+        assertEquals(2, quickUploadService.backfillSampleHashes(10));
+        verify(fileInfoMapper).updateSampleHashByPath("202610/a.bin", expected);
+        verify(fileInfoMapper, never()).updateSampleHashByPath(eq("202610/b.bin"), anyString());
+    }
 }
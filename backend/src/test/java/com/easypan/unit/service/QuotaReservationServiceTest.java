@@ -0,0 +1,121 @@
+package com.easypan.unit.service;
+
+import com.easypan.component.RedisComponent;
+import com.easypan.entity.enums.ResponseCodeEnum;
+import com.easypan.exception.BusinessException;
+import com.easypan.service.QuotaReservationService;
+import com.easypan.service.TenantQuotaService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("QuotaReservationService 空间预留测试")
+class QuotaReservationServiceTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    @Mock
+    private RedisComponent redisComponent;
+
+    @Mock
+    private TenantQuotaService tenantQuotaService;
+
+    @InjectMocks
+    private QuotaReservationService quotaReservationService;
+
+    @Test
+    @DisplayName("计数缺失时应从数据库重建后重试")
+    void reserve_missingCounters_shouldLoadAndRetry() {
+        when(reserveScript()).thenReturn(List.of(-1L, 0L), List.of(-2L, 0L), List.of(1L, 100L));
+
+        quotaReservationService.reserve("u1", "t1", "f1", 100L);
+
+        verify(redisComponent).getUserSpaceUse("u1");
+        verify(tenantQuotaService).loadTenantStorage("t1");
+        verify(stringRedisTemplate, times(3)).execute(any(RedisScript.class), anyList(),
+                any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("用户空间不足时应返回空间不足错误码，不重建计数")
+    void reserveChunk_userSpaceExceeded_shouldThrow904() {
+        when(reserveScript()).thenReturn(List.of(0L, 1L));
+
+        BusinessException e = assertThrows(BusinessException.class,
+                () -> quotaReservationService.reserveChunk("u1", "t1", "f1", 3, 1024L));
+
+        assertEquals(ResponseCodeEnum.CODE_904.getCode(), e.getCode());
+        verify(redisComponent, never()).getUserSpaceUse(any());
+        verify(stringRedisTemplate).execute(any(RedisScript.class), eq(List.of(
+                        "easypan:quota:resv:u1:f1", "easypan:user:space:u1", "easypan:tenant:space:t1",
+                        "easypan:quota:resv:expiry")),
+                eq("c:3"), eq("1024"), eq("0"), any(), eq("u1:f1"), eq("t1"));
+    }
+
+    @Test
+    @DisplayName("结算时应以预留记录中的租户为准")
+    void commit_shouldUseTenantFromReservation() {
+        when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.get("easypan:quota:resv:u1:f1", "tenant")).thenReturn("t9");
+
+        quotaReservationService.commit("u1", "t1", "f1", 500L);
+
+        verify(stringRedisTemplate).execute(any(RedisScript.class), eq(List.of(
+                        "easypan:quota:resv:u1:f1", "easypan:user:space:u1", "easypan:tenant:space:t9",
+                        "easypan:quota:resv:expiry")),
+                eq("500"), eq("u1:f1"));
+    }
+
+    @Test
+    @DisplayName("回收过期预留时应按成员拆出用户与预留标识")
+    void releaseExpired_shouldSettleEachMember() {
+        when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(zSetOperations.rangeByScore(eq("easypan:quota:resv:expiry"), anyDouble(), anyDouble(), anyLong(),
+                anyLong())).thenReturn(new LinkedHashSet<>(List.of("u1:f1", "u2:batch-x", "broken")));
+
+        int released = quotaReservationService.releaseExpired(10);
+
+        assertEquals(2, released);
+        verify(stringRedisTemplate).execute(any(RedisScript.class), eq(List.of(
+                        "easypan:quota:resv:u2:batch-x", "easypan:user:space:u2", "easypan:tenant:space:null",
+                        "easypan:quota:resv:expiry")),
+                eq("0"), eq("u2:batch-x"));
+        verify(zSetOperations).remove("easypan:quota:resv:expiry", "broken");
+    }
+
+    private Object reserveScript() {
+        return stringRedisTemplate.execute(any(RedisScript.class), anyList(),
+                any(), any(), any(), any(), any(), any());
+    }
+}
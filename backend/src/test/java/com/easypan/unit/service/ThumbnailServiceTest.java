@@ -0,0 +1,136 @@
+package com.easypan.unit.service;
+
+import com.easypan.component.ImageThumbnailer;
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.enums.FileCategoryEnums;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.exception.BusinessException;
+import com.easypan.service.ThumbnailService;
+import com.easypan.strategy.StorageFactory;
+import com.easypan.strategy.StorageStrategy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ThumbnailService 缩略图测试")
+class ThumbnailServiceTest {
+
+    private static final String MD5 = "0123456789abcdef0123456789abcdef";
+
+    @Mock
+    private StorageFactory storageFactory;
+
+    @Mock
+    private StorageStrategy storageStrategy;
+
+    @Mock
+    private AppConfig appConfig;
+
+    @Spy
+    private ImageThumbnailer imageThumbnailer = new ImageThumbnailer();
+
+    @InjectMocks
+    private ThumbnailService thumbnailService;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        when(appConfig.getProjectFolder()).thenReturn(tempDir.toString());
+        imageThumbnailer.init();
+        thumbnailService.init();
+    }
+
+    @Test
+    @DisplayName("宽度应向上取整到档位，超过最大档位取最大档位")
+    void snapWidth_shouldRoundUpToConfiguredWidths() {
+        assertEquals(150, thumbnailService.snapWidth(null));
+        assertEquals(150, thumbnailService.snapWidth(150));
+        assertEquals(300, thumbnailService.snapWidth(151));
+        assertEquals(1200, thumbnailService.snapWidth(5000));
+    }
+
+    @Test
+    @DisplayName("应按档位生成且不放大原图，相同 MD5 的文件复用缓存")
+    void getThumbnail_shouldGenerateOnceAndShareByMd5() throws Exception {
+        when(storageFactory.getStorageStrategy()).thenReturn(storageStrategy);
+        when(storageStrategy.download("202610/u1f1.png")).thenReturn(new ByteArrayInputStream(png(400, 200)));
+
+        File first = thumbnailService.getThumbnail(image("f1", "202610/u1f1.png"), 280, "png");
+        File second = thumbnailService.getThumbnail(image("f2", "202610/u2f2.png"), 300, "png");
+
+        assertEquals(first, second);
+        assertEquals(MD5 + "_300.png", first.getName());
+        BufferedImage thumbnail = ImageIO.read(first);
+        assertEquals(300, thumbnail.getWidth());
+        assertEquals(150, thumbnail.getHeight());
+        verify(storageStrategy, times(1)).download("202610/u1f1.png");
+
+        when(storageStrategy.download("202610/u1f1.png")).thenReturn(new ByteArrayInputStream(png(400, 200)));
+        File large = thumbnailService.getThumbnail(image("f1", "202610/u1f1.png"), 1200, "jpg");
+        assertEquals(400, ImageIO.read(large).getWidth());
+        assertEquals("image/jpeg", ThumbnailService.contentTypeOf(large));
+    }
+
+    @Test
+    @DisplayName("不支持的格式与非图片文件应拒绝")
+    void getThumbnail_invalidRequest_shouldFail() {
+        assertThrows(BusinessException.class,
+                () -> thumbnailService.getThumbnail(image("f1", "202610/u1f1.png"), 150, "gif"));
+
+        FileInfo doc = image("f3", "202610/u1f3.pdf");
+        doc.setFileCategory(FileCategoryEnums.DOC.getCategory());
+        assertThrows(BusinessException.class, () -> thumbnailService.getThumbnail(doc, 150, "jpg"));
+    }
+
+    @Test
+    @DisplayName("重启后应从磁盘恢复缓存索引")
+    void init_shouldRestoreIndexFromDisk() throws Exception {
+        when(storageFactory.getStorageStrategy()).thenReturn(storageStrategy);
+        when(storageStrategy.download("202610/u1f1.png")).thenReturn(new ByteArrayInputStream(png(400, 200)));
+        File generated = thumbnailService.getThumbnail(image("f1", "202610/u1f1.png"), 150, "png");
+
+        thumbnailService.init();
+
+        assertTrue(generated.isFile());
+        assertEquals(generated, thumbnailService.getThumbnail(image("f1", "202610/u1f1.png"), 150, "png"));
+        verify(storageStrategy, times(1)).download("202610/u1f1.png");
+    }
+
+    private static FileInfo image(String fileId, String filePath) {
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setFileId(fileId);
+        fileInfo.setFilePath(filePath);
+        fileInfo.setFileMd5(MD5);
+        fileInfo.setFileCategory(FileCategoryEnums.IMAGE.getCategory());
+        return fileInfo;
+    }
+
+    private static byte[] png(int width, int height) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,108 @@
+package com.easypan.unit.service;
+
+import com.easypan.entity.enums.TranscodeStageEnums;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.entity.po.TranscodeJob;
+import com.easypan.exception.BusinessException;
+import com.easypan.mappers.TranscodeJobMapper;
+import com.easypan.service.TranscodeJobService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("TranscodeJobService 转码任务测试")
+class TranscodeJobServiceTest {
+
+    @Mock
+    private TranscodeJobMapper transcodeJobMapper;
+
+    @InjectMocks
+    private TranscodeJobService transcodeJobService;
+
+    @Test
+    @DisplayName("创建任务时应按文件名确定队列并由本节点持有租约")
+    void create_shouldResolveLaneAndHoldLease() {
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setFileId("f1");
+        fileInfo.setUserId("u1");
+        fileInfo.setFileName("movie.mkv");
+
+        transcodeJobService.create(fileInfo, "t1");
+
+        ArgumentCaptor<TranscodeJob> captor = ArgumentCaptor.forClass(TranscodeJob.class);
+        verify(transcodeJobMapper).insertJob(captor.capture(), eq(120L));
+        assertEquals("VIDEO", captor.getValue().getLane());
+        assertEquals(0L, captor.getValue().getFileSize());
+        assertTrue(captor.getValue().getLeaseOwner() != null && !captor.getValue().getLeaseOwner().isEmpty());
+    }
+
+    @Test
+    @DisplayName("租约被其他节点持有时领取失败")
+    void claim_leaseHeldElsewhere_shouldReturnNull() {
+        when(transcodeJobMapper.claim(eq("f1"), eq("u1"), anyString(), anyLong())).thenReturn(0);
+
+        assertNull(transcodeJobService.claim("f1", "u1"));
+        verify(transcodeJobMapper, never()).selectByFileIdAndUserId(any(), any());
+    }
+
+    @Test
+    @DisplayName("失败后应按次数指数退避，次数用尽后标记失败")
+    void fail_shouldBackOffThenGiveUp() {
+        TranscodeJob job = job(2);
+        when(transcodeJobMapper.markRetry(eq("f1"), eq("u1"), anyString(), eq("ffmpeg exited"), eq(60L)))
+                .thenReturn(1);
+
+        assertTrue(transcodeJobService.fail(job, new BusinessException("ffmpeg exited")));
+
+        TranscodeJob last = job(3);
+        when(transcodeJobMapper.markFailed(eq("f1"), eq("u1"), anyString(), eq("IllegalStateException")))
+                .thenReturn(1);
+        assertFalse(transcodeJobService.fail(last, new IllegalStateException()));
+    }
+
+    @Test
+    @DisplayName("租约丢失时记录阶段应失败")
+    void completeStage_leaseLost_shouldThrow() {
+        TranscodeJob job = job(1);
+        when(transcodeJobMapper.updateStage(eq("f1"), eq("u1"), anyString(), eq("MERGE"))).thenReturn(0);
+
+        assertThrows(BusinessException.class,
+                () -> transcodeJobService.completeStage(job, TranscodeStageEnums.MERGE));
+        assertNull(job.getStage());
+    }
+
+    @Test
+    @DisplayName("阶段按执行顺序判断是否已完成")
+    void stage_isCompletedBy_shouldFollowOrder() {
+        assertTrue(TranscodeStageEnums.MERGE.isCompletedBy("COVER"));
+        assertTrue(TranscodeStageEnums.COVER.isCompletedBy("COVER"));
+        assertFalse(TranscodeStageEnums.HLS.isCompletedBy("COVER"));
+        assertFalse(TranscodeStageEnums.MERGE.isCompletedBy(null));
+    }
+
+    private static TranscodeJob job(int attempts) {
+        TranscodeJob job = new TranscodeJob();
+        job.setFileId("f1");
+        job.setUserId("u1");
+        job.setAttempts(attempts);
+        return job;
+    }
+}
@@ -0,0 +1,151 @@
+package com.easypan.unit.service;
+
+import com.easypan.component.RedisComponent;
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.dto.TransferStatusEventDto;
+import com.easypan.entity.enums.FileStatusEnums;
+import com.easypan.entity.enums.TranscodeStageEnums;
+import com.easypan.service.TransferStatusService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("TransferStatusService 转码状态推送测试")
+class TransferStatusServiceTest {
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private RedisComponent redisComponent;
+
+    @Mock
+    private AsyncTaskExecutor virtualThreadExecutor;
+
+    @InjectMocks
+    private TransferStatusService transferStatusService;
+
+    @Test
+    @DisplayName("进度回调只在百分比增加时写入并发布")
+    void progressListener_shouldPublishOnlyIncreases() {
+        IntConsumer listener = transferStatusService.progressListener("u1", "f1", TranscodeStageEnums.HLS);
+
+        listener.accept(10);
+        listener.accept(10);
+        listener.accept(5);
+        listener.accept(40);
+
+        verify(redisComponent).saveTransferProgress("u1", "f1", 10);
+        verify(redisComponent).saveTransferProgress("u1", "f1", 40);
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(redisTemplate, times(2)).convertAndSend(eq(Constants.REDIS_CHANNEL_TRANSFER_STATUS), events.capture());
+        TransferStatusEventDto last = (TransferStatusEventDto) events.getAllValues().get(1);
+        assertEquals("HLS", last.getStage());
+        assertEquals(40, last.getProgress());
+        assertEquals(FileStatusEnums.TRANSFER.getStatus(), last.getStatus());
+    }
+
+    @Test
+    @DisplayName("事件只转发给本节点上订阅了该用户文件的连接")
+    void onMessage_shouldFanOutToLocalSubscribersOnly() {
+        doReturn(RedisSerializer.json()).when(redisTemplate).getValueSerializer();
+        transferStatusService.subscribe("u1", "f1", FileStatusEnums.TRANSFER::getStatus);
+        transferStatusService.subscribe("u1", "f1", FileStatusEnums.TRANSFER::getStatus);
+
+        transferStatusService.onMessage(message(event("u2", "f1")), null);
+        verify(virtualThreadExecutor, never()).execute(any(Runnable.class));
+
+        transferStatusService.onMessage(message(event("u1", "f1")), null);
+        verify(virtualThreadExecutor, times(2)).execute(any(Runnable.class));
+    }
+
+    @Test
+    @DisplayName("同一连接的事件串行写出，写出任务未结束时新事件只排队")
+    void onMessage_shouldSerializeSendsPerSubscriber() {
+        doReturn(RedisSerializer.json()).when(redisTemplate).getValueSerializer();
+        transferStatusService.subscribe("u1", "f1", FileStatusEnums.TRANSFER::getStatus);
+
+        transferStatusService.onMessage(message(progress("u1", "f1", 10)), null);
+        transferStatusService.onMessage(message(progress("u1", "f1", 20)), null);
+
+        ArgumentCaptor<Runnable> drain = ArgumentCaptor.forClass(Runnable.class);
+        verify(virtualThreadExecutor, times(1)).execute(drain.capture());
+
+        drain.getValue().run();
+        transferStatusService.onMessage(message(progress("u1", "f1", 30)), null);
+        verify(virtualThreadExecutor, times(2)).execute(any(Runnable.class));
+    }
+
+    @Test
+    @DisplayName("结束事件写出后，之后到达的事件不再写出")
+    void onMessage_afterFinished_shouldDropLateEvents() {
+        doReturn(RedisSerializer.json()).when(redisTemplate).getValueSerializer();
+        transferStatusService.subscribe("u1", "f1", FileStatusEnums.TRANSFER::getStatus);
+
+        transferStatusService.onMessage(message(event("u1", "f1")), null);
+        ArgumentCaptor<Runnable> drain = ArgumentCaptor.forClass(Runnable.class);
+        verify(virtualThreadExecutor).execute(drain.capture());
+        drain.getValue().run();
+
+        transferStatusService.onMessage(message(progress("u1", "f1", 90)), null);
+        verify(virtualThreadExecutor, times(1)).execute(any(Runnable.class));
+    }
+
+    @Test
+    @DisplayName("订阅时先登记再读取状态，读取时已有的进度作为快照")
+    void subscribe_shouldRegisterBeforeReadingStatus() {
+        when(redisComponent.getTransferProgress("u1", "f1")).thenReturn(60);
+        int[] countWhenLoading = {-1};
+
+        transferStatusService.subscribe("u1", "f1", () -> {
+            countWhenLoading[0] = transferStatusService.subscriberCount();
+            return FileStatusEnums.TRANSFER.getStatus();
+        });
+
+        assertEquals(1, countWhenLoading[0]);
+        assertEquals(1, transferStatusService.subscriberCount());
+        verify(redisComponent).getTransferProgress("u1", "f1");
+    }
+
+    private static TransferStatusEventDto event(String userId, String fileId) {
+        TransferStatusEventDto event = new TransferStatusEventDto();
+        event.setUserId(userId);
+        event.setFileId(fileId);
+        event.setStatus(FileStatusEnums.USING.getStatus());
+        return event;
+    }
+
+    private static TransferStatusEventDto progress(String userId, String fileId, int percent) {
+        TransferStatusEventDto event = event(userId, fileId);
+        event.setStatus(FileStatusEnums.TRANSFER.getStatus());
+        event.setStage(TranscodeStageEnums.HLS.name());
+        event.setProgress(percent);
+        return event;
+    }
+
+    private static DefaultMessage message(TransferStatusEventDto event) {
+        return new DefaultMessage(Constants.REDIS_CHANNEL_TRANSFER_STATUS.getBytes(StandardCharsets.UTF_8),
+                RedisSerializer.json().serialize(event));
+    }
+}
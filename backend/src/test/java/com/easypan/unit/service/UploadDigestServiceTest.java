@@ -0,0 +1,159 @@
+package com.easypan.unit.service;
+
+import com.easypan.entity.config.AppConfig;
+import com.easypan.service.UploadDigestService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UploadDigestService 增量摘要测试")
+class UploadDigestServiceTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private AppConfig appConfig;
+
+    @InjectMocks
+    private UploadDigestService uploadDigestService;
+
+    @TempDir
+    Path tempDir;
+
+    private final Map<String, String> store = new HashMap<>();
+
+    /**
+     * 在比较并设置之前执行，模拟其他节点抢先推进序号.
+     */
+    private Runnable beforeCompareAndSet = () -> { };
+
+    @BeforeEach
+    void setUp() {
+        when(appConfig.getProjectFolder()).thenReturn(tempDir.toString());
+        lenient().when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(valueOperations.get(anyString())).thenAnswer(inv -> store.get(inv.<String>getArgument(0)));
+        lenient().when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenAnswer(inv -> {
+                    beforeCompareAndSet.run();
+                    String key = inv.<List<String>>getArgument(1).get(0);
+                    String current = store.get(key);
+                    int nextIndex = current == null ? 0 : Integer.parseInt(current.substring(0, current.indexOf(':')));
+                    if (nextIndex != Integer.parseInt(inv.getArgument(2))) {
+                        return 0L;
+                    }
+                    store.put(key, inv.getArgument(3));
+                    return 1L;
+                });
+    }
+
+    @Test
+    @DisplayName("乱序到达的分片应缓冲后按序计入，最终 MD5 与整体一致")
+    void update_outOfOrder_shouldProduceWholeFileMd5() throws Exception {
+        String[] parts = {"chunk-0;", "chunk-1;", "chunk-2;", "last"};
+        String whole = String.join("", parts);
+        String expected = HexFormat.of().formatHex(
+                MessageDigest.getInstance("MD5").digest(whole.getBytes(StandardCharsets.UTF_8)));
+
+        for (int index : new int[] {2, 0, 1, 1, 3}) {
+            uploadDigestService.update("u1", "f1", index,
+                    new ByteArrayResource(parts[index].getBytes(StandardCharsets.UTF_8)));
+        }
+
+        assertEquals(expected, uploadDigestService.getDigest("u1", "f1", parts.length));
+    }
+
+    @Test
+    @DisplayName("其他节点缓冲的分片由推进序号的节点消费")
+    void update_bufferedOnOtherNode_shouldBeFoldedIn() throws Exception {
+        UploadDigestService otherNode = new UploadDigestService();
+        ReflectionTestUtils.setField(otherNode, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(otherNode, "appConfig", appConfig);
+        byte[] first = "first;".getBytes(StandardCharsets.UTF_8);
+        byte[] second = "second".getBytes(StandardCharsets.UTF_8);
+
+        otherNode.update("u1", "f3", 1, new ByteArrayResource(second));
+        uploadDigestService.update("u1", "f3", 0, new ByteArrayResource(first));
+
+        String expected = HexFormat.of().formatHex(MessageDigest.getInstance("MD5")
+                .digest("first;second".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(expected, uploadDigestService.getDigest("u1", "f3", 2));
+    }
+
+    @Test
+    @DisplayName("其他节点已计入同一分片时放弃本次结果，不重复计入")
+    void update_lostCompareAndSet_shouldNotCountChunkTwice() throws Exception {
+        byte[] data = "only".getBytes(StandardCharsets.UTF_8);
+        AtomicBoolean raced = new AtomicBoolean();
+        UploadDigestService otherNode = new UploadDigestService();
+        ReflectionTestUtils.setField(otherNode, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(otherNode, "appConfig", appConfig);
+        beforeCompareAndSet = () -> {
+            if (raced.compareAndSet(false, true)) {
+                otherNode.update("u1", "f4", 0, new ByteArrayResource(data));
+            }
+        };
+
+        uploadDigestService.update("u1", "f4", 0, new ByteArrayResource(data));
+
+        String expected = HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(data));
+        assertEquals(expected, uploadDigestService.getDigest("u1", "f4", 1));
+    }
+
+    @Test
+    @DisplayName("摘要状态有效期与上传会话一致")
+    void update_shouldKeepStateForSessionTtl() {
+        ReflectionTestUtils.setField(uploadDigestService, "ttlSeconds", 7200L);
+
+        uploadDigestService.update("u1", "f5", 1, new ByteArrayResource(new byte[] {2}));
+        uploadDigestService.update("u1", "f5", 0, new ByteArrayResource(new byte[] {1}));
+
+        verify(stringRedisTemplate).expire("easypan:upload:digest:u1f5", 7200L, TimeUnit.SECONDS);
+        verify(stringRedisTemplate, times(2)).execute(any(RedisScript.class), anyList(), anyString(), anyString(),
+                eq("7200"));
+    }
+
+    @Test
+    @DisplayName("存在缺口时不应返回摘要")
+    void getDigest_withGap_shouldReturnNull() {
+        uploadDigestService.update("u1", "f2", 0, new ByteArrayResource(new byte[] {1}));
+        uploadDigestService.update("u1", "f2", 2, new ByteArrayResource(new byte[] {3}));
+
+        assertNull(uploadDigestService.getDigest("u1", "f2", 3));
+    }
+}
@@ -0,0 +1,163 @@
+package com.easypan.unit.service;
+
+import com.easypan.component.UploadSessionStore;
+import com.easypan.entity.dto.UploadInitDto;
+import com.easypan.entity.dto.UploadSessionDto;
+import com.easypan.exception.BusinessException;
+import com.easypan.service.UploadTuningService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UploadTuningService 分片协商测试")
+class UploadTuningServiceTest {
+
+    private static final long MB = 1024L * 1024;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private UploadSessionStore uploadSessionStore;
+
+    @InjectMocks
+    private UploadTuningService uploadTuningService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+        lenient().when(uploadSessionStore.getSession(anyString(), anyString()))
+                .thenReturn(UploadSessionDto.builder().completedChunks(0).receivedBytes(0L).build());
+        ReflectionTestUtils.setField(uploadTuningService, "cpuLoad", (DoubleSupplier) () -> 0.0);
+    }
+
+    @Test
+    @DisplayName("没有历史数据时应返回默认方案并写入会话")
+    void recommend_withoutHistory_shouldUseDefaults() {
+        when(hashOperations.multiGet(eq("easypan:upload:tuning:u1"), anyList()))
+                .thenReturn(Arrays.asList(null, null));
+
+        UploadInitDto plan = uploadTuningService.recommend("u1", "f1", 25 * MB);
+
+        assertEquals(10 * MB, plan.getChunkSize());
+        assertEquals(3, plan.getChunks());
+        assertEquals(3, plan.getParallelism());
+        verify(uploadSessionStore).initSession("u1", "f1", 3, 10 * MB);
+    }
+
+    @Test
+    @DisplayName("高吞吐时分片大小不应超过 multipart 请求上限，并发数随往返时延增加")
+    void recommend_fastLink_shouldClampChunkAndRaiseParallelism() {
+        when(hashOperations.multiGet(eq("easypan:upload:tuning:u1"), anyList()))
+                .thenReturn(Arrays.asList(String.valueOf(100 * MB), "300"));
+
+        ReflectionTestUtils.setField(uploadTuningService, "maxRequestSize", DataSize.ofMegabytes(15));
+
+        UploadInitDto plan = uploadTuningService.recommend("u1", "f1", 1024 * MB);
+
+        // 15MB 请求上限预留 1MB 给表单字段
+        assertEquals(14 * MB, plan.getChunkSize());
+        // 单片约 140ms，300ms 往返需要再补 3 个在途分片
+        assertEquals(4, plan.getParallelism());
+    }
+
+    @Test
+    @DisplayName("默认请求上限下高吞吐链路应能用到最大分片")
+    void recommend_defaultRequestLimit_shouldReachMaxChunk() {
+        when(hashOperations.multiGet(eq("easypan:upload:tuning:u1"), anyList()))
+                .thenReturn(Arrays.asList(String.valueOf(100 * MB), "300"));
+
+        UploadInitDto plan = uploadTuningService.recommend("u1", "f1", 1024 * MB);
+
+        assertEquals(64 * MB, plan.getChunkSize());
+        assertEquals(16, plan.getChunks());
+    }
+
+    @Test
+    @DisplayName("低吞吐时分片大小应按目标耗时缩小并取整到 MB")
+    void recommend_slowLink_shouldShrinkChunk() {
+        when(hashOperations.multiGet(eq("easypan:upload:tuning:u1"), anyList()))
+                .thenReturn(Arrays.asList(String.valueOf(MB / 2 + 1000), null));
+
+        UploadInitDto plan = uploadTuningService.recommend("u1", "f1", 100 * MB);
+
+        assertEquals(2 * MB, plan.getChunkSize());
+        assertEquals(50, plan.getChunks());
+    }
+
+    @Test
+    @DisplayName("已有会话时应沿用原分片大小，分片数不一致则拒绝")
+    void recommend_existingSession_shouldKeepChunkSize() {
+        when(hashOperations.multiGet(eq("easypan:upload:tuning:u1"), anyList()))
+                .thenReturn(Arrays.asList(String.valueOf(100 * MB), null));
+        when(uploadSessionStore.getSession("u1", "f1"))
+                .thenReturn(UploadSessionDto.builder().chunkSize(5 * MB).totalChunks(4).build());
+
+        UploadInitDto plan = uploadTuningService.recommend("u1", "f1", 18 * MB);
+        assertEquals(5 * MB, plan.getChunkSize());
+        assertEquals(4, plan.getChunks());
+
+        assertThrows(BusinessException.class, () -> uploadTuningService.recommend("u1", "f1", 40 * MB));
+    }
+
+    @Test
+    @DisplayName("节点繁忙时并发数应减半")
+    void recommend_busyNode_shouldHalveParallelism() {
+        when(hashOperations.multiGet(eq("easypan:upload:tuning:u1"), anyList()))
+                .thenReturn(Arrays.asList(null, null));
+        ReflectionTestUtils.setField(uploadTuningService, "cpuLoad", (DoubleSupplier) () -> 0.95);
+
+        UploadInitDto plan = uploadTuningService.recommend("u1", "f1", 100 * MB);
+
+        assertEquals(1, plan.getParallelism());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    @DisplayName("记录分片时应更新吞吐与请求间隙，过小的分片不计入吞吐")
+    void recordChunk_shouldUpdateAverages() {
+        long start = System.currentTimeMillis() - 1000;
+        when(hashOperations.multiGet(eq("easypan:upload:tuning:u1"), anyList()))
+                .thenReturn(Arrays.asList(null, null, String.valueOf(start - 200)));
+
+        uploadTuningService.recordChunk("u1", 8 * MB, start);
+        uploadTuningService.recordChunk("u1", 1024, start);
+
+        ArgumentCaptor<Map<String, String>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(hashOperations, times(2)).putAll(eq("easypan:upload:tuning:u1"), captor.capture());
+        Map<String, String> updates = captor.getAllValues().get(0);
+        assertEquals("200", updates.get("rttMs"));
+        long bps = Long.parseLong(updates.get("bps"));
+        assertTrue(bps > 4 * MB && bps <= 8 * MB);
+        assertFalse(captor.getAllValues().get(1).containsKey("bps"));
+    }
+}
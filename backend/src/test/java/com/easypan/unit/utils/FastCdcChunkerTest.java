@@ -0,0 +1,87 @@
+package com.easypan.unit.utils;
+
+import com.easypan.utils.FastCdcChunker;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("FastCdcChunker 内容定义分块测试")
+class FastCdcChunkerTest {
+
+    private final FastCdcChunker chunker = new FastCdcChunker(2 * 1024, 8 * 1024, 32 * 1024);
+
+    @Test
+    @DisplayName("块按序拼接应还原原始数据且块大小在上下限之间")
+    void split_shouldCoverInputWithinBounds() throws Exception {
+        byte[] content = randomBytes(1, 512 * 1024);
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        List<Integer> sizes = new ArrayList<>();
+
+        chunker.split(new ByteArrayInputStream(content), (data, offset, length) -> {
+            joined.write(data, offset, length);
+            sizes.add(length);
+        });
+
+        assertArrayEquals(content, joined.toByteArray());
+        for (int i = 0; i < sizes.size() - 1; i++) {
+            assertTrue(sizes.get(i) >= 2 * 1024 && sizes.get(i) <= 32 * 1024, "块大小越界: " + sizes.get(i));
+        }
+    }
+
+    @Test
+    @DisplayName("头部插入少量字节后绝大多数块哈希应保持不变")
+    void split_shouldResistShiftAfterInsertion() throws Exception {
+        byte[] original = randomBytes(2, 1024 * 1024);
+        byte[] edited = new byte[original.length + 7];
+        System.arraycopy("PATCHED".getBytes(), 0, edited, 0, 7);
+        System.arraycopy(original, 0, edited, 7, original.length);
+
+        List<String> before = blockHashes(original);
+        Set<String> after = new HashSet<>(blockHashes(edited));
+        long shared = before.stream().filter(after::contains).count();
+
+        assertTrue(shared >= before.size() - 2, "共享块过少: " + shared + "/" + before.size());
+    }
+
+    @Test
+    @DisplayName("不足最小块大小的数据应整体成为一个块")
+    void cut_shortInputShouldBeSingleBlock() {
+        assertEquals(100, chunker.cut(new byte[100], 0, 100));
+    }
+
+    @Test
+    @DisplayName("平均块大小不是 2 的幂时应拒绝")
+    void constructor_shouldRejectNonPowerOfTwoAverage() {
+        assertThrows(IllegalArgumentException.class, () -> new FastCdcChunker(1024, 3000, 8192));
+    }
+
+    private List<String> blockHashes(byte[] content) throws Exception {
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        List<String> hashes = new ArrayList<>();
+        chunker.split(new ByteArrayInputStream(content), (data, offset, length) -> {
+            sha256.update(data, offset, length);
+            hashes.add(HexFormat.of().formatHex(sha256.digest()));
+        });
+        return hashes;
+    }
+
+    private static byte[] randomBytes(long seed, int size) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
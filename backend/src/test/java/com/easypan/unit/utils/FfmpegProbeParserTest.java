@@ -0,0 +1,79 @@
+package com.easypan.unit.utils;
+
+import com.easypan.entity.dto.VideoProbeDto;
+import com.easypan.utils.FfmpegProbeParser;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@DisplayName("FfmpegProbeParser 输出解析测试")
+class FfmpegProbeParserTest {
+
+    @Test
+    @DisplayName("应解析输入的时长、分辨率与编码，忽略输出流")
+    void parse_shouldReadInputDescription() {
+        VideoProbeDto probe = FfmpegProbeParser.parse(List.of(
+                "Input #0, mov,mp4,m4a,3gp,3g2,mj2, from '/data/file/202610/u1f1.mp4':",
+                "  Duration: 00:01:23.45, start: 0.000000, bitrate: 4123 kb/s",
+                "  Stream #0:0[0x1](und): Video: h264 (High) (avc1 / 0x31637661), yuv420p(tv, bt709, progressive), "
+                        + "1920x1080 [SAR 1:1 DAR 16:9], 3990 kb/s, 29.97 fps, 29.97 tbr, 30k tbn (default)",
+                "  Stream #0:1[0x2](und): Audio: aac (LC) (mp4a / 0x6134706D), 48000 Hz, stereo, fltp, 128 kb/s",
+                "Output #0, segment, to '/data/file/202610/u1f1/f1_%04d.ts':",
+                "  Stream #0:0: Video: hevc, yuv420p, 640x360"));
+
+        assertEquals(83450L, probe.getDurationMillis());
+        assertEquals(1920, probe.getWidth());
+        assertEquals(1080, probe.getHeight());
+        assertEquals("h264", probe.getVideoCodec());
+        assertEquals("aac", probe.getAudioCodec());
+    }
+
+    @Test
+    @DisplayName("竖拍视频应按旋转信息交换宽高")
+    void parse_rotatedVideo_shouldSwapDimensions() {
+        VideoProbeDto probe = FfmpegProbeParser.parse(List.of(
+                "  Duration: 00:00:10.00, start: 0.000000, bitrate: 9000 kb/s",
+                "  Stream #0:0(und): Video: hevc (Main) (hvc1 / 0x31637668), yuv420p(tv), 1920x1080, 8000 kb/s",
+                "    Side data:",
+                "      displaymatrix: rotation of -90.00 degrees"));
+
+        assertEquals(1080, probe.getWidth());
+        assertEquals(1920, probe.getHeight());
+        assertEquals("hevc", probe.getVideoCodec());
+        assertNull(probe.getAudioCodec());
+    }
+
+    @Test
+    @DisplayName("应跳过内嵌封面图，时长未知时为空")
+    void parse_attachedPicture_shouldBeSkipped() {
+        VideoProbeDto probe = FfmpegProbeParser.parse(List.of(
+                "  Duration: N/A, bitrate: N/A",
+                "  Stream #0:0: Video: mjpeg (Baseline), yuvj420p(pc), 600x600, 90k tbn (attached pic)",
+                "  Stream #0:1: Video: vp9 (Profile 0), yuv420p(tv), 1280x720, SAR 1:1 DAR 16:9"));
+
+        assertNull(probe.getDurationMillis());
+        assertEquals("vp9", probe.getVideoCodec());
+        assertEquals(1280, probe.getWidth());
+        assertEquals(720, probe.getHeight());
+    }
+
+    @Test
+    @DisplayName("应按输入时长把 -progress 输出换算为百分比")
+    void progressPercent_shouldUseInputDuration() {
+        FfmpegProbeParser parser = new FfmpegProbeParser();
+        assertEquals(-1, parser.progressPercent("out_time_us=1000000"));
+
+        parser.accept("  Duration: 00:00:40.00, start: 0.000000, bitrate: 9000 kb/s");
+        parser.accept("Output #0, segment, to 'f1_%04d.ts':");
+
+        assertEquals(25, parser.progressPercent("out_time_us=10000000"));
+        assertEquals(50, parser.progressPercent("out_time_ms=20000000"));
+        assertEquals(-1, parser.progressPercent("out_time_us=N/A"));
+        assertEquals(-1, parser.progressPercent("frame=120"));
+        assertEquals(100, parser.progressPercent("progress=end"));
+    }
+}
@@ -0,0 +1,50 @@
+package com.easypan.unit.utils;
+
+import com.easypan.utils.ResumableMd5;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("ResumableMd5 单元测试")
+class ResumableMd5Test {
+
+    @Test
+    @DisplayName("空输入应与 JDK MD5 一致")
+    void hexDigest_emptyInput_shouldMatchJdk() throws Exception {
+        assertEquals("d41d8cd98f00b204e9800998ecf8427e", new ResumableMd5().hexDigest());
+    }
+
+    @Test
+    @DisplayName("任意切分并经状态导出导入后结果应与 JDK MD5 一致")
+    void exportAndResume_shouldMatchJdk() throws Exception {
+        byte[] data = new byte[10_007];
+        new Random(42).nextBytes(data);
+        String expected = HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(data));
+
+        int[] cuts = {0, 1, 63, 64, 65, 1000, 4097, 10_007};
+        ResumableMd5 md5 = new ResumableMd5();
+        for (int i = 1; i < cuts.length; i++) {
+            md5.update(data, cuts[i - 1], cuts[i] - cuts[i - 1]);
+            md5 = ResumableMd5.fromState(md5.exportState());
+        }
+
+        assertEquals(expected, md5.hexDigest());
+    }
+
+    @Test
+    @DisplayName("计算摘要不应影响后续继续追加")
+    void hexDigest_shouldNotConsumeState() throws Exception {
+        byte[] data = "hello world, resumable md5".getBytes();
+        ResumableMd5 md5 = new ResumableMd5();
+        md5.update(data, 0, 10);
+        md5.hexDigest();
+        md5.update(data, 10, data.length - 10);
+
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(data)), md5.hexDigest());
+    }
+}
@@ -0,0 +1,86 @@
+package com.easypan.unit.utils;
+
+import com.easypan.utils.SampledFingerprint;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+@DisplayName("SampledFingerprint 抽样指纹测试")
+class SampledFingerprintTest {
+
+    private static final int BLOCK = SampledFingerprint.BLOCK_SIZE;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("小文件应整体参与计算")
+    void compute_smallFile_shouldHashWholeContent() throws Exception {
+        byte[] data = randomBytes(3 * BLOCK, 1);
+        File file = write("small.bin", data);
+
+        assertEquals(md5Hex(concat((data.length + ":").getBytes(StandardCharsets.US_ASCII), data)),
+                SampledFingerprint.compute(file));
+    }
+
+    @Test
+    @DisplayName("大文件应只取头、中、尾三个块")
+    void compute_largeFile_shouldSampleThreeBlocks() throws Exception {
+        int size = 5 * BLOCK + 123;
+        byte[] data = randomBytes(size, 2);
+        File file = write("large.bin", data);
+
+        int middle = size / 2 - BLOCK / 2;
+        byte[] expected = concat((size + ":").getBytes(StandardCharsets.US_ASCII),
+                slice(data, 0), slice(data, middle), slice(data, size - BLOCK));
+        assertEquals(md5Hex(expected), SampledFingerprint.compute(file));
+
+        // 抽样范围之外的改动不影响指纹，范围之内的改动会改变指纹
+        data[BLOCK + 10] ^= 1;
+        assertEquals(md5Hex(expected), SampledFingerprint.compute(write("outside.bin", data)));
+        data[middle + 10] ^= 1;
+        assertNotEquals(md5Hex(expected), SampledFingerprint.compute(write("inside.bin", data)));
+    }
+
+    private File write(String name, byte[] data) throws Exception {
+        Path path = tempDir.resolve(name);
+        Files.write(path, data);
+        return path.toFile();
+    }
+
+    private static byte[] randomBytes(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] slice(byte[] data, int offset) {
+        byte[] block = new byte[BLOCK];
+        System.arraycopy(data, offset, block, 0, BLOCK);
+        return block;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    private static String md5Hex(byte[] data) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(data));
+    }
+}
@@ -0,0 +1,134 @@
+package com.easypan.unit.utils;
+
+import com.easypan.utils.TarStreamReader;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("TarStreamReader 流式 tar 解析测试")
+class TarStreamReaderTest {
+
+    @Test
+    @DisplayName("应按顺序读出目录与文件，未读完的条目在下一次调用时跳过")
+    void nextEntry_shouldReadEntriesInOrder() throws IOException {
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        writeEntry(tar, "docs/", '5', new byte[0]);
+        writeEntry(tar, "docs/a.txt", '0', "hello".getBytes(StandardCharsets.UTF_8));
+        writeEntry(tar, "docs/b.txt", '0', new byte[700]);
+        writeEntry(tar, "docs/c.txt", '0', "world".getBytes(StandardCharsets.UTF_8));
+        tar.write(new byte[1024]);
+
+        TarStreamReader reader = new TarStreamReader(new ByteArrayInputStream(tar.toByteArray()));
+
+        TarStreamReader.Entry dir = reader.nextEntry();
+        assertEquals("docs/", dir.name());
+        assertTrue(dir.directory());
+
+        TarStreamReader.Entry a = reader.nextEntry();
+        assertEquals("docs/a.txt", a.name());
+        assertFalse(a.directory());
+        assertArrayEquals("hello".getBytes(StandardCharsets.UTF_8), reader.readAllBytes());
+
+        TarStreamReader.Entry b = reader.nextEntry();
+        assertEquals(700, b.size());
+        reader.readNBytes(10);
+
+        TarStreamReader.Entry c = reader.nextEntry();
+        assertEquals("docs/c.txt", c.name());
+        assertArrayEquals("world".getBytes(StandardCharsets.UTF_8), reader.readAllBytes());
+
+        assertNull(reader.nextEntry());
+    }
+
+    @Test
+    @DisplayName("GNU 长文件名与 PAX path 应覆盖头部中的截断文件名")
+    void nextEntry_extendedNames_shouldOverrideHeaderName() throws IOException {
+        String longName = "deep/" + "x".repeat(150) + ".txt";
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        writeEntry(tar, "././@LongLink", 'L', (longName + "\0").getBytes(StandardCharsets.UTF_8));
+        writeEntry(tar, longName.substring(0, 99), '0', new byte[] {1});
+        String pax = "路径/文件.txt";
+        byte[] record = paxRecord("path", pax);
+        writeEntry(tar, "PaxHeader", 'x', record);
+        writeEntry(tar, "ignored", '0', new byte[] {2});
+
+        TarStreamReader reader = new TarStreamReader(new ByteArrayInputStream(tar.toByteArray()));
+
+        assertEquals(longName, reader.nextEntry().name());
+        assertEquals(pax, reader.nextEntry().name());
+        assertNull(reader.nextEntry());
+    }
+
+    @Test
+    @DisplayName("校验和错误或数据截断时应报错")
+    void nextEntry_corruptArchive_shouldThrow() throws IOException {
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        writeEntry(tar, "a.txt", '0', new byte[600]);
+        byte[] bytes = tar.toByteArray();
+
+        byte[] badChecksum = bytes.clone();
+        badChecksum[0] = 'b';
+        assertThrows(IOException.class,
+                () -> new TarStreamReader(new ByteArrayInputStream(badChecksum)).nextEntry());
+
+        TarStreamReader truncated = new TarStreamReader(
+                new ByteArrayInputStream(Arrays.copyOf(bytes, 512 + 100)));
+        truncated.nextEntry();
+        assertThrows(EOFException.class, truncated::readAllBytes);
+    }
+
+    private static byte[] paxRecord(String key, String value) {
+        String body = " " + key + "=" + value + "\n";
+        int bodyLength = body.getBytes(StandardCharsets.UTF_8).length;
+        // 记录长度包含长度数字本身
+        int length = bodyLength + 1;
+        while (String.valueOf(length).length() + bodyLength != length) {
+            length++;
+        }
+        return (length + body).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeEntry(ByteArrayOutputStream out, String name, char type, byte[] data) throws IOException {
+        byte[] header = new byte[512];
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(nameBytes, 0, header, 0, Math.min(100, nameBytes.length));
+        putOctal(header, 100, 8, 0644);
+        putOctal(header, 108, 8, 0);
+        putOctal(header, 116, 8, 0);
+        putOctal(header, 124, 12, data.length);
+        putOctal(header, 136, 12, 0);
+        header[156] = (byte) type;
+        System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6);
+        header[263] = '0';
+        header[264] = '0';
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long sum = 0;
+        for (byte b : header) {
+            sum += b & 0xff;
+        }
+        putOctal(header, 148, 7, sum);
+        out.write(header);
+        out.write(data);
+        int padding = (512 - data.length % 512) % 512;
+        out.write(new byte[padding]);
+    }
+
+    private static void putOctal(byte[] header, int offset, int length, long value) {
+        String octal = String.format("%0" + (length - 1) + "o", value);
+        System.arraycopy(octal.getBytes(StandardCharsets.US_ASCII), 0, header, offset, length - 1);
+        header[offset + length - 1] = 0;
+    }
+}
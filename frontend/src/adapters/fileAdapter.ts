@@ -1,4 +1,4 @@
-import type { FileInfoVO, FolderVO, UploadResultDto, PaginationResultVO } from '@/types'
+import type { FileInfoVO, FolderVO, UploadResultDto, UploadInitDto, QuickUploadCheckDto, PaginationResultVO } from '@/types'
 
 export function adaptFileInfo(data: unknown): FileInfoVO {
   const raw = data as Record<string, unknown>
@@ -46,6 +46,25 @@ export function adaptUploadResult(data: unknown): UploadResultDto {
   }
 }
 
+export function adaptUploadInit(data: unknown): UploadInitDto {
+  const raw = data as Record<string, unknown>
+  return {
+    fileId: raw.fileId as string,
+    chunkSize: raw.chunkSize as number,
+    chunks: raw.chunks as number,
+    parallelism: raw.parallelism as number,
+    fullHashRequired: raw.fullHashRequired !== false,
+  }
+}
+
+export function adaptQuickUploadCheck(data: unknown): QuickUploadCheckDto {
+  const raw = data as Record<string, unknown>
+  return {
+    available: (raw.available as Record<string, number>) || {},
+    missing: (raw.missing as string[]) || [],
+  }
+}
+
 export function adaptPaginationResult<T>(data: unknown, itemAdapter: (item: unknown) => T): PaginationResultVO<T> {
   const raw = data as Record<string, unknown>
   return {
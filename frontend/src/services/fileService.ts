@@ -5,10 +5,12 @@ import {
   adaptFileInfoList,
   adaptFolderList,
   adaptUploadResult,
+  adaptUploadInit,
+  adaptQuickUploadCheck,
   adaptFileInfoPagination,
   adaptUploadedChunks,
 } from '@/adapters'
-import type { FileInfoVO, FolderVO, UploadResultDto, FileInfoQuery } from '@/types'
+import type { FileInfoVO, FolderVO, UploadResultDto, UploadInitDto, QuickUploadCheckDto, FileInfoQuery } from '@/types'
 
 const api = {
   loadDataList: '/file/loadDataList',
@@ -19,11 +21,14 @@ const api = {
   changeFileFolder: '/file/changeFileFolder',
   createDownloadUrl: '/file/createDownloadUrl',
   download: '/api/file/download',
+  uploadInit: '/file/uploadInit',
+  checkQuickUpload: '/file/checkQuickUpload',
   uploadFile: '/file/uploadFile',
   uploadedChunks: '/file/uploadedChunks',
   transferStatus: '/file/transferStatus',
   loadAllFolder: '/file/loadAllFolder',
   getImage: '/api/file/getImage',
+  getThumbnail: '/api/file/getThumbnail',
   getFile: '/file/getFile',
   getVideoInfo: '/file/ts/getVideoInfo',
 }
@@ -63,6 +68,13 @@ export interface UploadFileParams {
   chunks: number
   fileId: string
   filePid: string
+  chunkSize?: number
+}
+
+export interface UploadInitParams {
+  fileId: string
+  fileSize: number
+  fileSampleHash?: string
 }
 
 export interface UploadedChunksParams {
@@ -162,6 +174,7 @@ export async function uploadFile(
 export interface UploadFileWithErrorResult {
   data: UploadResultDto | null
   errorMsg?: string
+  retryAfter?: number
 }
 
 export async function uploadFileWithError(
@@ -169,6 +182,7 @@ export async function uploadFileWithError(
   onProgress?: (event: ProgressEvent) => void
 ): Promise<UploadFileWithErrorResult> {
   let errorMsg: string | undefined
+  let retryAfter: number | undefined
   const result = (await request({
     url: api.uploadFile,
     params,
@@ -176,8 +190,9 @@ export async function uploadFileWithError(
     showLoading: false,
     showError: false,
     enableRequestDedup: false,
-    errorCallback: msg => {
+    errorCallback: (msg, detail) => {
       errorMsg = msg
+      retryAfter = detail?.retryAfter
     },
     uploadProgressCallback: onProgress,
   })) as ResponseVO<unknown> | null
@@ -186,7 +201,33 @@ export async function uploadFileWithError(
     return { data: adaptUploadResult(result.data) }
   }
 
-  return { data: null, errorMsg }
+  return { data: null, errorMsg, retryAfter }
+}
+
+export async function initUpload(params: UploadInitParams): Promise<UploadInitDto | null> {
+  const result = (await request({
+    url: api.uploadInit,
+    params,
+    showLoading: false,
+    showError: false,
+  })) as ResponseVO<unknown> | null
+  if (result && result.code === 200) {
+    return adaptUploadInit(result.data)
+  }
+  return null
+}
+
+export async function checkQuickUpload(fileMd5s: string[]): Promise<QuickUploadCheckDto | null> {
+  const result = (await request({
+    url: api.checkQuickUpload,
+    params: { fileMd5s: fileMd5s.join(',') },
+    showLoading: false,
+    showError: false,
+  })) as ResponseVO<unknown> | null
+  if (result && result.code === 200) {
+    return adaptQuickUploadCheck(result.data)
+  }
+  return null
 }
 
 export async function getUploadedChunks(params: UploadedChunksParams): Promise<number[] | null> {
@@ -229,6 +270,12 @@ export function getImageUrl(imageFolder: string, imageName: string): string {
   return `${api.getImage}/${imageFolder}/${imageName}`
 }
 
+export type ThumbnailFormat = 'jpg' | 'png' | 'webp'
+
+export function getThumbnailUrl(fileId: string, width: number, format: ThumbnailFormat = 'webp'): string {
+  return `${api.getThumbnail}/${fileId}?width=${width}&format=${format}`
+}
+
 export function getFileUrl(fileId: string): string {
   return `/api${api.getFile}/${fileId}`
 }
@@ -33,10 +33,13 @@ export {
   getDownloadUrl as getFileDownloadUrl,
   uploadFile,
   uploadFileWithError,
+  initUpload,
+  checkQuickUpload,
   getUploadedChunks,
   getTransferStatus,
   loadAllFolder,
   getImageUrl,
+  getThumbnailUrl,
   getFileUrl,
   getVideoUrl,
 } from './fileService'
@@ -50,8 +53,10 @@ export type {
   ChangeFileFolderParams,
   UploadFileParams,
   UploadFileWithErrorResult,
+  UploadInitParams,
   UploadedChunksParams,
   LoadAllFolderParams,
+  ThumbnailFormat,
 } from './fileService'
 
 export {
@@ -67,6 +72,7 @@ export {
   saveShare,
   getFolderInfo as getShareFolderInfo,
   getImageUrl as getShareImageUrl,
+  getThumbnailUrl as getShareThumbnailUrl,
   getFileUrl as getShareFileUrl,
   getVideoUrl as getShareVideoUrl,
 } from './shareService'
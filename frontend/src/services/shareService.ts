@@ -3,6 +3,7 @@ import type { ResponseVO, PaginationResultVO } from '@/types'
 import { adaptFileSharePagination, adaptShareInfo } from '@/adapters/shareAdapter'
 import type { FileShare, ShareInfoVO, ShareFileParams, SaveShareParams } from '@/types'
 import { adaptFileInfoPagination, adaptFolderList } from '@/adapters/fileAdapter'
+import type { ThumbnailFormat } from './fileService'
 
 const api = {
   loadShareList: '/share/loadShareList',
@@ -17,6 +18,7 @@ const api = {
   saveShare: '/showShare/saveShare',
   getFolderInfo: '/showShare/getFolderInfo',
   getImage: '/api/showShare/getImage',
+  getThumbnail: '/api/showShare/getThumbnail',
   getFile: '/showShare/getFile',
   getVideoInfo: '/showShare/ts/getVideoInfo',
 }
@@ -154,6 +156,15 @@ export function getImageUrl(shareId: string, imageFolder: string, imageName: str
   return `${api.getImage}/${shareId}/${imageFolder}/${imageName}`
 }
 
+export function getThumbnailUrl(
+  shareId: string,
+  fileId: string,
+  width: number,
+  format: ThumbnailFormat = 'webp'
+): string {
+  return `${api.getThumbnail}/${shareId}/${fileId}?width=${width}&format=${format}`
+}
+
 export function getFileUrl(shareId: string, fileId: string): string {
   return `/api${api.getFile}/${shareId}/${fileId}`
 }
@@ -9,6 +9,9 @@ export interface FileInfoVO {
   fileSize: number
   fileName: string
   fileCover: string
+  videoDuration?: number
+  videoWidth?: number
+  videoHeight?: number
   recoveryTime?: string
   lastUpdateTime: string
   folderType: FileFolderType
@@ -30,6 +33,19 @@ export interface UploadResultDto {
   status: 'uploading' | 'upload_finish' | 'upload_seconds' | 'fail' | 'init' | 'emptyfile' | 'retrying' | 'network_error' | 'auth_error' | 'server_error'
 }
 
+export interface UploadInitDto {
+  fileId: string
+  chunkSize: number
+  chunks: number
+  parallelism: number
+  fullHashRequired: boolean
+}
+
+export interface QuickUploadCheckDto {
+  available: Record<string, number>
+  missing: string[]
+}
+
 export interface FileInfoQuery {
   pageNo?: number
   pageSize?: number
@@ -45,9 +45,15 @@ interface ApiResponse<T = unknown> {
   data?: T
 }
 
+interface ErrorDetail {
+  code?: number
+  // 服务端限流时通过 Retry-After 响应头给出的建议等待秒数
+  retryAfter?: number
+}
+
 interface CustomAxiosRequestConfig extends InternalAxiosRequestConfig {
   showLoading?: boolean
-  errorCallback?: (errorMsg: string) => void
+  errorCallback?: (errorMsg: string, detail?: ErrorDetail) => void
   showError?: boolean
   uploadProgressCallback?: (event: AxiosProgressEvent) => void
   dataType?: 'json' | 'file' | string
@@ -64,7 +70,7 @@ interface RequestOptions {
   dataType?: 'json' | 'file' | string
   showLoading?: boolean
   responseType?: AxiosRequestConfig['responseType']
-  errorCallback?: (errorMsg: string) => void
+  errorCallback?: (errorMsg: string, detail?: ErrorDetail) => void
   showError?: boolean
   uploadProgressCallback?: (event: AxiosProgressEvent) => void
   enableRequestDedup?: boolean
@@ -408,7 +414,11 @@ instance.interceptors.response.use(
 
     const errorMessage = String(responseData.info || '请求失败')
     if (errorCallback) {
-      errorCallback(errorMessage)
+      const retryAfter = Number(response.headers?.['retry-after'])
+      errorCallback(errorMessage, {
+        code: responseData.code,
+        retryAfter: Number.isFinite(retryAfter) && retryAfter > 0 ? retryAfter : undefined,
+      })
     }
     return Promise.reject({ showError, msg: errorMessage })
   },
@@ -0,0 +1,27 @@
+import SparkMD5 from 'spark-md5'
+
+// 与后端 SampledFingerprint 保持一致：MD5(文件大小 + ":" + 头块 + 中块 + 尾块)
+const SAMPLE_BLOCK_SIZE = 64 * 1024
+
+/**
+ * 计算文件抽样指纹，只读取头、中、尾三个 64KB 块
+ * 不超过三个块的文件整体参与计算
+ */
+export const computeSampleHash = async file => {
+  const size = file.size
+  const ranges =
+    size <= SAMPLE_BLOCK_SIZE * 3
+      ? [[0, size]]
+      : [
+          [0, SAMPLE_BLOCK_SIZE],
+          [Math.floor(size / 2) - SAMPLE_BLOCK_SIZE / 2, Math.floor(size / 2) + SAMPLE_BLOCK_SIZE / 2],
+          [size - SAMPLE_BLOCK_SIZE, size],
+        ]
+
+  const spark = new SparkMD5.ArrayBuffer()
+  spark.append(new TextEncoder().encode(`${size}:`).buffer)
+  for (const [start, end] of ranges) {
+    spark.append(await file.slice(start, end).arrayBuffer())
+  }
+  return spark.end()
+}